@@ -22,8 +22,10 @@ import com.yahoo.config.model.builder.xml.ConfigModelBuilder;
 import com.yahoo.config.model.deploy.DeployState;
 import com.yahoo.config.provision.TransientException;
 import com.yahoo.config.provision.Zone;
+import com.yahoo.jdisc.Metric;
 import com.yahoo.vespa.config.VespaVersion;
 import com.yahoo.vespa.model.application.validation.Validation;
+import com.yahoo.vespa.model.ml.ImportedMlModelCache;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
@@ -32,6 +34,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -42,17 +45,22 @@ import java.util.logging.Logger;
 public class VespaModelFactory implements ModelFactory {
 
     private static final Logger log = Logger.getLogger(VespaModelFactory.class.getName());
+    private static final int maxCachedImportedModels = 32;
     private final ConfigModelRegistry configModelRegistry;
+    private final ImportedMlModelCache importedModelCache = new ImportedMlModelCache(maxCachedImportedModels);
     private final Collection<MlModelImporter> modelImporters;
     private final Zone zone;
     private final Clock clock;
     private final Version version;
+    private final Metric metric;
+    private final Metric.Context metricContext;
 
     /** Creates a factory for Vespa models for this version of the source */
     @Inject
     public VespaModelFactory(ComponentRegistry<ConfigModelPlugin> pluginRegistry,
                              ComponentRegistry<MlModelImporter> modelImporters,
-                             Zone zone) {
+                             Zone zone,
+                             Metric metric) {
         this.version = new Version(VespaVersion.major, VespaVersion.minor, VespaVersion.micro);
         List<ConfigModelBuilder> modelBuilders = new ArrayList<>();
         for (ConfigModelPlugin plugin : pluginRegistry.allComponents()) {
@@ -61,10 +69,12 @@ public class VespaModelFactory implements ModelFactory {
             }
         }
         this.configModelRegistry = new MapConfigModelRegistry(modelBuilders);
-        this.modelImporters = modelImporters.allComponents();
+        this.modelImporters = importedModelCache.wrap(modelImporters.allComponents());
         this.zone = zone;
 
         this.clock = Clock.systemUTC();
+        this.metric = metric;
+        this.metricContext = createMetricContext(metric, version);
     }
     
     public VespaModelFactory(ConfigModelRegistry configModelRegistry) {
@@ -84,6 +94,12 @@ public class VespaModelFactory implements ModelFactory {
         this.modelImporters = Collections.emptyList();
         this.zone = Zone.defaultZone();
         this.clock = clock;
+        this.metric = new NullMetric();
+        this.metricContext = createMetricContext(this.metric, version);
+    }
+
+    private static Metric.Context createMetricContext(Metric metric, Version version) {
+        return metric.createContext(Map.of("vespaVersion", version.toFullString()));
     }
 
     /** Returns the version this model is build for */
@@ -147,7 +163,15 @@ public class VespaModelFactory implements ModelFactory {
             .now(clock.instant())
             .wantedNodeVespaVersion(modelContext.wantedNodeVespaVersion());
         modelContext.previousModel().ifPresent(builder::previousModel);
-        return builder.build(validationParameters);
+        DeployState deployState = builder.build(validationParameters);
+        updateImportedModelMetrics();
+        return deployState;
+    }
+
+    /** Models are imported when the deploy state is built, so the counts of reused and imported models change then */
+    private void updateImportedModelMetrics() {
+        metric.set("configserver.mlModelsReused", importedModelCache.reusedCount(), metricContext);
+        metric.set("configserver.mlModelsImported", importedModelCache.importedCount(), metricContext);
     }
 
     private static HostProvisioner createHostProvisioner(ModelContext modelContext) {
@@ -182,4 +206,22 @@ public class VespaModelFactory implements ModelFactory {
         }
     }
 
+    /** A metric which discards all values, for factories which are not injected */
+    private static class NullMetric implements Metric {
+
+        @Override
+        public void set(String key, Number val, Context ctx) { }
+
+        @Override
+        public void add(String key, Number val, Context ctx) { }
+
+        @Override
+        public Context createContext(Map<String, ?> properties) { return NullContext.INSTANCE; }
+
+        private static class NullContext implements Context {
+            private static final NullContext INSTANCE = new NullContext();
+        }
+
+    }
+
 }
@@ -61,6 +61,8 @@ public class VespaMetricSet {
         metrics.add(new Metric("jrt.transport.client.tls-connections-established"));
         metrics.add(new Metric("jrt.transport.server.unencrypted-connections-established"));
         metrics.add(new Metric("jrt.transport.client.unencrypted-connections-established"));
+        metrics.add(new Metric("jrt.transport.selector-wakeups"));
+        metrics.add(new Metric("jrt.transport.queued-packets.max"));
 
         // C++ TLS metrics
         metrics.add(new Metric("vds.server.network.tls-handshakes-failed"));
@@ -80,6 +82,7 @@ public class VespaMetricSet {
 
         metrics.add(new Metric("configserver.requests.count"));
         metrics.add(new Metric("configserver.failedRequests.count"));
+        metrics.add(new Metric("configserver.coalescedRequests.count"));
         metrics.add(new Metric("configserver.latency.max"));
         metrics.add(new Metric("configserver.latency.sum"));
         metrics.add(new Metric("configserver.latency.count"));
@@ -89,6 +92,10 @@ public class VespaMetricSet {
         metrics.add(new Metric("configserver.hosts.last"));
         metrics.add(new Metric("configserver.delayedResponses.count"));
         metrics.add(new Metric("configserver.sessionChangeErrors.count"));
+        metrics.add(new Metric("configserver.modelBuildTime.max"));
+        metrics.add(new Metric("configserver.modelsBuildTime.max"));
+        metrics.add(new Metric("configserver.mlModelsReused.last"));
+        metrics.add(new Metric("configserver.mlModelsImported.last"));
 
         metrics.add(new Metric("configserver.zkZNodes.last"));
         metrics.add(new Metric("configserver.zkAvgLatency.last"));
@@ -0,0 +1,184 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.model.ml;
+
+import ai.vespa.rankingexpression.importer.configmodelview.ImportedMlFunction;
+import ai.vespa.rankingexpression.importer.configmodelview.ImportedMlModel;
+import ai.vespa.rankingexpression.importer.configmodelview.MlModelImporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A cache of the machine-learned models imported when building config models, which lets a deployment reuse the
+ * models imported by earlier deployments instead of importing them again, when the model files are unchanged.
+ * Importing large models may take minutes, while most deployments only change other parts of the application.
+ * <p>
+ * Models are keyed by the importer, the model name, and a hash of the content of the model file or directory.
+ * The least recently used models are evicted when the cache holds the given number of models, and models are
+ * softly referenced, so the memory they use may be reclaimed at any time. The class is thread safe.
+ */
+public class ImportedMlModelCache {
+
+    private final Map<Key, SoftReference<ImportedMlModel>> models;
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong imported = new AtomicLong();
+
+    /** Creates a cache holding at most the given number of models */
+    public ImportedMlModelCache(int maxSize) {
+        this.models = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, SoftReference<ImportedMlModel>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /** Returns importers which import models through this cache */
+    public List<MlModelImporter> wrap(Collection<MlModelImporter> importers) {
+        return importers.stream().map(CachingImporter::new).collect(Collectors.toList());
+    }
+
+    /** Returns the number of models reused from this cache since it was created */
+    public long reusedCount() { return reused.get(); }
+
+    /** Returns the number of models imported through this cache, because they were not cached, since it was created */
+    public long importedCount() { return imported.get(); }
+
+    private synchronized Optional<ImportedMlModel> get(Key key) {
+        SoftReference<ImportedMlModel> model = models.get(key);
+        return model == null ? Optional.empty() : Optional.ofNullable(model.get());
+    }
+
+    private synchronized void put(Key key, ImportedMlModel model) {
+        models.put(key, new SoftReference<>(model));
+    }
+
+    private class CachingImporter implements MlModelImporter {
+
+        private final MlModelImporter importer;
+
+        CachingImporter(MlModelImporter importer) {
+            this.importer = importer;
+        }
+
+        @Override
+        public boolean canImport(String modelPath) {
+            return importer.canImport(modelPath);
+        }
+
+        @Override
+        public ImportedMlModel importModel(String modelName, File modelPath) {
+            Key key = new Key(importer.getClass().getName(), modelName, contentHash(modelPath.toPath()));
+            Optional<ImportedMlModel> cached = get(key);
+            if (cached.isPresent()) {
+                reused.incrementAndGet();
+                return new RelocatedModel(cached.get(), modelPath.toString());
+            }
+            ImportedMlModel model = importer.importModel(modelName, modelPath);
+            imported.incrementAndGet();
+            put(key, model);
+            return model;
+        }
+
+    }
+
+    /** Returns a hash of the content of the given file, or of the names and content of all files under a directory */
+    static String contentHash(Path modelPath) {
+        try (Stream<Path> files = Files.walk(modelPath)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[1 << 16];
+            for (Path file : files.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                digest.update(modelPath.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                try (InputStream in = Files.newInputStream(file)) {
+                    for (int read; (read = in.read(buffer)) > 0; )
+                        digest.update(buffer, 0, read);
+                }
+            }
+            return Base64.getEncoder().encodeToString(digest.digest());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not read model at " + modelPath, e);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Key {
+
+        private final String importer;
+        private final String modelName;
+        private final String contentHash;
+
+        Key(String importer, String modelName, String contentHash) {
+            this.importer = importer;
+            this.modelName = modelName;
+            this.contentHash = contentHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof Key)) return false;
+            Key other = (Key) o;
+            return importer.equals(other.importer) && modelName.equals(other.modelName) && contentHash.equals(other.contentHash);
+        }
+
+        @Override
+        public int hashCode() { return Objects.hash(importer, modelName, contentHash); }
+
+    }
+
+    /** A cached model, which reports the location of the model it is reused for as its source */
+    private static class RelocatedModel implements ImportedMlModel {
+
+        private final ImportedMlModel model;
+        private final String source;
+
+        RelocatedModel(ImportedMlModel model, String source) {
+            this.model = model;
+            this.source = source;
+        }
+
+        @Override
+        public String name() { return model.name(); }
+
+        @Override
+        public String source() { return source; }
+
+        @Override
+        public Optional<String> inputTypeSpec(String input) { return model.inputTypeSpec(input); }
+
+        @Override
+        public Map<String, String> smallConstants() { return model.smallConstants(); }
+
+        @Override
+        public Map<String, String> largeConstants() { return model.largeConstants(); }
+
+        @Override
+        public Map<String, String> functions() { return model.functions(); }
+
+        @Override
+        public List<ImportedMlFunction> outputExpressions() { return model.outputExpressions(); }
+
+    }
+
+}
@@ -0,0 +1,126 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.model.ml;
+
+import ai.vespa.rankingexpression.importer.configmodelview.ImportedMlFunction;
+import ai.vespa.rankingexpression.importer.configmodelview.ImportedMlModel;
+import ai.vespa.rankingexpression.importer.configmodelview.MlModelImporter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ImportedMlModelCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void unchanged_models_are_reused_across_application_packages() throws IOException {
+        CountingImporter importer = new CountingImporter();
+        ImportedMlModelCache cache = new ImportedMlModelCache(10);
+        MlModelImporter cachingImporter = cache.wrap(List.of(importer)).get(0);
+
+        File first = writeModel("session1", "model.onnx", "model content");
+        File second = writeModel("session2", "model.onnx", "model content");
+        File changed = writeModel("session3", "model.onnx", "changed model content");
+
+        ImportedMlModel imported = cachingImporter.importModel("model", first);
+        assertEquals(first.toString(), imported.source());
+        ImportedMlModel reused = cachingImporter.importModel("model", second);
+        assertEquals("The model is reused, but with the new source", second.toString(), reused.source());
+        assertEquals(1, importer.count);
+
+        cachingImporter.importModel("model", changed);
+        cachingImporter.importModel("other_model", second);
+        assertEquals("Changed content or another name means another model", 3, importer.count);
+
+        assertEquals(1, cache.reusedCount());
+        assertEquals(3, cache.importedCount());
+    }
+
+    @Test
+    public void least_recently_used_models_are_evicted() throws IOException {
+        CountingImporter importer = new CountingImporter();
+        MlModelImporter cachingImporter = new ImportedMlModelCache(2).wrap(List.of(importer)).get(0);
+        File model = writeModel("session1", "model.onnx", "model content");
+
+        cachingImporter.importModel("a", model);
+        cachingImporter.importModel("b", model);
+        cachingImporter.importModel("a", model);
+        cachingImporter.importModel("c", model);
+        assertEquals(3, importer.count);
+        cachingImporter.importModel("a", model);
+        assertEquals(3, importer.count);
+        cachingImporter.importModel("b", model);
+        assertEquals(4, importer.count);
+    }
+
+    @Test
+    public void directory_hash_includes_file_names_and_content() throws IOException {
+        File directory = tmp.newFolder("saved_model");
+        Files.writeString(directory.toPath().resolve("saved_model.pb"), "graph");
+        Files.createDirectory(directory.toPath().resolve("variables"));
+        Files.writeString(directory.toPath().resolve("variables/variables.data"), "variables");
+        String hash = ImportedMlModelCache.contentHash(directory.toPath());
+        assertEquals(hash, ImportedMlModelCache.contentHash(directory.toPath()));
+
+        Files.writeString(directory.toPath().resolve("variables/variables.data"), "new variables");
+        String changedContentHash = ImportedMlModelCache.contentHash(directory.toPath());
+        assertNotEquals(hash, changedContentHash);
+
+        Files.move(directory.toPath().resolve("variables/variables.data"), directory.toPath().resolve("variables/renamed.data"));
+        assertNotEquals(changedContentHash, ImportedMlModelCache.contentHash(directory.toPath()));
+    }
+
+    private File writeModel(String directory, String fileName, String content) throws IOException {
+        File file = new File(tmp.newFolder(directory), fileName);
+        Files.writeString(file.toPath(), content);
+        return file;
+    }
+
+    private static class CountingImporter implements MlModelImporter {
+
+        int count = 0;
+
+        @Override
+        public boolean canImport(String modelPath) { return true; }
+
+        @Override
+        public ImportedMlModel importModel(String modelName, File modelPath) {
+            count++;
+            return new TestModel(modelName, modelPath.toString());
+        }
+
+    }
+
+    private static class TestModel implements ImportedMlModel {
+
+        private final String name;
+        private final String source;
+
+        TestModel(String name, String source) {
+            this.name = name;
+            this.source = source;
+        }
+
+        @Override public String name() { return name; }
+        @Override public String source() { return source; }
+        @Override public Optional<String> inputTypeSpec(String input) { return Optional.empty(); }
+        @Override public Map<String, String> smallConstants() { return Collections.emptyMap(); }
+        @Override public Map<String, String> largeConstants() { return Collections.emptyMap(); }
+        @Override public Map<String, String> functions() { return Collections.emptyMap(); }
+        @Override public List<ImportedMlFunction> outputExpressions() { return Collections.emptyList(); }
+
+    }
+
+}
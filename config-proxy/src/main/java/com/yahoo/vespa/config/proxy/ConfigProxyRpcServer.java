@@ -19,6 +19,7 @@ import com.yahoo.vespa.config.RawConfig;
 import com.yahoo.vespa.config.protocol.JRTConfigRequestFactory;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequestV3;
+import com.yahoo.vespa.config.protocol.PayloadDeltas;
 
 import java.util.Arrays;
 import java.util.Iterator;
@@ -43,6 +44,7 @@ public class ConfigProxyRpcServer implements Runnable, TargetWatcher, RpcServer
     private final Supervisor supervisor;
     private final ProxyServer proxyServer;
     private final ExecutorService rpcExecutor = Executors.newFixedThreadPool(8);
+    private final PayloadDeltas payloadDeltas = new PayloadDeltas();
 
     ConfigProxyRpcServer(ProxyServer proxyServer, Supervisor supervisor, Spec spec) {
         this.proxyServer = proxyServer;
@@ -131,7 +133,7 @@ public class ConfigProxyRpcServer implements Runnable, TargetWatcher, RpcServer
      */
     private void getConfigV3(Request req) {
         dispatchRpcRequest(req, () -> {
-            JRTServerConfigRequest request = JRTServerConfigRequestV3.createFromRequest(req);
+            JRTServerConfigRequest request = JRTServerConfigRequestV3.createFromRequest(req, payloadDeltas);
             if (isProtocolVersionSupported(request)) {
                 req.target().addWatcher(this);
                 getConfigImpl(request);
@@ -167,6 +169,10 @@ public class ConfigProxyRpcServer implements Runnable, TargetWatcher, RpcServer
             for (DelayedResponse delayed : proxyServer.delayedResponses.responses()) {
                 sb.append(delayed.getRequest().toString()).append("\n");
             }
+            MemoryCache memoryCache = proxyServer.getMemoryCache();
+            sb.append("\nMemory cache configs: ").append(memoryCache.size());
+            sb.append("\nMemory cache bytes: ").append(memoryCache.bytes());
+            sb.append("\nMemory cache evictions: ").append(memoryCache.evictions());
 
             req.returnValues().add(new StringValue(sb.toString()));
             req.returnRequest();
@@ -3,21 +3,49 @@ package com.yahoo.vespa.config.proxy;
 
 import com.yahoo.io.IOUtils;
 import com.yahoo.log.LogLevel;
+import com.yahoo.text.Utf8;
+import com.yahoo.text.Utf8Array;
 import com.yahoo.vespa.config.ConfigCacheKey;
 import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.vespa.config.RawConfig;
+import com.yahoo.vespa.config.protocol.CompressionInfo;
 import com.yahoo.vespa.config.protocol.CompressionType;
 import com.yahoo.vespa.config.protocol.Payload;
+import com.yahoo.vespa.config.protocol.VespaVersion;
 import com.yahoo.vespa.defaults.Defaults;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 /**
+ * A cache of the configs the proxy has got from upstream, which is bounded by the estimated number of bytes
+ * its configs use, and evicts the least recently used configs which are not in use when this is exceeded.
+ * <p>
+ * The cache may be written to, and restored from, a snapshot file, so a restarted proxy can serve the configs it
+ * had immediately. Restored configs need revalidation until they are updated from upstream.
+ *
  * @author hmusum
  */
 public class MemoryCache {
@@ -27,13 +55,44 @@ public class MemoryCache {
     // Separator in file names between different fields of config key
     private final static String separator = ":";
     private static final String DEFAULT_DUMP_DIR = Defaults.getDefaults().underVespaHome("var/vespa/cache/config");
+    static final String DEFAULT_SNAPSHOT_FILE = Defaults.getDefaults().underVespaHome("var/vespa/cache/config/proxy-memorycache.snapshot");
+    static final long DEFAULT_MAX_BYTES = 256L << 20;
 
-    private final ConcurrentHashMap<ConfigCacheKey, RawConfig> cache = new ConcurrentHashMap<>(500, 0.75f);
+    private static final int SNAPSHOT_MAGIC = 0x50434331; // "PCC1"
+    private static final int FIXED_OVERHEAD_BYTES = 256; // Rough size of a config apart from its payload and def
 
-    public RawConfig get(ConfigCacheKey key) {
+    private final long maxBytes;
+    private final LinkedHashMap<ConfigCacheKey, RawConfig> cache = new LinkedHashMap<>(500, 0.75f, true);
+    private final Set<ConfigCacheKey> needsRevalidation = new HashSet<>();
+    private long bytes = 0;
+    private long evictions = 0;
+    private boolean changedSinceSnapshot = false;
+    private volatile Predicate<ConfigCacheKey> inUse = key -> false;
+    private volatile Consumer<ConfigCacheKey> evictionListener = key -> { };
+
+    /** Creates a cache holding configs of at most the given number of bytes, by estimate */
+    public MemoryCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public MemoryCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public synchronized RawConfig get(ConfigCacheKey key) {
         return cache.get(key);
     }
 
+    /** Sets the test of whether a config is in use, e.g., by recent or waiting clients, which keeps it from being evicted */
+    void setInUse(Predicate<ConfigCacheKey> inUse) {
+        this.inUse = inUse;
+    }
+
+    /** Sets the listener which is told of each evicted config, outside the lock of this, e.g., to stop updating it */
+    void setEvictionListener(Consumer<ConfigCacheKey> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
     /**
      * Put in cache, except when config has an error
      *
@@ -45,35 +104,224 @@ public class MemoryCache {
 
         // Do not cache empty configs (which have generation 0), remove everything in cache
         if (config.getGeneration() == 0) {
-            cache.clear();
+            clear();
             return;
         }
 
         log.log(LogLevel.DEBUG, () -> "Putting '" + config + "' into memory cache");
-        cache.put(new ConfigCacheKey(config.getKey(), config.getDefMd5()), config);
+        List<ConfigCacheKey> evicted;
+        synchronized (this) {
+            ConfigCacheKey key = new ConfigCacheKey(config.getKey(), config.getDefMd5());
+            RawConfig previous = cache.put(key, config);
+            if (previous != null) bytes -= estimatedBytes(previous);
+            bytes += estimatedBytes(config);
+            needsRevalidation.remove(key);
+            changedSinceSnapshot = true;
+            evicted = evict();
+        }
+        evicted.forEach(evictionListener);
     }
 
-    boolean containsKey(ConfigCacheKey key) {
+    /**
+     * Removes the least recently used configs until this is within its size, but keeps the most recent one,
+     * and those in use, which may then keep this above its size
+     *
+     * @return the keys of the evicted configs
+     */
+    private List<ConfigCacheKey> evict() {
+        List<ConfigCacheKey> evicted = new ArrayList<>();
+        for (var iterator = cache.entrySet().iterator(); bytes > maxBytes && iterator.hasNext(); ) {
+            Map.Entry<ConfigCacheKey, RawConfig> eldest = iterator.next();
+            if ( ! iterator.hasNext() || inUse.test(eldest.getKey())) continue;
+            log.log(LogLevel.DEBUG, () -> "Evicting '" + eldest.getKey() + "' from memory cache");
+            bytes -= estimatedBytes(eldest.getValue());
+            needsRevalidation.remove(eldest.getKey());
+            iterator.remove();
+            evicted.add(eldest.getKey());
+            evictions++;
+        }
+        return evicted;
+    }
+
+    static long estimatedBytes(RawConfig config) {
+        long bytes = FIXED_OVERHEAD_BYTES;
+        if (config.getPayload() != null)
+            bytes += config.getPayload().getData().getByteLength();
+        for (String line : config.getDefContent())
+            bytes += 2 * line.length();
+        return bytes;
+    }
+
+    synchronized boolean containsKey(ConfigCacheKey key) {
         return cache.containsKey(key);
     }
 
-    Collection<RawConfig> values() {
-        return cache.values();
+    /** Returns whether the config with the given key was restored from a snapshot, and not yet updated from upstream */
+    synchronized boolean needsRevalidation(ConfigCacheKey key) {
+        return needsRevalidation.contains(key);
     }
 
-    public int size() {
+    synchronized Collection<RawConfig> values() {
+        return new ArrayList<>(cache.values());
+    }
+
+    public synchronized int size() {
         return cache.size();
     }
 
-    public void clear() {
+    /** Returns the estimated number of bytes used by the configs in this */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    /** Returns the number of configs evicted from this since it was created */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized void clear() {
         cache.clear();
+        needsRevalidation.clear();
+        bytes = 0;
+        changedSinceSnapshot = true;
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         return cache.toString();
     }
 
+    /**
+     * Writes the configs in this to the given snapshot file, replacing it atomically, if this has changed since
+     * the last snapshot was written or read.
+     *
+     * @return whether a snapshot was written
+     */
+    boolean writeSnapshot(Path file) {
+        List<RawConfig> configs;
+        synchronized (this) {
+            if ( ! changedSinceSnapshot) return false;
+            configs = cache.values().stream().filter(config -> config.getPayload() != null).collect(Collectors.toList());
+            changedSinceSnapshot = false;
+        }
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(configs.size());
+                for (RawConfig config : configs)
+                    writeConfig(config, out);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.log(LogLevel.DEBUG, () -> "Wrote " + configs.size() + " configs to snapshot '" + file + "'");
+            return true;
+        } catch (IOException e) {
+            log.log(LogLevel.WARNING, "Could not write memory cache snapshot to '" + file + "': " + e.getMessage());
+            synchronized (this) {
+                changedSinceSnapshot = true;
+            }
+            return false;
+        }
+    }
+
+    private static void writeConfig(RawConfig config, DataOutputStream out) throws IOException {
+        ConfigKey<?> key = config.getKey();
+        writeString(key.getNamespace(), out);
+        writeString(key.getName(), out);
+        writeString(key.getConfigId(), out);
+        writeString(config.getDefMd5(), out);
+        writeString(config.getConfigMd5(), out);
+        out.writeLong(config.getGeneration());
+        out.writeBoolean(config.isInternalRedeploy());
+        out.writeInt(config.getDefContent().size());
+        for (String line : config.getDefContent())
+            writeString(line, out);
+        writeString(config.getVespaVersion().map(VespaVersion::toString).orElse(""), out);
+        Payload payload = config.getPayload();
+        writeString(payload.getCompressionInfo().getCompressionType().name(), out);
+        out.writeInt(payload.getCompressionInfo().getUncompressedSize());
+        out.writeInt(payload.getData().getByteLength());
+        out.write(payload.getData().getBytes(), 0, payload.getData().getByteLength());
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        byte[] bytes = Utf8.toBytes(value);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Adds the configs in the given snapshot file to this, unless they are already present, and marks them as
+     * needing revalidation. The file is memory mapped, to read large snapshots without copying them through buffers.
+     * A missing file is ignored, and an unreadable one is logged and ignored.
+     *
+     * @return the number of configs added
+     */
+    int readSnapshot(Path file) {
+        if ( ! Files.exists(file)) return 0;
+        List<RawConfig> configs = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != SNAPSHOT_MAGIC)
+                throw new IllegalArgumentException("Unknown snapshot format");
+            for (int count = buffer.getInt(); count > 0; count--)
+                configs.add(readConfig(buffer));
+        } catch (IOException | RuntimeException e) {
+            log.log(LogLevel.WARNING, "Could not read memory cache snapshot from '" + file + "', ignoring it: " + e.getMessage());
+            return 0;
+        }
+        int added = 0;
+        List<ConfigCacheKey> evicted;
+        synchronized (this) {
+            for (RawConfig config : configs) {
+                ConfigCacheKey key = new ConfigCacheKey(config.getKey(), config.getDefMd5());
+                if (cache.putIfAbsent(key, config) != null) continue;
+                bytes += estimatedBytes(config);
+                needsRevalidation.add(key);
+                added++;
+            }
+            evicted = evict();
+        }
+        evicted.forEach(evictionListener);
+        log.log(LogLevel.INFO, "Restored " + added + " configs from memory cache snapshot '" + file + "'");
+        return added;
+    }
+
+    private static RawConfig readConfig(ByteBuffer buffer) {
+        String namespace = readString(buffer);
+        String name = readString(buffer);
+        String configId = readString(buffer);
+        String defMd5 = readString(buffer);
+        String configMd5 = readString(buffer);
+        long generation = buffer.getLong();
+        boolean internalRedeploy = buffer.get() != 0;
+        List<String> defContent = new ArrayList<>();
+        for (int lines = buffer.getInt(); lines > 0; lines--)
+            defContent.add(readString(buffer));
+        String vespaVersion = readString(buffer);
+        CompressionType compressionType = CompressionType.valueOf(readString(buffer));
+        int uncompressedSize = buffer.getInt();
+        byte[] data = readBytes(buffer);
+        return new RawConfig(new ConfigKey<>(name, configId, namespace), defMd5,
+                             Payload.from(new Utf8Array(data), CompressionInfo.create(compressionType, uncompressedSize)),
+                             configMd5, generation, internalRedeploy, defContent,
+                             vespaVersion.isEmpty() ? Optional.empty() : Optional.of(VespaVersion.fromString(vespaVersion)));
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        return Utf8.toString(readBytes(buffer));
+    }
+
+    /** Reads a length and that many bytes, checking the length first, so a corrupt one does not allocate huge arrays */
+    private static byte[] readBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) throw new BufferUnderflowException();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
     String dumpCacheToDisk(String path, MemoryCache cache) {
         if (path == null || path.isEmpty()) {
             path = DEFAULT_DUMP_DIR;
@@ -15,7 +15,10 @@ import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 import com.yahoo.vespa.config.proxy.filedistribution.FileDistributionAndUrlDownload;
 import com.yahoo.yolean.system.CatchSignals;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -45,6 +48,8 @@ public class ProxyServer implements Runnable {
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1, new DaemonThreadFactory());
     private final Supervisor supervisor = new Supervisor(new Transport(JRT_TRANSPORT_THREADS));
     private ScheduledFuture<?> delayedResponseScheduler;
+    // Executor writing memory cache snapshots, which is separate so slow writes do not delay responses
+    private final ScheduledExecutorService snapshotWriter = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("memorycache-snapshot-"));
 
     private final ConfigProxyRpcServer rpcServer;
     final DelayedResponses delayedResponses;
@@ -54,6 +59,7 @@ public class ProxyServer implements Runnable {
 
     private final TimingValues timingValues;
     private final MemoryCache memoryCache;
+    private final Optional<Path> memoryCacheSnapshot;
     private static final double timingValuesRatio = 0.8;
     private final static TimingValues defaultTimingValues;
     private final boolean delayedResponseHandling;
@@ -72,7 +78,8 @@ public class ProxyServer implements Runnable {
     }
 
     private ProxyServer(Spec spec, ConfigSourceSet source, TimingValues timingValues,
-                        boolean delayedResponseHandling, MemoryCache memoryCache, ConfigSourceClient configClient) {
+                        boolean delayedResponseHandling, MemoryCache memoryCache, Optional<Path> memoryCacheSnapshot,
+                        ConfigSourceClient configClient) {
         this.delayedResponses = new DelayedResponses();
         this.configSource = source;
         log.log(LogLevel.DEBUG, "Using config source '" + source);
@@ -82,6 +89,9 @@ public class ProxyServer implements Runnable {
         this.rpcServer = createRpcServer(spec);
         this.configClient = createClient(rpcServer, delayedResponses, source, timingValues, memoryCache, configClient);
         this.fileDistributionAndUrlDownload = new FileDistributionAndUrlDownload(supervisor, source);
+        this.memoryCacheSnapshot = memoryCacheSnapshot;
+        // Serve the configs from before a restart immediately, while they are fetched again from upstream
+        memoryCacheSnapshot.ifPresent(memoryCache::readSnapshot);
     }
 
     static ProxyServer createTestServer(ConfigSourceSet source) {
@@ -93,7 +103,7 @@ public class ProxyServer implements Runnable {
                                         MemoryCache memoryCache) {
         final boolean delayedResponseHandling = false;
         return new ProxyServer(null, source, defaultTimingValues(), delayedResponseHandling,
-                               memoryCache, configSourceClient);
+                               memoryCache, Optional.empty(), configSourceClient);
     }
 
     public void run() {
@@ -111,6 +121,8 @@ public class ProxyServer implements Runnable {
         } else {
             log.log(LogLevel.INFO, "Running without delayed response handling");
         }
+        memoryCacheSnapshot.ifPresent(file -> snapshotWriter.scheduleAtFixedRate(() -> memoryCache.writeSnapshot(file),
+                                                                                 60, 60, SECONDS));
     }
 
     RawConfig resolveConfig(JRTServerConfigRequest req) {
@@ -197,7 +209,8 @@ public class ProxyServer implements Runnable {
 
         ConfigSourceSet configSources = new ConfigSourceSet(properties.configSources);
         ProxyServer proxyServer = new ProxyServer(new Spec(null, port), configSources,
-                                                  defaultTimingValues(), true, new MemoryCache(), null);
+                                                  defaultTimingValues(), true, new MemoryCache(properties.memoryCacheMaxBytes),
+                                                  properties.memoryCacheSnapshot, null);
         // catch termination and interrupt signal
         proxyServer.setupSignalHandler();
         Thread proxyserverThread = new Thread(proxyServer);
@@ -208,14 +221,22 @@ public class ProxyServer implements Runnable {
 
     static Properties getSystemProperties() {
         final String[] inputConfigSources = System.getProperty("proxyconfigsources", DEFAULT_PROXY_CONFIG_SOURCES).split(",");
-        return new Properties(inputConfigSources);
+        long memoryCacheMaxBytes = Long.parseLong(System.getProperty("proxymemorycachemaxbytes", String.valueOf(MemoryCache.DEFAULT_MAX_BYTES)));
+        // An empty snapshot file name turns off snapshots
+        String snapshotFile = System.getProperty("proxymemorycachesnapshot", MemoryCache.DEFAULT_SNAPSHOT_FILE);
+        return new Properties(inputConfigSources, memoryCacheMaxBytes,
+                              snapshotFile.isEmpty() ? Optional.empty() : Optional.of(Paths.get(snapshotFile)));
     }
 
     static class Properties {
         final String[] configSources;
+        final long memoryCacheMaxBytes;
+        final Optional<Path> memoryCacheSnapshot;
 
-        Properties(String[] configSources) {
+        Properties(String[] configSources, long memoryCacheMaxBytes, Optional<Path> memoryCacheSnapshot) {
             this.configSources = configSources;
+            this.memoryCacheMaxBytes = memoryCacheMaxBytes;
+            this.memoryCacheSnapshot = memoryCacheSnapshot;
         }
     }
 
@@ -238,6 +259,14 @@ public class ProxyServer implements Runnable {
         Event.stopping("configproxy", "shutdown");
         if (rpcServer != null) rpcServer.shutdown();
         if (delayedResponseScheduler != null) delayedResponseScheduler.cancel(true);
+        snapshotWriter.shutdown();
+        try {
+            // Let a snapshot being written finish, so it does not race with the final one
+            snapshotWriter.awaitTermination(10, SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        memoryCacheSnapshot.ifPresent(memoryCache::writeSnapshot);
         flush();
         fileDistributionAndUrlDownload.close();
     }
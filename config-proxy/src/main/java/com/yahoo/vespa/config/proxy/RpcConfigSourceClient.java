@@ -14,10 +14,15 @@ import com.yahoo.log.LogLevel;
 import com.yahoo.vespa.config.*;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.DelayQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -31,6 +36,10 @@ import java.util.logging.Logger;
 class RpcConfigSourceClient implements ConfigSourceClient {
 
     private final static Logger log = Logger.getLogger(RpcConfigSourceClient.class.getName());
+
+    /** How long a config is kept from eviction from the memory cache after it was last requested by a client */
+    static final Duration idleTime = Duration.ofMinutes(10);
+
     private final Supervisor supervisor = new Supervisor(new Transport());
 
     private final RpcServer rpcServer;
@@ -40,6 +49,8 @@ class RpcConfigSourceClient implements ConfigSourceClient {
     private final MemoryCache memoryCache;
     private final DelayedResponses delayedResponses;
     private final TimingValues timingValues;
+    private final Clock clock;
+    private final Map<ConfigCacheKey, Instant> lastRequested = new ConcurrentHashMap<>();
 
     private final ExecutorService exec;
     private final Map<ConfigSourceSet, JRTConfigRequester> requesterPool;
@@ -50,14 +61,26 @@ class RpcConfigSourceClient implements ConfigSourceClient {
                           MemoryCache memoryCache,
                           TimingValues timingValues,
                           DelayedResponses delayedResponses) {
+        this(rpcServer, configSourceSet, memoryCache, timingValues, delayedResponses, Clock.systemUTC());
+    }
+
+    RpcConfigSourceClient(RpcServer rpcServer,
+                          ConfigSourceSet configSourceSet,
+                          MemoryCache memoryCache,
+                          TimingValues timingValues,
+                          DelayedResponses delayedResponses,
+                          Clock clock) {
         this.rpcServer = rpcServer;
         this.configSourceSet = configSourceSet;
         this.memoryCache = memoryCache;
         this.delayedResponses = delayedResponses;
         this.timingValues = timingValues;
+        this.clock = clock;
         checkConfigSources();
         exec = Executors.newCachedThreadPool(new DaemonThreadFactory("subscriber-"));
         requesterPool = createRequesterPool(configSourceSet, timingValues);
+        memoryCache.setInUse(this::isInUse);
+        memoryCache.setEvictionListener(this::evicted);
     }
 
     /**
@@ -121,6 +144,7 @@ class RpcConfigSourceClient implements ConfigSourceClient {
         delayedResponses.add(delayedResponse);
 
         final ConfigCacheKey configCacheKey = new ConfigCacheKey(input.getKey(), input.getDefMd5());
+        lastRequested.put(configCacheKey, clock.instant());
         RawConfig cachedConfig = memoryCache.get(configCacheKey);
         boolean needToGetConfig = true;
 
@@ -136,7 +160,8 @@ class RpcConfigSourceClient implements ConfigSourceClient {
                     ret = cachedConfig;
                 }
             }
-            if (!cachedConfig.isError() && cachedConfig.getGeneration() > 0) {
+            // Configs restored from a snapshot are served, but also subscribed to, to be revalidated
+            if (!cachedConfig.isError() && cachedConfig.getGeneration() > 0 && ! memoryCache.needsRevalidation(configCacheKey)) {
                 needToGetConfig = false;
             }
         }
@@ -152,20 +177,52 @@ class RpcConfigSourceClient implements ConfigSourceClient {
                 log.log(LogLevel.DEBUG, () -> "Already a subscriber running for: " + configCacheKey);
             } else {
                 log.log(LogLevel.DEBUG, () -> "Could not find good config in cache, creating subscriber for: " + configCacheKey);
-                UpstreamConfigSubscriber subscriber = new UpstreamConfigSubscriber(input, this, configSourceSet,
-                                                                                   timingValues, requesterPool, memoryCache);
-                try {
-                    subscriber.subscribe();
-                    activeSubscribers.put(configCacheKey, subscriber);
-                    exec.execute(subscriber);
-                } catch (ConfigurationRuntimeException e) {
-                    log.log(LogLevel.INFO, "Subscribe for '" + configCacheKey + "' failed, closing subscriber");
-                    subscriber.cancel();
-                }
+                startSubscriber(input, configCacheKey).ifPresent(subscriber -> activeSubscribers.put(configCacheKey, subscriber));
             }
         }
     }
 
+    /** Starts a subscriber which updates the memory cache and waiting clients with the given config, if subscribing succeeds */
+    Optional<Subscriber> startSubscriber(RawConfig input, ConfigCacheKey configCacheKey) {
+        UpstreamConfigSubscriber subscriber = new UpstreamConfigSubscriber(input, this, configSourceSet,
+                                                                           timingValues, requesterPool, memoryCache);
+        try {
+            subscriber.subscribe();
+            exec.execute(subscriber);
+            return Optional.of(subscriber);
+        } catch (ConfigurationRuntimeException e) {
+            log.log(LogLevel.INFO, "Subscribe for '" + configCacheKey + "' failed, closing subscriber");
+            subscriber.cancel();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns whether the given config has been requested by a client within the idle time, or has clients waiting
+     * for it, in which case it is kept in the memory cache, as the clients are answered from there.
+     * Having a subscriber does not count, as that would keep every config ever requested
+     */
+    private boolean isInUse(ConfigCacheKey configCacheKey) {
+        Instant requested = lastRequested.get(configCacheKey);
+        if (requested != null && requested.plus(idleTime).isAfter(clock.instant())) return true;
+        for (DelayedResponse response : delayedResponses.responses())
+            if (response.getRequest().getConfigKey().equals(configCacheKey.getKey())) return true;
+        return false;
+    }
+
+    /** Cancels the subscriber of a config evicted from the memory cache, which is subscribed to again if requested */
+    private void evicted(ConfigCacheKey configCacheKey) {
+        lastRequested.remove(configCacheKey);
+        Subscriber subscriber;
+        synchronized (activeSubscribersLock) {
+            subscriber = activeSubscribers.remove(configCacheKey);
+        }
+        if (subscriber != null) {
+            log.log(LogLevel.DEBUG, () -> "Config " + configCacheKey + " was evicted from the memory cache, closing its subscriber");
+            subscriber.cancel();
+        }
+    }
+
     @Override
     public void cancel() {
         shutdownSourceConnections();
@@ -146,7 +146,10 @@ public class ConfigProxyRpcServerTest {
         assertThat(req.returnValues().size(), is(1));
         assertThat(req.returnValues().get(0).asString(), is("\n" +
                 "Delayed responses queue size: 0\n" +
-                "Contents: "));
+                "Contents: \n" +
+                "Memory cache configs: 0\n" +
+                "Memory cache bytes: 0\n" +
+                "Memory cache evictions: 0"));
     }
 
     /**
@@ -8,9 +8,17 @@ import com.yahoo.vespa.config.ConfigPayload;
 import com.yahoo.vespa.config.RawConfig;
 import com.yahoo.vespa.config.protocol.Payload;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -21,6 +29,10 @@ import static org.junit.Assert.*;
  * @since 5.1.9
  */
 public class MemoryCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private String defName = "foo";
     private String configId = "id";
     private String namespace = "bar";
@@ -121,4 +133,97 @@ public class MemoryCacheTest {
         cache.clear();
         assertThat(cache.size(), is(0));
     }
+
+    @Test
+    public void least_recently_used_configs_are_evicted_when_cache_is_full() {
+        MemoryCache cache = new MemoryCache(MemoryCache.estimatedBytes(config) + MemoryCache.estimatedBytes(configDifferentMd5));
+
+        cache.update(config);
+        cache.update(config2);
+        assertThat(cache.bytes(), is(MemoryCache.estimatedBytes(config) + MemoryCache.estimatedBytes(config2)));
+        assertNotNull(cache.get(cacheKey)); // config2 is now the least recently used
+
+        cache.update(configDifferentMd5);
+        assertThat(cache.size(), is(2));
+        assertTrue(cache.containsKey(cacheKey));
+        assertTrue(cache.containsKey(cacheKeyDifferentMd5));
+        assertFalse(cache.containsKey(cacheKey2));
+        assertThat(cache.evictions(), is(1L));
+    }
+
+    @Test
+    public void configs_in_use_are_not_evicted() {
+        MemoryCache cache = new MemoryCache(MemoryCache.estimatedBytes(config) + MemoryCache.estimatedBytes(configDifferentMd5));
+        cache.setInUse(cacheKey2::equals);
+
+        cache.update(config2);
+        cache.update(config);
+        cache.update(configDifferentMd5);
+        assertTrue(cache.containsKey(cacheKey2));
+        assertFalse(cache.containsKey(cacheKey));
+        assertTrue(cache.containsKey(cacheKeyDifferentMd5));
+
+        cache.setInUse(key -> true);
+        cache.update(config);
+        assertThat(cache.size(), is(3));
+        assertThat(cache.evictions(), is(1L));
+    }
+
+    @Test
+    public void cache_shrinks_when_configs_are_no_longer_in_use() {
+        MemoryCache cache = new MemoryCache(MemoryCache.estimatedBytes(config) + MemoryCache.estimatedBytes(configDifferentMd5));
+        List<ConfigCacheKey> evicted = new ArrayList<>();
+        cache.setEvictionListener(evicted::add);
+        cache.setInUse(key -> true);
+
+        cache.update(config2);
+        cache.update(config);
+        cache.update(configDifferentMd5);
+        assertThat(cache.size(), is(3));
+        assertTrue(evicted.isEmpty());
+
+        cache.setInUse(key -> false);
+        cache.update(config);
+        assertThat(cache.size(), is(2));
+        assertThat(cache.bytes(), is(MemoryCache.estimatedBytes(config) + MemoryCache.estimatedBytes(configDifferentMd5)));
+        assertThat(evicted, is(Collections.singletonList(cacheKey2)));
+    }
+
+    @Test
+    public void configs_are_restored_from_snapshot_and_need_revalidation() throws IOException {
+        Path snapshot = temporaryFolder.getRoot().toPath().resolve("cache.snapshot");
+        MemoryCache cache = new MemoryCache();
+        cache.update(config);
+        cache.update(config2);
+        assertTrue(cache.writeSnapshot(snapshot));
+        assertFalse("Unchanged cache is not written again", cache.writeSnapshot(snapshot));
+
+        MemoryCache restored = new MemoryCache();
+        assertThat(restored.readSnapshot(snapshot), is(2));
+        assertThat(restored.bytes(), is(cache.bytes()));
+        RawConfig restoredConfig = restored.get(cacheKey2);
+        assertThat(restoredConfig.getKey(), is(configKey2));
+        assertThat(restoredConfig.getConfigMd5(), is(config2.getConfigMd5()));
+        assertThat(restoredConfig.getGeneration(), is(generation));
+        assertThat(restoredConfig.getDefContent(), is(config2.getDefContent()));
+        assertThat(restoredConfig.getPayload().toString(), is(payload2.toString()));
+        assertTrue(restored.needsRevalidation(cacheKey2));
+
+        restored.update(config2);
+        assertFalse(restored.needsRevalidation(cacheKey2));
+        assertTrue(restored.needsRevalidation(cacheKey));
+
+        // A payload length beyond the end of the snapshot is not allocated
+        MemoryCache single = new MemoryCache();
+        single.update(config);
+        assertTrue(single.writeSnapshot(snapshot));
+        byte[] bytes = Files.readAllBytes(snapshot);
+        ByteBuffer.wrap(bytes).putInt(bytes.length - config.getPayload().getData().getByteLength() - 4, Integer.MAX_VALUE);
+        Files.write(snapshot, bytes);
+        assertThat("Snapshot with corrupt payload length is ignored", new MemoryCache().readSnapshot(snapshot), is(0));
+
+        Files.write(snapshot, new byte[] { 1, 2, 3 });
+        assertThat("Corrupt snapshot is ignored", new MemoryCache().readSnapshot(snapshot), is(0));
+        assertThat("Missing snapshot is ignored", new MemoryCache().readSnapshot(snapshot.resolveSibling("missing")), is(0));
+    }
 }
@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.config.proxy;
 
+import com.yahoo.vespa.config.ConfigCacheKey;
 import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.vespa.config.RawConfig;
 import com.yahoo.vespa.config.protocol.JRTConfigRequestFactory;
@@ -10,7 +11,19 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author hmusum
@@ -20,6 +33,7 @@ public class RpcConfigSourceClientTest {
     private MockRpcServer rpcServer;
     private DelayedResponses delayedResponses;
     private RpcConfigSourceClient rpcConfigSourceClient;
+    private final ConfigTester tester = new ConfigTester();
 
     @Rule
     public TemporaryFolder tempFolder = new TemporaryFolder();
@@ -93,6 +107,75 @@ public class RpcConfigSourceClientTest {
         assertSentResponses(2);
     }
 
+    @Test
+    public void configs_not_requested_within_the_idle_time_are_evicted_and_unsubscribed() {
+        RawConfig fooConfig = ProxyServerTest.fooConfig;
+        RawConfig barConfig = ConfigTester.barConfig;
+        RawConfig bazConfig = new RawConfig(new ConfigKey<>("baz", fooConfig.getConfigId(), fooConfig.getNamespace()),
+                                            fooConfig.getDefMd5(), fooConfig.getPayload(), fooConfig.getConfigMd5(),
+                                            fooConfig.getGeneration(), false, fooConfig.getDefContent(), Optional.empty());
+        MemoryCache memoryCache = new MemoryCache(2 * MemoryCache.estimatedBytes(fooConfig));
+        SettableClock clock = new SettableClock();
+        Set<ConfigCacheKey> subscribed = new HashSet<>();
+        RpcConfigSourceClient client = new RpcConfigSourceClient(rpcServer, new MockConfigSource(), memoryCache,
+                                                                 ProxyServer.defaultTimingValues(), delayedResponses, clock) {
+            @Override
+            Optional<Subscriber> startSubscriber(RawConfig input, ConfigCacheKey configCacheKey) {
+                subscribed.add(configCacheKey);
+                return Optional.of(new Subscriber() {
+                    @Override public void run() { }
+                    @Override public void cancel() { subscribed.remove(configCacheKey); }
+                });
+            }
+        };
+        try {
+            for (RawConfig config : Arrays.asList(fooConfig, barConfig, bazConfig)) {
+                assertNull(client.getConfig(config, tester.createRequest(config)));
+                memoryCache.update(config);
+                assertTrue(subscribed.contains(cacheKey(config)));
+            }
+            // All configs are requested recently, so the cache is allowed to grow above its size
+            assertEquals(3, memoryCache.size());
+            assertTrue(memoryCache.bytes() > 2 * MemoryCache.estimatedBytes(fooConfig));
+
+            delayedResponses.responses().clear(); // The clients got their responses, or timed out
+            clock.now = clock.now.plus(RpcConfigSourceClient.idleTime).plusSeconds(1);
+            client.getConfig(bazConfig, tester.createRequest(bazConfig));
+            delayedResponses.responses().clear();
+            memoryCache.update(createConfigWithNextConfigGeneration(bazConfig));
+
+            assertEquals(2, memoryCache.size());
+            assertEquals(2 * MemoryCache.estimatedBytes(fooConfig), memoryCache.bytes());
+            assertEquals(1, memoryCache.evictions());
+            assertFalse(memoryCache.containsKey(cacheKey(fooConfig)));
+            assertFalse(subscribed.contains(cacheKey(fooConfig)));
+            assertTrue(memoryCache.containsKey(cacheKey(barConfig)));
+            assertTrue(subscribed.contains(cacheKey(barConfig)));
+        }
+        finally {
+            client.cancel();
+        }
+    }
+
+    private static ConfigCacheKey cacheKey(RawConfig config) {
+        return new ConfigCacheKey(config.getKey(), config.getDefMd5());
+    }
+
+    private static class SettableClock extends Clock {
+
+        Instant now = Instant.ofEpochMilli(0);
+
+        @Override
+        public ZoneId getZone() { return ZoneOffset.UTC; }
+
+        @Override
+        public Clock withZone(ZoneId zone) { throw new UnsupportedOperationException(); }
+
+        @Override
+        public Instant instant() { return now; }
+
+    }
+
     private void assertSentResponses(int expected) {
         assertEquals(expected, rpcServer.responses);
     }
@@ -3,10 +3,13 @@ package com.yahoo.vespa.config.protocol;
 
 import com.yahoo.config.ConfigInstance;
 import com.yahoo.config.subscription.impl.ConfigSubscription;
+import com.yahoo.config.subscription.impl.GenericJRTConfigSubscription;
 import com.yahoo.config.subscription.impl.JRTConfigSubscription;
 import com.yahoo.jrt.Request;
+import com.yahoo.slime.Inspector;
 import com.yahoo.text.Utf8Array;
 import com.yahoo.vespa.config.ConfigKey;
+import com.yahoo.vespa.config.ErrorCode;
 import com.yahoo.vespa.config.JRTMethods;
 import com.yahoo.vespa.config.RawConfig;
 import com.yahoo.vespa.config.util.ConfigUtils;
@@ -19,10 +22,25 @@ import java.util.Optional;
  *
  * See {@link JRTServerConfigRequestV3} for protocol details.
  *
+ * Requests for raw configs keep the payload they have, and pass it on to the next request, so the server may
+ * respond with a delta from it. A delta which does not give a payload with the config md5 of the response fails
+ * the response, and the next request is then for the full payload.
+ *
  * @author Ulf Lilleengen
  */
 public class JRTClientConfigRequestV3 extends SlimeClientConfigRequest {
 
+    /** Whether this keeps the payload it has, to accept deltas from it */
+    private final boolean keepsPayload;
+
+    /** The payload with the requested config md5, if it is kept */
+    private final Optional<Payload> basePayload;
+
+    private Payload newPayload = null;
+
+    /** Whether the response was a delta which could not be applied, in which case the next request is for the full payload */
+    private volatile boolean deltaFailed = false;
+
     protected JRTClientConfigRequestV3(ConfigKey<?> key,
                                        String hostname,
                                        DefContent defSchema,
@@ -32,7 +50,24 @@ public class JRTClientConfigRequestV3 extends SlimeClientConfigRequest {
                                        Trace trace,
                                        CompressionType compressionType,
                                        Optional<VespaVersion> vespaVersion) {
-        super(key, hostname, defSchema, configMd5, generation, timeout, trace, compressionType, vespaVersion);
+        this(key, hostname, defSchema, configMd5, generation, timeout, trace, compressionType, vespaVersion, false, Optional.empty());
+    }
+
+    protected JRTClientConfigRequestV3(ConfigKey<?> key,
+                                       String hostname,
+                                       DefContent defSchema,
+                                       String configMd5,
+                                       long generation,
+                                       long timeout,
+                                       Trace trace,
+                                       CompressionType compressionType,
+                                       Optional<VespaVersion> vespaVersion,
+                                       boolean keepsPayload,
+                                       Optional<Payload> basePayload) {
+        super(key, hostname, defSchema, configMd5, generation, timeout, trace, compressionType, vespaVersion,
+              keepsPayload && basePayload.isPresent());
+        this.keepsPayload = keepsPayload;
+        this.basePayload = keepsPayload ? basePayload : Optional.empty();
     }
 
     @Override
@@ -45,11 +80,61 @@ public class JRTClientConfigRequestV3 extends SlimeClientConfigRequest {
         return JRTMethods.checkV3ReturnTypes(request);
     }
 
+    /** Fails the response if it is a delta which does not give the payload with the new config md5 */
     @Override
-    public Payload getNewPayload() {
+    public boolean validateResponse() {
+        if ( ! super.validateResponse()) return false;
+        if ( ! getResponseData().getResponseField(SlimeResponseData.RESPONSE_DELTA).valid()) return true;
+        try {
+            getNewPayload();
+            return true;
+        } catch (IllegalArgumentException e) {
+            deltaFailed = true;
+            request.setError(ErrorCode.INCONSISTENT_CONFIG_MD5, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized Payload getNewPayload() {
+        if (newPayload == null)
+            newPayload = decodeNewPayload();
+        return newPayload;
+    }
+
+    private Payload decodeNewPayload() {
         CompressionInfo compressionInfo = getResponseData().getCompressionInfo();
         Utf8Array payload = new Utf8Array(request.returnValues().get(1).asData());
-        return Payload.from(payload, compressionInfo);
+        Inspector delta = getResponseData().getResponseField(SlimeResponseData.RESPONSE_DELTA);
+        if ( ! delta.valid()) return Payload.from(payload, compressionInfo);
+
+        String baseMd5 = delta.field(SlimeResponseData.RESPONSE_DELTA_BASE_MD5).asString();
+        if ( ! basePayload.isPresent() || ! baseMd5.equals(getRequestConfigMd5()))
+            throw new IllegalArgumentException("Got a delta from the payload with md5 " + baseMd5 + " for " + getConfigKey() +
+                                               ", but " + (basePayload.isPresent() ? "has " + getRequestConfigMd5() : "has none"));
+        byte[] data = PayloadDeltas.apply(basePayload.get().withCompression(CompressionType.UNCOMPRESSED).getData().getBytes(),
+                                          (int) delta.field(SlimeResponseData.RESPONSE_DELTA_PREFIX_SIZE).asLong(),
+                                          (int) delta.field(SlimeResponseData.RESPONSE_DELTA_SUFFIX_SIZE).asLong(),
+                                          Payload.from(payload, compressionInfo).withCompression(CompressionType.UNCOMPRESSED).getData().getBytes());
+        if ( ! ConfigUtils.getMd5(data).equals(getNewConfigMd5()))
+            throw new IllegalArgumentException("Got a delta for " + getConfigKey() + " which did not give the payload with md5 " +
+                                               getNewConfigMd5());
+        // Compress as a full response would be, as this is what is kept and passed on
+        return Payload.from(new Utf8Array(data), CompressionInfo.create(CompressionType.UNCOMPRESSED, data.length))
+                      .withCompression(requestData.getCompressionType());
+    }
+
+    /** Returns the payload the next request will have, if this keeps payloads */
+    private Optional<Payload> nextBasePayload() {
+        if (deltaFailed) return Optional.empty();
+        if ( ! keepsPayload || isError() || ! hasUpdatedConfig()) return basePayload;
+        // A new config md5 without a payload happens when the generation is not newer, and leaves nothing to keep
+        if (request.returnValues().size() < 2 || request.returnValues().get(1).asData().length == 0) return Optional.empty();
+        try {
+            return Optional.of(getNewPayload());
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
     }
 
     @Override
@@ -67,7 +152,9 @@ public class JRTClientConfigRequestV3 extends SlimeClientConfigRequest {
                 timeout,
                 Trace.createNew(),
                 requestData.getCompressionType(),
-                requestData.getVespaVersion());
+                requestData.getVespaVersion(),
+                keepsPayload,
+                nextBasePayload());
     }
 
     public static <T extends ConfigInstance> JRTClientConfigRequest createFromSub(JRTConfigSubscription<T> sub,
@@ -78,15 +165,17 @@ public class JRTClientConfigRequestV3 extends SlimeClientConfigRequest {
         ConfigKey<T> key = sub.getKey();
         ConfigSubscription.ConfigState<T> configState = sub.getConfigState();
         T i = configState.getConfig();
-        return createWithParams(key,
-                sub.getDefContent(),
+        return new JRTClientConfigRequestV3(key,
                 hostname,
+                sub.getDefContent(),
                 i != null ? i.getConfigMd5() : "",
                 configState.getGeneration() != null ? configState.getGeneration() : 0L,
                 sub.timingValues().getSubscribeTimeout(),
                 trace,
                 compressionType,
-                vespaVersion);
+                vespaVersion,
+                sub instanceof GenericJRTConfigSubscription,
+                i instanceof RawConfig ? basePayload((RawConfig) i) : Optional.empty());
     }
 
 
@@ -96,15 +185,24 @@ public class JRTClientConfigRequestV3 extends SlimeClientConfigRequest {
                                                        CompressionType compressionType,
                                                        Optional<VespaVersion> vespaVersion) {
         String hostname = ConfigUtils.getCanonicalHostName();
-        return createWithParams(config.getKey(),
-                DefContent.fromList(config.getDefContent()),
+        return new JRTClientConfigRequestV3(config.getKey(),
                 hostname,
+                DefContent.fromList(config.getDefContent()),
                 config.getConfigMd5(),
                 config.getGeneration(),
                 serverTimeout,
                 trace,
                 compressionType,
-                vespaVersion);
+                vespaVersion,
+                true,
+                basePayload(config));
+    }
+
+    private static Optional<Payload> basePayload(RawConfig config) {
+        Payload payload = config.getPayload();
+        if (payload == null || payload.getData().getByteLength() == 0 || config.getConfigMd5() == null || config.getConfigMd5().isEmpty())
+            return Optional.empty();
+        return Optional.of(payload);
     }
 
 
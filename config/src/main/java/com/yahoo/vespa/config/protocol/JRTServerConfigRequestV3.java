@@ -9,6 +9,7 @@ import com.yahoo.vespa.config.util.ConfigUtils;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Optional;
 
 /**
  * The V3 config protocol implemented on the server side. The V3 protocol uses 2 fields JRT
@@ -20,6 +21,11 @@ import java.io.IOException;
  * The implementation of addOkResponse is optimized for doing as little copying of payload data as possible, ensuring
  * that we get a lower memory footprint.
  *
+ * Clients which keep the payload they have may say so in the request, and will then get a delta from that payload
+ * when it has changed, if the server still has it in its {@link PayloadDeltas}: The metadata then contains a delta
+ * field with the md5 of the base payload and the sizes of its prefix and suffix to keep, and the data field contains
+ * only the bytes between these.
+ *
  * @author Ulf Lilleengen
  */
 // TODO: Merge with parent
@@ -28,8 +34,15 @@ public class JRTServerConfigRequestV3 extends SlimeServerConfigRequest {
     /** Response field */
     private boolean internalRedeploy = false;
 
+    private final Optional<PayloadDeltas> payloadDeltas;
+
     protected JRTServerConfigRequestV3(Request request) {
+        this(request, Optional.empty());
+    }
+
+    protected JRTServerConfigRequestV3(Request request, Optional<PayloadDeltas> payloadDeltas) {
         super(request);
+        this.payloadDeltas = payloadDeltas;
     }
 
     @Override
@@ -37,7 +50,20 @@ public class JRTServerConfigRequestV3 extends SlimeServerConfigRequest {
         this.internalRedeploy = internalRedeploy;
         boolean changedConfig = !configMd5.equals(getRequestConfigMd5());
         boolean changedConfigAndNewGeneration = changedConfig && ConfigUtils.isGenerationNewer(generation, getRequestGeneration());
-        Payload responsePayload = payload.withCompression(getCompressionType());
+        if (payload == null) {
+            throw new RuntimeException("Payload is null for ' " + this + ", not able to create response");
+        }
+        boolean sendDelta = payloadDeltas.isPresent() && acceptsDelta();
+        Optional<PayloadDeltas.Delta> delta = Optional.empty();
+        Payload responsePayload = null;
+        if (changedConfigAndNewGeneration) {
+            if (sendDelta)
+                delta = payloadDeltas.get().delta(getRequestConfigMd5(), configMd5, payload);
+            responsePayload = delta.isPresent() ? delta.get().middle(getCompressionType())
+                                                : payload.withCompression(getCompressionType());
+        } else if (sendDelta && ! changedConfig) {
+            payloadDeltas.get().uncompressed(configMd5, payload); // Keep what the client has, as base for the next delta
+        }
         ByteArrayOutputStream byteArrayOutputStream = new NoCopyByteArrayOutputStream(4096);
         try {
             JsonGenerator jsonGenerator = createJsonGenerator(byteArrayOutputStream);
@@ -47,16 +73,18 @@ public class JRTServerConfigRequestV3 extends SlimeServerConfigRequest {
             setResponseField(jsonGenerator, SlimeResponseData.RESPONSE_CONFIG_GENERATION, generation);
             setResponseField(jsonGenerator, SlimeResponseData.RESPONSE_INTERNAL_REDEPLOY, internalRedeploy);
             jsonGenerator.writeObjectFieldStart(SlimeResponseData.RESPONSE_COMPRESSION_INFO);
-            if (responsePayload == null) {
-                throw new RuntimeException("Payload is null for ' " + this + ", not able to create response");
-            }
-            CompressionInfo compressionInfo = responsePayload.getCompressionInfo();
             // If payload is not being sent, we must adjust compression info to avoid client confusion.
-            if (!changedConfigAndNewGeneration) {
-                compressionInfo = CompressionInfo.create(compressionInfo.getCompressionType(), 0);
-            }
+            CompressionInfo compressionInfo = changedConfigAndNewGeneration ? responsePayload.getCompressionInfo()
+                                                                            : CompressionInfo.create(getCompressionType(), 0);
             compressionInfo.serialize(jsonGenerator);
             jsonGenerator.writeEndObject();
+            if (delta.isPresent()) {
+                jsonGenerator.writeObjectFieldStart(SlimeResponseData.RESPONSE_DELTA);
+                setResponseField(jsonGenerator, SlimeResponseData.RESPONSE_DELTA_BASE_MD5, delta.get().baseMd5());
+                setResponseField(jsonGenerator, SlimeResponseData.RESPONSE_DELTA_PREFIX_SIZE, delta.get().prefix());
+                setResponseField(jsonGenerator, SlimeResponseData.RESPONSE_DELTA_SUFFIX_SIZE, delta.get().suffix());
+                jsonGenerator.writeEndObject();
+            }
             if (log.isLoggable(LogLevel.SPAM)) {
                 log.log(LogLevel.SPAM, getConfigKey() + ": response dataXXXXX" + payload.withCompression(CompressionType.UNCOMPRESSED) + "XXXXX");
             }
@@ -85,4 +113,9 @@ public class JRTServerConfigRequestV3 extends SlimeServerConfigRequest {
         return new JRTServerConfigRequestV3(req);
     }
 
+    /** Creates a request which responds with deltas from the given payloads to clients which accept them */
+    public static JRTServerConfigRequestV3 createFromRequest(Request req, PayloadDeltas payloadDeltas) {
+        return new JRTServerConfigRequestV3(req, Optional.of(payloadDeltas));
+    }
+
 }
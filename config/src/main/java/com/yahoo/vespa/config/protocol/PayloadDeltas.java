@@ -0,0 +1,177 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.protocol;
+
+import com.yahoo.text.Utf8Array;
+
+import java.util.LinkedHashMap;
+import java.util.Optional;
+
+/**
+ * The uncompressed payloads most recently sent to clients which accept deltas, by config md5, used to send such
+ * clients only the part of a changed payload which differs from the payload they already have.
+ * <p>
+ * A delta is the common prefix and suffix of the payload the client has and the new payload, and the bytes of
+ * the new payload between these. Config payloads are JSON with a stable field order, so a change to a few fields
+ * of a large config, like one rank profile among many, leaves most of the payload in the prefix and suffix.
+ * <p>
+ * The deltas computed are kept as well, by the md5s of their base and target payloads, with their middles compressed
+ * as they were last sent, so the many clients which go from one payload to the next get the same delta without
+ * repeating the work. Payloads are evicted in least recently used order when they exceed the given number of bytes
+ * in total, and deltas when their middles and keys exceed a quarter of this.
+ * The class is thread safe.
+ */
+public class PayloadDeltas {
+
+    /** Deltas sharing fewer bytes than this with the base payload are not worth the extra round of work */
+    static final int minSharedBytes = 1024;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, byte[]> payloads = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Optional<Delta>> deltas = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private long deltaBytes = 0;
+
+    /** Creates a set of payloads holding at most the given number of bytes */
+    public PayloadDeltas(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /** Creates a set of payloads holding at most 64 MiB */
+    public PayloadDeltas() {
+        this(64 << 20);
+    }
+
+    /**
+     * Returns the uncompressed data of the given payload with the given config md5, and keeps it as the base
+     * for later deltas, if it is not already kept.
+     */
+    byte[] uncompressed(String configMd5, Payload payload) {
+        synchronized (this) {
+            byte[] data = payloads.get(configMd5);
+            if (data != null) return data;
+        }
+        byte[] data = payload.withCompression(CompressionType.UNCOMPRESSED).getData().getBytes();
+        synchronized (this) {
+            if (payloads.putIfAbsent(configMd5, data) == null) {
+                bytes += data.length;
+                evict();
+            }
+        }
+        return data;
+    }
+
+    private void evict() {
+        for (var iterator = payloads.entrySet().iterator(); bytes > maxBytes && iterator.hasNext(); ) {
+            bytes -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+        for (var iterator = deltas.entrySet().iterator(); deltaBytes > maxBytes / 4 && iterator.hasNext(); ) {
+            var entry = iterator.next();
+            deltaBytes -= size(entry.getKey(), entry.getValue());
+            iterator.remove();
+        }
+    }
+
+    /** Returns the number of bytes a delta is counted as, which is more than zero also when there is no delta */
+    private static long size(String key, Optional<Delta> delta) {
+        return key.length() + delta.map(d -> d.middle().length).orElse(0);
+    }
+
+    /**
+     * Returns the delta from the payload with the given base md5 to the given payload with the given config md5,
+     * or empty if the base payload is not kept, or if a delta would not save enough to be worth it. The delta is
+     * computed only if it is not already kept, and the given payload is then also kept as the base for later deltas.
+     */
+    Optional<Delta> delta(String baseMd5, String configMd5, Payload payload) {
+        String key = baseMd5 + " " + configMd5;
+        byte[] base;
+        synchronized (this) {
+            Optional<Delta> delta = deltas.get(key);
+            if (delta != null) return delta;
+            base = payloads.get(baseMd5);
+        }
+        byte[] target = uncompressed(configMd5, payload);
+        if (base == null) return Optional.empty();
+
+        Optional<Delta> delta = diff(baseMd5, base, target);
+        synchronized (this) {
+            if (deltas.putIfAbsent(key, delta) == null) {
+                deltaBytes += size(key, delta);
+                evict();
+            }
+        }
+        return delta;
+    }
+
+    /** Returns the delta from the given base payload to the given target, or empty if it would not save enough to be worth it */
+    private static Optional<Delta> diff(String baseMd5, byte[] base, byte[] target) {
+        int maxShared = Math.min(base.length, target.length);
+        int prefix = 0;
+        while (prefix < maxShared && base[prefix] == target[prefix]) prefix++;
+        int suffix = 0;
+        while (suffix < maxShared - prefix && base[base.length - 1 - suffix] == target[target.length - 1 - suffix]) suffix++;
+        if (prefix + suffix < minSharedBytes) return Optional.empty();
+
+        byte[] middle = new byte[target.length - prefix - suffix];
+        System.arraycopy(target, prefix, middle, 0, middle.length);
+        return Optional.of(new Delta(baseMd5, prefix, suffix, middle));
+    }
+
+    /** Returns the total number of bytes of the payloads kept */
+    public synchronized long bytes() { return bytes; }
+
+    /**
+     * Returns the payload data given by the base payload data and the prefix and suffix sizes and middle of a delta
+     *
+     * @throws IllegalArgumentException if the delta does not fit the base
+     */
+    static byte[] apply(byte[] base, int prefix, int suffix, byte[] middle) {
+        if (prefix < 0 || suffix < 0 || prefix + suffix > base.length)
+            throw new IllegalArgumentException("Delta with prefix " + prefix + " and suffix " + suffix +
+                                               " does not fit a base payload of " + base.length + " bytes");
+        byte[] data = new byte[prefix + middle.length + suffix];
+        System.arraycopy(base, 0, data, 0, prefix);
+        System.arraycopy(middle, 0, data, prefix, middle.length);
+        System.arraycopy(base, base.length - suffix, data, prefix + middle.length, suffix);
+        return data;
+    }
+
+    /** The difference between a base payload and a new one */
+    static class Delta {
+
+        private final String baseMd5;
+        private final int prefix;
+        private final int suffix;
+        private final byte[] middle;
+        private Payload sentMiddle = null;
+
+        Delta(String baseMd5, int prefix, int suffix, byte[] middle) {
+            this.baseMd5 = baseMd5;
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.middle = middle;
+        }
+
+        /** Returns the md5 of the payload this is a delta from */
+        String baseMd5() { return baseMd5; }
+
+        /** Returns the number of bytes at the start of the base payload which are kept */
+        int prefix() { return prefix; }
+
+        /** Returns the number of bytes at the end of the base payload which are kept */
+        int suffix() { return suffix; }
+
+        /** Returns the bytes which replace those between the prefix and suffix of the base payload */
+        byte[] middle() { return middle; }
+
+        /** Returns the middle of this as a payload with the given compression, which is kept until asked for another */
+        synchronized Payload middle(CompressionType compression) {
+            if (sentMiddle == null || sentMiddle.getCompressionInfo().getCompressionType() != compression)
+                sentMiddle = Payload.from(new Utf8Array(middle), CompressionInfo.create(CompressionType.UNCOMPRESSED, middle.length))
+                                    .withCompression(compression);
+            return sentMiddle;
+        }
+
+    }
+
+}
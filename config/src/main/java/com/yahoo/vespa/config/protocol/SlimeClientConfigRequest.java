@@ -38,6 +38,19 @@ public abstract class SlimeClientConfigRequest implements JRTClientConfigRequest
                                        Trace trace,
                                        CompressionType compressionType,
                                        Optional<VespaVersion> vespaVersion) {
+        this(key, hostname, defSchema, configMd5, generation, timeout, trace, compressionType, vespaVersion, false);
+    }
+
+    protected SlimeClientConfigRequest(ConfigKey<?> key,
+                                       String hostname,
+                                       DefContent defSchema,
+                                       String configMd5,
+                                       long generation,
+                                       long timeout,
+                                       Trace trace,
+                                       CompressionType compressionType,
+                                       Optional<VespaVersion> vespaVersion,
+                                       boolean acceptsDelta) {
         Slime data = SlimeRequestData.encodeRequest(key,
                 hostname,
                 defSchema,
@@ -47,7 +60,8 @@ public abstract class SlimeClientConfigRequest implements JRTClientConfigRequest
                 trace,
                 getProtocolVersion(),
                 compressionType,
-                vespaVersion);
+                vespaVersion,
+                acceptsDelta);
         Request jrtReq = new Request(getJRTMethodName());
         jrtReq.parameters().add(new StringValue(encodeAsUtf8String(data, true)));
 
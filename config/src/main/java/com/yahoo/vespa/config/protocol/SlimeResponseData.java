@@ -26,6 +26,10 @@ class SlimeResponseData {
     static final String RESPONSE_CONFIG_GENERATION = "generation";
     static final String RESPONSE_INTERNAL_REDEPLOY = "internalRedeploy";
     static final String RESPONSE_COMPRESSION_INFO = "compressionInfo";
+    static final String RESPONSE_DELTA = "delta";
+    static final String RESPONSE_DELTA_BASE_MD5 = "baseMD5";
+    static final String RESPONSE_DELTA_PREFIX_SIZE = "prefixSize";
+    static final String RESPONSE_DELTA_SUFFIX_SIZE = "suffixSize";
 
     private final Request request;
     private Slime data = null;
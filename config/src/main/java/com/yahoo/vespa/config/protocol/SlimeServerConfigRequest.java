@@ -69,6 +69,11 @@ abstract class SlimeServerConfigRequest implements JRTServerConfigRequest {
         return sb.toString();
     }
 
+    /** Returns whether the client has the payload with the requested config md5, and accepts a delta from it */
+    protected boolean acceptsDelta() {
+        return requestData.acceptsDelta();
+    }
+
     @Override
     public Payload payloadFromResponse(ConfigResponse response) {
         return Payload.from(response.getPayload(), response.getCompressionInfo());
@@ -4,6 +4,8 @@ package com.yahoo.vespa.config.protocol;
 import com.yahoo.foo.SimpletypesConfig;
 import com.yahoo.config.subscription.impl.JRTConfigSubscription;
 import com.yahoo.jrt.Request;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
 import com.yahoo.vespa.config.*;
 import com.yahoo.vespa.config.util.ConfigUtils;
 import org.junit.Test;
@@ -78,4 +80,96 @@ public class JRTConfigRequestV3Test extends JRTConfigRequestBase {
         assertThat(clientReq.getNewPayload().withCompression(CompressionType.UNCOMPRESSED).getData().toString(), is("{}"));
         assertFalse(clientReq.responseIsInternalRedeploy());
     }
+
+    @Test
+    public void changed_payload_is_sent_as_delta_to_clients_keeping_payloads() {
+        PayloadDeltas deltas = new PayloadDeltas();
+        Payload base = createLargePayload("original");
+        String baseMd5 = ConfigUtils.getMd5(base.getData());
+        RawConfig config = new RawConfig(ConfigKey.createFull(defName, configId, defNamespace, defMd5), defMd5,
+                                         base.withCompression(CompressionType.LZ4), baseMd5, currentGeneration, false,
+                                         Arrays.asList("namespace=my.name.space", "myfield string"), vespaVersion);
+
+        // Responding with a new generation only lets the server keep the payload the client has
+        JRTClientConfigRequest first = createFromRaw(config, timeout, Trace.createNew());
+        JRTServerConfigRequestV3.createFromRequest(first.getRequest(), deltas).addOkResponse(base, 4L, false, baseMd5);
+        assertTrue(first.validateResponse());
+        assertFalse(first.hasUpdatedConfig());
+
+        Payload changed = createLargePayload("changed");
+        String changedMd5 = ConfigUtils.getMd5(changed.getData());
+        JRTClientConfigRequest second = first.nextRequest(timeout);
+        JRTServerConfigRequestV3.createFromRequest(second.getRequest(), deltas).addOkResponse(changed, 5L, false, changedMd5);
+        assertTrue(second.validateResponse());
+        assertTrue(second.hasUpdatedConfig());
+        assertTrue(second.getRequest().returnValues().get(1).asData().length < 100);
+        assertThat(second.getNewPayload().withCompression(CompressionType.UNCOMPRESSED).getData().toString(),
+                   is(changed.getData().toString()));
+        assertThat(second.getNewPayload().getCompressionInfo().getCompressionType(), is(CompressionType.LZ4));
+
+        // The next request has the new payload as base
+        Payload reverted = createLargePayload("original");
+        JRTClientConfigRequest third = second.nextRequest(timeout);
+        JRTServerConfigRequestV3.createFromRequest(third.getRequest(), deltas).addOkResponse(reverted, 6L, false, baseMd5);
+        assertTrue(third.validateResponse());
+        assertThat(third.getNewPayload().withCompression(CompressionType.UNCOMPRESSED).getData().toString(),
+                   is(base.getData().toString()));
+    }
+
+    @Test
+    public void delta_giving_another_payload_than_the_new_config_md5_fails_and_is_followed_by_a_full_request() {
+        PayloadDeltas deltas = new PayloadDeltas();
+        Payload base = createLargePayload("original");
+        String baseMd5 = ConfigUtils.getMd5(base.getData());
+        deltas.uncompressed(baseMd5, base);
+        // The client has another payload than the server has with the same md5
+        Payload other = Payload.from(base.getData().toString().replace("value90", "value9x"));
+        RawConfig config = new RawConfig(ConfigKey.createFull(defName, configId, defNamespace, defMd5), defMd5,
+                                         other.withCompression(CompressionType.LZ4), baseMd5, 4L, false,
+                                         Arrays.asList("namespace=my.name.space", "myfield string"), vespaVersion);
+
+        Payload changed = createLargePayload("changed");
+        String changedMd5 = ConfigUtils.getMd5(changed.getData());
+        JRTClientConfigRequest first = createFromRaw(config, timeout, Trace.createNew());
+        JRTServerConfigRequestV3.createFromRequest(first.getRequest(), deltas).addOkResponse(changed, 5L, false, changedMd5);
+        assertFalse(first.validateResponse());
+        assertTrue(first.isError());
+        assertThat(first.errorCode(), is(ErrorCode.INCONSISTENT_CONFIG_MD5));
+
+        JRTClientConfigRequest second = first.nextRequest(timeout);
+        assertThat(second.getRequestConfigMd5(), is(baseMd5));
+        JRTServerConfigRequestV3 serverRequest = JRTServerConfigRequestV3.createFromRequest(second.getRequest(), deltas);
+        assertFalse(serverRequest.acceptsDelta());
+        serverRequest.addOkResponse(changed, 5L, false, changedMd5);
+        assertTrue(second.validateResponse());
+        assertThat(second.getNewPayload().withCompression(CompressionType.UNCOMPRESSED).getData().toString(),
+                   is(changed.getData().toString()));
+    }
+
+    @Test
+    public void changed_payload_is_sent_in_full_to_clients_not_keeping_payloads() {
+        PayloadDeltas deltas = new PayloadDeltas();
+        Payload base = createLargePayload("original");
+        String baseMd5 = ConfigUtils.getMd5(base.getData());
+        deltas.uncompressed(baseMd5, base);
+
+        JRTClientConfigRequest request = createReq(defName, defNamespace, defMd5, hostname, configId, baseMd5,
+                                                   currentGeneration, timeout, Trace.createNew());
+        Payload changed = createLargePayload("changed");
+        JRTServerConfigRequestV3.createFromRequest(request.getRequest(), deltas)
+                                .addOkResponse(changed, 5L, false, ConfigUtils.getMd5(changed.getData()));
+        assertTrue(request.validateResponse());
+        assertThat(request.getNewPayload().withCompression(CompressionType.UNCOMPRESSED).getData().toString(),
+                   is(changed.getData().toString()));
+        assertThat(request.getNewPayload().getCompressionInfo().getUncompressedSize(), is(changed.getData().getByteLength()));
+    }
+
+    private static Payload createLargePayload(String middleValue) {
+        Slime slime = new Slime();
+        Cursor root = slime.setObject();
+        for (int i = 0; i < 100; i++)
+            root.setString("field" + i, i == 50 ? middleValue : "value" + i);
+        return Payload.from(new ConfigPayload(slime));
+    }
+
 }
@@ -0,0 +1,74 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.protocol;
+
+import com.yahoo.text.Utf8;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PayloadDeltasTest {
+
+    @Test
+    public void delta_applied_to_base_gives_target() {
+        PayloadDeltas deltas = new PayloadDeltas();
+        String shared = "x".repeat(PayloadDeltas.minSharedBytes);
+        byte[] base = deltas.uncompressed("base", Payload.from(shared + "old" + shared));
+        String target = shared + "brand new" + shared;
+
+        PayloadDeltas.Delta delta = deltas.delta("base", "target", Payload.from(target)).get();
+        assertEquals("base", delta.baseMd5());
+        assertEquals(shared.length(), delta.prefix());
+        assertEquals(shared.length(), delta.suffix());
+        assertEquals("brand new", Utf8.toString(delta.middle()));
+        assertEquals(target, Utf8.toString(PayloadDeltas.apply(base, delta.prefix(), delta.suffix(), delta.middle())));
+
+        // Prefix and suffix do not overlap when the target is a part of the base
+        String shorter = shared + shared;
+        delta = deltas.delta("base", "shorter", Payload.from(shorter)).get();
+        assertEquals(shorter, Utf8.toString(PayloadDeltas.apply(base, delta.prefix(), delta.suffix(), delta.middle())));
+    }
+
+    @Test
+    public void deltas_are_computed_once_per_base_and_target() {
+        PayloadDeltas deltas = new PayloadDeltas();
+        String shared = "x".repeat(PayloadDeltas.minSharedBytes);
+        Payload target = Payload.from(shared + "brand new" + shared);
+        assertFalse(deltas.delta("base", "target", target).isPresent());
+
+        deltas.uncompressed("base", Payload.from(shared + "old" + shared));
+        PayloadDeltas.Delta delta = deltas.delta("base", "target", target).get();
+        assertEquals("brand new", Utf8.toString(delta.middle()));
+        assertTrue(delta == deltas.delta("base", "target", target).get());
+        assertTrue(delta.middle(CompressionType.LZ4) == delta.middle(CompressionType.LZ4));
+        assertEquals("brand new", delta.middle(CompressionType.LZ4).withCompression(CompressionType.UNCOMPRESSED).getData().toString());
+
+        // The target is kept as base for the next delta, and deltas not worth sending are remembered too
+        assertFalse(deltas.delta("target", "small", Payload.from("small")).isPresent());
+        assertFalse(deltas.delta("target", "small", Payload.from("small")).isPresent());
+    }
+
+    @Test
+    public void no_delta_without_base_or_enough_shared_bytes() {
+        PayloadDeltas deltas = new PayloadDeltas();
+        deltas.uncompressed("base", Payload.from("a small payload"));
+        assertFalse(deltas.delta("other", "changed", Payload.from("a small payload, changed")).isPresent());
+        assertFalse(deltas.delta("base", "changed", Payload.from("a small payload, changed")).isPresent());
+    }
+
+    @Test
+    public void least_recently_used_payloads_are_evicted() {
+        PayloadDeltas deltas = new PayloadDeltas(3 * PayloadDeltas.minSharedBytes);
+        String payload = "x".repeat(PayloadDeltas.minSharedBytes);
+        deltas.uncompressed("a", Payload.from(payload));
+        deltas.uncompressed("b", Payload.from(payload));
+        deltas.uncompressed("c", Payload.from(payload));
+        assertTrue(deltas.delta("a", "a", Payload.from(payload)).isPresent());
+        deltas.uncompressed("d", Payload.from(payload));
+        assertEquals(3 * PayloadDeltas.minSharedBytes, deltas.bytes());
+        assertTrue(deltas.delta("c", "c", Payload.from(payload)).isPresent());
+        assertFalse(deltas.delta("b", "c", Payload.from(payload)).isPresent());
+    }
+
+}
@@ -27,6 +27,9 @@ import java.time.Clock;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Registry containing all the "static"/"global" components in a config server in one place.
@@ -52,6 +55,7 @@ public class InjectedGlobalComponentRegistry implements GlobalComponentRegistry
     private final SecretStore secretStore;
     private final StripedExecutor<TenantName> zkWatcherExecutor;
     private final ExecutorService zkCacheExecutor;
+    private final ExecutorService configPrecomputeExecutor;
 
     @SuppressWarnings("WeakerAccess")
     @Inject
@@ -88,6 +92,7 @@ public class InjectedGlobalComponentRegistry implements GlobalComponentRegistry
         this.secretStore = secretStore;
         this.zkWatcherExecutor = new StripedExecutor<>();
         this.zkCacheExecutor = Executors.newFixedThreadPool(1, ThreadFactoryFactory.getThreadFactory(TenantRepository.class.getName()));
+        this.configPrecomputeExecutor = createConfigPrecomputeExecutor();
     }
 
     @Override
@@ -142,8 +147,25 @@ public class InjectedGlobalComponentRegistry implements GlobalComponentRegistry
         return zkCacheExecutor;
     }
 
+    @Override
+    public ExecutorService getConfigPrecomputeExecutor() {
+        return configPrecomputeExecutor;
+    }
+
     @Override
     public SecretStore getSecretStore() {
         return secretStore;
     }
+
+    /**
+     * Returns an executor for warming the caches of activated applications, with half the cores, so config requests
+     * are still served meanwhile, and a bounded queue, as warming is skipped rather than queued behind a backlog.
+     */
+    private static ExecutorService createConfigPrecomputeExecutor() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(100),
+                                                             ThreadFactoryFactory.getDaemonThreadFactory("config-precompute"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 }
@@ -24,8 +24,12 @@ import com.yahoo.vespa.config.server.rpc.UncompressedConfigResponseFactory;
 import com.yahoo.vespa.config.server.tenant.TenantRepository;
 import com.yahoo.vespa.config.util.ConfigUtils;
 
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A Vespa application for a specific version of Vespa. It holds data and metadata associated with
@@ -44,6 +48,10 @@ public class Application implements ModelResult {
     private final ServerCache cache;
     private final MetricUpdater metricUpdater;
     private final ApplicationId app;
+    // The configs requested from this, with the config definitions given in their requests, which the next generation is warmed with
+    private final Map<ConfigCacheKey, DefContent> requestedConfigs = new ConcurrentHashMap<>();
+    // The resolutions of configs which are not cached yet, which identical requests arriving meanwhile wait for
+    private final Map<ConfigCacheKey, CompletableFuture<ConfigResponse>> resolutions = new ConcurrentHashMap<>();
 
     public Application(Model model, ServerCache cache, long appGeneration, boolean internalRedeploy,
                        Version vespaVersion, MetricUpdater metricUpdater, ApplicationId app) {
@@ -109,20 +117,95 @@ public class Application implements ModelResult {
             debug("Resolving config " + cacheKey);
         }
 
-        if (useCache(req)) {
-            ConfigResponse config = cache.get(cacheKey);
-            if (config != null) {
+        if ( ! useCache(req)) {
+            ConfigResponse configResponse;
+            try {
+                configResponse = createResponse(configKey, req.getDefContent(), responseFactory);
+            } catch (RuntimeException e) {
+                metricUpdater.incrementFailedRequests();
+                throw e;
+            }
+            metricUpdater.incrementProcTime(System.currentTimeMillis() - start);
+            recordRequest(cacheKey, req.getDefContent());
+            return configResponse;
+        }
+
+        ConfigResponse config = cache.get(cacheKey);
+        if (config != null) {
+            if (logDebug()) {
+                debug("Found config " + cacheKey + " in cache");
+            }
+            metricUpdater.incrementProcTime(System.currentTimeMillis() - start);
+            recordRequest(cacheKey, req.getDefContent());
+            return config;
+        }
+
+        // Identical requests arriving together, e.g., when a large cluster restarts, share the first one's resolution
+        CompletableFuture<ConfigResponse> resolution = new CompletableFuture<>();
+        CompletableFuture<ConfigResponse> inProgress = resolutions.putIfAbsent(cacheKey, resolution);
+        ConfigResponse configResponse;
+        try {
+            if (inProgress != null) {
+                metricUpdater.incrementCoalescedRequests();
                 if (logDebug()) {
-                    debug("Found config " + cacheKey + " in cache");
+                    debug("Waiting for concurrent resolution of config " + cacheKey);
                 }
-                metricUpdater.incrementProcTime(System.currentTimeMillis() - start);
-                return config;
+                configResponse = awaitResolution(inProgress);
+            } else {
+                configResponse = resolveAndCache(cacheKey, req.getDefContent(), responseFactory, resolution);
+            }
+        } catch (RuntimeException e) {
+            metricUpdater.incrementFailedRequests();
+            throw e;
+        }
+        metricUpdater.incrementProcTime(System.currentTimeMillis() - start);
+        recordRequest(cacheKey, req.getDefContent());
+        return configResponse;
+    }
+
+    /**
+     * Resolves the given config and caches the response, unless another resolution cached it meanwhile,
+     * and completes and unregisters the given resolution, which must be the one registered for the config.
+     */
+    private ConfigResponse resolveAndCache(ConfigCacheKey cacheKey, DefContent defContent, ConfigResponseFactory responseFactory,
+                                           CompletableFuture<ConfigResponse> resolution) {
+        try {
+            // Another resolution may have completed between the cache lookup and registering this one
+            ConfigResponse configResponse = cache.get(cacheKey);
+            if (configResponse == null) {
+                configResponse = createResponse(cacheKey.getKey(), defContent, responseFactory);
+                cache.put(cacheKey, configResponse, configResponse.getConfigMd5());
+                updateCacheMetrics();
             }
+            resolution.complete(configResponse);
+            return configResponse;
+        } catch (RuntimeException e) {
+            resolution.completeExceptionally(e);
+            throw e;
+        } finally {
+            resolutions.remove(cacheKey, resolution);
+        }
+    }
+
+    /** Returns the response of the given resolution, or rethrows the exception it failed with */
+    private ConfigResponse awaitResolution(CompletableFuture<ConfigResponse> resolution) {
+        try {
+            return resolution.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private void recordRequest(ConfigCacheKey cacheKey, DefContent defContent) {
+        if ( ! requestedConfigs.containsKey(cacheKey)) {
+            requestedConfigs.putIfAbsent(cacheKey, defContent);
         }
+    }
 
-        ConfigDefinition def = getTargetDef(req);
+    private ConfigResponse createResponse(ConfigKey<?> configKey, DefContent defContent, ConfigResponseFactory responseFactory) {
+        ConfigDefinition def = getTargetDef(configKey, defContent);
         if (def == null) {
-            metricUpdater.incrementFailedRequests();
             throw new UnknownConfigDefinitionException("Unable to find config definition for '" + configKey.getNamespace() + "." + configKey.getName());
         }
         if (logDebug()) {
@@ -130,18 +213,45 @@ public class Application implements ModelResult {
         }
         ConfigPayload payload = model.getConfig(configKey, def);
         if (payload == null) {
-            metricUpdater.incrementFailedRequests();
             throw new ConfigurationRuntimeException("Unable to resolve config " + configKey);
         }
+        return responseFactory.createResponse(payload, def.getCNode(), appGeneration, internalRedeploy);
+    }
 
-        ConfigResponse configResponse = responseFactory.createResponse(payload, def.getCNode(), appGeneration, internalRedeploy);
-        metricUpdater.incrementProcTime(System.currentTimeMillis() - start);
-        if (useCache(req)) {
-            cache.put(cacheKey, configResponse, configResponse.getConfigMd5());
-            metricUpdater.setCacheConfigElems(cache.configElems());
-            metricUpdater.setCacheChecksumElems(cache.checkSumElems());
+    /**
+     * Returns the configs which have been requested from this, with the config definitions given in their requests.
+     * Configs precomputed for this are not included unless they are also requested, so configs which are no longer
+     * requested are not carried on to the next generation.
+     */
+    public Map<ConfigCacheKey, DefContent> requestedConfigs() {
+        return Map.copyOf(requestedConfigs);
+    }
+
+    /**
+     * Resolves the given config, which was requested from a previous generation of this application, and caches
+     * the response, unless it is cached, or being resolved for a request, already. Configs which do not resolve
+     * are skipped, and left to fail when they are actually requested.
+     *
+     * @return whether a response was resolved and cached
+     */
+    boolean precomputeConfig(ConfigCacheKey cacheKey, DefContent defContent, ConfigResponseFactory responseFactory) {
+        if (cache.get(cacheKey) != null) return false;
+        CompletableFuture<ConfigResponse> resolution = new CompletableFuture<>();
+        if (resolutions.putIfAbsent(cacheKey, resolution) != null) return false;
+        try {
+            resolveAndCache(cacheKey, defContent, responseFactory, resolution);
+            return true;
+        } catch (RuntimeException e) {
+            if (logDebug()) {
+                debug("Could not precompute config " + cacheKey + ": " + e.getMessage());
+            }
+            return false;
         }
-        return configResponse;
+    }
+
+    void updateCacheMetrics() {
+        metricUpdater.setCacheConfigElems(cache.configElems());
+        metricUpdater.setCacheChecksumElems(cache.checkSumElems());
     }
 
     private boolean useCache(GetConfigRequest request) {
@@ -156,9 +266,7 @@ public class Application implements ModelResult {
         log.log(LogLevel.DEBUG, TenantRepository.logPre(getId())+message);
     }
 
-    private ConfigDefinition getTargetDef(GetConfigRequest req) {
-        ConfigKey<?> configKey = req.getConfigKey();
-        DefContent def = req.getDefContent();
+    private ConfigDefinition getTargetDef(ConfigKey<?> configKey, DefContent def) {
         ConfigDefinitionKey configDefinitionKey = new ConfigDefinitionKey(configKey.getName(), configKey.getNamespace());
         if (def.isEmpty()) {
             if (logDebug()) {
@@ -39,6 +39,11 @@ public final class ApplicationMapper {
         requestHandlers.put(applicationId, applicationSet);
     }
 
+    /** Returns the application set registered for the given application id, if any */
+    public Optional<ApplicationSet> get(ApplicationId applicationId) {
+        return Optional.ofNullable(requestHandlers.get(applicationId));
+    }
+
     /**
      * Remove all applications associated with this application id
      */
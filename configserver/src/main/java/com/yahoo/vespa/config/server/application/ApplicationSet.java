@@ -4,9 +4,16 @@ package com.yahoo.vespa.config.server.application;
 import com.yahoo.config.model.api.HostInfo;
 import com.yahoo.config.provision.ApplicationId;
 import com.yahoo.component.Version;
+import com.yahoo.vespa.config.ConfigCacheKey;
+import com.yahoo.vespa.config.protocol.DefContent;
+import com.yahoo.vespa.config.server.rpc.ConfigResponseFactory;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 /**
@@ -92,6 +99,52 @@ public final class ApplicationSet {
         return generation;
     }
 
+    /**
+     * Resolves and caches the configs which were requested from the given, previous generation of this, so clients
+     * which all ask for the new generation at once are mostly served from the cache. Each application gets the configs
+     * requested from the previous application with the same Vespa version, or from the latest one if there is none.
+     * The configs are split into about one task per core on the given executor. Configs which are not done when
+     * {@code stop} returns true, or whose task is rejected by the executor, are left to be resolved when requested.
+     *
+     * @return the number of configs resolved, when all tasks are done
+     */
+    public CompletableFuture<Long> precomputeConfigs(ApplicationSet previous, ConfigResponseFactory responseFactory,
+                                                     Executor executor, BooleanSupplier stop) {
+        List<Map.Entry<Application, Map.Entry<ConfigCacheKey, DefContent>>> work = new ArrayList<>();
+        for (Application application : applications.values()) {
+            Application previousApplication = previous.applications.getOrDefault(application.getVespaVersion(),
+                                                                                 previous.applications.get(previous.latestVersion));
+            for (Map.Entry<ConfigCacheKey, DefContent> config : previousApplication.requestedConfigs().entrySet())
+                work.add(Map.entry(application, config));
+        }
+        int chunkSize = Math.max(1, (work.size() + Runtime.getRuntime().availableProcessors() - 1) / Runtime.getRuntime().availableProcessors());
+        List<CompletableFuture<Long>> chunks = new ArrayList<>();
+        for (int start = 0; start < work.size(); start += chunkSize) {
+            List<Map.Entry<Application, Map.Entry<ConfigCacheKey, DefContent>>> chunk = work.subList(start, Math.min(start + chunkSize, work.size()));
+            try {
+                chunks.add(CompletableFuture.supplyAsync(() -> precomputeConfigs(chunk, responseFactory, stop), executor));
+            }
+            catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0]))
+                                .thenApply(__ -> {
+                                    applications.values().forEach(Application::updateCacheMetrics);
+                                    return chunks.stream().mapToLong(CompletableFuture::join).sum();
+                                });
+    }
+
+    private static long precomputeConfigs(List<Map.Entry<Application, Map.Entry<ConfigCacheKey, DefContent>>> work,
+                                          ConfigResponseFactory responseFactory, BooleanSupplier stop) {
+        long count = 0;
+        for (Map.Entry<Application, Map.Entry<ConfigCacheKey, DefContent>> item : work) {
+            if (stop.getAsBoolean()) break;
+            if (item.getKey().precomputeConfig(item.getValue().getKey(), item.getValue().getValue(), responseFactory)) count++;
+        }
+        return count;
+    }
+
     List<Application> getAllApplications() {
         return new ArrayList<>(applications.values());
     }
@@ -66,7 +66,9 @@ public class ActivatedModelsBuilder extends ModelsBuilder<Application> {
         super(globalComponentRegistry.getModelFactoryRegistry(),
               globalComponentRegistry.getConfigserverConfig(),
               globalComponentRegistry.getZone(),
-              HostProvisionerProvider.from(globalComponentRegistry.getHostProvisioner()));
+              HostProvisionerProvider.from(globalComponentRegistry.getHostProvisioner()),
+              globalComponentRegistry.getMetrics(),
+              "activate");
         this.tenant = tenant;
         this.appGeneration = appGeneration;
         this.zkClient = zkClient;
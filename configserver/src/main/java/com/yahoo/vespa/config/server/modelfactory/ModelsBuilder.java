@@ -3,6 +3,7 @@ package com.yahoo.vespa.config.server.modelfactory;
 
 import com.google.common.util.concurrent.UncheckedTimeoutException;
 import com.yahoo.cloud.config.ConfigserverConfig;
+import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.config.application.api.ApplicationPackage;
 import com.yahoo.config.model.api.HostProvisioner;
 import com.yahoo.config.model.api.ModelContext;
@@ -18,10 +19,12 @@ import com.yahoo.lang.SettableOptional;
 import com.yahoo.log.LogLevel;
 import com.yahoo.vespa.config.server.http.InternalServerException;
 import com.yahoo.vespa.config.server.http.UnknownVespaVersionException;
+import com.yahoo.vespa.config.server.monitoring.Metrics;
 import com.yahoo.vespa.config.server.provision.HostProvisionerProvider;
 import com.yahoo.vespa.config.server.provision.ProvisionerAdapter;
 import com.yahoo.vespa.config.server.provision.StaticProvisioner;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -30,12 +33,20 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
  * Responsible for building the right versions of application models for a given tenant and application generation.
  * Actual model building is implemented by subclasses because it differs in the prepare and activate phases.
+ * <p>
+ * Once the latest version of a major has decided the allocated hosts, the other versions of that major are built
+ * in parallel, by at most configserverConfig.numParallelModelBuilders() threads. Subclasses must therefore keep
+ * any state which is written while building a model version local to that version.
  *
  * @author bratseth
  */
@@ -53,13 +64,20 @@ public abstract class ModelsBuilder<MODELRESULT extends ModelResult> {
 
     private final HostProvisionerProvider hostProvisionerProvider;
 
+    private final Metrics metrics;
+
+    /** The deployment phase building these models, used as a metric dimension */
+    private final String phase;
+
     ModelsBuilder(ModelFactoryRegistry modelFactoryRegistry, ConfigserverConfig configserverConfig,
-                  Zone zone, HostProvisionerProvider hostProvisionerProvider) {
+                  Zone zone, HostProvisionerProvider hostProvisionerProvider, Metrics metrics, String phase) {
         this.modelFactoryRegistry = modelFactoryRegistry;
         this.configserverConfig = configserverConfig;
         this.hosted = configserverConfig.hostedVespa();
         this.zone = zone;
         this.hostProvisionerProvider = hostProvisionerProvider;
+        this.metrics = metrics;
+        this.phase = phase;
     }
 
     /** Returns the zone this is running in */
@@ -77,6 +95,7 @@ public abstract class ModelsBuilder<MODELRESULT extends ModelResult> {
                                          SettableOptional<AllocatedHosts> allocatedHosts,
                                          Instant now) {
         log.log(LogLevel.DEBUG, "Will build models for " + applicationId);
+        long startNanos = System.nanoTime();
         Set<Version> versions = modelFactoryRegistry.allVersions();
 
         // If the application specifies a major, skip models on a newer major
@@ -131,7 +150,9 @@ public abstract class ModelsBuilder<MODELRESULT extends ModelResult> {
                 }
             }
         }
-        log.log(LogLevel.DEBUG, "Done building models for " + applicationId);
+        Duration buildTime = Duration.ofNanos(System.nanoTime() - startNanos);
+        metrics.setModelsBuildTime(applicationId, phase, buildTime.toMillis());
+        log.log(LogLevel.DEBUG, "Done building models for " + applicationId + " in " + buildTime);
         return allApplicationModels;
     }
 
@@ -157,12 +178,12 @@ public abstract class ModelsBuilder<MODELRESULT extends ModelResult> {
         if (buildLatestModelForThisMajor) {
             latest = Optional.of(findLatest(versions));
             // load latest application version
-            MODELRESULT latestModelVersion = buildModelVersion(modelFactoryRegistry.getFactory(latest.get()),
-                                                               applicationPackage,
-                                                               applicationId,
-                                                               wantedNodeVespaVersion,
-                                                               allocatedHosts.asOptional(),
-                                                               now);
+            MODELRESULT latestModelVersion = timedBuildModelVersion(latest.get(),
+                                                                    applicationPackage,
+                                                                    applicationId,
+                                                                    wantedNodeVespaVersion,
+                                                                    allocatedHosts.asOptional(),
+                                                                    now);
             allocatedHosts.set(latestModelVersion.getModel().allocatedHosts()); // Update with additional clusters allocated
             allApplicationVersions.add(latestModelVersion);
 
@@ -172,26 +193,107 @@ public abstract class ModelsBuilder<MODELRESULT extends ModelResult> {
 
         // load old model versions
         versions = versionsToBuild(versions, wantedNodeVespaVersion, majorVersion, allocatedHosts.get());
+        Optional<Version> alreadyBuilt = latest;
+        List<Version> oldVersions = versions.stream()
+                                            .filter(version -> ! alreadyBuilt.equals(Optional.of(version)))
+                                            .sorted(Comparator.reverseOrder())
+                                            .collect(Collectors.toList());
+        // If no hosts are allocated yet, the first model built must allocate them before the others can be built
+        if ( ! allocatedHosts.isPresent() && ! oldVersions.isEmpty()) {
+            MODELRESULT modelVersion = timedBuildModelVersion(oldVersions.remove(0),
+                                                              applicationPackage,
+                                                              applicationId,
+                                                              wantedNodeVespaVersion,
+                                                              allocatedHosts.asOptional(),
+                                                              now);
+            allocatedHosts.set(modelVersion.getModel().allocatedHosts()); // Update with additional clusters allocated
+            allApplicationVersions.add(modelVersion);
+        }
         // TODO: We use the allocated hosts from the newest version when building older model versions.
         // This is correct except for the case where an old model specifies a cluster which the new version
         // does not. In that case we really want to extend the set of allocated hosts to include those of that
         // cluster as well. To do that, create a new provisioner which uses static provisioning for known
         // clusters and the node repository provisioner as fallback.
-        for (Version version : versions) {
-            if (latest.isPresent() && version.equals(latest.get())) continue; // already loaded
-
-            MODELRESULT modelVersion = buildModelVersion(modelFactoryRegistry.getFactory(version),
-                                                         applicationPackage,
-                                                         applicationId,
-                                                         wantedNodeVespaVersion,
-                                                         allocatedHosts.asOptional(),
-                                                         now);
+        for (MODELRESULT modelVersion : buildModelVersionsInParallel(oldVersions,
+                                                                     applicationPackage,
+                                                                     applicationId,
+                                                                     wantedNodeVespaVersion,
+                                                                     allocatedHosts.asOptional(),
+                                                                     now)) {
             allocatedHosts.set(modelVersion.getModel().allocatedHosts()); // Update with additional clusters allocated
             allApplicationVersions.add(modelVersion);
         }
         return allApplicationVersions;
     }
 
+    /**
+     * Builds the given model versions, which are independent of each other, in parallel when there are several,
+     * and returns the results in the order of the given versions.
+     */
+    private List<MODELRESULT> buildModelVersionsInParallel(List<Version> versions,
+                                                           ApplicationPackage applicationPackage,
+                                                           ApplicationId applicationId,
+                                                           Version wantedNodeVespaVersion,
+                                                           Optional<AllocatedHosts> allocatedHosts,
+                                                           Instant now) {
+        int threads = Math.min(versions.size(), configserverConfig.numParallelModelBuilders());
+        if (threads <= 1)
+            return versions.stream()
+                           .map(version -> timedBuildModelVersion(version, applicationPackage, applicationId,
+                                                                  wantedNodeVespaVersion, allocatedHosts, now))
+                           .collect(Collectors.toList());
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("build models for " + applicationId));
+        try {
+            List<Future<MODELRESULT>> futures = new ArrayList<>();
+            for (Version version : versions)
+                futures.add(executor.submit(() -> timedBuildModelVersion(version, applicationPackage, applicationId,
+                                                                         wantedNodeVespaVersion, allocatedHosts, now)));
+            List<MODELRESULT> results = new ArrayList<>();
+            for (Future<MODELRESULT> future : futures)
+                results.add(getResult(future, applicationId));
+            return results;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private MODELRESULT getResult(Future<MODELRESULT> future, ApplicationId applicationId) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(applicationId + ": Interrupted while building models", e);
+        }
+        catch (ExecutionException e) {
+            // Rethrow as it is, so errors are handled the same way as when building in this thread
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private MODELRESULT timedBuildModelVersion(Version version,
+                                               ApplicationPackage applicationPackage,
+                                               ApplicationId applicationId,
+                                               Version wantedNodeVespaVersion,
+                                               Optional<AllocatedHosts> allocatedHosts,
+                                               Instant now) {
+        long startNanos = System.nanoTime();
+        MODELRESULT result = buildModelVersion(modelFactoryRegistry.getFactory(version),
+                                               applicationPackage,
+                                               applicationId,
+                                               wantedNodeVespaVersion,
+                                               allocatedHosts,
+                                               now);
+        Duration buildTime = Duration.ofNanos(System.nanoTime() - startNanos);
+        metrics.setModelBuildTime(applicationId, phase, version, buildTime.toMillis());
+        log.log(LogLevel.DEBUG, () -> "Built model " + version + " for " + applicationId + " in " + buildTime);
+        return result;
+    }
+
     private Set<Version> versionsToBuild(Set<Version> versions, Version wantedVersion, int majorVersion, AllocatedHosts allocatedHosts) {
         if (configserverConfig.buildMinimalSetOfConfigModels())
             versions = keepThoseUsedOn(allocatedHosts, versions);
@@ -228,6 +330,10 @@ public abstract class ModelsBuilder<MODELRESULT extends ModelResult> {
                                .anyMatch(host -> host.version().isPresent() && host.version().get().equals(version));
     }
 
+    /**
+     * Builds the model of the version of the given model factory. This may be called from several threads at once,
+     * for different versions.
+     */
     protected abstract MODELRESULT buildModelVersion(ModelFactory modelFactory, ApplicationPackage applicationPackage,
                                                      ApplicationId applicationId, 
                                                      Version wantedNodeVespaVersion,
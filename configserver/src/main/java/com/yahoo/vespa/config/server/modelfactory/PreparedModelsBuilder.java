@@ -24,6 +24,7 @@ import com.yahoo.vespa.config.server.host.HostValidator;
 import com.yahoo.vespa.config.server.application.PermanentApplicationPackage;
 import com.yahoo.vespa.config.server.deploy.ModelContextImpl;
 import com.yahoo.vespa.config.server.filedistribution.FileDistributionProvider;
+import com.yahoo.vespa.config.server.monitoring.Metrics;
 import com.yahoo.vespa.config.server.provision.HostProvisionerProvider;
 import com.yahoo.vespa.config.server.provision.StaticProvisioner;
 import com.yahoo.vespa.config.server.session.FileDistributionFactory;
@@ -33,8 +34,12 @@ import com.yahoo.vespa.config.server.session.SessionContext;
 import java.io.File;
 import java.io.IOException;
 import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -64,8 +69,9 @@ public class PreparedModelsBuilder extends ModelsBuilder<PreparedModelsBuilder.P
                                  PrepareParams params,
                                  Optional<ApplicationSet> currentActiveApplicationSet,
                                  ModelContext.Properties properties,
-                                 ConfigserverConfig configserverConfig) {
-        super(modelFactoryRegistry, configserverConfig, properties.zone(), hostProvisionerProvider);
+                                 ConfigserverConfig configserverConfig,
+                                 Metrics metrics) {
+        super(modelFactoryRegistry, configserverConfig, properties.zone(), hostProvisionerProvider, metrics, "prepare");
         this.permanentApplicationPackage = permanentApplicationPackage;
         this.configDefinitionRepo = configDefinitionRepo;
 
@@ -89,7 +95,24 @@ public class PreparedModelsBuilder extends ModelsBuilder<PreparedModelsBuilder.P
         Version modelVersion = modelFactory.version();
         log.log(LogLevel.DEBUG, "Building model " + modelVersion + " for " + applicationId);
         FileDistributionProvider fileDistributionProvider = fileDistributionFactory.createProvider(context.getServerDBSessionDir());
+        VersionDeployLogger versionLogger = new VersionDeployLogger(logger);
+        try {
+            return buildModel(modelFactory, applicationPackage, applicationId, wantedNodeVespaVersion,
+                              allocatedHosts, modelVersion, fileDistributionProvider, versionLogger);
+        }
+        finally {
+            versionLogger.flush();
+        }
+    }
 
+    private PreparedModelResult buildModel(ModelFactory modelFactory,
+                                           ApplicationPackage applicationPackage,
+                                           ApplicationId applicationId,
+                                           Version wantedNodeVespaVersion,
+                                           Optional<AllocatedHosts> allocatedHosts,
+                                           Version modelVersion,
+                                           FileDistributionProvider fileDistributionProvider,
+                                           DeployLogger logger) {
         // Use empty on non-hosted systems, use already allocated hosts if available, create connection to a host provisioner otherwise
         ModelContext modelContext = new ModelContextImpl(
                 applicationPackage,
@@ -147,6 +170,37 @@ public class PreparedModelsBuilder extends ModelsBuilder<PreparedModelsBuilder.P
                 .collect(Collectors.toList()));
     }
 
+    /**
+     * A deploy logger for the build of one model version, which holds on to its messages until the build is done,
+     * and then passes them all on to the logger of this deployment. As versions may be built in parallel, this
+     * keeps the messages of each version together, and the deployment logger from being used by several threads.
+     */
+    private static class VersionDeployLogger implements DeployLogger {
+
+        private final DeployLogger deployLogger;
+        private List<Map.Entry<Level, String>> messages = new ArrayList<>();
+
+        VersionDeployLogger(DeployLogger deployLogger) {
+            this.deployLogger = deployLogger;
+        }
+
+        @Override
+        public synchronized void log(Level level, String message) {
+            if (messages != null)
+                messages.add(new AbstractMap.SimpleImmutableEntry<>(level, message));
+            else // The model may log after it is built
+                synchronized (deployLogger) { deployLogger.log(level, message); }
+        }
+
+        synchronized void flush() {
+            synchronized (deployLogger) {
+                messages.forEach(message -> deployLogger.log(message.getKey(), message.getValue()));
+            }
+            messages = null;
+        }
+
+    }
+
     /** The result of preparing a single model version */
     public static class PreparedModelResult implements ModelResult {
 
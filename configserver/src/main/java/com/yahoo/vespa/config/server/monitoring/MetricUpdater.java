@@ -54,6 +54,10 @@ public class MetricUpdater {
         metrics.incrementFailedRequests(metricContext);
     }
 
+    public void incrementCoalescedRequests() {
+        metrics.incrementCoalescedRequests(metricContext);
+    }
+
     public void incrementProcTime(long increment) {
         metrics.incrementProcTime(increment, metricContext);
     }
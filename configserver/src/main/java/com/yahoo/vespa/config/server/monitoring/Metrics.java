@@ -3,6 +3,7 @@ package com.yahoo.vespa.config.server.monitoring;
 
 import com.google.inject.Inject;
 import com.yahoo.cloud.config.ZookeeperServerConfig;
+import com.yahoo.component.Version;
 import com.yahoo.config.provision.ApplicationId;
 import com.yahoo.config.provision.TenantName;
 import com.yahoo.container.jdisc.config.HealthMonitorConfig;
@@ -26,8 +27,11 @@ public class Metrics extends TimerTask implements MetricUpdaterFactory {
     private static final java.util.logging.Logger log = java.util.logging.Logger.getLogger(Metrics.class.getName());
     private static final String METRIC_REQUESTS = getMetricName("requests");
     private static final String METRIC_FAILED_REQUESTS = getMetricName("failedRequests");
+    private static final String METRIC_COALESCED_REQUESTS = getMetricName("coalescedRequests");
     private static final String METRIC_FREE_MEMORY = getMetricName("freeMemory");
     private static final String METRIC_LATENCY = getMetricName("latency");
+    private static final String METRIC_MODEL_BUILD_TIME = getMetricName("modelBuildTime");
+    private static final String METRIC_MODELS_BUILD_TIME = getMetricName("modelsBuildTime");
 
     private final Counter requests;
     private final Counter failedRequests;
@@ -76,11 +80,40 @@ public class Metrics extends TimerTask implements MetricUpdaterFactory {
         metric.add(METRIC_FAILED_REQUESTS, 1, metricContext);
     }
 
+    /** Increments the number of requests which were answered by the resolution of an identical, concurrent request */
+    void incrementCoalescedRequests(Metric.Context metricContext) {
+        metric.add(METRIC_COALESCED_REQUESTS, 1, metricContext);
+    }
+
     void incrementProcTime(long increment, Metric.Context metricContext) {
         procTimeCounter.increment(increment);
         metric.set(METRIC_LATENCY, increment, metricContext);
     }
 
+    /**
+     * Sets the time used to build the model of one version of an application
+     *
+     * @param phase the deployment phase building the model, prepare or activate
+     */
+    public void setModelBuildTime(ApplicationId applicationId, String phase, Version version, long millis) {
+        Map<String, String> dimensions = createDimensions(applicationId);
+        dimensions.put("phase", phase);
+        dimensions.put("vespaVersion", version.toFullString());
+        metric.set(METRIC_MODEL_BUILD_TIME, millis, metric.createContext(dimensions));
+    }
+
+    /**
+     * Sets the wall clock time used to build the models of all versions of an application, which are built
+     * in parallel, such that this is less than the sum of the model build times when several versions are built
+     *
+     * @param phase the deployment phase building the models, prepare or activate
+     */
+    public void setModelsBuildTime(ApplicationId applicationId, String phase, long millis) {
+        Map<String, String> dimensions = createDimensions(applicationId);
+        dimensions.put("phase", phase);
+        metric.set(METRIC_MODELS_BUILD_TIME, millis, metric.createContext(dimensions));
+    }
+
     public long getRequests() {
         return requests.get();
     }
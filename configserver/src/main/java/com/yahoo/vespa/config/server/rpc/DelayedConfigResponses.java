@@ -5,6 +5,7 @@ import com.yahoo.concurrent.ThreadFactoryFactory;
 import com.yahoo.jrt.Target;
 import com.yahoo.jrt.TargetWatcher;
 import com.yahoo.log.LogLevel;
+import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 import com.yahoo.vespa.config.server.GetConfigContext;
 import com.yahoo.vespa.config.server.monitoring.MetricUpdater;
@@ -12,38 +13,45 @@ import com.yahoo.vespa.config.server.monitoring.Metrics;
 import com.yahoo.config.provision.ApplicationId;
 import com.yahoo.vespa.config.server.tenant.TenantRepository;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
  * Takes care of <i>delayed responses</i> in the config server.
  * A delayed response is a response sent at request (server) timeout
  * for a config which has not changed since the request was initiated.
+ * <p>
+ * Delayed responses are kept by application and config key, such that a reload of one application, or a request
+ * which missed a reload, only visits the responses it concerns, and such that removing a response is cheap.
+ * Their timeouts are kept in a {@link HashedWheelTimer}, as there may be one for every config subscription
+ * of every node of the system.
  *
  * @author hmusum
  */
 public class DelayedConfigResponses {
     private static final Logger log = Logger.getLogger(DelayedConfigResponses.class.getName());
+    private static final Duration timerTick = Duration.ofMillis(100);
+    private static final int timerWheelSize = 512;
+
     private final RpcServer rpcServer;
 
-    private final ScheduledExecutorService executorService;
+    private final ExecutorService executorService;
+    private final HashedWheelTimer timer;
     private final boolean useJrtWatcher;
 
     private Map<ApplicationId, MetricUpdater> metrics = new ConcurrentHashMap<>();
     
-    /* Requests that resolve to config that has not changed are put on this queue. When reloading
-       config, all requests on this queue are reprocessed as if they were a new request */
-    private final Map<ApplicationId, BlockingQueue<DelayedConfigResponse>> delayedResponses =
-            new ConcurrentHashMap<>();
+    /* Requests that resolve to config that has not changed are kept here. When reloading
+       config, all requests kept for the application are reprocessed as if they were a new request */
+    private final Map<ApplicationId, ApplicationResponses> delayedResponses = new ConcurrentHashMap<>();
             
     DelayedConfigResponses(RpcServer rpcServer, int numTimerThreads) {
         this(rpcServer, numTimerThreads, true);
@@ -52,34 +60,38 @@ public class DelayedConfigResponses {
     // Since JRT does not allow adding watcher for "fake" requests, we must be able to disable it for unit tests :(
     DelayedConfigResponses(RpcServer rpcServer, int numTimerThreads, boolean useJrtWatcher) {
         this.rpcServer = rpcServer;
-        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(numTimerThreads, ThreadFactoryFactory.getThreadFactory(DelayedConfigResponses.class.getName()));
-        executor.setRemoveOnCancelPolicy(true);
-        this.executorService = executor;
+        this.executorService = Executors.newFixedThreadPool(numTimerThreads, ThreadFactoryFactory.getThreadFactory(DelayedConfigResponses.class.getName()));
+        this.timer = new HashedWheelTimer(timerTick, timerWheelSize,
+                                          ThreadFactoryFactory.getDaemonThreadFactory(DelayedConfigResponses.class.getName() + ".timer"),
+                                          executorService);
         this.useJrtWatcher = useJrtWatcher;
     }
 
     List<DelayedConfigResponse> allDelayedResponses() {
         List<DelayedConfigResponse> responses = new ArrayList<>();
-        for (Map.Entry<ApplicationId, BlockingQueue<DelayedConfigResponse>> entry : delayedResponses.entrySet()) {
-            responses.addAll(entry.getValue());
+        for (ApplicationResponses applicationResponses : delayedResponses.values()) {
+            for (Set<DelayedConfigResponse> keyResponses : applicationResponses.byKey.values())
+                responses.addAll(keyResponses);
         }
         return responses;
     }
 
     /**
-     * The run method of this class is run by a Timer when the timeout expires.
+     * The run method of this class is run by the timer when the timeout expires.
      * The timer associated with this response must be cancelled first.
      */
     class DelayedConfigResponse implements Runnable, TargetWatcher {
 
         final JRTServerConfigRequest request;
-        private final BlockingQueue<DelayedConfigResponse> delayedResponsesQueue;
+        private final ConfigKey<?> configKey;
+        private final ApplicationResponses applicationResponses;
         private final ApplicationId app;
-        private ScheduledFuture<?> future;
+        private HashedWheelTimer.Timeout timeout;
 
-        DelayedConfigResponse(JRTServerConfigRequest req, BlockingQueue<DelayedConfigResponse> delayedResponsesQueue, ApplicationId app) {
+        DelayedConfigResponse(JRTServerConfigRequest req, ApplicationResponses applicationResponses, ApplicationId app) {
             this.request = req;
-            this.delayedResponsesQueue = delayedResponsesQueue;
+            this.configKey = req.getConfigKey();
+            this.applicationResponses = applicationResponses;
             this.app = app;
         }
 
@@ -97,7 +109,7 @@ public class DelayedConfigResponses {
          * Remove delayed response from its queue
          */
         private void removeFromQueue() {
-            delayedResponsesQueue.remove(this);
+            applicationResponses.remove(this);
         }
 
         JRTServerConfigRequest getRequest() {
@@ -122,15 +134,15 @@ public class DelayedConfigResponses {
 
         synchronized boolean cancel() {
             removeWatcher();
-            if (future == null) {
+            if (timeout == null) {
                 throw new IllegalStateException("Cannot cancel a task that has not been scheduled");
             }
-            return future.cancel(false);
+            return timeout.cancel();
         }
 
-        synchronized void schedule(long delay) throws InterruptedException {
-            delayedResponsesQueue.put(this);
-            future = executorService.schedule(this, delay, TimeUnit.MILLISECONDS);
+        synchronized void schedule(long delay) {
+            applicationResponses.add(this);
+            timeout = timer.schedule(this, delay);
             addWatcher();
         }
 
@@ -158,6 +170,48 @@ public class DelayedConfigResponses {
         }
     }
 
+    /**
+     * The delayed responses of an application, by config key. A set of responses is only modified while its map
+     * entry is locked, so the set returned when removing the entry holds all responses for that key at that time.
+     */
+    static class ApplicationResponses {
+
+        private final Map<ConfigKey<?>, Set<DelayedConfigResponse>> byKey = new ConcurrentHashMap<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        void add(DelayedConfigResponse response) {
+            byKey.compute(response.configKey, (key, responses) -> {
+                if (responses == null) responses = ConcurrentHashMap.newKeySet();
+                if (responses.add(response)) size.incrementAndGet();
+                return responses;
+            });
+        }
+
+        void remove(DelayedConfigResponse response) {
+            byKey.computeIfPresent(response.configKey, (key, responses) -> {
+                if (responses.remove(response)) size.decrementAndGet();
+                return responses.isEmpty() ? null : responses;
+            });
+        }
+
+        /** Removes and adds to the given list all responses for the given key */
+        void drain(ConfigKey<?> key, List<DelayedConfigResponse> drained) {
+            Set<DelayedConfigResponse> responses = byKey.remove(key);
+            if (responses == null) return;
+            size.addAndGet(-responses.size());
+            drained.addAll(responses);
+        }
+
+        /** Removes and adds to the given list all responses, with the responses for each config key together */
+        void drainAll(List<DelayedConfigResponse> drained) {
+            for (ConfigKey<?> key : byKey.keySet())
+                drain(key, drained);
+        }
+
+        int size() { return size.get(); }
+
+    }
+
     /**
      * Creates a DelayedConfigResponse object for taking care of requests that should
      * not be responded to right away.  Puts the object on the delayedResponsesQueue.
@@ -171,58 +225,59 @@ public class DelayedConfigResponses {
         if (request.isDelayedResponse()) {
             log.log(LogLevel.DEBUG, context.logPre()+"Request already delayed");
         } else {            
-            createQueueIfNotExists(context);
-            BlockingQueue<DelayedConfigResponse> delayedResponsesQueue = delayedResponses.get(context.applicationId());
-            DelayedConfigResponse response = new DelayedConfigResponse(request, delayedResponsesQueue, context.applicationId());
+            ApplicationResponses applicationResponses = delayedResponses.computeIfAbsent(context.applicationId(), __ -> new ApplicationResponses());
+            DelayedConfigResponse response = new DelayedConfigResponse(request, applicationResponses, context.applicationId());
             request.setDelayedResponse(true);
-            try {
-                if (log.isLoggable(LogLevel.DEBUG)) {
-                    log.log(LogLevel.DEBUG, context.logPre()+"Putting on delayedRequests queue (" + delayedResponsesQueue.size() + " elements): " +
-                            response.getRequest().getShortDescription());
-                }
-                // Config will be resolved in the run() method of DelayedConfigResponse,
-                // when the timer expires or config is updated/reloaded.
-                response.schedule(Math.max(0, request.getTimeout()));
-                metricDelayedResponses(context.applicationId(), delayedResponsesQueue.size());
-            } catch (InterruptedException e) {
-                log.log(LogLevel.WARNING, context.logPre()+"Interrupted when putting on delayed requests queue.");
+            if (log.isLoggable(LogLevel.DEBUG)) {
+                log.log(LogLevel.DEBUG, context.logPre()+"Putting on delayedRequests queue (" + applicationResponses.size() + " elements): " +
+                        response.getRequest().getShortDescription());
             }
+            // Config will be resolved in the run() method of DelayedConfigResponse,
+            // when the timer expires or config is updated/reloaded.
+            response.schedule(Math.max(0, request.getTimeout()));
+            metricDelayedResponses(context.applicationId(), applicationResponses.size());
         }
     }
 
-    private synchronized void metricDelayedResponses(ApplicationId app, int elems) {
-        if ( ! metrics.containsKey(app)) {
-            metrics.put(app, rpcServer.metricUpdaterFactory().getOrCreateMetricUpdater(Metrics.createDimensions(app)));
-        }
-        metrics.get(app).setDelayedResponses(elems);
-    }
-
-    private synchronized void createQueueIfNotExists(GetConfigContext context) {
-        if ( ! delayedResponses.containsKey(context.applicationId())) {
-            delayedResponses.put(context.applicationId(), new LinkedBlockingQueue<>());
-        }
+    private void metricDelayedResponses(ApplicationId app, int elems) {
+        metrics.computeIfAbsent(app, __ -> rpcServer.metricUpdaterFactory().getOrCreateMetricUpdater(Metrics.createDimensions(app)))
+               .setDelayedResponses(elems);
     }
 
     void stop() {
+        timer.stop();
         executorService.shutdown();
     }
 
     /**
-     * Drains delayed responses queue and returns responses in an array
+     * Removes and returns all delayed responses for the given application
      *
-     * @return and array of DelayedConfigResponse objects
+     * @return a list of DelayedConfigResponse objects, with the responses for each config key together
      */
     List<DelayedConfigResponse> drainQueue(ApplicationId app) {
         ArrayList<DelayedConfigResponse> ret = new ArrayList<>();
-        
-        if (delayedResponses.containsKey(app)) {
-            BlockingQueue<DelayedConfigResponse> queue = delayedResponses.get(app);
-            queue.drainTo(ret);
+        ApplicationResponses applicationResponses = delayedResponses.get(app);
+        if (applicationResponses != null) {
+            applicationResponses.drainAll(ret);
         }
         metrics.remove(app);
         return ret;
     }
 
+    /**
+     * Removes and returns the delayed responses for the given config key of the given application
+     *
+     * @return a list of DelayedConfigResponse objects
+     */
+    List<DelayedConfigResponse> drainQueue(ApplicationId app, ConfigKey<?> key) {
+        ArrayList<DelayedConfigResponse> ret = new ArrayList<>();
+        ApplicationResponses applicationResponses = delayedResponses.get(app);
+        if (applicationResponses != null) {
+            applicationResponses.drain(key, ret);
+        }
+        return ret;
+    }
+
     @Override
     public String toString() {
         return "DelayedConfigResponses. Average Size=" + size();
@@ -231,9 +286,9 @@ public class DelayedConfigResponses {
     int size() {
         int totalQueueSize = 0;
         int numQueues = 0;
-        for (Map.Entry<ApplicationId, BlockingQueue<DelayedConfigResponse>> e : delayedResponses.entrySet()) {
+        for (ApplicationResponses applicationResponses : delayedResponses.values()) {
             numQueues++;
-            totalQueueSize+=e.getValue().size();
+            totalQueueSize += applicationResponses.size();
         }
         return (numQueues > 0) ? (totalQueueSize / numQueues) : 0;
     }
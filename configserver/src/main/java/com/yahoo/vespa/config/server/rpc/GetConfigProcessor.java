@@ -149,7 +149,7 @@ class GetConfigProcessor implements Runnable {
             if (rpcServer.hasNewerGeneration(delayed.getFirst().applicationId(), delayed.getSecond())) {
                 // This will ensure that if the reload train left the station while I was boarding, another train will
                 // immediately be scheduled.
-                rpcServer.configReloaded(delayed.getFirst().applicationId());
+                rpcServer.configReloaded(delayed.getFirst().applicationId(), request.getConfigKey());
             }
         }
     }
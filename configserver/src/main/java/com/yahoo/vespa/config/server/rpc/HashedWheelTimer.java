@@ -0,0 +1,155 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.rpc;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A timer for a large number of timeouts which are mostly cancelled before they expire, like those of
+ * the long-polling config requests which wait for config to change.
+ * <p>
+ * Timeouts are hashed by their deadline into the buckets of a wheel, which one thread advances one bucket per tick,
+ * expiring the timeouts in that bucket which are due in the current round of the wheel. Scheduling and cancelling
+ * are O(1), while a priority queue, as used by a {@link java.util.concurrent.ScheduledThreadPoolExecutor}, has
+ * O(log n) scheduling and cancellation which contend for a single lock. Cancelled timeouts are removed when their
+ * bucket is next visited, and timeouts expire up to one tick late, but never early.
+ * <p>
+ * The tasks of expired timeouts are run by the given executor.
+ */
+class HashedWheelTimer {
+
+    private static final Logger log = Logger.getLogger(HashedWheelTimer.class.getName());
+
+    private final long tickNanos;
+    private final List<List<Timeout>> wheel;
+    private final int mask;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Executor executor;
+    private final long startNanos = System.nanoTime();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * Creates and starts a timer
+     *
+     * @param tick the duration of a tick, which is the precision of the timer
+     * @param wheelSize the number of buckets in the wheel, rounded up to a power of 2
+     * @param threadFactory the factory of the thread advancing the wheel
+     * @param executor the executor running the tasks of expired timeouts
+     */
+    HashedWheelTimer(Duration tick, int wheelSize, ThreadFactory threadFactory, Executor executor) {
+        if (tick.toNanos() <= 0) throw new IllegalArgumentException("Tick must be positive, but was " + tick);
+        if (wheelSize <= 0) throw new IllegalArgumentException("Wheel size must be positive, but was " + wheelSize);
+        this.tickNanos = tick.toNanos();
+        int buckets = Integer.highestOneBit(wheelSize - 1) << 1;
+        if (buckets == 0) buckets = 1;
+        this.wheel = new ArrayList<>(buckets);
+        for (int i = 0; i < buckets; i++)
+            wheel.add(new ArrayList<>());
+        this.mask = buckets - 1;
+        this.executor = executor;
+        this.worker = threadFactory.newThread(this::run);
+        worker.start();
+    }
+
+    /** Schedules the given task to run when the given number of milliseconds have passed, unless cancelled first */
+    Timeout schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)));
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /** Stops this timer. Timeouts which have not yet expired never will. */
+    void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            try {
+                long sleepNanos = (tick + 1) * tickNanos - (System.nanoTime() - startNanos);
+                if (sleepNanos > 0)
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                continue; // Stopped, unless the interrupt came from elsewhere
+            }
+            addScheduled(tick);
+            expire(wheel.get((int) (tick & mask)));
+            tick++;
+        }
+    }
+
+    /** Hashes the timeouts scheduled since the last tick into the buckets of their deadlines */
+    private void addScheduled(long currentTick) {
+        for (Timeout timeout; (timeout = scheduled.poll()) != null; ) {
+            if (timeout.isCancelled()) continue;
+            long deadlineTick = Math.max(currentTick, timeout.deadlineNanos / tickNanos);
+            timeout.remainingRounds = (deadlineTick - currentTick) / wheel.size();
+            wheel.get((int) (deadlineTick & mask)).add(timeout);
+        }
+    }
+
+    /** Expires the timeouts in the given bucket which are due in this round, and removes cancelled ones */
+    private void expire(List<Timeout> bucket) {
+        int kept = 0;
+        for (Timeout timeout : bucket) {
+            if (timeout.isCancelled()) continue;
+            if (timeout.remainingRounds-- > 0) {
+                bucket.set(kept++, timeout);
+                continue;
+            }
+            Runnable task = timeout.expire();
+            if (task == null) continue;
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                log.log(Level.FINE, "Not running task of expired timeout, as the executor is shut down");
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+    }
+
+    /** A scheduled task, which may be cancelled until it expires */
+    static class Timeout {
+
+        private static final int pending = 0, cancelled = 1, expired = 2;
+
+        private final AtomicInteger state = new AtomicInteger(pending);
+        private final long deadlineNanos;
+        private volatile Runnable task;
+        private long remainingRounds; // Only accessed by the timer thread
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /** Cancels this, and returns whether it was cancelled before it expired */
+        boolean cancel() {
+            if ( ! state.compareAndSet(pending, cancelled)) return false;
+            task = null; // Let go of the task, as this stays in the wheel until its bucket is visited
+            return true;
+        }
+
+        boolean isCancelled() { return state.get() == cancelled; }
+
+        /** Returns the task to run if this expired now, or null if it was cancelled */
+        private Runnable expire() {
+            return state.compareAndSet(pending, expired) ? task : null;
+        }
+
+    }
+
+}
@@ -22,11 +22,13 @@ import com.yahoo.jrt.Supervisor;
 import com.yahoo.jrt.Target;
 import com.yahoo.jrt.Transport;
 import com.yahoo.log.LogLevel;
+import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.vespa.config.ErrorCode;
 import com.yahoo.vespa.config.JRTMethods;
 import com.yahoo.vespa.config.protocol.ConfigResponse;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequestV3;
+import com.yahoo.vespa.config.protocol.PayloadDeltas;
 import com.yahoo.vespa.config.protocol.Trace;
 import com.yahoo.vespa.config.server.GetConfigContext;
 import com.yahoo.vespa.config.server.ReloadListener;
@@ -91,6 +93,7 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
     private static final Logger log = Logger.getLogger(RpcServer.class.getName());
 
     private final DelayedConfigResponses delayedConfigResponses;
+    private final PayloadDeltas payloadDeltas = new PayloadDeltas();
 
     private final HostRegistry<TenantName> hostRegistry;
     private final Map<TenantName, TenantHandlerProvider> tenantProviders = new ConcurrentHashMap<>();
@@ -159,7 +162,7 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
         }
         req.detach();
         rpcAuthorizer.authorizeConfigRequest(req)
-                .thenRun(() -> addToRequestQueue(JRTServerConfigRequestV3.createFromRequest(req)));
+                .thenRun(() -> addToRequestQueue(JRTServerConfigRequestV3.createFromRequest(req, payloadDeltas)));
     }
 
     /**
@@ -257,15 +260,25 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
     }
 
     void configReloaded(ApplicationId applicationId) {
-        List<DelayedConfigResponses.DelayedConfigResponse> responses = delayedConfigResponses.drainQueue(applicationId);
+        respondDelayed(applicationId, delayedConfigResponses.drainQueue(applicationId));
+    }
+
+    /**
+     * Checks the delayed responses for the given config key for config changes, and waits until all have been answered.
+     * This is used for a request which may have been delayed after a config reload drained the delayed responses.
+     */
+    void configReloaded(ApplicationId applicationId, ConfigKey<?> configKey) {
+        respondDelayed(applicationId, delayedConfigResponses.drainQueue(applicationId, configKey));
+    }
+
+    private void respondDelayed(ApplicationId applicationId, List<DelayedConfigResponses.DelayedConfigResponse> responses) {
         String logPre = TenantRepository.logPre(applicationId);
         if (log.isLoggable(LogLevel.DEBUG)) {
             log.log(LogLevel.DEBUG, logPre + "Start of configReload: " + responses.size() + " requests on delayed requests queue");
         }
         int responsesSent = 0;
         CompletionService<Boolean> completionService = new ExecutorCompletionService<>(executorService);
-        while (!responses.isEmpty()) {
-            DelayedConfigResponses.DelayedConfigResponse delayedConfigResponse = responses.remove(0);
+        for (DelayedConfigResponses.DelayedConfigResponse delayedConfigResponse : responses) {
             // Discard the ones that we have already answered
             // Doing cancel here deals with the case where the timer is already running or has not run, so
             // there is no need for any extra check.
@@ -32,6 +32,7 @@ import com.yahoo.vespa.config.server.deploy.ZooKeeperDeployer;
 import com.yahoo.vespa.config.server.http.InvalidApplicationException;
 import com.yahoo.vespa.config.server.modelfactory.ModelFactoryRegistry;
 import com.yahoo.vespa.config.server.modelfactory.PreparedModelsBuilder;
+import com.yahoo.vespa.config.server.monitoring.Metrics;
 import com.yahoo.vespa.config.server.provision.HostProvisionerProvider;
 import com.yahoo.config.model.api.ContainerEndpoint;
 import com.yahoo.vespa.config.server.tenant.ContainerEndpointsCache;
@@ -73,6 +74,7 @@ public class SessionPreparer {
     private final Zone zone;
     private final FlagSource flagSource;
     private final SecretStore secretStore;
+    private final Metrics metrics;
 
     @Inject
     public SessionPreparer(ModelFactoryRegistry modelFactoryRegistry,
@@ -84,7 +86,8 @@ public class SessionPreparer {
                            Curator curator,
                            Zone zone,
                            FlagSource flagSource,
-                           SecretStore secretStore) {
+                           SecretStore secretStore,
+                           Metrics metrics) {
         this.modelFactoryRegistry = modelFactoryRegistry;
         this.fileDistributionFactory = fileDistributionFactory;
         this.hostProvisionerProvider = hostProvisionerProvider;
@@ -95,6 +98,7 @@ public class SessionPreparer {
         this.zone = zone;
         this.flagSource = flagSource;
         this.secretStore = secretStore;
+        this.metrics = metrics;
     }
 
     /**
@@ -202,7 +206,8 @@ public class SessionPreparer {
                                                                    params,
                                                                    currentActiveApplicationSet,
                                                                    properties,
-                                                                   configserverConfig);
+                                                                   configserverConfig,
+                                                                   metrics);
         }
 
         void checkTimeout(String step) {
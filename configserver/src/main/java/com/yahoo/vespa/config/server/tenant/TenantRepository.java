@@ -74,6 +74,7 @@ public class TenantRepository {
 
     private final MetricUpdater metricUpdater;
     private final ExecutorService zkCacheExecutor;
+    private final ExecutorService configPrecomputeExecutor;
     private final StripedExecutor<TenantName> zkWatcherExecutor;
     private final ExecutorService bootstrapExecutor;
     private final ScheduledExecutorService checkForRemovedApplicationsService = new ScheduledThreadPoolExecutor(1);
@@ -106,6 +107,7 @@ public class TenantRepository {
         metricUpdater = globalComponentRegistry.getMetrics().getOrCreateMetricUpdater(Collections.emptyMap());
         this.tenantListeners.add(globalComponentRegistry.getTenantListener());
         this.zkCacheExecutor = globalComponentRegistry.getZkCacheExecutor();
+        this.configPrecomputeExecutor = globalComponentRegistry.getConfigPrecomputeExecutor();
         this.zkWatcherExecutor = globalComponentRegistry.getZkWatcherExecutor();
         curator.framework().getConnectionStateListenable().addListener(this::stateChanged);
 
@@ -360,6 +362,7 @@ public class TenantRepository {
         directoryCache.ifPresent(Curator.DirectoryCache::close);
         try {
             zkCacheExecutor.shutdown();
+            configPrecomputeExecutor.shutdownNow();
             checkForRemovedApplicationsService.shutdown();
             zkWatcherExecutor.shutdownAndWait();
             zkCacheExecutor.awaitTermination(50, TimeUnit.SECONDS);
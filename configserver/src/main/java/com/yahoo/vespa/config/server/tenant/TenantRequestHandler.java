@@ -30,6 +30,8 @@ import com.yahoo.vespa.curator.Curator;
 import com.yahoo.vespa.curator.Lock;
 
 import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -48,6 +50,7 @@ import static java.util.stream.Collectors.toSet;
 public class TenantRequestHandler implements RequestHandler, ReloadHandler, HostValidator<ApplicationId> {
 
     private static final java.util.logging.Logger log = java.util.logging.Logger.getLogger(TenantRequestHandler.class.getName());
+    private static final Duration configPrecomputeTimeout = Duration.ofSeconds(10);
 
     private final Metrics metrics;
     private final TenantName tenant;
@@ -56,7 +59,8 @@ public class TenantRequestHandler implements RequestHandler, ReloadHandler, Host
     private final HostRegistry<ApplicationId> hostRegistry;
     private final ApplicationMapper applicationMapper = new ApplicationMapper();
     private final MetricUpdater tenantMetricUpdater;
-    private final Clock clock = Clock.systemUTC();
+    private final Clock clock;
+    private final ExecutorService configPrecomputeExecutor;
     private final TenantApplications applications;
 
     public TenantRequestHandler(Metrics metrics,
@@ -70,6 +74,8 @@ public class TenantRequestHandler implements RequestHandler, ReloadHandler, Host
         this.responseFactory = responseFactory;
         this.tenantMetricUpdater = metrics.getOrCreateMetricUpdater(Metrics.createDimensions(tenant));
         this.hostRegistry = registry.getHostRegistries().createApplicationHostRegistry(tenant);
+        this.clock = registry.getClock();
+        this.configPrecomputeExecutor = registry.getConfigPrecomputeExecutor();
         this.applications = TenantApplications.create(registry, this, tenant);
 
     }
@@ -100,22 +106,43 @@ public class TenantRequestHandler implements RequestHandler, ReloadHandler, Host
     }
 
     /**
-     * Activates the config of the given app. Notifies listeners
+     * Activates the config of the given app. Notifies listeners, and then warms the config cache of the app
+     * in the background.
      *
      * @param applicationSet the {@link ApplicationSet} to be reloaded
      */
     @Override
     public void reloadConfig(ApplicationSet applicationSet) {
         ApplicationId id = applicationSet.getId();
+        Optional<ApplicationSet> previous;
         try (Lock lock = applications.lock(id)) {
             if ( ! applications.exists(id))
                 return; // Application was deleted before activation.
             if (applicationSet.getApplicationGeneration() != applications.requireActiveSessionOf(id))
                 return; // Application activated a new session before we got here.
 
+            previous = applicationMapper.get(id);
             setLiveApp(applicationSet);
             notifyReloadListeners(applicationSet);
         }
+        previous.ifPresent(previousSet -> precomputeConfigs(applicationSet, previousSet));
+    }
+
+    /**
+     * Resolves, in the background, the configs requested from the previous generation of the given application
+     * in the new one, so most of the clients which all ask for it at once are served from the cache. Clients asking
+     * for a config which is being resolved wait for that, instead of resolving it too. Warming stops at the timeout,
+     * or when a newer generation is activated, and the parts of it which do not fit in the executor are skipped.
+     */
+    private void precomputeConfigs(ApplicationSet applicationSet, ApplicationSet previous) {
+        Instant start = clock.instant();
+        Instant deadline = start.plus(configPrecomputeTimeout);
+        applicationSet.precomputeConfigs(previous, responseFactory, configPrecomputeExecutor,
+                                         () -> ! clock.instant().isBefore(deadline) ||
+                                               applicationMapper.get(applicationSet.getId()).orElse(null) != applicationSet)
+                      .thenAccept(count -> log.log(LogLevel.DEBUG, TenantRepository.logPre(applicationSet.getId()) + "Precomputed " + count +
+                                                                   " configs for generation " + applicationSet.getApplicationGeneration() +
+                                                                   " in " + Duration.between(start, clock.instant()).toMillis() + " ms"));
     }
 
     @Override
@@ -58,6 +58,7 @@ public class TestComponentRegistry implements GlobalComponentRegistry {
     private final ConfigServerDB configServerDB;
     private final StripedExecutor<TenantName> zkWatcherExecutor;
     private final ExecutorService zkCacheExecutor;
+    private final ExecutorService configPrecomputeExecutor;
     private final SecretStore secretStore;
 
     private TestComponentRegistry(Curator curator, ConfigCurator configCurator, Metrics metrics,
@@ -92,6 +93,7 @@ public class TestComponentRegistry implements GlobalComponentRegistry {
         this.configServerDB = new ConfigServerDB(configserverConfig);
         this.zkWatcherExecutor = new StripedExecutor<>(new InThreadExecutorService());
         this.zkCacheExecutor = new InThreadExecutorService();
+        this.configPrecomputeExecutor = new InThreadExecutorService();
         this.secretStore = secretStore;
     }
 
@@ -166,7 +168,7 @@ public class TestComponentRegistry implements GlobalComponentRegistry {
             SessionPreparer sessionPreparer = new SessionPreparer(modelFactoryRegistry, fileDistributionFactory,
                                                                   hostProvisionerProvider, permApp,
                                                                   configserverConfig, defRepo, curator,
-                                                                  zone, new InMemoryFlagSource(), secretStore);
+                                                                  zone, new InMemoryFlagSource(), secretStore, metrics);
             return new TestComponentRegistry(curator, ConfigCurator.create(curator), metrics, modelFactoryRegistry,
                                              permApp, fileDistributionFactory, hostRegistries, configserverConfig,
                                              sessionPreparer, hostProvisioner, defRepo, reloadListener, tenantListener,
@@ -222,6 +224,11 @@ public class TestComponentRegistry implements GlobalComponentRegistry {
         return zkCacheExecutor;
     }
 
+    @Override
+    public ExecutorService getConfigPrecomputeExecutor() {
+        return configPrecomputeExecutor;
+    }
+
     @Override
     public SecretStore getSecretStore() {
         return secretStore;
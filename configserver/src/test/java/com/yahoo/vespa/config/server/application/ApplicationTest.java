@@ -12,6 +12,7 @@ import com.yahoo.config.provision.InstanceName;
 import com.yahoo.config.provision.TenantName;
 import com.yahoo.component.Version;
 import com.yahoo.jrt.Request;
+import com.yahoo.vespa.config.ConfigCacheKey;
 import com.yahoo.vespa.config.ConfigDefinitionKey;
 import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.vespa.config.GetConfigRequest;
@@ -28,6 +29,8 @@ import com.yahoo.vespa.config.server.UnknownConfigDefinitionException;
 import com.yahoo.vespa.config.server.UserConfigDefinitionRepo;
 import com.yahoo.vespa.config.server.monitoring.MetricUpdater;
 import com.yahoo.vespa.config.server.monitoring.Metrics;
+import com.yahoo.vespa.config.server.rpc.ConfigResponseFactory;
+import com.yahoo.vespa.config.server.rpc.UncompressedConfigResponseFactory;
 import com.yahoo.vespa.model.VespaModel;
 import org.junit.Before;
 import org.junit.Test;
@@ -35,10 +38,18 @@ import org.xml.sax.SAXException;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -69,12 +80,16 @@ public class ApplicationTest {
 
     @Before
     public void setupHandler() throws IOException, SAXException {
+        handler = createApplication(1L);
+    }
+
+    private static Application createApplication(long generation) throws IOException, SAXException {
         File testApp = new File("src/test/apps/app");
         ServerCache cache = createCacheAndAddContent();
         VespaModel model = new VespaModel(FilesApplicationPackage.fromFile(testApp));
         ApplicationId applicationId = new ApplicationId.Builder().tenant("foo").applicationName("foo").build();
-        handler = new Application(model, cache, 1L, false, new Version(1, 2, 3),
-                                  new MetricUpdater(Metrics.createTestMetrics(), Metrics.createDimensions(applicationId)), applicationId);
+        return new Application(model, cache, generation, false, new Version(1, 2, 3),
+                               new MetricUpdater(Metrics.createTestMetrics(), Metrics.createDimensions(applicationId)), applicationId);
     }
 
     private static ServerCache createCacheAndAddContent() {
@@ -138,6 +153,94 @@ public class ApplicationTest {
         assertTrue(response == cached_response);
     }
 
+    @Test
+    public void require_that_configs_requested_from_previous_generation_are_precomputed() throws IOException, SAXException {
+        GetConfigRequest modelRequest = createRequest(ModelConfig.CONFIG_DEF_NAME, ModelConfig.CONFIG_DEF_NAMESPACE, ModelConfig.CONFIG_DEF_MD5, ModelConfig.CONFIG_DEF_SCHEMA);
+        handler.resolveConfig(modelRequest);
+        handler.resolveConfig(createSimpleConfigRequest());
+        assertEquals(2, handler.requestedConfigs().size());
+
+        Application next = createApplication(2L);
+        ApplicationSet nextSet = ApplicationSet.fromSingle(next);
+        assertEquals(2L, (long) nextSet.precomputeConfigs(ApplicationSet.fromSingle(handler), new UncompressedConfigResponseFactory(),
+                                                          Runnable::run, () -> false).join());
+        assertEquals(2, next.getCache().configElems());
+        assertEquals("Precomputed configs are not requested", 0, next.requestedConfigs().size());
+
+        ConfigResponse response = next.resolveConfig(modelRequest);
+        assertEquals(2L, response.getGeneration());
+        assertTrue(response == next.getCache().get(new ConfigCacheKey(modelRequest.getConfigKey(), ModelConfig.CONFIG_DEF_MD5)));
+        assertEquals(1, next.requestedConfigs().size());
+
+        // Nothing is left to precompute
+        assertEquals(0L, (long) nextSet.precomputeConfigs(ApplicationSet.fromSingle(handler), new UncompressedConfigResponseFactory(),
+                                                          Runnable::run, () -> false).join());
+
+        // Only the config which was requested from the previous generation is carried on, and nothing once stopped,
+        // or when the executor rejects the work
+        Application third = createApplication(3L);
+        assertEquals(0L, (long) ApplicationSet.fromSingle(third)
+                                              .precomputeConfigs(nextSet, new UncompressedConfigResponseFactory(), Runnable::run, () -> true).join());
+        assertEquals(0L, (long) ApplicationSet.fromSingle(third)
+                                              .precomputeConfigs(nextSet, new UncompressedConfigResponseFactory(),
+                                                                 task -> { throw new RejectedExecutionException(); }, () -> false).join());
+        assertEquals(1L, (long) ApplicationSet.fromSingle(third)
+                                              .precomputeConfigs(nextSet, new UncompressedConfigResponseFactory(), Runnable::run, () -> false).join());
+        assertEquals(1, third.getCache().configElems());
+    }
+
+    @Test
+    public void require_that_configs_are_precomputed_in_parallel() throws IOException, SAXException {
+        handler.resolveConfig(createRequest(ModelConfig.CONFIG_DEF_NAME, ModelConfig.CONFIG_DEF_NAMESPACE, ModelConfig.CONFIG_DEF_MD5, ModelConfig.CONFIG_DEF_SCHEMA));
+        handler.resolveConfig(createSimpleConfigRequest());
+
+        Application next = createApplication(2L);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertEquals(2L, (long) ApplicationSet.fromSingle(next)
+                                                  .precomputeConfigs(ApplicationSet.fromSingle(handler), new UncompressedConfigResponseFactory(),
+                                                                     executor, () -> false).join());
+            assertEquals(2, next.getCache().configElems());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void require_that_concurrent_identical_requests_share_one_resolution() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger resolutions = new AtomicInteger();
+        ConfigResponseFactory blockingFactory = (payload, defFile, generation, internalRedeploy) -> {
+            resolutions.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return new UncompressedConfigResponseFactory().createResponse(payload, defFile, generation, internalRedeploy);
+        };
+
+        List<ConfigResponse> responses = new CopyOnWriteArrayList<>();
+        List<Thread> requesters = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            requesters.add(new Thread(() -> responses.add(handler.resolveConfig(createSimpleConfigRequest(), blockingFactory))));
+        }
+        requesters.get(0).start();
+        while (resolutions.get() == 0) Thread.sleep(1);
+        requesters.subList(1, requesters.size()).forEach(Thread::start);
+        for (Thread requester : requesters)
+            while (requester.getState() != Thread.State.WAITING) Thread.sleep(1);
+
+        release.countDown();
+        for (Thread requester : requesters)
+            requester.join();
+        assertEquals(1, resolutions.get());
+        assertEquals(8, responses.size());
+        responses.forEach(response -> assertTrue(response == responses.get(0)));
+        assertTrue(responses.get(0) == handler.resolveConfig(createSimpleConfigRequest(), blockingFactory));
+    }
+
     private static GetConfigRequest createRequest(String name, String namespace, String defMd5, String[] schema) {
         Request request = JRTClientConfigRequestV3.
                 createWithParams(new ConfigKey<>(name, "admin/model", namespace, defMd5, null), DefContent.fromArray(schema),
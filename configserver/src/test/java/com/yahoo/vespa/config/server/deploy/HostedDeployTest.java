@@ -36,6 +36,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -338,6 +340,25 @@ public class HostedDeployTest {
         assertThat(actions.get(0).getMessages(), equalTo(ImmutableSet.of("change", "other change")));
     }
 
+    @Test
+    public void testOldModelVersionsAreBuiltInParallel() {
+        List<Host> hosts = Arrays.asList(createHost("host1", "6.0.0"),
+                                         createHost("host2", "6.1.0"),
+                                         createHost("host3", "6.1.0"),
+                                         createHost("host4", "6.0.0"));
+        InMemoryProvisioner provisioner = new InMemoryProvisioner(new Hosts(hosts), true);
+
+        CountDownLatch bothBuilding = new CountDownLatch(2);
+        List<ModelFactory> modelFactories = Arrays.asList(new ParallelModelFactory(new Version(6, 0, 0), bothBuilding),
+                                                          new ParallelModelFactory(new Version(6, 1, 0), bothBuilding),
+                                                          DeployTester.createModelFactory(Version.fromString("6.2.0")));
+
+        DeployTester tester = new DeployTester(modelFactories, createConfigserverConfig(), Clock.systemUTC(), provisioner);
+        tester.deployApp("src/test/apps/hosted/", "6.2.0", Instant.now());
+        assertEquals(4, tester.getAllocatedHostsOf(tester.applicationId()).getHosts().size());
+        assertEquals("Models for 6.0.0 and 6.1.0 were built at the same time", 0, bothBuilding.getCount());
+    }
+
     private static ConfigserverConfig createConfigserverConfig() {
         return new ConfigserverConfig(new ConfigserverConfig.Builder()
                                               .configServerDBDir(Files.createTempDir().getAbsolutePath())
@@ -370,4 +391,27 @@ public class HostedDeployTest {
         }
     }
 
+    /** A model factory which waits for the models of other versions to be built at the same time */
+    private static class ParallelModelFactory extends TestModelFactory {
+
+        private final CountDownLatch building;
+
+        ParallelModelFactory(Version vespaVersion, CountDownLatch building) {
+            super(vespaVersion);
+            this.building = building;
+        }
+
+        @Override
+        public ModelCreateResult createAndValidateModel(ModelContext modelContext, ValidationParameters validationParameters) {
+            building.countDown();
+            try {
+                building.await(1, TimeUnit.MINUTES);
+            }
+            catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return super.createAndValidateModel(modelContext, validationParameters);
+        }
+    }
+
 }
@@ -12,15 +12,19 @@ import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequestV3;
 import com.yahoo.vespa.config.protocol.Trace;
 import com.yahoo.vespa.config.server.GetConfigContext;
+import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertFalse;
@@ -80,12 +84,82 @@ public class DelayedConfigResponseTest {
         assertThat(rpc.latestRequest, is(req));
     }
 
+    @Test
+    public void testDrainOneConfigKey() throws IOException {
+        GetConfigContext context = GetConfigContext.testContext(ApplicationId.defaultId());
+        MockRpc rpc = new MockRpc(13337, temporaryFolder.newFolder());
+        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, 1, false);
+        JRTServerConfigRequest foo = createRequest("foo", "md5", "myid", "mymd5", 3, 100000, "bar");
+        responses.delayResponse(foo, context);
+        responses.delayResponse(createRequest("foo", "md5", "myid", "mymd5", 3, 100000, "bar"), context);
+        responses.delayResponse(createRequest("foolio", "md5", "myid", "mymd5", 3, 100000, "bar"), context);
+        assertThat(responses.size(), is(3));
+
+        List<DelayedConfigResponses.DelayedConfigResponse> drained = responses.drainQueue(ApplicationId.defaultId(), foo.getConfigKey());
+        assertThat(drained.size(), is(2));
+        assertThat(responses.size(), is(1));
+        assertThat(responses.allDelayedResponses().get(0).getRequest().getConfigKey().getName(), is("foolio"));
+        assertTrue(responses.drainQueue(ApplicationId.defaultId(), foo.getConfigKey()).isEmpty());
+
+        drained.get(0).cancelAndRemove();
+        assertThat("Removing a drained response does not change the remaining ones", responses.size(), is(1));
+        assertThat(responses.drainQueue(ApplicationId.defaultId()).size(), is(1));
+        assertThat(responses.size(), is(0));
+    }
+
+    /** Benchmark of delaying, draining and removing many responses, which is not run as part of the unit tests */
+    @Test
+    @Ignore
+    public void benchmarkManySubscribers() throws IOException {
+        int subscribers = 100_000;
+        int configKeys = 1000;
+        GetConfigContext context = GetConfigContext.testContext(ApplicationId.defaultId());
+        MockRpc rpc = new MockRpc(13337, temporaryFolder.newFolder());
+        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, 1, false);
+        List<Request> requests = new ArrayList<>();
+        for (int i = 0; i < configKeys; i++)
+            requests.add(createClientRequest("foo", "md5", "id" + i, "mymd5", 3, 1000000, "bar"));
+        List<JRTServerConfigRequest> serverRequests = new ArrayList<>();
+        for (int i = 0; i < subscribers; i++) {
+            JRTServerConfigRequest request = JRTServerConfigRequestV3.createFromRequest(requests.get(i % configKeys));
+            request.getConfigKey(); // Requests are parsed when they are delayed
+            serverRequests.add(request);
+        }
+
+        long start = System.nanoTime();
+        serverRequests.forEach(request -> responses.delayResponse(request, context));
+        long delayed = System.nanoTime();
+        List<DelayedConfigResponses.DelayedConfigResponse> oneKey = responses.drainQueue(ApplicationId.defaultId(), serverRequests.get(0).getConfigKey());
+        long drainedOneKey = System.nanoTime();
+        List<DelayedConfigResponses.DelayedConfigResponse> cancelled = responses.allDelayedResponses();
+        Collections.shuffle(cancelled, new Random(1));
+        cancelled = cancelled.subList(0, subscribers / 10);
+        long removeStart = System.nanoTime();
+        cancelled.forEach(DelayedConfigResponses.DelayedConfigResponse::cancelAndRemove);
+        long removed = System.nanoTime();
+        List<DelayedConfigResponses.DelayedConfigResponse> all = responses.drainQueue(ApplicationId.defaultId());
+        all.forEach(DelayedConfigResponses.DelayedConfigResponse::cancel);
+        long drainedAll = System.nanoTime();
+
+        String timings = subscribers + " subscribers: delay " + TimeUnit.NANOSECONDS.toMillis(delayed - start) +
+                         " ms, drain one config key " + TimeUnit.NANOSECONDS.toMillis(drainedOneKey - delayed) +
+                         " ms, remove " + cancelled.size() + " " + TimeUnit.NANOSECONDS.toMillis(removed - removeStart) +
+                         " ms, drain and cancel rest " + TimeUnit.NANOSECONDS.toMillis(drainedAll - removed) + " ms";
+        assertThat(timings, oneKey.size(), is(subscribers / configKeys));
+        assertThat(timings, all.size(), is(subscribers - subscribers / configKeys - subscribers / 10));
+        assertThat(timings, responses.size(), is(0));
+        responses.stop();
+    }
+
     private JRTServerConfigRequest createRequest(String configName, String defMd5, String configId, String md5, long generation, long timeout, String namespace) {
-        Request request = JRTClientConfigRequestV3.
+        return JRTServerConfigRequestV3.createFromRequest(createClientRequest(configName, defMd5, configId, md5, generation, timeout, namespace));
+    }
+
+    private Request createClientRequest(String configName, String defMd5, String configId, String md5, long generation, long timeout, String namespace) {
+        return JRTClientConfigRequestV3.
                 createWithParams(new ConfigKey<>(configName, configId, namespace, defMd5, null), DefContent.fromList(Collections.emptyList()),
                                  "fromHost", md5, generation, timeout, Trace.createDummy(), CompressionType.UNCOMPRESSED,
                                  Optional.empty()).getRequest();
-        return JRTServerConfigRequestV3.createFromRequest(request);
     }
 
 }
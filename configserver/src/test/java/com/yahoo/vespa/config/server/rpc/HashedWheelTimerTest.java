@@ -0,0 +1,61 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.rpc;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HashedWheelTimerTest {
+
+    @Test
+    public void timeouts_expire_after_their_delay_also_when_longer_than_a_round_of_the_wheel() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer(Duration.ofMillis(1), 4, Executors.defaultThreadFactory(), Runnable::run);
+        try {
+            for (long delay : new long[] { 0, 3, 10, 50 }) {
+                CountDownLatch expired = new CountDownLatch(1);
+                AtomicLong expiredAfterNanos = new AtomicLong();
+                long start = System.nanoTime();
+                HashedWheelTimer.Timeout timeout = timer.schedule(() -> {
+                    expiredAfterNanos.set(System.nanoTime() - start);
+                    expired.countDown();
+                }, delay);
+                assertTrue(expired.await(10, TimeUnit.SECONDS));
+                assertTrue("Timeout of " + delay + " ms expired after " + expiredAfterNanos.get() + " ns",
+                           expiredAfterNanos.get() >= TimeUnit.MILLISECONDS.toNanos(delay));
+                assertFalse("Expired timeouts can not be cancelled", timeout.cancel());
+            }
+        }
+        finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void cancelled_timeouts_do_not_expire() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer(Duration.ofMillis(1), 4, Executors.defaultThreadFactory(), Runnable::run);
+        try {
+            AtomicBoolean ran = new AtomicBoolean();
+            HashedWheelTimer.Timeout cancelled = timer.schedule(() -> ran.set(true), 20);
+            assertTrue(cancelled.cancel());
+            assertFalse(cancelled.cancel());
+            assertTrue(cancelled.isCancelled());
+
+            CountDownLatch later = new CountDownLatch(1);
+            timer.schedule(later::countDown, 40);
+            assertTrue(later.await(10, TimeUnit.SECONDS));
+            assertFalse(ran.get());
+        }
+        finally {
+            timer.stop();
+        }
+    }
+
+}
@@ -120,7 +120,8 @@ public class SessionPreparerTest {
                 curator,
                 componentRegistry.getZone(),
                 flagSource,
-                secretStore);
+                secretStore,
+                componentRegistry.getMetrics());
     }
 
     @Test(expected = InvalidApplicationException.class)
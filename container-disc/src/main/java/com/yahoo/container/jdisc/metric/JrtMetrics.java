@@ -30,6 +30,8 @@ class JrtMetrics {
         increment("jrt.transport.client.tls-connections-established", changesSincePrevious.clientTlsConnectionsEstablished());
         increment("jrt.transport.server.unencrypted-connections-established", changesSincePrevious.serverUnencryptedConnectionsEstablished());
         increment("jrt.transport.client.unencrypted-connections-established", changesSincePrevious.clientUnencryptedConnectionsEstablished());
+        increment("jrt.transport.selector-wakeups", changesSincePrevious.selectorWakeups());
+        metric.set("jrt.transport.queued-packets", transportMetrics.queuedPackets(), null);
         previousSnapshot = snapshot;
     }
 
@@ -209,7 +209,7 @@ public class RpcFillInvoker extends FillInvoker {
             else {
                 Client.GetDocsumsResponse response = responseOrError.response().get();
                 CompressionType compression = CompressionType.valueOf(response.compression());
-                byte[] slimeBytes = compressor.decompress(response.compressedSlimeBytes(), compression, response.uncompressedSize());
+                byte[] slimeBytes = compressor.decompressReadOnly(response.compressedSlimeBytes(), compression, response.uncompressedSize());
                 return fill(response.hitsContext(), summaryClass, documentDb, slimeBytes);
             }
             return 0;
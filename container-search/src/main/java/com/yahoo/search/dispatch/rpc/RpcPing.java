@@ -62,7 +62,7 @@ public class RpcPing implements Callable<Pong> {
 
     private Pong decodeReply(ProtobufResponse response) throws InvalidProtocolBufferException {
         CompressionType compression = CompressionType.valueOf(response.compression());
-        byte[] responseBytes = resourcePool.compressor().decompress(response.compressedPayload(), compression, response.uncompressedSize());
+        byte[] responseBytes = resourcePool.compressor().decompressReadOnly(response.compressedPayload(), compression, response.uncompressedSize());
         var reply = SearchProtocol.MonitorReply.parseFrom(responseBytes);
 
         if (reply.getDistributionKey() != node.key()) {
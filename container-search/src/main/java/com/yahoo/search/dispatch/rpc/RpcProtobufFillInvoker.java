@@ -170,7 +170,7 @@ public class RpcProtobufFillInvoker extends FillInvoker {
         } else {
             Client.ProtobufResponse response = responseOrError.response().get();
             CompressionType compression = CompressionType.valueOf(response.compression());
-            byte[] responseBytes = resourcePool.compressor().decompress(response.compressedPayload(), compression,
+            byte[] responseBytes = resourcePool.compressor().decompressReadOnly(response.compressedPayload(), compression,
                     response.uncompressedSize());
             return fill(result, hitsContext, summaryClass, responseBytes);
         }
@@ -24,6 +24,7 @@ public class BucketIdFactory {
     private final long initialCount;
     private final long locationMask;
     private final long gidMask;
+    private final boolean isDefault;
 
     /** Create a factory, using the default configuration. */
     public BucketIdFactory() {
@@ -41,6 +42,7 @@ public class BucketIdFactory {
         initialCount = 58l << (64 - countBits);
         locationMask = 0xFFFFFFFFFFFFFFFFl >>> (64 - getLocationBitCount());
         gidMask = ((0xFFFFFFFFFFFFFFFFl >>> getLocationBitCount()) << (getLocationBitCount() + BucketId.COUNT_BITS)) >>> BucketId.COUNT_BITS;
+        isDefault = locationBits == 32 && gidBits == 26 && countBits == 6;
 
     }
 
@@ -87,6 +89,11 @@ public class BucketIdFactory {
      * @return The bucket id.
      */
     public BucketId getBucketId(DocumentId doc) {
+        if (isDefault) return doc.defaultBucketId(this);
+        return computeBucketId(doc);
+    }
+
+    BucketId computeBucketId(DocumentId doc) {
         long location = doc.getScheme().getLocation();
         byte[] gid = doc.getGlobalId();
 
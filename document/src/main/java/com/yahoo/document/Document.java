@@ -15,6 +15,7 @@ import com.yahoo.document.serialization.SerializationException;
 import com.yahoo.document.serialization.XmlSerializationHelper;
 import com.yahoo.document.serialization.XmlStream;
 import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.io.GrowableByteBufferPool;
 import com.yahoo.vespa.objects.BufferSerializer;
 import com.yahoo.vespa.objects.Ids;
 import com.yahoo.vespa.objects.Serializer;
@@ -137,9 +138,11 @@ public class Document extends StructuredFieldValue {
     }
 
     public int getSerializedSize() throws SerializationException {
-        DocumentSerializer data = DocumentSerializerFactory.create6(new GrowableByteBuffer(64 * 1024, 2.0f));
+        DocumentSerializer data = DocumentSerializerFactory.create6(GrowableByteBufferPool.acquire());
         data.write(this);
-        return data.getBuf().position();
+        int size = data.getBuf().position();
+        GrowableByteBufferPool.release(data.getBuf());
+        return size;
     }
 
     /**
@@ -149,7 +152,7 @@ public class Document extends StructuredFieldValue {
     public final int getApproxSize() { return 4096; }
 
     public void serialize(OutputStream out) throws SerializationException {
-        DocumentSerializer writer = DocumentSerializerFactory.create6(new GrowableByteBuffer(64 * 1024, 2.0f));
+        DocumentSerializer writer = DocumentSerializerFactory.create6(GrowableByteBufferPool.acquire());
         writer.write(this);
         GrowableByteBuffer data = writer.getBuf();
         byte[] array;
@@ -168,6 +171,8 @@ public class Document extends StructuredFieldValue {
             out.write(array, 0, data.position());
         } catch (IOException ioe) {
             throw new SerializationException(ioe);
+        } finally {
+            GrowableByteBufferPool.release(data);
         }
     }
 
@@ -10,12 +10,15 @@ import com.yahoo.vespa.objects.Serializer;
 import java.io.Serializable;
 
 /**
- * The id of a document
+ * The id of a document. The global id and the bucket id (as computed by the default bucket id factory) are
+ * computed once and carried along with the id, so passing the same instance through the feed pipeline does not
+ * hash it more than once.
  */
 public class DocumentId extends Identifiable implements Serializable {
 
     private IdString id;
     private GlobalId globalId;
+    private transient BucketId bucketId;
 
     /**
      * Constructor used for deserialization.
@@ -61,6 +64,8 @@ public class DocumentId extends Identifiable implements Serializable {
 
     public void setId(IdString id) {
         this.id = id;
+        globalId = null;
+        bucketId = null;
     }
 
     public IdString getScheme() {
@@ -68,10 +73,22 @@ public class DocumentId extends Identifiable implements Serializable {
     }
 
     public byte[] getGlobalId() {
+        return globalIdObject().getRawId();
+    }
+
+    GlobalId globalIdObject() {
         if (globalId == null) {
             globalId = new GlobalId(id);
         }
-        return globalId.getRawId();
+        return globalId;
+    }
+
+    /** Returns the bucket id of this as computed by the given default configured factory, caching it */
+    BucketId defaultBucketId(BucketIdFactory factory) {
+        if (bucketId == null) {
+            bucketId = factory.computeBucketId(this);
+        }
+        return bucketId;
     }
 
     public int compareTo(Object o) {
@@ -107,6 +124,8 @@ public class DocumentId extends Identifiable implements Serializable {
         } else {
             id = IdString.createFromSerialized(data.getString(null));
         }
+        globalId = null;
+        bucketId = null;
     }
 
     public boolean hasDocType() {
@@ -0,0 +1,204 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.annotation;
+
+import com.yahoo.document.datatypes.FieldValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact, columnar representation of the span tree shape produced by linguistics processing: a
+ * {@link SpanList} root whose children are all {@link Span}s, where every annotation annotates one of these spans.
+ * Span offsets and annotation types are kept in parallel int arrays instead of as one object per node and
+ * annotation, and serializers write them directly.
+ * <p>
+ * Use {@link SpanTree#SpanTree(CompactSpanTree)} to attach it to a string. The SpanTree then acts as a view, which
+ * builds the regular SpanNode/Annotation object model only if it is accessed through the SpanTree API.
+ *
+ * @see SpanTree
+ */
+public final class CompactSpanTree {
+
+    private final String name;
+
+    private int[] spanFrom;
+    private int[] spanLength;
+    private int spanCount = 0;
+
+    private int[] annotationSpan;
+    private int[] annotationType;
+    private FieldValue[] annotationValue = null; // Allocated on the first annotation with a value
+    private int annotationCount = 0;
+
+    private final List<AnnotationType> types = new ArrayList<>(2);
+
+    /**
+     * Creates a new, empty compact span tree.
+     *
+     * @param name the name of the span tree
+     */
+    public CompactSpanTree(String name) {
+        this(name, 16);
+    }
+
+    /**
+     * Creates a new, empty compact span tree.
+     *
+     * @param name the name of the span tree
+     * @param expectedSpans the number of spans to allocate room for up front
+     */
+    public CompactSpanTree(String name, int expectedSpans) {
+        this.name = name;
+        int capacity = Math.max(expectedSpans, 1);
+        spanFrom = new int[capacity];
+        spanLength = new int[capacity];
+        annotationSpan = new int[capacity];
+        annotationType = new int[capacity];
+    }
+
+    /** Returns the name of this span tree */
+    public String getName() { return name; }
+
+    /**
+     * Adds a span as the last child of the root span list.
+     *
+     * @return the index of the new span, to be used when annotating it
+     * @throws IllegalArgumentException if from or length is negative
+     */
+    public int span(int from, int length) {
+        if (from < 0) throw new IllegalArgumentException("From cannot be < 0. (Was " + from + ").");
+        if (length < 0) throw new IllegalArgumentException("Length cannot be < 0. (Was " + length + ").");
+        if (spanCount == spanFrom.length) {
+            spanFrom = Arrays.copyOf(spanFrom, spanCount * 2);
+            spanLength = Arrays.copyOf(spanLength, spanCount * 2);
+        }
+        spanFrom[spanCount] = from;
+        spanLength[spanCount] = length;
+        return spanCount++;
+    }
+
+    /** Adds an annotation without a value to the span with the given index */
+    public CompactSpanTree annotate(int span, AnnotationType type) {
+        return annotate(span, type, null);
+    }
+
+    /**
+     * Adds an annotation to the span with the given index.
+     *
+     * @param span the index of the span, as returned from {@link #span(int, int)}
+     * @param type the annotation type
+     * @param value the annotation value, or null for none. References to other annotations are not supported.
+     * @return this, for chaining
+     */
+    public CompactSpanTree annotate(int span, AnnotationType type, FieldValue value) {
+        if (span < 0 || span >= spanCount)
+            throw new IndexOutOfBoundsException("No span with index " + span + " in " + this);
+        if (value instanceof AnnotationReference)
+            throw new IllegalArgumentException("Annotation references are not supported in " + this);
+        if (value != null && (type.getDataType() == null || ! type.getDataType().isValueCompatible(value)))
+            throw new IllegalArgumentException("Value " + value + " is not compatible with annotation type " + type);
+        if (annotationCount == annotationSpan.length) {
+            annotationSpan = Arrays.copyOf(annotationSpan, annotationCount * 2);
+            annotationType = Arrays.copyOf(annotationType, annotationCount * 2);
+            if (annotationValue != null)
+                annotationValue = Arrays.copyOf(annotationValue, annotationCount * 2);
+        }
+        if (value != null && annotationValue == null)
+            annotationValue = new FieldValue[annotationSpan.length];
+
+        annotationSpan[annotationCount] = span;
+        annotationType[annotationCount] = typeIndex(type);
+        if (annotationValue != null)
+            annotationValue[annotationCount] = value;
+        annotationCount++;
+        return this;
+    }
+
+    private int typeIndex(AnnotationType type) {
+        for (int i = 0; i < types.size(); i++) {
+            if (types.get(i) == type) return i;
+        }
+        types.add(type);
+        return types.size() - 1;
+    }
+
+    public int numSpans() { return spanCount; }
+
+    public int numAnnotations() { return annotationCount; }
+
+    public int getFrom(int span) { return spanFrom[span]; }
+
+    public int getLength(int span) { return spanLength[span]; }
+
+    /** Returns the index of the span annotated by the given annotation */
+    public int getAnnotatedSpan(int annotation) { return annotationSpan[annotation]; }
+
+    public AnnotationType getAnnotationType(int annotation) { return types.get(annotationType[annotation]); }
+
+    /** Returns the value of the given annotation, or null if it has none */
+    public FieldValue getAnnotationValue(int annotation) {
+        return annotationValue == null ? null : annotationValue[annotation];
+    }
+
+    /**
+     * Returns the annotation indices in the order given by {@link Annotation#compareTo(Annotation)}, keeping the
+     * insertion order of equal annotations. This is the order in which annotations are serialized.
+     */
+    public int[] annotationOrder() {
+        int[] order = new int[annotationCount];
+        for (int i = 0; i < annotationCount; i++)
+            order[i] = i;
+        if (isOrdered(order)) return order;
+
+        Integer[] boxed = new Integer[annotationCount];
+        for (int i = 0; i < annotationCount; i++)
+            boxed[i] = i;
+        Arrays.sort(boxed, this::compareAnnotations);
+        for (int i = 0; i < annotationCount; i++)
+            order[i] = boxed[i];
+        return order;
+    }
+
+    private boolean isOrdered(int[] order) {
+        for (int i = 1; i < order.length; i++) {
+            if (compareAnnotations(order[i - 1], order[i]) > 0) return false;
+        }
+        return true;
+    }
+
+    private int compareAnnotations(int a, int b) {
+        int spanA = annotationSpan[a];
+        int spanB = annotationSpan[b];
+        int comp = Integer.compare(spanFrom[spanA], spanFrom[spanB]);
+        if (comp != 0) return comp;
+        comp = Integer.compare(spanFrom[spanA] + spanLength[spanA], spanFrom[spanB] + spanLength[spanB]);
+        if (comp != 0) return comp;
+        comp = getAnnotationType(a).compareTo(getAnnotationType(b));
+        if (comp != 0) return comp;
+
+        FieldValue valueA = getAnnotationValue(a);
+        FieldValue valueB = getAnnotationValue(b);
+        if (valueA == null) return (valueB == null) ? 0 : -1;
+        return (valueB == null) ? 1 : valueA.compareTo(valueB);
+    }
+
+    /** Builds the regular object model of this into the given, empty span tree */
+    void inflateInto(SpanTree tree) {
+        SpanList root = new SpanList();
+        Span[] spans = new Span[spanCount];
+        for (int i = 0; i < spanCount; i++) {
+            spans[i] = root.span(spanFrom[i], spanLength[i]);
+        }
+        tree.setRoot(root);
+        for (int i = 0; i < annotationCount; i++) {
+            tree.annotate(spans[annotationSpan[i]], new Annotation(getAnnotationType(i), getAnnotationValue(i)));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "compact span tree '" + name + "'";
+    }
+
+}
@@ -29,6 +29,7 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
     private SpanNode root;
     private AnnotationContainer annotations = new ListAnnotationContainer();
     private StringFieldValue stringFieldValue;
+    private CompactSpanTree compact = null; // Non-null until the object model is built from it
 
     /**
      * WARNING!&nbsp;Only to be used by deserializers!&nbsp;Creates an empty SpanTree instance.
@@ -58,8 +59,20 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
         setRoot(new SpanList());
     }
 
+    /**
+     * Creates a SpanTree which is a view of the given compact span tree. The regular object model of the tree
+     * is only built if this is accessed through methods which need it.
+     *
+     * @param compact the compact span tree this is a view of
+     */
+    public SpanTree(CompactSpanTree compact) {
+        this.name = compact.getName();
+        this.compact = compact;
+    }
+
     @SuppressWarnings("unchecked")
     public SpanTree(SpanTree otherToCopy) {
+        otherToCopy.inflate();
         name = otherToCopy.name;
         setRoot(copySpan(otherToCopy.root));
         List<Annotation> annotationsToCopy = new ArrayList<Annotation>(otherToCopy.getAnnotations());
@@ -209,6 +222,7 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
      * @param root the root to set for this SpanTree instance.
      */
     public void setRoot(SpanNode root) {
+        inflate();
         if (!root.isValid()) {
             throw new IllegalStateException("Cannot use invalid node " + root + " as root node.");
         }
@@ -234,6 +248,7 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
      * @return the root node of this span tree.
      */
     public SpanNode getRoot() {
+        inflate();
         return root;
     }
 
@@ -242,6 +257,7 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
      * This must of course only be used when it is known that the root in this tree actually is a SpanList.
      */
     public SpanList spanList() {
+        inflate();
         return (SpanList)root;
     }
 
@@ -410,14 +426,31 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
     }
 
     private void annotateInternal(SpanNode node, Annotation annotation) {
+        inflate();
         annotations.annotate(annotation);
     }
 
     @SuppressWarnings("unchecked")
     private Collection<Annotation> getAnnotations() {
+        inflate();
         return annotations.annotations();
     }
 
+    /**
+     * Returns the compact span tree this is a view of, or null if this is not backed by a compact span tree,
+     * or the regular object model has been built from it.
+     */
+    public CompactSpanTree getCompactSpanTree() {
+        return compact;
+    }
+
+    private void inflate() {
+        if (compact == null) return;
+        CompactSpanTree source = compact;
+        compact = null;
+        source.inflateInto(this);
+    }
+
     /**
      * Adds an Annotation to the internal list of annotations for this SpanTree.&nbsp;Use this when
      * adding an Annotation that uses an AnnotationReference, and does not annotate a SpanNode.
@@ -516,6 +549,7 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
      * @return the total number of annotations in the tree.
      */
     public int numAnnotations() {
+        if (compact != null) return compact.numAnnotations();
         return annotations.annotations().size();
     }
 
@@ -551,6 +585,7 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
      */
     @SuppressWarnings("unchecked")
     public Iterator<Annotation> iterator() {
+        inflate();
         return annotations.annotations().iterator();
     }
 
@@ -562,6 +597,7 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
      */
     @SuppressWarnings("unchecked")
     public Iterator<Annotation> iterator(SpanNode node) {
+        inflate();
         return annotations.iterator(node);
     }
 
@@ -573,6 +609,7 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
      */
     @SuppressWarnings("unchecked")
     public Iterator<Annotation> iteratorRecursive(SpanNode node) {
+        inflate();
         return annotations.iteratorRecursive(node);
     }
 
@@ -608,6 +645,7 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
     }
 
     public void createIndex(IndexKey key) {
+        inflate();
         if (key == IndexKey.SPAN_NODE && annotations instanceof ListAnnotationContainer) {
             AnnotationContainer tmpAnnotations = new SpanNode2AnnotationContainer();
             tmpAnnotations.annotateAll(annotations.annotations());
@@ -622,6 +660,7 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
     }
 
     public void clearIndex(IndexKey key) {
+        inflate();
         if (key == IndexKey.SPAN_NODE && annotations instanceof SpanNode2AnnotationContainer) {
             clearIndex();
         } else if (key == IndexKey.ANNOTATION_TYPE && annotations instanceof AnnotationType2AnnotationContainer) {
@@ -630,6 +669,7 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
     }
 
     public void clearIndexes() {
+        inflate();
         if (!(annotations instanceof ListAnnotationContainer)) {
             clearIndex();
         }
@@ -642,6 +682,7 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
     }
 
     public Collection<IndexKey> getCurrentIndexes() {
+        inflate();
         if (annotations instanceof AnnotationType2AnnotationContainer)
             return ImmutableList.of(IndexKey.ANNOTATION_TYPE);
         if (annotations instanceof SpanNode2AnnotationContainer)
@@ -660,6 +701,8 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
         if (!(o instanceof SpanTree)) return false;
 
         SpanTree tree = (SpanTree) o;
+        inflate();
+        tree.inflate();
         if (!annotationsEquals(tree)) return false;
         if (!name.equals(tree.name)) return false;
         if (!root.equals(tree.root)) return false;
@@ -677,6 +720,7 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
 
     @Override
     public int hashCode() {
+        inflate();
         int result = name.hashCode();
         result = 31 * result + root.hashCode();
         result = 31 * result + annotations.hashCode();
@@ -685,6 +729,8 @@ public class SpanTree implements Iterable<Annotation>, SpanNodeParent, Comparabl
 
     @Override
     public int compareTo(SpanTree spanTree) {
+        inflate();
+        spanTree.inflate();
         int comp = name.compareTo(spanTree.name);
         if (comp != 0) {
             comp = root.compareTo(spanTree.root);
@@ -62,6 +62,10 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
     @Override
     public Array<T> clone() {
         Array<T> array = (Array<T>) super.clone();
+        if (values instanceof PrimitiveList) {
+            array.values = ((PrimitiveList<T>) values).copy();
+            return array;
+        }
         array.values = new ArrayList<>(values.size());
         for (T fval : values) {
             array.values.add((T) fval.clone());
@@ -74,6 +78,30 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
         values.clear();
     }
 
+    /**
+     * Clears this array, reserves room for the given number of elements, and stores the elements of arrays of
+     * byte, int, long, float or double as primitives, rather than as one field value object per element.
+     * <p>
+     * The elements of such an array are copied in when added, and copied out to new field values when accessed,
+     * so changing an element returned from this does not change the array - use {@link #set(int, FieldValue)}
+     * for that. Arrays of other types get regular storage.
+     */
+    public void clearAndReservePrimitives(int count) {
+        PrimitiveList<T> primitive = PrimitiveList.create(getDataType().getNestedType(), count);
+        values = (primitive != null) ? primitive : new ArrayList<>(count);
+    }
+
+    /** Returns whether the elements of this are stored as primitives. See {@link #clearAndReservePrimitives(int)}. */
+    public boolean hasPrimitiveStorage() {
+        return values instanceof PrimitiveList;
+    }
+
+    /** Replaces primitive storage by regular field values, which may be modified in place */
+    private void inflate() {
+        if (values instanceof PrimitiveList)
+            values = new ArrayList<>(values);
+    }
+
     @Override
     public void assign(Object o) {
         if (!checkAssign(o)) {
@@ -263,6 +291,7 @@ public final class Array<T extends FieldValue> extends CollectionFieldValue<T> i
 
     FieldPathIteratorHandler.ModificationStatus iterateSubset(int startPos, int endPos, FieldPath fieldPath, String variable, int nextPos, FieldPathIteratorHandler handler) {
         FieldPathIteratorHandler.ModificationStatus retVal = FieldPathIteratorHandler.ModificationStatus.NOT_MODIFIED;
+        inflate(); // Handlers modify the elements in place
 
         LinkedList<Integer> indicesToRemove = new LinkedList<Integer>();
 
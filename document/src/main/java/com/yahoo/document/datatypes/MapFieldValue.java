@@ -39,6 +39,17 @@ public class MapFieldValue<K extends FieldValue, V extends FieldValue> extends C
         values = new HashMap<K, V>(initialCapacity);
     }
 
+    /** Creates a map field value backed by the given, empty map */
+    MapFieldValue(MapDataType type, java.util.Map<K, V> values) {
+        super(type);
+        this.values = values;
+    }
+
+    /** Returns whether this is backed by a map storing primitive values */
+    boolean hasPrimitiveStorage() {
+        return values instanceof PrimitiveWeightMap;
+    }
+
     @Override
     public MapDataType getDataType() {
         return (MapDataType)super.getDataType();
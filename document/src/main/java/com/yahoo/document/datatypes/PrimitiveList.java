@@ -0,0 +1,262 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.datatypes;
+
+import com.yahoo.document.DataType;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A list of numeric field values stored in a primitive array, used as the backing list of an {@link Array} of
+ * byte, int, long, float or double. Elements are stored by value: {@link #get(int)} returns a new field value
+ * holding a copy of the element, and elements are copied in on {@link #set(int, FieldValue)} and add.
+ *
+ * @see Array#clearAndReservePrimitives(int)
+ */
+abstract class PrimitiveList<T extends FieldValue> extends AbstractList<T> implements RandomAccess {
+
+    protected int size = 0;
+
+    /** Returns a new list for elements of the given type, or null if the type has no primitive list */
+    @SuppressWarnings("unchecked")
+    static <T extends FieldValue> PrimitiveList<T> create(DataType elementType, int capacity) {
+        capacity = Math.max(capacity, 1);
+        if (elementType == null || elementType.getClass() != DataType.INT.getClass()) return null;
+        int id = elementType.getId();
+        if (id == DataType.INT.getId()) return (PrimitiveList<T>) new IntList(capacity);
+        if (id == DataType.LONG.getId()) return (PrimitiveList<T>) new LongList(capacity);
+        if (id == DataType.FLOAT.getId()) return (PrimitiveList<T>) new FloatList(capacity);
+        if (id == DataType.DOUBLE.getId()) return (PrimitiveList<T>) new DoubleList(capacity);
+        if (id == DataType.BYTE.getId()) return (PrimitiveList<T>) new ByteList(capacity);
+        return null;
+    }
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public T set(int index, T value) {
+        checkIndex(index, size);
+        T previous = get(index);
+        store(index, value);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, T value) {
+        checkIndex(index, size + 1);
+        if (size == capacity())
+            resize(size * 2);
+        if (index < size)
+            move(index, index + 1, size - index);
+        store(index, value);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public T remove(int index) {
+        checkIndex(index, size);
+        T previous = get(index);
+        move(index + 1, index, size - index - 1);
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    /** Returns a copy of this list, with room for exactly its current elements */
+    abstract PrimitiveList<T> copy();
+
+    protected abstract int capacity();
+
+    protected abstract void resize(int capacity);
+
+    /** Moves length elements from one index to another within the backing array */
+    protected abstract void move(int from, int to, int length);
+
+    /** Stores the numeric value of the given field value at the given index */
+    protected abstract void store(int index, T value);
+
+    protected void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    static final class IntList extends PrimitiveList<IntegerFieldValue> {
+
+        private int[] values;
+
+        IntList(int capacity) { values = new int[capacity]; }
+
+        @Override
+        public IntegerFieldValue get(int index) {
+            checkIndex(index, size);
+            return new IntegerFieldValue(values[index]);
+        }
+
+        @Override
+        protected void store(int index, IntegerFieldValue value) { values[index] = value.getInteger(); }
+
+        @Override
+        IntList copy() {
+            IntList copy = new IntList(size);
+            System.arraycopy(values, 0, copy.values, 0, size);
+            copy.size = size;
+            return copy;
+        }
+
+        @Override
+        protected int capacity() { return values.length; }
+
+        @Override
+        protected void resize(int capacity) { values = Arrays.copyOf(values, capacity); }
+
+        @Override
+        protected void move(int from, int to, int length) { System.arraycopy(values, from, values, to, length); }
+
+    }
+
+    static final class LongList extends PrimitiveList<LongFieldValue> {
+
+        private long[] values;
+
+        LongList(int capacity) { values = new long[capacity]; }
+
+        @Override
+        public LongFieldValue get(int index) {
+            checkIndex(index, size);
+            return new LongFieldValue(values[index]);
+        }
+
+        @Override
+        protected void store(int index, LongFieldValue value) { values[index] = value.getLong(); }
+
+        @Override
+        LongList copy() {
+            LongList copy = new LongList(size);
+            System.arraycopy(values, 0, copy.values, 0, size);
+            copy.size = size;
+            return copy;
+        }
+
+        @Override
+        protected int capacity() { return values.length; }
+
+        @Override
+        protected void resize(int capacity) { values = Arrays.copyOf(values, capacity); }
+
+        @Override
+        protected void move(int from, int to, int length) { System.arraycopy(values, from, values, to, length); }
+
+    }
+
+    static final class FloatList extends PrimitiveList<FloatFieldValue> {
+
+        private float[] values;
+
+        FloatList(int capacity) { values = new float[capacity]; }
+
+        @Override
+        public FloatFieldValue get(int index) {
+            checkIndex(index, size);
+            return new FloatFieldValue(values[index]);
+        }
+
+        @Override
+        protected void store(int index, FloatFieldValue value) { values[index] = value.getFloat(); }
+
+        @Override
+        FloatList copy() {
+            FloatList copy = new FloatList(size);
+            System.arraycopy(values, 0, copy.values, 0, size);
+            copy.size = size;
+            return copy;
+        }
+
+        @Override
+        protected int capacity() { return values.length; }
+
+        @Override
+        protected void resize(int capacity) { values = Arrays.copyOf(values, capacity); }
+
+        @Override
+        protected void move(int from, int to, int length) { System.arraycopy(values, from, values, to, length); }
+
+    }
+
+    static final class DoubleList extends PrimitiveList<DoubleFieldValue> {
+
+        private double[] values;
+
+        DoubleList(int capacity) { values = new double[capacity]; }
+
+        @Override
+        public DoubleFieldValue get(int index) {
+            checkIndex(index, size);
+            return new DoubleFieldValue(values[index]);
+        }
+
+        @Override
+        protected void store(int index, DoubleFieldValue value) { values[index] = value.getDouble(); }
+
+        @Override
+        DoubleList copy() {
+            DoubleList copy = new DoubleList(size);
+            System.arraycopy(values, 0, copy.values, 0, size);
+            copy.size = size;
+            return copy;
+        }
+
+        @Override
+        protected int capacity() { return values.length; }
+
+        @Override
+        protected void resize(int capacity) { values = Arrays.copyOf(values, capacity); }
+
+        @Override
+        protected void move(int from, int to, int length) { System.arraycopy(values, from, values, to, length); }
+
+    }
+
+    static final class ByteList extends PrimitiveList<ByteFieldValue> {
+
+        private byte[] values;
+
+        ByteList(int capacity) { values = new byte[capacity]; }
+
+        @Override
+        public ByteFieldValue get(int index) {
+            checkIndex(index, size);
+            return new ByteFieldValue(values[index]);
+        }
+
+        @Override
+        protected void store(int index, ByteFieldValue value) { values[index] = value.getByte(); }
+
+        @Override
+        ByteList copy() {
+            ByteList copy = new ByteList(size);
+            System.arraycopy(values, 0, copy.values, 0, size);
+            copy.size = size;
+            return copy;
+        }
+
+        @Override
+        protected int capacity() { return values.length; }
+
+        @Override
+        protected void resize(int capacity) { values = Arrays.copyOf(values, capacity); }
+
+        @Override
+        protected void move(int from, int to, int length) { System.arraycopy(values, from, values, to, length); }
+
+    }
+
+}
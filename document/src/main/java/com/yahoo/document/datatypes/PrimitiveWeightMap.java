@@ -0,0 +1,291 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.datatypes;
+
+import com.yahoo.document.DataType;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map from numeric keys to int weights, stored in primitive arrays, used as the backing map of a
+ * {@link WeightedSet} of byte, int, long, float or double. Keys are kept as the raw bits of their value in an
+ * open addressing hash table, with removed entries marked as deleted until the next rehash. Like
+ * {@link PrimitiveList}, entries are stored by value: keys and weights are copied in, and the field values
+ * returned are new objects.
+ *
+ * @see WeightedSet#clearAndReservePrimitives(int)
+ */
+final class PrimitiveWeightMap<K extends FieldValue> extends AbstractMap<K, IntegerFieldValue> {
+
+    private enum KeyType { BYTE, INT, LONG, FLOAT, DOUBLE }
+
+    private static final double MAX_LOAD_FACTOR = 0.5;
+
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte DELETED = 2;
+
+    private final KeyType keyType;
+    private long[] keys;
+    private int[] weights;
+    private byte[] state;
+    private int size = 0;
+    private int deleted = 0;
+    private int modCount = 0;
+
+    private PrimitiveWeightMap(KeyType keyType, int expectedSize) {
+        this.keyType = keyType;
+        allocate(capacityFor(expectedSize));
+    }
+
+    /** Returns a new map for keys of the given type, or null if the type has no primitive map */
+    static <K extends FieldValue> PrimitiveWeightMap<K> create(DataType keyType, int expectedSize) {
+        if (keyType == null || keyType.getClass() != DataType.INT.getClass()) return null;
+        int id = keyType.getId();
+        if (id == DataType.INT.getId()) return new PrimitiveWeightMap<>(KeyType.INT, expectedSize);
+        if (id == DataType.LONG.getId()) return new PrimitiveWeightMap<>(KeyType.LONG, expectedSize);
+        if (id == DataType.FLOAT.getId()) return new PrimitiveWeightMap<>(KeyType.FLOAT, expectedSize);
+        if (id == DataType.DOUBLE.getId()) return new PrimitiveWeightMap<>(KeyType.DOUBLE, expectedSize);
+        if (id == DataType.BYTE.getId()) return new PrimitiveWeightMap<>(KeyType.BYTE, expectedSize);
+        return null;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = 4;
+        while (capacity * MAX_LOAD_FACTOR < expectedSize) capacity <<= 1;
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        weights = new int[capacity];
+        state = new byte[capacity];
+        deleted = 0;
+    }
+
+    private boolean isKey(Object key) {
+        switch (keyType) {
+            case BYTE: return key instanceof ByteFieldValue;
+            case INT: return key instanceof IntegerFieldValue;
+            case LONG: return key instanceof LongFieldValue;
+            case FLOAT: return key instanceof FloatFieldValue;
+            case DOUBLE: return key instanceof DoubleFieldValue;
+            default: throw new IllegalStateException("Unknown key type " + keyType);
+        }
+    }
+
+    /** Returns the key bits of the given key, which must be of this map's type */
+    private long bitsOf(Object key) {
+        switch (keyType) {
+            case BYTE: return ((ByteFieldValue) key).getByte();
+            case INT: return ((IntegerFieldValue) key).getInteger();
+            case LONG: return ((LongFieldValue) key).getLong();
+            case FLOAT: return Float.floatToIntBits(((FloatFieldValue) key).getFloat());
+            case DOUBLE: return Double.doubleToLongBits(((DoubleFieldValue) key).getDouble());
+            default: throw new IllegalStateException("Unknown key type " + keyType);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private K keyOf(long bits) {
+        switch (keyType) {
+            case BYTE: return (K) new ByteFieldValue((byte) bits);
+            case INT: return (K) new IntegerFieldValue((int) bits);
+            case LONG: return (K) new LongFieldValue(bits);
+            case FLOAT: return (K) new FloatFieldValue(Float.intBitsToFloat((int) bits));
+            case DOUBLE: return (K) new DoubleFieldValue(Double.longBitsToDouble(bits));
+            default: throw new IllegalStateException("Unknown key type " + keyType);
+        }
+    }
+
+    private static int hash(long bits) {
+        bits ^= bits >>> 33;
+        bits *= 0xff51afd7ed558ccdL;
+        bits ^= bits >>> 33;
+        return (int) bits;
+    }
+
+    /** Returns the slot holding the given key bits, or -1 if none */
+    private int find(long bits) {
+        int mask = keys.length - 1;
+        for (int slot = hash(bits) & mask; state[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (state[slot] == USED && keys[slot] == bits) return slot;
+        }
+        return -1;
+    }
+
+    /** Returns the first free slot for the given key bits, which must not be in this */
+    private int freeSlotOf(long bits) {
+        int mask = keys.length - 1;
+        int slot = hash(bits) & mask;
+        while (state[slot] == USED)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return isKey(key) && find(bitsOf(key)) >= 0;
+    }
+
+    @Override
+    public IntegerFieldValue get(Object key) {
+        if ( ! isKey(key)) return null;
+        int slot = find(bitsOf(key));
+        return slot >= 0 ? new IntegerFieldValue(weights[slot]) : null;
+    }
+
+    @Override
+    public IntegerFieldValue put(K key, IntegerFieldValue weight) {
+        if ( ! isKey(key))
+            throw new IllegalArgumentException("Key " + key + " is not a " + keyType.name().toLowerCase());
+        long bits = bitsOf(key);
+        int slot = find(bits);
+        if (slot >= 0) {
+            IntegerFieldValue previous = new IntegerFieldValue(weights[slot]);
+            weights[slot] = weight.getInteger();
+            return previous;
+        }
+        slot = freeSlotOf(bits);
+        if (state[slot] == DELETED) deleted--;
+        keys[slot] = bits;
+        weights[slot] = weight.getInteger();
+        state[slot] = USED;
+        size++;
+        modCount++;
+        if (size + deleted > keys.length * MAX_LOAD_FACTOR)
+            rehash(size > keys.length * MAX_LOAD_FACTOR / 2 ? keys.length * 2 : keys.length);
+        return null;
+    }
+
+    @Override
+    public IntegerFieldValue remove(Object key) {
+        if ( ! isKey(key)) return null;
+        int slot = find(bitsOf(key));
+        if (slot < 0) return null;
+        IntegerFieldValue previous = new IntegerFieldValue(weights[slot]);
+        removeSlot(slot);
+        return previous;
+    }
+
+    private void removeSlot(int slot) {
+        state[slot] = DELETED;
+        deleted++;
+        size--;
+        modCount++;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldWeights = weights;
+        byte[] oldState = state;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldState[i] != USED) continue;
+            int slot = freeSlotOf(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            weights[slot] = oldWeights[i];
+            state[slot] = USED;
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (size == 0 && deleted == 0) return;
+        Arrays.fill(state, EMPTY);
+        size = 0;
+        deleted = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<>() {
+
+            @Override
+            public int size() { return size; }
+
+            @Override
+            public boolean contains(Object o) { return containsKey(o); }
+
+            @Override
+            public boolean remove(Object o) { return PrimitiveWeightMap.this.remove(o) != null; }
+
+            @Override
+            public Iterator<K> iterator() {
+                Iterator<Map.Entry<K, IntegerFieldValue>> entries = entrySet().iterator();
+                return new Iterator<>() {
+                    @Override public boolean hasNext() { return entries.hasNext(); }
+                    @Override public K next() { return entries.next().getKey(); }
+                    @Override public void remove() { entries.remove(); }
+                };
+            }
+
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<K, IntegerFieldValue>> entrySet() {
+        return new AbstractSet<>() {
+
+            @Override
+            public int size() { return size; }
+
+            @Override
+            public boolean contains(Object o) {
+                if ( ! (o instanceof Map.Entry)) return false;
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+                IntegerFieldValue weight = get(entry.getKey());
+                return weight != null && weight.equals(entry.getValue());
+            }
+
+            @Override
+            public Iterator<Map.Entry<K, IntegerFieldValue>> iterator() {
+                return new Iterator<>() {
+
+                    private int slot = advance(0);
+                    private int lastReturned = -1;
+                    private int expectedModCount = modCount;
+
+                    private int advance(int from) {
+                        while (from < state.length && state[from] != USED) from++;
+                        return from;
+                    }
+
+                    @Override
+                    public boolean hasNext() { return slot < state.length; }
+
+                    @Override
+                    public Map.Entry<K, IntegerFieldValue> next() {
+                        if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                        if ( ! hasNext()) throw new NoSuchElementException();
+                        lastReturned = slot;
+                        slot = advance(slot + 1);
+                        return new SimpleEntry<>(keyOf(keys[lastReturned]), new IntegerFieldValue(weights[lastReturned]));
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (lastReturned < 0) throw new IllegalStateException();
+                        if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                        removeSlot(lastReturned);
+                        lastReturned = -1;
+                        expectedModCount = modCount;
+                    }
+
+                };
+            }
+
+        };
+    }
+
+}
@@ -85,7 +85,12 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
     @Override
     public WeightedSet clone() {
         WeightedSet<K> newSet = (WeightedSet<K>) super.clone();
-        newSet.map = (MapFieldValue<K, IntegerFieldValue>) map.clone();
+        if (map.hasPrimitiveStorage()) {
+            newSet.clearAndReservePrimitives(map.size());
+            newSet.map.putAll(map);
+        } else {
+            newSet.map = (MapFieldValue<K, IntegerFieldValue>) map.clone();
+        }
         return newSet;
     }
 
@@ -224,6 +229,32 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
         map = new MapFieldValue<>(new MapDataType(getDataType().getNestedType(), DataType.INT), count);
     }
 
+    /**
+     * Clears this, reserves space for the given number of keys, and stores the keys and weights of sets with
+     * byte, int, long, float or double keys as primitives, rather than as two field value objects per entry.
+     * <p>
+     * The keys and weights of such a set are copied in when added, and copied out to new field values when
+     * accessed, so changing a key returned from this does not change the set. Sets of other types get regular storage.
+     */
+    public void clearAndReservePrimitives(int count) {
+        MapDataType type = new MapDataType(getDataType().getNestedType(), DataType.INT);
+        PrimitiveWeightMap<K> primitive = PrimitiveWeightMap.create(getDataType().getNestedType(), count);
+        map = (primitive != null) ? new MapFieldValue<>(type, primitive) : new MapFieldValue<>(type, count);
+    }
+
+    /** Returns whether the keys and weights of this are stored as primitives. See {@link #clearAndReservePrimitives(int)}. */
+    public boolean hasPrimitiveStorage() {
+        return map.hasPrimitiveStorage();
+    }
+
+    /** Replaces primitive storage by regular field values, which may be modified in place */
+    private void inflate() {
+        if ( ! map.hasPrimitiveStorage()) return;
+        MapFieldValue<K, IntegerFieldValue> inflated = new MapFieldValue<>(map.getDataType(), map.size());
+        inflated.putAll(map);
+        map = inflated;
+    }
+
     Map<K, Integer> getPrimitiveMap() {
         Map<K, Integer> retVal = new LinkedHashMap<>();
         for (Entry<K, IntegerFieldValue> entry : map.entrySet()) {
@@ -291,6 +322,7 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
 
     @Override
     FieldPathIteratorHandler.ModificationStatus iterateNested(FieldPath fieldPath, int pos, FieldPathIteratorHandler handler) {
+        inflate(); // Handlers modify the keys in place
         FieldPathIteratorHandler.ModificationStatus status = map.iterateNested(fieldPath, pos, handler, this);
         return status;
     }
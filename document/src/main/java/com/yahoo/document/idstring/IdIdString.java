@@ -11,6 +11,9 @@ import com.yahoo.text.Utf8;
  * Time: 11:02 AM
  */
 public class IdIdString extends IdString {
+
+    private static final String[] noKeyValues = new String[0];
+
     private String type;
     private String group;
     private long location;
@@ -47,7 +50,7 @@ public class IdIdString extends IdString {
         super(Scheme.id, namespace, localId);
         this.type = type;
         boolean hasSetLocation = false;
-        for(String pair : keyValues.split(",")) {
+        for(String pair : keyValues.isEmpty() ? noKeyValues : keyValues.split(",")) {
             int pos = pair.indexOf('=');
             if (pos == -1) {
                 if (pair.equals("")) {  // empty pair is ok
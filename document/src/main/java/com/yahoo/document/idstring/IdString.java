@@ -124,8 +124,9 @@ public abstract class IdString {
             throw new IllegalArgumentException("Unparseable id '" + id + "': Scheme missing");
         }
 
-        //Find scheme
-        String schemeStr = id.substring(0, schemePos);
+        //Find scheme, without allocating for the common id scheme
+        boolean isIdScheme = schemePos == 2 && id.startsWith("id");
+        String schemeStr = isIdScheme ? "id" : id.substring(0, schemePos);
         int currPos = schemePos + 1;
 
         //Find namespace
@@ -142,7 +143,7 @@ public abstract class IdString {
             currPos = colonPos + 1;
         }
 
-        if (schemeStr.equals("id")) {
+        if (isIdScheme) {
             colonPos = id.indexOf(":", currPos);
             if (colonPos < 0) {
                 throw new IllegalArgumentException("Unparseable id '" + id + "': Document type missing");
@@ -156,7 +157,12 @@ public abstract class IdString {
             String keyValues = id.substring(currPos, colonPos);
 
             currPos = colonPos + 1;
-            return new IdIdString(namespace, type, keyValues, id.substring(currPos));
+            IdIdString idString = new IdIdString(namespace, type, keyValues, id.substring(currPos));
+            if (keyValues.isEmpty()) {
+                // The given string is already on canonical form, so there is no need to rebuild it later
+                idString.cache = new Utf8String(id);
+            }
+            return idString;
 
         } if (schemeStr.equals("doc")) {
             return new DocIdString(namespace, id.substring(currPos));
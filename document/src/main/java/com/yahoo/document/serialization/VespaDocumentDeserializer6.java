@@ -88,6 +88,7 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
     private List<SpanNode> spanNodes;
     private List<Annotation> annotations;
     private int[] stringPositions;
+    private boolean primitiveCollections = false;
 
     VespaDocumentDeserializer6(DocumentTypeManager manager, GrowableByteBuffer buf) {
         super(buf);
@@ -97,6 +98,18 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
 
     final public DocumentTypeManager getDocumentTypeManager() { return manager; }
 
+    /**
+     * Sets whether arrays and weighted sets of byte, int, long, float and double are read into primitive storage,
+     * which saves one or two field value objects per element. The elements of such collections are held by value,
+     * so changing an element obtained from one does not change the collection. Default is false.
+     *
+     * @see Array#clearAndReservePrimitives(int)
+     * @see WeightedSet#clearAndReservePrimitives(int)
+     */
+    public void setPrimitiveCollections(boolean primitiveCollections) {
+        this.primitiveCollections = primitiveCollections;
+    }
+
     public void read(Document document) {
          read(null, document);
     }
@@ -153,8 +166,23 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
 
     public <T extends FieldValue> void read(FieldBase field, Array<T> array) {
         int numElements = getNumCollectionElems();
-        ArrayList<T> list = new ArrayList<T>(numElements);
         ArrayDataType type = array.getDataType();
+        if (primitiveCollections) {
+            array.clearAndReservePrimitives(numElements);
+        }
+        if (array.hasPrimitiveStorage()) {
+            // Elements are copied in, so a single field value can be reused for all of them
+            FieldValue fv = type.getNestedType().createFieldValue();
+            for (int i = 0; i < numElements; i++) {
+                if (version < 7) {
+                    getInt(null); // We don't need size for anything
+                }
+                fv.deserialize(null, this);
+                array.add((T) fv);
+            }
+            return;
+        }
+        ArrayList<T> list = new ArrayList<T>(numElements);
         for (int i = 0; i < numElements; i++) {
             if (version < 7) {
                 getInt(null); // We don't need size for anything
@@ -470,7 +498,23 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
             throw new DeserializationException("Bad number of weighted set elements, " + numElements);
         }
 
-        ws.clearAndReserve(numElements * 2); // Avoid resizing
+        if (primitiveCollections) {
+            ws.clearAndReservePrimitives(numElements);
+        } else {
+            ws.clearAndReserve(numElements * 2); // Avoid resizing
+        }
+        if (ws.hasPrimitiveStorage()) {
+            // Keys and weights are copied in, so the same field values can be reused for all entries
+            FieldValue value = type.getNestedType().createFieldValue();
+            IntegerFieldValue weight = new IntegerFieldValue();
+            for (int i = 0; i < numElements; i++) {
+                getInt(null); // Size is not needed
+                value.deserialize(null, this);
+                weight.assign(getInt(null));
+                ws.putUnChecked((T) value, weight);
+            }
+            return;
+        }
         for (int i = 0; i < numElements; i++) {
             int size = getInt(null);
             FieldValue value = type.getNestedType().createFieldValue();
@@ -15,6 +15,8 @@ import com.yahoo.document.WeightedSetDataType;
 import com.yahoo.document.annotation.AlternateSpanList;
 import com.yahoo.document.annotation.Annotation;
 import com.yahoo.document.annotation.AnnotationReference;
+import com.yahoo.document.annotation.AnnotationType;
+import com.yahoo.document.annotation.CompactSpanTree;
 import com.yahoo.document.annotation.Span;
 import com.yahoo.document.annotation.SpanList;
 import com.yahoo.document.annotation.SpanNode;
@@ -53,6 +55,7 @@ import com.yahoo.document.update.TensorModifyUpdate;
 import com.yahoo.document.update.TensorRemoveUpdate;
 import com.yahoo.document.update.ValueUpdate;
 import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.io.GrowableByteBufferPool;
 import com.yahoo.tensor.serialization.TypedBinaryFormat;
 import com.yahoo.vespa.objects.BufferSerializer;
 import com.yahoo.vespa.objects.FieldBase;
@@ -332,7 +335,7 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         GrowableByteBuffer bigBuffer = buf;
 
         //create a new buffer and serialize into that for a while:
-        GrowableByteBuffer buffer = new GrowableByteBuffer(4096, 2.0f);
+        GrowableByteBuffer buffer = GrowableByteBufferPool.acquire(4096);
         buf = buffer;
 
         List<Integer> fieldIds = new LinkedList<>();
@@ -383,6 +386,7 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         buf.position(lenPos);
         putInt(null, dataLength);
         buf.position(posNow);
+        GrowableByteBufferPool.release(buffer);
     }
 
     /**
@@ -491,6 +495,15 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         //we're going to write a new SpanTree, create a new Map for nodes:
         spanNodeCounter = 0;
 
+        if (tree.getCompactSpanTree() != null) {
+            try {
+                writeCompact(tree.getCompactSpanTree());
+            } finally {
+                spanNodeCounter = -1;
+            }
+            return;
+        }
+
         //make sure tree is consistent before continuing:
         tree.cleanup();
 
@@ -523,6 +536,46 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         }
     }
 
+    /** Writes a compact span tree directly from its arrays, in the same format as the equivalent SpanTree */
+    private void writeCompact(CompactSpanTree tree) {
+        new StringFieldValue(tree.getName()).serialize(this);
+
+        // The root SpanList has id 0, and the spans have ids 1 and up
+        buf.put(SpanList.ID);
+        buf.putInt1_2_4Bytes(tree.numSpans());
+        for (int span = 0; span < tree.numSpans(); span++) {
+            if (bytePositions == null) {
+                throw new SerializationException("Cannot serialize " + tree + ", no access to parent StringFieldValue.");
+            }
+            int byteFrom = bytePositions[tree.getFrom(span)];
+            int byteLength = bytePositions[tree.getFrom(span) + tree.getLength(span)] - byteFrom;
+
+            buf.put(Span.ID);
+            buf.putInt1_2_4Bytes(byteFrom);
+            buf.putInt1_2_4Bytes(byteLength);
+        }
+
+        buf.putInt1_2_4Bytes(tree.numAnnotations());
+        for (int annotation : tree.annotationOrder()) {
+            AnnotationType type = tree.getAnnotationType(annotation);
+            FieldValue value = tree.getAnnotationValue(annotation);
+            buf.putInt(type.getId());
+            buf.put(value != null ? (byte) 3 : (byte) 1);
+
+            int posBeforeSize = buf.position();
+            buf.putInt1_2_4BytesAs4(0);
+            buf.putInt1_2_4Bytes(tree.getAnnotatedSpan(annotation) + 1);
+            if (value != null) {
+                buf.putInt(type.getDataType().getId());
+                value.serialize(this);
+            }
+            int end = buf.position();
+            buf.position(posBeforeSize);
+            buf.putInt1_2_4BytesAs4(end - posBeforeSize - 4);
+            buf.position(end);
+        }
+    }
+
     public void write(SpanNode spanNode) {
         if (spanNodeCounter >= 0) {
             spanNode.setScratchId(spanNodeCounter++);
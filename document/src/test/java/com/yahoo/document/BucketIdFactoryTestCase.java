@@ -8,6 +8,8 @@ import com.yahoo.document.idstring.*;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 /**
  * Date: Sep 7, 2007
@@ -133,5 +135,20 @@ public class BucketIdFactoryTestCase {
         assertEquals(0, bid.compareTo(new BucketId(18, 0x123456789L)));
     }
 
+    @Test
+    public void testBucketIdIsCachedInDocumentIdForDefaultFactory() {
+        DocumentId docId = new DocumentId("id:ns:type::foo");
+        BucketId bid = new BucketIdFactory().getBucketId(docId);
+        assertSame(bid, new BucketIdFactory(32, 26, 6).getBucketId(docId));
+        assertEquals(bid, new BucketIdFactory().getBucketId(new DocumentId("id:ns:type::foo")));
+
+        BucketId other = new BucketIdFactory(16, 26, 6).getBucketId(docId);
+        assertNotSame(other, new BucketIdFactory(16, 26, 6).getBucketId(docId));
+
+        docId.setId(IdString.createIdString("id:ns:type::bar"));
+        assertEquals(new BucketIdFactory().getBucketId(new DocumentId("id:ns:type::bar")),
+                     new BucketIdFactory().getBucketId(docId));
+    }
+
 }
 
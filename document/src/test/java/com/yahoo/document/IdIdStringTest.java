@@ -2,6 +2,7 @@
 package com.yahoo.document;
 
 import com.yahoo.document.idstring.IdIdString;
+import com.yahoo.document.idstring.IdString;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -62,6 +63,15 @@ public class IdIdStringTest {
         }
     }
 
+    @Test
+    public void requireThatParsedIdsAreCanonical() throws Exception {
+        assertEquals("id:ns:type::foo:bar", IdString.createIdString("id:ns:type::foo:bar").toString());
+        assertEquals("id:ns:type:n=10:foo", IdString.createIdString("id:ns:type:n=010:foo").toString());
+        assertEquals("id:ns:type:g=a:foo", IdString.createIdString("id:ns:type:g=a:foo").toString());
+        assertEquals(new GlobalId(new IdIdString("ns", "type", "", "foo")),
+                     new GlobalId(IdString.createIdString("id:ns:type::foo")));
+    }
+
     @Test
     public void requireThatIdIdStringCanReplaceType() throws Exception {
         String type = IdIdString.replaceType("id:namespace:type::foo", "newType");
@@ -0,0 +1,141 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.annotation;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.serialization.DocumentDeserializer;
+import com.yahoo.document.serialization.DocumentDeserializerFactory;
+import com.yahoo.document.serialization.DocumentSerializer;
+import com.yahoo.document.serialization.DocumentSerializerFactory;
+import com.yahoo.io.GrowableByteBuffer;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class CompactSpanTreeTestCase {
+
+    private static final String text = "Hello, Wörld of spans";
+    private static final Field field = new Field("text", DataType.STRING);
+
+    private static CompactSpanTree createCompactTree() {
+        CompactSpanTree tree = new CompactSpanTree(SpanTrees.LINGUISTICS, 1);
+        int hello = tree.span(0, 5);
+        int world = tree.span(7, 5);
+        int of = tree.span(13, 2);
+        int spans = tree.span(16, 5);
+        tree.annotate(hello, AnnotationTypes.TERM, new StringFieldValue("hello"));
+        tree.annotate(world, AnnotationTypes.TERM, new StringFieldValue("world"));
+        tree.annotate(world, AnnotationTypes.TERM, new StringFieldValue("wörld"));
+        tree.annotate(of, AnnotationTypes.TERM);
+        tree.annotate(spans, AnnotationTypes.TERM);
+        tree.annotate(spans, AnnotationTypes.TERM, new StringFieldValue("span"));
+        tree.annotate(hello, AnnotationTypes.TOKEN_TYPE, new IntegerFieldValue(1));
+        return tree;
+    }
+
+    private static SpanTree createRegularTree() {
+        SpanTree tree = new SpanTree(SpanTrees.LINGUISTICS);
+        Span hello = tree.spanList().span(0, 5);
+        Span world = tree.spanList().span(7, 5);
+        Span of = tree.spanList().span(13, 2);
+        Span spans = tree.spanList().span(16, 5);
+        tree.annotate(hello, AnnotationTypes.TERM, new StringFieldValue("hello"));
+        tree.annotate(world, AnnotationTypes.TERM, new StringFieldValue("world"));
+        tree.annotate(world, AnnotationTypes.TERM, new StringFieldValue("wörld"));
+        tree.annotate(of, AnnotationTypes.TERM);
+        tree.annotate(spans, AnnotationTypes.TERM);
+        tree.annotate(spans, AnnotationTypes.TERM, new StringFieldValue("span"));
+        tree.annotate(hello, AnnotationTypes.TOKEN_TYPE, new IntegerFieldValue(1));
+        return tree;
+    }
+
+    private static byte[] serialize(SpanTree tree) {
+        StringFieldValue value = new StringFieldValue(text);
+        value.setSpanTree(tree);
+        GrowableByteBuffer buffer = new GrowableByteBuffer(1024);
+        DocumentSerializer serializer = DocumentSerializerFactory.create6(buffer);
+        serializer.write(field, value);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    @Test
+    public void requireThatCompactTreeIsSerializedLikeTheEquivalentRegularTree() {
+        SpanTree view = new SpanTree(createCompactTree());
+        assertArrayEquals(serialize(createRegularTree()), serialize(view));
+        assertNotNull("Serialization does not build the object model", view.getCompactSpanTree());
+    }
+
+    @Test
+    public void requireThatSerializedCompactTreeCanBeDeserialized() {
+        GrowableByteBuffer buffer = GrowableByteBuffer.wrap(serialize(new SpanTree(createCompactTree())));
+        DocumentDeserializer deserializer = DocumentDeserializerFactory.create6(new DocumentTypeManager(), buffer);
+        StringFieldValue value = new StringFieldValue();
+        deserializer.read(field, value);
+
+        assertEquals(text, value.getString());
+        assertEquals(createRegularTree(), value.getSpanTree(SpanTrees.LINGUISTICS));
+    }
+
+    @Test
+    public void requireThatViewBehavesLikeTheRegularTree() {
+        SpanTree view = new SpanTree(createCompactTree());
+        assertEquals(SpanTrees.LINGUISTICS, view.getName());
+        assertEquals(7, view.numAnnotations());
+        assertNotNull(view.getCompactSpanTree());
+
+        assertEquals(createRegularTree(), view);
+        assertNull(view.getCompactSpanTree());
+        assertEquals(4, view.spanList().numChildren());
+        assertEquals(7, view.numAnnotations());
+        assertSame(view, view.getRoot().getParent());
+    }
+
+    @Test
+    public void requireThatViewCanBeModifiedThroughTheRegularApi() {
+        SpanTree view = new SpanTree(createCompactTree());
+        view.annotate(view.spanList().span(0, 21), AnnotationTypes.TERM);
+        assertEquals(8, view.numAnnotations());
+        assertEquals(5, view.spanList().numChildren());
+    }
+
+    @Test
+    public void requireThatAnnotationsAreOrderedLikeRegularAnnotations() {
+        CompactSpanTree tree = createCompactTree();
+        assertArrayEquals(new int[] { 0, 6, 1, 2, 3, 4, 5 }, tree.annotationOrder());
+    }
+
+    @Test
+    public void requireThatIllegalInputIsRejected() {
+        CompactSpanTree tree = new CompactSpanTree("tree");
+        try {
+            tree.span(-1, 2);
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("From cannot be < 0. (Was -1).", e.getMessage());
+        }
+        try {
+            tree.annotate(0, AnnotationTypes.TERM);
+            fail("Expected exception");
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals("No span with index 0 in compact span tree 'tree'", e.getMessage());
+        }
+        int span = tree.span(0, 2);
+        try {
+            tree.annotate(span, AnnotationTypes.TERM, new IntegerFieldValue(1));
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Value 1 is not compatible with annotation type " + AnnotationTypes.TERM, e.getMessage());
+        }
+    }
+
+}
@@ -3,6 +3,12 @@ package com.yahoo.document.datatypes;
 
 import com.yahoo.document.ArrayDataType;
 import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.serialization.DocumentDeserializerFactory;
+import com.yahoo.document.serialization.DocumentSerializerFactory;
+import com.yahoo.document.serialization.VespaDocumentDeserializer6;
+import com.yahoo.io.GrowableByteBuffer;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -318,4 +324,93 @@ public class ArrayTestCase {
         assertEquals(-1, b.compareTo(a));
     }
 
+    @Test
+    public void testPrimitiveStorageBehavesLikeRegularStorage() {
+        ArrayDataType type = new ArrayDataType(DataType.INT);
+        Array<IntegerFieldValue> regular = new Array<>(type);
+        Array<IntegerFieldValue> primitive = new Array<>(type);
+        primitive.clearAndReservePrimitives(1);
+        assertTrue(primitive.hasPrimitiveStorage());
+        assertFalse(regular.hasPrimitiveStorage());
+
+        for (Array<IntegerFieldValue> array : List.of(regular, primitive)) {
+            for (int i = 0; i < 10; i++)
+                array.add(new IntegerFieldValue(i));
+            array.add(0, new IntegerFieldValue(-1));
+            array.remove(5);
+            array.remove(new IntegerFieldValue(7));
+            array.set(2, new IntegerFieldValue(42));
+        }
+        assertEquals(regular, primitive);
+        assertEquals(primitive, regular);
+        assertEquals(regular.hashCode(), primitive.hashCode());
+        assertEquals(0, primitive.compareTo(regular));
+        assertEquals(regular.toString(), primitive.toString());
+        assertEquals(regular.getWrappedValue(), primitive.getWrappedValue());
+        assertEquals(3, primitive.indexOf(new IntegerFieldValue(2)));
+
+        Array<IntegerFieldValue> clone = primitive.clone();
+        assertTrue(clone.hasPrimitiveStorage());
+        clone.set(0, new IntegerFieldValue(1000));
+        assertEquals(new IntegerFieldValue(-1), primitive.get(0));
+    }
+
+    @Test
+    public void testPrimitiveStorageHoldsCopies() {
+        Array<DoubleFieldValue> array = new Array<>(new ArrayDataType(DataType.DOUBLE));
+        array.clearAndReservePrimitives(2);
+        DoubleFieldValue value = new DoubleFieldValue(1.5);
+        array.add(value);
+        value.assign(2.5);
+        array.add(value);
+        assertEquals(new DoubleFieldValue(1.5), array.get(0));
+        assertEquals(new DoubleFieldValue(2.5), array.get(1));
+
+        array.get(0).assign(3.5);
+        assertEquals(new DoubleFieldValue(1.5), array.get(0));
+    }
+
+    @Test
+    public void testPrimitiveStorageOnlyForNumericTypes() {
+        for (DataType type : List.of(DataType.BYTE, DataType.INT, DataType.LONG, DataType.FLOAT, DataType.DOUBLE)) {
+            Array<FieldValue> array = new Array<>(new ArrayDataType(type));
+            array.clearAndReservePrimitives(4);
+            assertTrue(type.getName(), array.hasPrimitiveStorage());
+            FieldValue value = type.createFieldValue();
+            value.assign(3);
+            array.add(value);
+            array.add(0, value);
+            assertEquals(List.of(value, value), array.getValues());
+        }
+        Array<StringFieldValue> strings = new Array<>(new ArrayDataType(DataType.STRING));
+        strings.clearAndReservePrimitives(4);
+        assertFalse(strings.hasPrimitiveStorage());
+    }
+
+    @Test
+    public void testDeserializedNumericArrayHasPrimitiveStorageOnlyWhenRequested() {
+        Field field = new Field("values", new ArrayDataType(DataType.FLOAT));
+        Array<FloatFieldValue> array = new Array<>(field.getDataType());
+        for (int i = 0; i < 100; i++)
+            array.add(new FloatFieldValue(i / 3.0f));
+        GrowableByteBuffer buffer = new GrowableByteBuffer();
+        DocumentSerializerFactory.create6(buffer).write(field, array);
+        buffer.flip();
+
+        Array<FloatFieldValue> deserialized = new Array<>(field.getDataType());
+        DocumentDeserializerFactory.create6(new DocumentTypeManager(), buffer).read(field, deserialized);
+        assertFalse(deserialized.hasPrimitiveStorage());
+        assertEquals(array, deserialized);
+        deserialized.get(0).assign(42.0f);
+        assertEquals("Elements of a deserialized array may be modified in place", new FloatFieldValue(42.0f), deserialized.get(0));
+
+        buffer.position(0);
+        VespaDocumentDeserializer6 deserializer = (VespaDocumentDeserializer6) DocumentDeserializerFactory.create6(new DocumentTypeManager(), buffer);
+        deserializer.setPrimitiveCollections(true);
+        Array<FloatFieldValue> primitive = new Array<>(field.getDataType());
+        deserializer.read(field, primitive);
+        assertTrue(primitive.hasPrimitiveStorage());
+        assertEquals(array, primitive);
+    }
+
 }
@@ -2,10 +2,17 @@
 package com.yahoo.document.datatypes;
 
 import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.serialization.DocumentDeserializerFactory;
+import com.yahoo.document.serialization.DocumentSerializerFactory;
+import com.yahoo.document.serialization.VespaDocumentDeserializer6;
+import com.yahoo.io.GrowableByteBuffer;
 import org.junit.Test;
 
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
@@ -242,4 +249,73 @@ public class WeightedSetTestCase {
         assertEquals(Integer.valueOf(2), assignmentTarget.get(new StringFieldValue("bar")));
     }
 
+    @Test
+    public void testPrimitiveStorageBehavesLikeRegularStorage() {
+        WeightedSet<LongFieldValue> regular = new WeightedSet<>(DataType.getWeightedSet(DataType.LONG));
+        WeightedSet<LongFieldValue> primitive = new WeightedSet<>(DataType.getWeightedSet(DataType.LONG));
+        primitive.clearAndReservePrimitives(2);
+        assertTrue(primitive.hasPrimitiveStorage());
+        assertFalse(regular.hasPrimitiveStorage());
+
+        for (WeightedSet<LongFieldValue> set : List.of(regular, primitive)) {
+            for (long i = 0; i < 1000; i++)
+                set.put(new LongFieldValue(i * 7919), (int) i);
+            for (long i = 0; i < 1000; i += 3)
+                assertEquals(Integer.valueOf((int) i), set.remove(new LongFieldValue(i * 7919)));
+            set.put(new LongFieldValue(7919), -1);
+            set.add(new LongFieldValue(-5));
+        }
+        assertEquals(667, primitive.size());
+        assertEquals(regular, primitive);
+        assertEquals(primitive, regular);
+        assertEquals(0, primitive.compareTo(regular));
+        assertEquals(Integer.valueOf(-1), primitive.get(new LongFieldValue(7919)));
+        assertNull(primitive.get(new LongFieldValue(0)));
+        assertTrue(primitive.contains(new LongFieldValue(-5)));
+        assertTrue(primitive.removeValue(new LongFieldValue(-5)));
+        assertFalse(primitive.contains(new LongFieldValue(-5)));
+
+        WeightedSet<LongFieldValue> clone = primitive.clone();
+        assertTrue(clone.hasPrimitiveStorage());
+        clone.put(new LongFieldValue(7919), 3);
+        assertEquals(Integer.valueOf(-1), primitive.get(new LongFieldValue(7919)));
+    }
+
+    @Test
+    public void testPrimitiveStorageOfFloatingPointKeys() {
+        WeightedSet<FloatFieldValue> set = new WeightedSet<>(DataType.getWeightedSet(DataType.FLOAT));
+        set.clearAndReservePrimitives(4);
+        set.put(new FloatFieldValue(0.0f), 1);
+        set.put(new FloatFieldValue(-0.0f), 2);
+        set.put(new FloatFieldValue(Float.NaN), 3);
+        assertEquals(3, set.size());
+        assertEquals(Integer.valueOf(1), set.get(new FloatFieldValue(0.0f)));
+        assertEquals(Integer.valueOf(2), set.get(new FloatFieldValue(-0.0f)));
+        assertEquals(Integer.valueOf(3), set.get(new FloatFieldValue(Float.NaN)));
+    }
+
+    @Test
+    public void testDeserializedNumericSetHasPrimitiveStorageOnlyWhenRequested() {
+        Field field = new Field("values", DataType.getWeightedSet(DataType.INT));
+        WeightedSet<IntegerFieldValue> set = new WeightedSet<>(field.getDataType());
+        for (int i = 0; i < 100; i++)
+            set.put(new IntegerFieldValue(i), i * 2);
+        GrowableByteBuffer buffer = new GrowableByteBuffer();
+        DocumentSerializerFactory.create6(buffer).write(field, set);
+        buffer.flip();
+
+        WeightedSet<IntegerFieldValue> deserialized = new WeightedSet<>(field.getDataType());
+        DocumentDeserializerFactory.create6(new DocumentTypeManager(), buffer).read(field, deserialized);
+        assertFalse(deserialized.hasPrimitiveStorage());
+        assertEquals(set, deserialized);
+
+        buffer.position(0);
+        VespaDocumentDeserializer6 deserializer = (VespaDocumentDeserializer6) DocumentDeserializerFactory.create6(new DocumentTypeManager(), buffer);
+        deserializer.setPrimitiveCollections(true);
+        WeightedSet<IntegerFieldValue> primitive = new WeightedSet<>(field.getDataType());
+        deserializer.read(field, primitive);
+        assertTrue(primitive.hasPrimitiveStorage());
+        assertEquals(set, primitive);
+    }
+
 }
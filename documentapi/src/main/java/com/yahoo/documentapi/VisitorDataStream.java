@@ -0,0 +1,223 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi;
+
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.RemoveDocumentMessage;
+import com.yahoo.messagebus.Message;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A visitor data handler for bulk export, which packs visited documents into large frames, and lets the client
+ * consume these instead of one response per document.
+ * <p>
+ * Messages are acked as soon as their document is added to a frame, so storage does not wait for the client
+ * to process each document before it sends more. Flow control is instead by credits: the client may have at most
+ * the given number of completed frames buffered. When these are all taken, acks are held back with the frames
+ * being filled, until the client takes a frame with {@link #getNextFrame(int)}; this stops visiting once all the
+ * messages storage may have pending are held.
+ * <p>
+ * Frames are sealed when they reach the frame size, when visiting is done, and when a client has waited the given
+ * timeout for a frame without one being completed. The class is thread safe.
+ */
+public class VisitorDataStream extends VisitorDataHandler {
+
+    private final int frameSizeBytes;
+    private final int credits;
+
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    private FrameBuilder current = new FrameBuilder();
+    private boolean done = false;
+    private long frameCount = 0;
+    private long entryCount = 0;
+    private long heldAckCount = 0;
+
+    /**
+     * Creates a data stream with frames of 1 MiB, of which 8 may be buffered.
+     */
+    public VisitorDataStream() {
+        this(1 << 20, 8);
+    }
+
+    /**
+     * Creates a data stream.
+     *
+     * @param frameSizeBytes the approximate serialized size a frame may grow to before it is sealed
+     * @param credits the number of completed frames which may be buffered before acks are held back
+     */
+    public VisitorDataStream(int frameSizeBytes, int credits) {
+        if (frameSizeBytes < 1) throw new IllegalArgumentException("Frame size must be positive, but was " + frameSizeBytes);
+        if (credits < 1) throw new IllegalArgumentException("Credits must be positive, but was " + credits);
+        this.frameSizeBytes = frameSizeBytes;
+        this.credits = credits;
+    }
+
+    /**
+     * Drops any frames not taken by the client, and acks the messages they held back, as storage otherwise waits
+     * for these acks until the visitor times out. This is done before the session is cleared by the superclass.
+     */
+    @Override
+    public void reset() {
+        List<AckToken> released = new ArrayList<>();
+        synchronized (this) {
+            frames.forEach(frame -> released.addAll(frame.heldAcks));
+            released.addAll(current.heldAcks);
+            frames.clear();
+            current = new FrameBuilder();
+            done = false;
+        }
+        released.forEach(this::ack);
+        super.reset();
+    }
+
+    @Override
+    public void onMessage(Message m, AckToken token) {
+        int size = m.getApproxSize(); // The size on the wire, as long as the message is not yet decoded
+        DocumentOperation operation;
+        if (m instanceof PutDocumentMessage) {
+            PutDocumentMessage put = (PutDocumentMessage)m;
+            DocumentPut documentPut = put.getDocumentPut();
+            documentPut.getDocument().setLastModified(put.getTimestamp());
+            operation = documentPut;
+        } else if (m instanceof RemoveDocumentMessage) {
+            operation = ((RemoveDocumentMessage)m).getDocumentRemove();
+        } else {
+            throw new UnsupportedOperationException(
+                    String.format("Expected put/remove message, got '%s' of type %s",
+                                  m.toString(), m.getClass().toString()));
+        }
+
+        boolean ackNow;
+        synchronized (this) {
+            current.add(operation, size);
+            ackNow = frames.size() < credits;
+            if ( ! ackNow) {
+                current.heldAcks.add(token);
+                ++heldAckCount;
+            }
+            if (current.size() >= frameSizeBytes) {
+                seal();
+            }
+        }
+        if (ackNow) {
+            ack(token);
+        }
+    }
+
+    /** Moves the frame being filled to the completed frames, if it holds anything. Must hold the monitor. */
+    private void seal() {
+        if (current.isEmpty()) return;
+        frames.addLast(current.build());
+        current = new FrameBuilder();
+        ++frameCount;
+        notifyAll();
+    }
+
+    /**
+     * Returns the next frame of this stream, and acks the messages it held back. This blocks until a frame is
+     * completed or the given timeout is reached, in which case any documents already received are sealed in a
+     * frame and returned.
+     *
+     * @param timeoutMilliseconds the max time to wait for a frame to complete, where 0 means no limit
+     * @return the next frame, or null if visiting is done and all frames are taken, or nothing was received
+     * @throws InterruptedException if this thread is interrupted while waiting
+     */
+    public Frame getNextFrame(int timeoutMilliseconds) throws InterruptedException {
+        Frame frame;
+        List<AckToken> released = Collections.emptyList();
+        synchronized (this) {
+            long deadline = System.currentTimeMillis() + timeoutMilliseconds;
+            while (frames.isEmpty() && ! done) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (timeoutMilliseconds > 0 && remaining <= 0) break;
+                wait(timeoutMilliseconds > 0 ? remaining : 0);
+            }
+            if (frames.isEmpty()) {
+                seal();
+            }
+            frame = frames.pollFirst();
+            if (frame != null && frames.size() < credits && ! current.heldAcks.isEmpty()) {
+                released = current.heldAcks;
+                current.heldAcks = new ArrayList<>();
+            }
+        }
+        if (frame != null) {
+            frame.heldAcks.forEach(this::ack);
+            frame.heldAcks = null;
+        }
+        released.forEach(this::ack);
+        return frame;
+    }
+
+    @Override
+    public void onDone() {
+        synchronized (this) {
+            seal();
+            done = true;
+            notifyAll();
+        }
+        super.onDone();
+    }
+
+    /** Returns whether visiting is done, and all frames are taken */
+    public synchronized boolean isDone() { return done && frames.isEmpty(); }
+
+    /** Returns the number of frames completed so far */
+    public synchronized long getFrameCount() { return frameCount; }
+
+    /** Returns the number of documents and removes received so far */
+    public synchronized long getEntryCount() { return entryCount; }
+
+    /** Returns the number of acks which were held back because the client had no credits left */
+    public synchronized long getHeldAckCount() { return heldAckCount; }
+
+    private class FrameBuilder {
+
+        private final List<DocumentOperation> operations = new ArrayList<>();
+        private List<AckToken> heldAcks = new ArrayList<>();
+        private long size = 0;
+
+        void add(DocumentOperation operation, int approxSize) {
+            operations.add(operation);
+            size += approxSize;
+            ++entryCount;
+        }
+
+        long size() { return size; }
+
+        boolean isEmpty() { return operations.isEmpty(); }
+
+        Frame build() {
+            return new Frame(operations, heldAcks);
+        }
+
+    }
+
+    /** A block of documents and removes, in the order they were received */
+    public static class Frame {
+
+        private final List<DocumentOperation> operations;
+        private List<AckToken> heldAcks;
+
+        private Frame(List<DocumentOperation> operations, List<AckToken> heldAcks) {
+            this.operations = Collections.unmodifiableList(operations);
+            this.heldAcks = heldAcks;
+        }
+
+        /** Returns the number of documents and removes in this */
+        public int getEntryCount() { return operations.size(); }
+
+        /**
+         * Returns the operations of this, where puts have the last modified time of their document set to
+         * the time they were stored.
+         */
+        public List<DocumentOperation> getOperations() { return operations; }
+
+    }
+
+}
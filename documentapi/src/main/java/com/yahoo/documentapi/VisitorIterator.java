@@ -7,6 +7,9 @@ import com.yahoo.document.select.BucketSelector;
 import com.yahoo.document.select.parser.ParseException;
 import com.yahoo.log.LogLevel;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -75,18 +78,30 @@ public class VisitorIterator {
 
     /**
      * Provides a bucket source that encompasses the entire range available
-     * through a given value of distribution bits
+     * through a given value of distribution bits, or one slice of it. Buckets
+     * outside the slice are skipped by the bucket cursor, and counted as finished
      */
     protected static class DistributionRangeBucketSource implements BucketSource {
         private boolean flushActive = false;
         private int distributionBitCount;
+        private final int slices;
+        private final int sliceId;
         // Wouldn't need this if this were a non-static class, but do it for
         // the sake of keeping things identical in Java and C++
         private ProgressToken progressToken;
 
         public DistributionRangeBucketSource(int distributionBitCount,
                                              ProgressToken progress) {
+            this(distributionBitCount, progress, 1, 0);
+        }
+
+        public DistributionRangeBucketSource(int distributionBitCount,
+                                             ProgressToken progress,
+                                             int slices,
+                                             int sliceId) {
             progressToken = progress;
+            this.slices = slices;
+            this.sliceId = sliceId;
 
             // New progress token (could also be empty, in which this is a
             // no-op anyway)
@@ -142,6 +157,7 @@ public class VisitorIterator {
                 }
                 progressToken.setFinishedBucketCount(progressToken.getBucketCursor() -
                         progressToken.getPendingBucketCount());
+                skipToSlice();
             } else {
                 assert(progressToken.getBucketCursor() == progressToken.getTotalBucketCount());
             }
@@ -290,6 +306,40 @@ public class VisitorIterator {
             }
         }
 
+        /**
+         * Moves the bucket cursor to the start of the slice if it is before it, or to the end
+         * of the bucket space if it is past the slice, and counts the skipped buckets as finished.
+         * A single distribution bit is what a session starts out with before it knows the
+         * distribution bit count of the system, so slicing then waits for the first change.
+         */
+        private void skipToSlice() {
+            if (slices == 1 || distributionBitCount == 1) return;
+            long cursor = progressToken.getBucketCursor();
+            long next = cursor;
+            if (cursor < sliceBoundary(sliceId)) {
+                next = sliceBoundary(sliceId);
+            } else if (cursor >= sliceBoundary(sliceId + 1)) {
+                next = getTotalBucketCount();
+            }
+            if (next == cursor) return;
+            progressToken.setBucketCursor(next);
+            progressToken.setFinishedBucketCount(progressToken.getFinishedBucketCount() + next - cursor);
+            if (log.isLoggable(LogLevel.SPAM)) {
+                log.log(LogLevel.SPAM, "Moved bucket cursor from " + cursor + " to " + next +
+                        " for slice " + sliceId + " of " + slices);
+            }
+        }
+
+        /**
+         * Returns the position of the first bucket of the given slice. As the number of slices is a power of 2,
+         * the boundaries at one distribution bit count are also boundaries at all higher bit counts, so slices
+         * stay disjoint and complete when the bit count changes.
+         */
+        private long sliceBoundary(int slice) {
+            long total = getTotalBucketCount();
+            return (total / slices) * slice + (total % slices) * slice / slices;
+        }
+
         public boolean hasNext() {
             return progressToken.getBucketCursor() < (1L << distributionBitCount);
         }
@@ -314,6 +364,7 @@ public class VisitorIterator {
             long key = ProgressToken.makeNthBucketKey(currentPosition, distributionBitCount);
             ++currentPosition;
             progressToken.setBucketCursor(currentPosition);
+            skipToSlice();
             return new BucketProgress(
                     new BucketId(ProgressToken.keyToBucketId(key)),
                     new BucketId());
@@ -372,6 +423,7 @@ public class VisitorIterator {
                 progressToken.setDistributionBitCount(distributionBitCount);
 
                 correctTruncatedBucketCursor();
+                skipToSlice();
                 progressToken.setInconsistentState(false);
             }
         }
@@ -753,6 +805,34 @@ public class VisitorIterator {
             BucketIdFactory idFactory,
             int distributionBitCount,
             ProgressToken progress) throws ParseException {
+        return createFromDocumentSelection(documentSelection, idFactory, distributionBitCount, progress, 1, 0);
+    }
+
+    /**
+     * Create a new <code>VisitorIterator</code> instance based on the given document
+     * selection string, which iterates over only one slice of the selected buckets.
+     * For a range of buckets, each slice is a contiguous part of the range, while
+     * an explicit set of buckets is dealt out to the slices in bucket key order.
+     *
+     * @param slices the number of disjoint slices the selected buckets are divided into, which must be a power of 2
+     * @param sliceId the slice to iterate over, from 0 to <code>slices</code>
+     * @see #createFromDocumentSelection(String, BucketIdFactory, int, ProgressToken)
+     * @see VisitorParameters#slice(int, int)
+     */
+    public static VisitorIterator createFromDocumentSelection(
+            String documentSelection,
+            BucketIdFactory idFactory,
+            int distributionBitCount,
+            ProgressToken progress,
+            int slices,
+            int sliceId) throws ParseException {
+        if (slices < 1 || Integer.bitCount(slices) != 1) {
+            throw new IllegalArgumentException("The number of slices must be a power of 2, but was " + slices);
+        }
+        if (sliceId < 0 || sliceId >= slices) {
+            throw new IllegalArgumentException("Slice id must be from 0 to the number of slices, " +
+                                               "but was " + sliceId + " of " + slices);
+        }
         BucketSelector bucketSel = new BucketSelector(idFactory);
         Set<BucketId> rawBuckets = bucketSel.getBucketList(documentSelection);
         BucketSource src;
@@ -762,15 +842,27 @@ public class VisitorIterator {
         // bit-based range source
         if (rawBuckets == null) {
             // Range source
-            src = new DistributionRangeBucketSource(distributionBitCount, progress);
+            src = new DistributionRangeBucketSource(distributionBitCount, progress, slices, sliceId);
         } else {
             // Explicit source
-            src = new ExplicitBucketSource(rawBuckets, distributionBitCount, progress);
+            src = new ExplicitBucketSource(slice(rawBuckets, slices, sliceId), distributionBitCount, progress);
         }
 
         return new VisitorIterator(progress, src);
     }
 
+    private static Set<BucketId> slice(Set<BucketId> buckets, int slices, int sliceId) {
+        if (slices == 1) return buckets;
+        List<BucketId> ordered = new ArrayList<>(buckets);
+        ordered.sort((a, b) -> Long.compareUnsigned(ProgressToken.bucketToKey(a.getId()),
+                                                    ProgressToken.bucketToKey(b.getId())));
+        Set<BucketId> slice = new HashSet<>();
+        for (int i = sliceId; i < ordered.size(); i += slices) {
+            slice.add(ordered.get(i));
+        }
+        return slice;
+    }
+
     /**
      * Create a new <code>VisitorIterator</code> instance based on the given
      * set of buckets. This is supported for internal use only, and is required
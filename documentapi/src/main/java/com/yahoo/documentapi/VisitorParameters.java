@@ -50,6 +50,9 @@ public class VisitorParameters extends Parameters {
     private int traceLevel = 0;
     private ThrottlePolicy throttlePolicy = null;
     private boolean skipBucketsOnFatalErrors = false;
+    private int documentDecodeThreads = 0;
+    private int slices = 1;
+    private int sliceId = 0;
 
     // Advanced parameter, only for internal use.
     Set<BucketId> bucketsToVisit = null;
@@ -102,6 +105,8 @@ public class VisitorParameters extends Parameters {
                 params.getDynamicMaxBucketsIncreaseFactor());
         setTraceLevel(params.getTraceLevel());
         skipBucketsOnFatalErrors(params.skipBucketsOnFatalErrors());
+        setDocumentDecodeThreads(params.getDocumentDecodeThreads());
+        slice(params.getSlices(), params.getSliceId());
     }
 
     // Get functions
@@ -336,6 +341,46 @@ public class VisitorParameters extends Parameters {
 
     public void skipBucketsOnFatalErrors(boolean skipBucketsOnFatalErrors) { this.skipBucketsOnFatalErrors = skipBucketsOnFatalErrors; }
 
+    /** Returns the number of threads decoding received documents before they are passed to the local data handler. */
+    public int getDocumentDecodeThreads() { return documentDecodeThreads; }
+
+    /**
+     * Sets the number of threads the session uses to decode received documents before passing them to the
+     * local data handler, in the order they were received. 0, the default, leaves decoding to the data handler,
+     * which then happens when the document is first accessed.
+     *
+     * @param documentDecodeThreads number of decode threads, 0 or more
+     */
+    public void setDocumentDecodeThreads(int documentDecodeThreads) {
+        if (documentDecodeThreads < 0)
+            throw new IllegalArgumentException("Document decode threads must be 0 or more, was " + documentDecodeThreads);
+        this.documentDecodeThreads = documentDecodeThreads;
+    }
+
+    /** Returns the number of slices the bucket space is divided into, of which only one is visited. */
+    public int getSlices() { return slices; }
+
+    /** Returns the slice of the bucket space which is visited, from 0 to the number of slices. */
+    public int getSliceId() { return sliceId; }
+
+    /**
+     * Visits only the given slice of the bucket space, when this is divided into the given number of disjoint
+     * slices. Each slice may be visited by a separate session, and resumed with its own progress token, so the
+     * union of all slices is the whole bucket space. The number of slices must be a power of 2, so that slices
+     * stay disjoint and complete when the number of distribution bits changes during visiting.
+     *
+     * @param slices the number of slices to divide the bucket space into, a power of 2
+     * @param sliceId the slice to visit, from 0 to <code>slices</code>
+     */
+    public void slice(int slices, int sliceId) {
+        if (slices < 1 || Integer.bitCount(slices) != 1)
+            throw new IllegalArgumentException("Slices must be a power of 2, was " + slices);
+        if (sliceId < 0 || sliceId >= slices)
+            throw new IllegalArgumentException("Slice id must be from 0 to " + slices + ", was " + sliceId);
+        this.slices = slices;
+        this.sliceId = sliceId;
+    }
+
     /**
      * Set whether or not max buckets per visitor value should be dynamically
      * increased when using orderdoc and visitors do not return at least half
@@ -391,6 +436,12 @@ public class VisitorParameters extends Parameters {
                     .append(dynamicMaxBucketsIncreaseFactor)
                     .append('\n');
         }
+        if (documentDecodeThreads > 0) {
+            sb.append("  Decode threads:     ").append(documentDecodeThreads).append('\n');
+        }
+        if (slices > 1) {
+            sb.append("  Slice:              ").append(sliceId).append(" of ").append(slices).append('\n');
+        }
         sb.append(')');
 
         return sb.toString();
@@ -0,0 +1,169 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi.messagebus;
+
+import com.yahoo.documentapi.messagebus.protocol.DocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.UpdateDocumentMessage;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decodes the document payloads of received messages in parallel on an executor, and hands the decoded
+ * messages over in the order they were submitted. As all messages are delivered in submission order,
+ * the order of the messages for any single bucket is preserved.
+ * <p>
+ * Delivery happens in the thread of the decode task which completes the head of the queue, one message
+ * at a time. The number of undelivered messages is bounded by the number of messages the senders may have
+ * pending against the receiving session.
+ *
+ * @see com.yahoo.documentapi.VisitorParameters#setDocumentDecodeThreads(int)
+ */
+public class DocumentDecodeQueue {
+
+    /** Receives messages in the order they were submitted, after their payload is decoded */
+    public interface Delivery {
+
+        /**
+         * Delivers a message.
+         *
+         * @param message the message, with its payload decoded
+         * @param decodeFailure the exception thrown while decoding the message, or null if decoding succeeded
+         */
+        void deliver(DocumentMessage message, RuntimeException decodeFailure);
+
+    }
+
+    private static class Entry {
+
+        final DocumentMessage message;
+        final long submittedNanos;
+        boolean decoded = false;
+        RuntimeException failure = null;
+
+        Entry(DocumentMessage message, long submittedNanos) {
+            this.message = message;
+            this.submittedNanos = submittedNanos;
+        }
+
+    }
+
+    private final Executor executor;
+    private final Delivery delivery;
+    private final ArrayDeque<Entry> pending = new ArrayDeque<>();
+    private boolean delivering = false;
+
+    private final AtomicLong decodedCount = new AtomicLong(0);
+    private final AtomicLong totalDecodeLatencyNanos = new AtomicLong(0);
+    private final AtomicLong maxDecodeLatencyNanos = new AtomicLong(0);
+
+    public DocumentDecodeQueue(Executor executor, Delivery delivery) {
+        this.executor = executor;
+        this.delivery = delivery;
+    }
+
+    /**
+     * Schedules decoding of the given message, which is delivered once it and all messages submitted
+     * before it are decoded.
+     *
+     * @throws RejectedExecutionException if the executor rejects the decode task, in which case the message
+     *                                    is not delivered
+     */
+    public void submit(DocumentMessage message) {
+        Entry entry = new Entry(message, System.nanoTime());
+        synchronized (this) {
+            pending.addLast(entry);
+        }
+        try {
+            executor.execute(() -> decode(entry));
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                pending.removeLastOccurrence(entry);
+            }
+            deliverDecoded(); // The rejected entry may have been blocking decoded ones
+            throw e;
+        }
+    }
+
+    private void decode(Entry entry) {
+        RuntimeException failure = null;
+        try {
+            decodePayload(entry.message);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        long latency = System.nanoTime() - entry.submittedNanos;
+        decodedCount.incrementAndGet();
+        totalDecodeLatencyNanos.addAndGet(latency);
+        maxDecodeLatencyNanos.accumulateAndGet(latency, Math::max);
+
+        synchronized (this) {
+            entry.failure = failure;
+            entry.decoded = true;
+        }
+        deliverDecoded();
+    }
+
+    /** Forces decoding of the lazily deserialized payload of the given message, if any */
+    static void decodePayload(DocumentMessage message) {
+        if (message instanceof PutDocumentMessage) {
+            ((PutDocumentMessage)message).getDocumentPut();
+        } else if (message instanceof UpdateDocumentMessage) {
+            ((UpdateDocumentMessage)message).getDocumentUpdate();
+        }
+    }
+
+    /** Delivers decoded messages from the head of the queue, unless another thread is already doing so */
+    private void deliverDecoded() {
+        synchronized (this) {
+            if (delivering) return;
+            delivering = true;
+        }
+        boolean done = false;
+        try {
+            while (true) {
+                Entry head;
+                synchronized (this) {
+                    head = pending.peekFirst();
+                    if (head == null || ! head.decoded) {
+                        delivering = false;
+                        done = true;
+                        return;
+                    }
+                    pending.pollFirst();
+                }
+                delivery.deliver(head.message, head.failure);
+            }
+        } finally {
+            if ( ! done) {
+                synchronized (this) {
+                    delivering = false;
+                }
+            }
+        }
+    }
+
+    /** Returns the number of messages submitted but not yet delivered */
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    /** Returns the total number of messages decoded by this */
+    public long getDecodedCount() {
+        return decodedCount.get();
+    }
+
+    /** Returns the average time from a message was submitted until it was decoded, in milliseconds */
+    public double getAverageDecodeLatencyMillis() {
+        long count = decodedCount.get();
+        return count == 0 ? 0 : totalDecodeLatencyNanos.get() / (count * 1e6);
+    }
+
+    /** Returns the longest time from a message was submitted until it was decoded, in milliseconds */
+    public double getMaxDecodeLatencyMillis() {
+        return maxDecodeLatencyNanos.get() / 1e6;
+    }
+
+}
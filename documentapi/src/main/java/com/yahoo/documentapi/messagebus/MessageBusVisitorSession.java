@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.documentapi.messagebus;
 
+import com.yahoo.concurrent.ThreadFactoryFactory;
 import com.yahoo.document.BucketId;
 import com.yahoo.document.BucketIdFactory;
 import com.yahoo.document.select.parser.ParseException;
@@ -38,6 +39,9 @@ import com.yahoo.vdslib.VisitorStatistics;
 import com.yahoo.vdslib.state.ClusterState;
 
 import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -322,6 +326,8 @@ public class MessageBusVisitorSession implements VisitorSession {
     private final Sender sender;
     private final Receiver receiver;
     private final AsyncTaskExecutor taskExecutor;
+    private final ExecutorService decodeExecutor;
+    private final DocumentDecodeQueue decodeQueue;
     private final VisitingProgress progress;
     private final VisitorStatistics statistics;
     private final String sessionName = createSessionName();
@@ -363,6 +369,14 @@ public class MessageBusVisitorSession implements VisitorSession {
     {
         this.params = visitorParameters; // TODO(vekterli): make copy? legacy impl does not copy
         initializeRoute(routingTable);
+        if (params.getDocumentDecodeThreads() > 0) {
+            this.decodeExecutor = Executors.newFixedThreadPool(params.getDocumentDecodeThreads(),
+                                                               ThreadFactoryFactory.getDaemonThreadFactory("mbus.visitor.decode"));
+            this.decodeQueue = new DocumentDecodeQueue(decodeExecutor, this::handleDecodedDocumentMessage);
+        } else {
+            this.decodeExecutor = null;
+            this.decodeQueue = null;
+        }
         this.sender = senderFactory.createSender(createReplyHandler(), this.params);
         this.receiver = receiverFactory.createReceiver(createMessageHandler(), sessionName);
         this.taskExecutor = taskExecutor;
@@ -484,7 +498,11 @@ public class MessageBusVisitorSession implements VisitorSession {
     private MessageHandler createMessageHandler() {
         return (message) -> {
             try {
-                taskExecutor.submitTask(new HandleMessageTask(message));
+                if (decodeQueue != null && ! (message instanceof VisitorInfoMessage)) {
+                    decodeQueue.submit((DocumentMessage)message); // delivers in arrival order once decoded
+                } else {
+                    taskExecutor.submitTask(new HandleMessageTask(message));
+                }
             } catch (RejectedExecutionException e) {
                 Reply reply = ((DocumentMessage)message).createReply();
                 message.swapState(reply);
@@ -572,7 +590,9 @@ public class MessageBusVisitorSession implements VisitorSession {
                     params.getDocumentSelection(),
                     bucketIdFactory,
                     1,
-                    progressToken);
+                    progressToken,
+                    params.getSlices(),
+                    params.getSliceId());
         } else {
             if (log.isLoggable(LogLevel.DEBUG)) {
                 log.log(LogLevel.DEBUG, "parameters specify explicit bucket set " +
@@ -837,6 +857,21 @@ public class MessageBusVisitorSession implements VisitorSession {
         }
     }
 
+    private void handleDecodedDocumentMessage(DocumentMessage msg, RuntimeException decodeFailure) {
+        try {
+            if (decodeFailure == null) {
+                handleDocumentMessage(msg); // always replies on error
+            } else {
+                Reply reply = msg.createReply();
+                msg.swapState(reply);
+                handleMessageProcessingException(reply, decodeFailure, "DocumentMessage");
+                receiver.reply(reply);
+            }
+        } catch (Throwable t) {
+            com.yahoo.protect.Process.logAndDie("Caught unhandled error when processing message", t);
+        }
+    }
+
     private void handleDocumentMessage(DocumentMessage msg) {
         Reply reply = msg.createReply();
         msg.swapState(reply);
@@ -1133,6 +1168,16 @@ public class MessageBusVisitorSession implements VisitorSession {
         return params.getLocalDataHandler().getNext(timeoutMilliseconds);
     }
 
+    /**
+     * Returns the queue decoding received documents, which provides decode queue depth and latency metrics,
+     * or empty if this session does not decode documents on its own threads.
+     *
+     * @see VisitorParameters#setDocumentDecodeThreads(int)
+     */
+    public Optional<DocumentDecodeQueue> getDocumentDecodeQueue() {
+        return Optional.ofNullable(decodeQueue);
+    }
+
     /**
      * For unit test purposes only, not to be used by any external parties.
      * @return true if destroy() has been--or is being--invoked.
@@ -1170,6 +1215,9 @@ public class MessageBusVisitorSession implements VisitorSession {
             try {
                 sender.destroy();
                 receiver.destroy();
+                if (decodeExecutor != null) {
+                    decodeExecutor.shutdown();
+                }
             } catch (Exception e) {
                 log.log(LogLevel.ERROR, "Caught exception destroying communication interfaces", e);
             }
@@ -4,6 +4,7 @@ package com.yahoo.documentapi.messagebus.protocol;
 import com.yahoo.document.DocumentPut;
 import com.yahoo.document.TestAndSetCondition;
 import com.yahoo.document.serialization.DocumentDeserializer;
+import com.yahoo.document.serialization.VespaDocumentDeserializer6;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
@@ -86,6 +87,18 @@ public class PutDocumentMessage extends TestAndSetMessage {
         this.time = time;
     }
 
+    /**
+     * Makes the document of this, unless it is decoded already, be decoded with its arrays and weighted sets of
+     * numbers in primitive storage. This is only for receivers which do not change such collections through the
+     * elements they get from them, as these elements are copies.
+     *
+     * @see VespaDocumentDeserializer6#setPrimitiveCollections(boolean)
+     */
+    public void decodeWithPrimitiveCollections() {
+        if (buffer instanceof VespaDocumentDeserializer6)
+            ((VespaDocumentDeserializer6) buffer).setPrimitiveCollections(true);
+    }
+
     /**
      * Returns the raw serialized buffer. This buffer is stored as the message is received from accross the network, and
      * deserialized from as soon as a member is requested. This method will return null if the buffer has been decoded.
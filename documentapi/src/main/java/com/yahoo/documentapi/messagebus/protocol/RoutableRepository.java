@@ -8,6 +8,7 @@ import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.serialization.*;
 import com.yahoo.documentapi.messagebus.loadtypes.LoadTypeSet;
 import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.io.GrowableByteBufferPool;
 import com.yahoo.log.LogLevel;
 import com.yahoo.messagebus.Routable;
 
@@ -94,22 +95,27 @@ final class RoutableRepository {
         }
         DocumentSerializer out;
 
+        GrowableByteBuffer buffer = GrowableByteBufferPool.acquire(8192);
         if (version.getMajor() >= 5) {
-            out = DocumentSerializerFactory.createHead(new GrowableByteBuffer(8192));
+            out = DocumentSerializerFactory.createHead(buffer);
         } else {
-            out = DocumentSerializerFactory.create42(new GrowableByteBuffer(8192));
+            out = DocumentSerializerFactory.create42(buffer);
         }
 
-        out.putInt(null, type);
-        if (!factory.encode(obj, out)) {
-            log.log(LogLevel.ERROR, "Routable factory " + factory.getClass().getName() + " failed to serialize " +
-                                    "routable of type " + type + " (version " + version + ").");
-            return new byte[0];
+        try {
+            out.putInt(null, type);
+            if (!factory.encode(obj, out)) {
+                log.log(LogLevel.ERROR, "Routable factory " + factory.getClass().getName() + " failed to serialize " +
+                                        "routable of type " + type + " (version " + version + ").");
+                return new byte[0];
+            }
+            byte[] ret = new byte[out.getBuf().position()];
+            out.getBuf().rewind();
+            out.getBuf().get(ret);
+            return ret;
+        } finally {
+            GrowableByteBufferPool.release(out.getBuf());
         }
-        byte[] ret = new byte[out.getBuf().position()];
-        out.getBuf().rewind();
-        out.getBuf().get(ret);
-        return ret;
     }
 
     /**
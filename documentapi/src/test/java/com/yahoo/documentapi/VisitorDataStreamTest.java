@@ -0,0 +1,160 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi;
+
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentRemove;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.DocumentTypeManagerConfigurer;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.documentapi.messagebus.protocol.GetDocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.RemoveDocumentMessage;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VisitorDataStreamTest {
+
+    private final DocumentTypeManager docMan = new DocumentTypeManager();
+
+    @Before
+    public void setUp() {
+        DocumentTypeManagerConfigurer.configure(docMan, "file:./test/cfg/testdoc.cfg");
+    }
+
+    private PutDocumentMessage createPutMessage(String docId, long timestamp) {
+        Document document = new Document(docMan.getDocumentType("testdoc"), docId);
+        document.setFieldValue("stringfield", new StringFieldValue("some text"));
+        PutDocumentMessage message = new PutDocumentMessage(new DocumentPut(document));
+        message.setTimestamp(timestamp);
+        return message;
+    }
+
+    private static class AckRecordingStream extends VisitorDataStream {
+
+        final List<AckToken> acked = new ArrayList<>();
+
+        AckRecordingStream(int frameSizeBytes, int credits) {
+            super(frameSizeBytes, credits);
+        }
+
+        @Override
+        public synchronized void ack(AckToken token) {
+            acked.add(token);
+        }
+
+    }
+
+    @Test
+    public void puts_and_removes_are_passed_on_in_frames_in_order() throws InterruptedException {
+        AckRecordingStream stream = new AckRecordingStream(1 << 20, 4);
+        PutDocumentMessage put = createPutMessage("id:foo:testdoc::foo", 1234);
+        stream.onMessage(put, new AckToken(1));
+        stream.onMessage(new RemoveDocumentMessage(new DocumentId("id:foo:testdoc::bar")), new AckToken(2));
+        stream.onDone();
+
+        VisitorDataStream.Frame frame = stream.getNextFrame(0);
+        assertEquals(2, frame.getEntryCount());
+        List<DocumentOperation> operations = frame.getOperations();
+        assertEquals(2, operations.size());
+        assertSame(put.getDocumentPut(), operations.get(0));
+        Document document = ((DocumentPut)operations.get(0)).getDocument();
+        assertEquals(Long.valueOf(1234), document.getLastModified());
+        assertEquals(new DocumentId("id:foo:testdoc::bar"), ((DocumentRemove)operations.get(1)).getId());
+
+        assertNull(stream.getNextFrame(0));
+        assertEquals(2, stream.acked.size());
+    }
+
+    @Test
+    public void frames_are_sealed_at_frame_size() throws InterruptedException {
+        AckRecordingStream stream = new AckRecordingStream(1 << 16, 1000);
+        for (int i = 0; i < 1000; i++) {
+            stream.onMessage(createPutMessage("id:foo:testdoc::" + i, i), new AckToken(i));
+        }
+        assertTrue(stream.getFrameCount() > 1);
+        assertEquals(1000, stream.acked.size());
+        assertEquals(0, stream.getHeldAckCount());
+        stream.onDone();
+
+        int i = 0;
+        for (VisitorDataStream.Frame frame; (frame = stream.getNextFrame(0)) != null; ) {
+            assertEquals(frame.getEntryCount(), frame.getOperations().size());
+            for (DocumentOperation operation : frame.getOperations()) {
+                assertEquals(new DocumentId("id:foo:testdoc::" + i), operation.getId());
+                assertEquals(Long.valueOf(i), ((DocumentPut)operation).getDocument().getLastModified());
+                i++;
+            }
+        }
+        assertEquals(1000, i);
+    }
+
+    @Test
+    public void acks_are_held_back_when_credits_are_spent_and_released_when_frames_are_taken() throws InterruptedException {
+        AckRecordingStream stream = new AckRecordingStream(1, 2);
+        for (int i = 0; i < 5; i++) {
+            stream.onMessage(createPutMessage("id:foo:testdoc::" + i, i), new AckToken(i));
+        }
+        // Each message fills a frame; the first two are acked, since this leaves two frames buffered.
+        assertEquals(5, stream.getFrameCount());
+        assertEquals(2, stream.acked.size());
+        assertEquals(3, stream.getHeldAckCount());
+
+        stream.getNextFrame(0);
+        assertEquals(2, stream.acked.size());
+        stream.getNextFrame(0);
+        assertEquals(2, stream.acked.size());
+        stream.getNextFrame(0);
+        assertEquals(3, stream.acked.size());
+        stream.getNextFrame(0);
+        stream.getNextFrame(0);
+        assertEquals(5, stream.acked.size());
+    }
+
+    @Test
+    public void held_back_acks_are_released_on_reset() {
+        AckRecordingStream stream = new AckRecordingStream(1, 1);
+        for (int i = 0; i < 3; i++) {
+            stream.onMessage(createPutMessage("id:foo:testdoc::" + i, i), new AckToken(i));
+        }
+        assertEquals(1, stream.acked.size());
+        assertEquals(2, stream.getHeldAckCount());
+
+        stream.reset();
+        assertEquals(3, stream.acked.size());
+    }
+
+    @Test
+    public void partial_frame_is_returned_when_client_times_out_waiting() throws InterruptedException {
+        AckRecordingStream stream = new AckRecordingStream(1 << 20, 1);
+        stream.onMessage(createPutMessage("id:foo:testdoc::foo", 1), new AckToken(1));
+        assertEquals(0, stream.getFrameCount());
+
+        VisitorDataStream.Frame frame = stream.getNextFrame(1);
+        assertEquals(1, frame.getEntryCount());
+        assertNull(stream.getNextFrame(1));
+    }
+
+    @Test
+    public void other_messages_are_rejected() {
+        VisitorDataStream stream = new VisitorDataStream();
+        try {
+            stream.onMessage(new GetDocumentMessage(new DocumentId("id:foo:testdoc::foo"), "[all]"), new AckToken(1));
+            fail("Expected exception");
+        } catch (UnsupportedOperationException e) {
+            assertTrue(e.getMessage().contains("Expected put/remove message"));
+        }
+    }
+
+}
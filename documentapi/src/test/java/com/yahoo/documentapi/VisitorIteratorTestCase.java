@@ -6,7 +6,9 @@ import com.yahoo.document.BucketId;
 import com.yahoo.document.BucketIdFactory;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -15,6 +17,7 @@ import java.util.Vector;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Tests for VisitorIterator and ProgressToken (kept in one test case because their
@@ -1573,4 +1576,140 @@ public class VisitorIteratorTestCase {
         assertEquals(input, p2.toString());
     }
 
+    private static Set<BucketId> visitAll(VisitorIterator iter) {
+        Set<BucketId> visited = new TreeSet<>();
+        while (iter.hasNext()) {
+            VisitorIterator.BucketProgress bucket = iter.getNext();
+            assertTrue(visited.add(bucket.getSuperbucket()));
+            iter.update(bucket.getSuperbucket(), ProgressToken.FINISHED_BUCKET);
+        }
+        assertTrue(iter.isDone());
+        return visited;
+    }
+
+    @Test
+    public void testSlicesPartitionBucketSpace() throws ParseException {
+        BucketIdFactory idFactory = new BucketIdFactory();
+        Set<BucketId> all = visitAll(VisitorIterator.createFromDocumentSelection(
+                "id.group != \"yahoo.com\"", idFactory, 4, new ProgressToken()));
+        assertEquals(16, all.size());
+
+        Set<BucketId> union = new TreeSet<>();
+        for (int sliceId = 0; sliceId < 4; sliceId++) {
+            ProgressToken progress = new ProgressToken();
+            Set<BucketId> slice = visitAll(VisitorIterator.createFromDocumentSelection(
+                    "id.group != \"yahoo.com\"", idFactory, 4, progress, 4, sliceId));
+            assertTrue(progress.isFinished());
+            assertEquals(16, progress.getFinishedBucketCount());
+            assertEquals(4, slice.size());
+            for (BucketId bucket : slice) {
+                assertTrue(union.add(bucket));
+            }
+        }
+        assertEquals(all, union);
+    }
+
+    @Test
+    public void testSlicesStayDisjointAndCompleteWhenDistributionBitsChange() throws ParseException {
+        BucketIdFactory idFactory = new BucketIdFactory();
+        boolean[] visited = new boolean[64]; // The buckets at 6 distribution bits
+        for (int sliceId = 0; sliceId < 8; sliceId++) {
+            ProgressToken progress = new ProgressToken();
+            VisitorIterator iter = VisitorIterator.createFromDocumentSelection(
+                    "id.group != \"yahoo.com\"", idFactory, 4, progress, 8, sliceId);
+            List<BucketId> buckets = new ArrayList<>();
+            if (iter.hasNext()) {
+                VisitorIterator.BucketProgress first = iter.getNext();
+                iter.update(first.getSuperbucket(), ProgressToken.FINISHED_BUCKET);
+                buckets.add(first.getSuperbucket());
+            }
+            iter.setDistributionBitCount(6);
+            buckets.addAll(visitAll(iter));
+            for (BucketId bucket : buckets) {
+                int usedBits = bucket.getUsedBits();
+                long index = ProgressToken.bucketToKey(bucket.getId()) >>> (64 - usedBits);
+                for (long i = index << (6 - usedBits); i < (index + 1) << (6 - usedBits); i++) {
+                    assertFalse("Bucket " + i + " is visited only once", visited[(int) i]);
+                    visited[(int) i] = true;
+                }
+            }
+        }
+        for (int i = 0; i < visited.length; i++) {
+            assertTrue("Bucket " + i + " is visited", visited[i]);
+        }
+    }
+
+    @Test
+    public void testSlicesMustBeAPowerOf2() throws ParseException {
+        try {
+            VisitorIterator.createFromDocumentSelection("id.group != \"yahoo.com\"", new BucketIdFactory(), 4,
+                                                        new ProgressToken(), 3, 0);
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("The number of slices must be a power of 2, but was 3", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testSliceIsResumedFromProgress() throws ParseException {
+        BucketIdFactory idFactory = new BucketIdFactory();
+        ProgressToken progress = new ProgressToken();
+        VisitorIterator iter = VisitorIterator.createFromDocumentSelection(
+                "id.group != \"yahoo.com\"", idFactory, 4, progress, 2, 1);
+        assertEquals(8, progress.getFinishedBucketCount());
+
+        VisitorIterator.BucketProgress first = iter.getNext();
+        VisitorIterator.BucketProgress second = iter.getNext();
+        iter.update(first.getSuperbucket(), ProgressToken.FINISHED_BUCKET);
+        iter.update(second.getSuperbucket(), new BucketId());
+        assertEquals(9, progress.getFinishedBucketCount());
+
+        ProgressToken resumed = new ProgressToken(progress.serialize());
+        Set<BucketId> rest = visitAll(VisitorIterator.createFromDocumentSelection(
+                "id.group != \"yahoo.com\"", idFactory, 4, resumed, 2, 1));
+        assertEquals(7, rest.size());
+        assertTrue(rest.contains(second.getSuperbucket()));
+        assertFalse(rest.contains(first.getSuperbucket()));
+        assertTrue(resumed.isFinished());
+    }
+
+    @Test
+    public void testSlicingStartsWhenDistributionBitsAreKnown() throws ParseException {
+        BucketIdFactory idFactory = new BucketIdFactory();
+        ProgressToken progress = new ProgressToken();
+        VisitorIterator iter = VisitorIterator.createFromDocumentSelection(
+                "id.group != \"yahoo.com\"", idFactory, 1, progress, 4, 1);
+        // With a single distribution bit, all buckets are handed out, just to be returned again
+        VisitorIterator.BucketProgress first = iter.getNext();
+        VisitorIterator.BucketProgress second = iter.getNext();
+        assertFalse(iter.hasNext());
+        iter.update(first.getSuperbucket(), new BucketId());
+        iter.update(second.getSuperbucket(), new BucketId());
+
+        iter.setDistributionBitCount(4);
+        assertEquals(4, progress.getFinishedBucketCount());
+        assertEquals(0, progress.getPendingBucketCount());
+        Set<BucketId> slice = visitAll(iter);
+        assertEquals(4, slice.size());
+        for (long i = 4; i < 8; i++) {
+            assertTrue(slice.contains(new BucketId(ProgressToken.keyToBucketId(ProgressToken.makeNthBucketKey(i, 4)))));
+        }
+        assertTrue(progress.isFinished());
+    }
+
+    @Test
+    public void testSlicesOfExplicitBuckets() throws ParseException {
+        BucketIdFactory idFactory = new BucketIdFactory();
+        Set<BucketId> union = new TreeSet<>();
+        for (int sliceId = 0; sliceId < 2; sliceId++) {
+            ProgressToken progress = new ProgressToken();
+            Set<BucketId> slice = visitAll(VisitorIterator.createFromDocumentSelection(
+                    "id.user = 1234 or id.user = 5678", idFactory, 4, progress, 2, sliceId));
+            assertEquals(1, slice.size());
+            assertEquals(1, progress.getTotalBucketCount());
+            union.addAll(slice);
+        }
+        assertEquals(new TreeSet<>(Arrays.asList(new BucketId(32, 1234), new BucketId(32, 5678))), union);
+    }
+
 }
@@ -38,6 +38,8 @@ public class VisitorParametersTestCase {
         params.setDynamicallyIncreaseMaxBucketsPerVisitor(true);
         params.setDynamicMaxBucketsIncreaseFactor(2.5f);
         params.skipBucketsOnFatalErrors(true);
+        params.setDocumentDecodeThreads(4);
+        params.slice(4, 2);
 
         return params;
     }
@@ -75,6 +77,9 @@ public class VisitorParametersTestCase {
         assertEquals(true, copy.getDynamicallyIncreaseMaxBucketsPerVisitor());
         assertEquals(2.5f, copy.getDynamicMaxBucketsIncreaseFactor(), 0.0001);
         assertEquals(true, copy.skipBucketsOnFatalErrors());
+        assertEquals(4, copy.getDocumentDecodeThreads());
+        assertEquals(4, copy.getSlices());
+        assertEquals(2, copy.getSliceId());
 
         // Test local data handler copy
         VisitorParameters params2 = new VisitorParameters("");
@@ -110,7 +115,22 @@ public class VisitorParametersTestCase {
                 "  Priority:           HIGHEST\n" +
                 "  Dynamically increasing max buckets per visitor\n" +
                 "  Increase factor:    2.5\n" +
+                "  Decode threads:     4\n" +
+                "  Slice:              2 of 4\n" +
                 ")",
                 params.toString());
     }
+
+    @Test
+    public void testSliceMustBeWithinSlices() {
+        VisitorParameters params = new VisitorParameters("");
+        for (int[] slice : new int[][] { { 0, 0 }, { 3, 0 }, { 2, -1 }, { 2, 2 } }) {
+            try {
+                params.slice(slice[0], slice[1]);
+                fail("Expected exception");
+            } catch (IllegalArgumentException expected) { }
+        }
+        assertEquals(1, params.getSlices());
+        assertEquals(0, params.getSliceId());
+    }
 }
@@ -0,0 +1,117 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi.messagebus;
+
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.serialization.DocumentDeserializerFactory;
+import com.yahoo.documentapi.messagebus.protocol.DocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.io.GrowableByteBuffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class DocumentDecodeQueueTestCase {
+
+    /** Holds on to submitted tasks, so tests can run them in any order */
+    private static class ManualExecutor implements Executor {
+
+        final List<Runnable> tasks = new ArrayList<>();
+        boolean rejecting = false;
+
+        @Override
+        public void execute(Runnable task) {
+            if (rejecting) throw new RejectedExecutionException("Rejected");
+            tasks.add(task);
+        }
+
+    }
+
+    private final List<DocumentMessage> delivered = new ArrayList<>();
+    private final List<RuntimeException> failures = new ArrayList<>();
+    private final List<PutDocumentMessage> decoded = new ArrayList<>();
+
+    private PutDocumentMessage createMessage(boolean failDecoding) {
+        return new PutDocumentMessage((message, buffer) -> {
+                                          if (failDecoding) throw new IllegalArgumentException("Corrupt document");
+                                          decoded.add((PutDocumentMessage)message);
+                                      },
+                                      DocumentDeserializerFactory.create6(new DocumentTypeManager(), new GrowableByteBuffer()));
+    }
+
+    private DocumentDecodeQueue createQueue(ManualExecutor executor) {
+        return new DocumentDecodeQueue(executor, (message, failure) -> {
+            delivered.add(message);
+            failures.add(failure);
+        });
+    }
+
+    @Test
+    public void requireThatMessagesAreDeliveredInSubmissionOrderRegardlessOfDecodeOrder() {
+        ManualExecutor executor = new ManualExecutor();
+        DocumentDecodeQueue queue = createQueue(executor);
+        List<PutDocumentMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            messages.add(createMessage(false));
+            queue.submit(messages.get(i));
+        }
+        assertEquals(3, queue.getQueueDepth());
+
+        executor.tasks.get(2).run();
+        executor.tasks.get(1).run();
+        assertEquals(2, decoded.size());
+        assertEquals(0, delivered.size());
+        assertEquals(3, queue.getQueueDepth());
+
+        executor.tasks.get(0).run();
+        assertEquals(messages, delivered);
+        assertEquals(messages.get(0), decoded.get(2));
+        assertEquals(0, queue.getQueueDepth());
+        assertEquals(3, queue.getDecodedCount());
+        assertNull(failures.get(0));
+    }
+
+    @Test
+    public void requireThatDecodeFailuresAreDeliveredWithTheMessage() {
+        ManualExecutor executor = new ManualExecutor();
+        DocumentDecodeQueue queue = createQueue(executor);
+        PutDocumentMessage message = createMessage(true);
+        queue.submit(message);
+        executor.tasks.get(0).run();
+
+        assertSame(message, delivered.get(0));
+        assertEquals("Corrupt document", failures.get(0).getMessage());
+    }
+
+    @Test
+    public void requireThatRejectedMessagesDoNotBlockTheQueue() {
+        ManualExecutor executor = new ManualExecutor();
+        DocumentDecodeQueue queue = createQueue(executor);
+        PutDocumentMessage first = createMessage(false);
+        queue.submit(first);
+
+        executor.rejecting = true;
+        try {
+            queue.submit(createMessage(false));
+            fail("Expected exception");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertEquals(1, queue.getQueueDepth());
+
+        executor.rejecting = false;
+        PutDocumentMessage third = createMessage(false);
+        queue.submit(third);
+        executor.tasks.get(1).run();
+        executor.tasks.get(0).run();
+        assertEquals(List.of(first, third), delivered);
+    }
+
+}
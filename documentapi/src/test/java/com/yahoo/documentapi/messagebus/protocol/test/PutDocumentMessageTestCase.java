@@ -0,0 +1,64 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi.messagebus.protocol.test;
+
+import com.yahoo.component.Version;
+import com.yahoo.document.ArrayDataType;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.WeightedSetDataType;
+import com.yahoo.document.datatypes.Array;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.WeightedSet;
+import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PutDocumentMessageTestCase {
+
+    private final DocumentTypeManager manager = new DocumentTypeManager();
+    private final DocumentProtocol protocol = new DocumentProtocol(manager);
+
+    public PutDocumentMessageTestCase() {
+        DocumentType type = new DocumentType("numbers");
+        type.addField("array", new ArrayDataType(DataType.INT));
+        type.addField("wset", new WeightedSetDataType(DataType.INT, false, false));
+        manager.register(type);
+    }
+
+    private PutDocumentMessage roundTrip() {
+        Document document = new Document(manager.getDocumentType("numbers"), "id:ns:numbers::1");
+        Array<IntegerFieldValue> array = new Array<>(document.getField("array").getDataType());
+        WeightedSet<IntegerFieldValue> wset = new WeightedSet<>(document.getField("wset").getDataType());
+        for (int i = 0; i < 10; i++) {
+            array.add(new IntegerFieldValue(i));
+            wset.put(new IntegerFieldValue(i), i * 2);
+        }
+        document.setFieldValue("array", array);
+        document.setFieldValue("wset", wset);
+        Version version = new Version(6, 221);
+        return (PutDocumentMessage) protocol.decode(version, protocol.encode(version, new PutDocumentMessage(new DocumentPut(document))));
+    }
+
+    @Test
+    public void requireThatCollectionsAreDecodedWithPrimitiveStorageOnlyWhenAsked() {
+        PutDocumentMessage plain = roundTrip();
+        assertFalse(((Array<?>) plain.getDocumentPut().getDocument().getFieldValue("array")).hasPrimitiveStorage());
+        assertFalse(((WeightedSet<?>) plain.getDocumentPut().getDocument().getFieldValue("wset")).hasPrimitiveStorage());
+
+        PutDocumentMessage primitive = roundTrip();
+        primitive.decodeWithPrimitiveCollections();
+        Array<?> array = (Array<?>) primitive.getDocumentPut().getDocument().getFieldValue("array");
+        WeightedSet<?> wset = (WeightedSet<?>) primitive.getDocumentPut().getDocument().getFieldValue("wset");
+        assertTrue(array.hasPrimitiveStorage());
+        assertTrue(wset.hasPrimitiveStorage());
+        assertEquals(plain.getDocumentPut().getDocument(), primitive.getDocumentPut().getDocument());
+    }
+
+}
@@ -3,8 +3,7 @@ package com.yahoo.vespa.indexinglanguage.linguistics;
 
 import com.yahoo.document.annotation.Annotation;
 import com.yahoo.document.annotation.AnnotationTypes;
-import com.yahoo.document.annotation.Span;
-import com.yahoo.document.annotation.SpanList;
+import com.yahoo.document.annotation.CompactSpanTree;
 import com.yahoo.document.annotation.SpanTree;
 import com.yahoo.document.annotation.SpanTrees;
 import com.yahoo.document.datatypes.StringFieldValue;
@@ -75,13 +74,13 @@ public class LinguisticsAnnotator {
         Iterable<Token> tokens = tokenizer.tokenize(input, config.getLanguage(), config.getStemMode(),
                                                     config.getRemoveAccents());
         TermOccurrences termOccurrences = new TermOccurrences(config.getMaxTermOccurrences());
-        SpanTree tree = new SpanTree(SpanTrees.LINGUISTICS);
+        CompactSpanTree tree = new CompactSpanTree(SpanTrees.LINGUISTICS);
         for (Token token : tokens) {
-            addAnnotationSpan(text.getString(), tree.spanList(), tokenizer, token, config.getStemMode(), termOccurrences);
+            addAnnotationSpan(text.getString(), tree, tokenizer, token, config.getStemMode(), termOccurrences);
         }
 
         if (tree.numAnnotations() == 0) return false;
-        text.setSpanTree(tree);
+        text.setSpanTree(new SpanTree(tree));
         return true;
     }
 
@@ -94,20 +93,26 @@ public class LinguisticsAnnotator {
      * @return the created TERM annotation.
      */
     public static Annotation lowerCaseTermAnnotation(String termToLowerCase, String origTerm) {
+        StringFieldValue value = lowerCaseTermValue(termToLowerCase, origTerm);
+        return value == null ? new Annotation(AnnotationTypes.TERM) : new Annotation(AnnotationTypes.TERM, value);
+    }
+
+    /** Returns the value of a TERM annotation for the given term, or null if it needs none */
+    private static StringFieldValue lowerCaseTermValue(String termToLowerCase, String origTerm) {
         String annotationValue = toLowerCase(termToLowerCase);
         if (annotationValue.equals(origTerm)) {
-            return new Annotation(AnnotationTypes.TERM);
+            return null;
         }
-        return new Annotation(AnnotationTypes.TERM, new StringFieldValue(annotationValue));
+        return new StringFieldValue(annotationValue);
     }
 
-    private static void addAnnotation(Span here, String term, String orig, TermOccurrences termOccurrences) {
+    private static void addAnnotation(CompactSpanTree tree, int span, String term, String orig, TermOccurrences termOccurrences) {
         if (termOccurrences.termCountBelowLimit(term)) {
-            here.annotate(lowerCaseTermAnnotation(term, orig));
+            tree.annotate(span, AnnotationTypes.TERM, lowerCaseTermValue(term, orig));
         }
     }
 
-    private static void addAnnotationSpan(String input, SpanList parent, Tokenizer tokenizer, Token token, StemMode mode, TermOccurrences termOccurrences) {
+    private static void addAnnotationSpan(String input, CompactSpanTree parent, Tokenizer tokenizer, Token token, StemMode mode, TermOccurrences termOccurrences) {
         if ( ! token.isSpecialToken()) {
             if (token.getNumComponents() > 0) {
                 for (int i = 0; i < token.getNumComponents(); ++i) {
@@ -131,9 +136,9 @@ public class LinguisticsAnnotator {
                                                "the bounds of the input string; " + input);
         }
         if (mode == StemMode.ALL) {
-            Span where = parent.span(pos, len);
+            int where = parent.span(pos, len);
             String lowercasedOrig = toLowerCase(orig);
-            addAnnotation(where, orig, orig, termOccurrences);
+            addAnnotation(parent, where, orig, orig, termOccurrences);
 
             String lowercasedTerm = lowercasedOrig;
             String term = token.getTokenString();
@@ -144,13 +149,13 @@ public class LinguisticsAnnotator {
                 lowercasedTerm = toLowerCase(term);
             }
             if (! lowercasedOrig.equals(lowercasedTerm)) {
-                addAnnotation(where, term, orig, termOccurrences);
+                addAnnotation(parent, where, term, orig, termOccurrences);
             }
             for (int i = 0; i < token.getNumStems(); i++) {
                 String stem = token.getStem(i);
                 String lowercasedStem = toLowerCase(stem);
                 if (! (lowercasedOrig.equals(lowercasedStem) || lowercasedTerm.equals(lowercasedStem))) {
-                    addAnnotation(where, stem, orig, termOccurrences);
+                    addAnnotation(parent, where, stem, orig, termOccurrences);
                 }
             }
         } else {
@@ -162,7 +167,7 @@ public class LinguisticsAnnotator {
                 return;
             }
             if (termOccurrences.termCountBelowLimit(term))  {
-                parent.span(pos, len).annotate(lowerCaseTermAnnotation(term, token.getOrig()));
+                parent.annotate(parent.span(pos, len), AnnotationTypes.TERM, lowerCaseTermValue(term, token.getOrig()));
             }
         }
     }
@@ -9,6 +9,7 @@ class Buffer {
 
     static final int MAX_IO = 65000;
 
+    private final BufferPool pool;
     private ByteBuffer buf;
     private int        readPos;
     private int        writePos;
@@ -54,18 +55,54 @@ class Buffer {
             if (buf.capacity() + free < minFree) {
                 size = buf.capacity() + minFree;
             }
-            ByteBuffer tmp = ByteBuffer.allocate(size);
+            ByteBuffer tmp = allocate(size);
             tmp.order(buf.order());
             buf.position(readPos);
             buf.limit(writePos);
             tmp.put(buf);
-            buf = tmp;
+            replace(tmp);
             readPos = 0;
         }
     }
 
+    private ByteBuffer allocate(int size) {
+        return (pool != null) ? pool.allocate(size) : ByteBuffer.allocate(size);
+    }
+
+    private void replace(ByteBuffer tmp) {
+        ByteBuffer old = buf;
+        buf = tmp;
+        if (pool != null) {
+            pool.release(old);
+        }
+    }
+
     public Buffer(int size) {
-        buf = ByteBuffer.allocate(size);
+        this(size, null);
+    }
+
+    /**
+     * Create a buffer which takes its memory from the given pool, or
+     * from the heap if the pool is null. Buffers taken from the pool
+     * are returned to it as they are replaced, and by {@link #release}.
+     *
+     * @param size initial buffer size
+     * @param pool the pool to take memory from, or null
+     **/
+    public Buffer(int size, BufferPool pool) {
+        this.pool = pool;
+        buf = allocate(size);
+        readPos = 0;
+        writePos = 0;
+        readMode = false;
+    }
+
+    /**
+     * Return the memory of this buffer to its pool, and drop any
+     * content. The buffer remains usable, but is emptied.
+     **/
+    public void release() {
+        replace(ByteBuffer.allocate(0));
         readPos = 0;
         writePos = 0;
         readMode = false;
@@ -78,12 +115,12 @@ class Buffer {
         if (used > size || buf.capacity() <= size) {
             return false;
         }
-        ByteBuffer tmp = ByteBuffer.allocate(size);
+        ByteBuffer tmp = allocate(size);
         tmp.order(buf.order());
         buf.position(rpos);
         buf.limit(wpos);
         tmp.put(buf);
-        buf = tmp;
+        replace(tmp);
         readPos = 0;
         writePos = used;
         buf.position(readMode? readPos : writePos);
@@ -108,9 +145,12 @@ class Buffer {
         return buf;
     }
 
+    // NIO copies heap buffers through a temporary direct buffer of
+    // the same size, so IO on those is done in bounded chunks, while
+    // direct buffers are handed to the channel as they are.
     public ByteBuffer getChannelReadable() {
         ByteBuffer bb = getReadable();
-        if (bb.remaining() > MAX_IO) {
+        if (!bb.isDirect() && bb.remaining() > MAX_IO) {
             bb.limit(bb.position() + MAX_IO);
         }
         return bb;
@@ -118,7 +158,7 @@ class Buffer {
 
     public ByteBuffer getChannelWritable(int minFree) {
         ByteBuffer bb = getWritable(minFree);
-        if (bb.remaining() > MAX_IO) {
+        if (!bb.isDirect() && bb.remaining() > MAX_IO) {
             bb.limit(bb.position() + MAX_IO);
         }
         return bb;
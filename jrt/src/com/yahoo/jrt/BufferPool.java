@@ -0,0 +1,105 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A pool of direct byte buffers, shared by the connections of a
+ * {@link Transport}. Sockets read into and write from direct buffers
+ * without the extra copy NIO makes through a temporary direct buffer
+ * for heap buffers, and pooling them saves the cost of allocating and
+ * zeroing new ones whenever a connection buffer grows or shrinks, or
+ * a connection is made.
+ *
+ * Buffers are handed out in power of 2 sizes. Released buffers are
+ * kept until the pool holds a given number of bytes, and buffers
+ * larger than the largest pooled size are never kept.
+ **/
+class BufferPool {
+
+    static final int MIN_SIZE = 4096;
+    static final int MAX_POOLED_SIZE = 16 * 1024 * 1024;
+    static final long DEFAULT_MAX_POOLED_BYTES = 64 * 1024 * 1024;
+
+    private final long maxPooledBytes;
+    private final AtomicLong pooledBytes = new AtomicLong(0);
+    private final ConcurrentLinkedQueue<ByteBuffer>[] free;
+
+    @SuppressWarnings("unchecked")
+    BufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        free = new ConcurrentLinkedQueue[sizeClass(MAX_POOLED_SIZE) + 1];
+        for (int i = 0; i < free.length; i++) {
+            free[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    BufferPool() { this(DEFAULT_MAX_POOLED_BYTES); }
+
+    private static int sizeClass(int size) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(size, MIN_SIZE) - 1) - 12;
+    }
+
+    private static int classSize(int sizeClass) {
+        return MIN_SIZE << sizeClass;
+    }
+
+    /**
+     * Returns a cleared buffer with room for at least the given number
+     * of bytes. Should direct memory run out, a heap buffer is
+     * returned instead.
+     *
+     * @return buffer with at least the given capacity
+     * @param minSize the minimum capacity of the returned buffer
+     **/
+    ByteBuffer allocate(int minSize) {
+        if (minSize > MAX_POOLED_SIZE) {
+            return allocateDirect(minSize);
+        }
+        int sizeClass = sizeClass(minSize);
+        ByteBuffer buffer = free[sizeClass].poll();
+        if (buffer == null) {
+            return allocateDirect(classSize(sizeClass));
+        }
+        pooledBytes.addAndGet(-buffer.capacity());
+        buffer.clear();
+        return buffer;
+    }
+
+    private static ByteBuffer allocateDirect(int size) {
+        try {
+            return ByteBuffer.allocateDirect(size);
+        } catch (OutOfMemoryError e) {
+            return ByteBuffer.allocate(size);
+        }
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #allocate} to this pool.
+     * The buffer must not be used after this.
+     *
+     * @param buffer the buffer to return
+     **/
+    void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if ( ! buffer.isDirect() || capacity > MAX_POOLED_SIZE || capacity != classSize(sizeClass(capacity))) {
+            return;
+        }
+        if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+            pooledBytes.addAndGet(-capacity);
+            return;
+        }
+        free[sizeClass(capacity)].add(buffer);
+    }
+
+    /**
+     * @return the number of bytes currently held by released buffers
+     **/
+    long pooledBytes() {
+        return pooledBytes.get();
+    }
+}
@@ -6,10 +6,12 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -29,17 +31,20 @@ class Connection extends Target {
     private static final int CONNECTED  = 2;
     private static final int CLOSED     = 3;
 
-    private int state = INITIAL;
-    private final Queue  queue   = new Queue();
+    private volatile int state = INITIAL;
+    private final ConcurrentLinkedQueue<Packet> queue = new ConcurrentLinkedQueue<>();
     private final Queue  myQueue = new Queue();
-    private final Buffer input   = new Buffer(READ_SIZE * 2);
-    private final Buffer output  = new Buffer(WRITE_SIZE * 2);
+    private final Buffer input;
+    private final Buffer output;
     private int maxInputSize  = 64*1024;
     private int maxOutputSize = 64*1024;
-    private final Map<Integer, ReplyHandler> replyMap = new HashMap<>();
+    private final Map<Integer, ReplyHandler> replyMap = new ConcurrentHashMap<>();
     private final Map<TargetWatcher, TargetWatcher> watchers = new IdentityHashMap<>();
     private int activeReqs = 0;
-    private int writeWork  = 0;
+    // packets posted but not yet taken by the transport thread, plus ownWriteWork
+    private final AtomicInteger writeWork = new AtomicInteger(0);
+    // myQueue size plus pending output, as last seen by the transport thread
+    private int ownWriteWork = 0;
     private boolean pendingHandshakeWork = false;
     private final TransportThread parent;
     private final Supervisor owner;
@@ -50,6 +55,7 @@ class Connection extends Target {
     private final AtomicLong requestId = new AtomicLong(0);
     private SelectionKey selectionKey;
     private Exception lostReason = null;
+    private final TransportMetrics metrics = TransportMetrics.getInstance();
 
     private void setState(int state) {
         if (state <= this.state) {
@@ -63,7 +69,7 @@ class Connection extends Target {
         synchronized (this) {
             this.state = state;
             fini = down && (activeReqs == 0);
-            pendingWrite = (writeWork > 0);
+            pendingWrite = (writeWork.get() > 0);
         }
         if (live) {
             enableRead();
@@ -75,8 +81,13 @@ class Connection extends Target {
             owner.sessionLive(this);
         }
         if (down) {
-            for (ReplyHandler rh : replyMap.values()) {
-                rh.handleConnectionDown();
+            // handlers are removed before they are notified, as
+            // postPacket may race to take back a handler it just added
+            for (Integer key : replyMap.keySet()) {
+                ReplyHandler rh = replyMap.remove(key);
+                if (rh != null) {
+                    rh.handleConnectionDown();
+                }
             }
             for (TargetWatcher watcher : watchers.values()) {
                 watcher.notifyTargetInvalid(this);
@@ -93,6 +104,8 @@ class Connection extends Target {
 
         this.parent = parent;
         this.owner = owner;
+        this.input = new Buffer(READ_SIZE * 2, parent.transport().bufferPool());
+        this.output = new Buffer(WRITE_SIZE * 2, parent.transport().bufferPool());
         this.socket = parent.transport().createCryptoSocket(channel, true);
         this.spec = null;
         server = true;
@@ -103,6 +116,8 @@ class Connection extends Target {
         super(context);
         this.parent = parent;
         this.owner = owner;
+        this.input = new Buffer(READ_SIZE * 2, parent.transport().bufferPool());
+        this.output = new Buffer(WRITE_SIZE * 2, parent.transport().bufferPool());
         this.spec = spec;
         server = false;
         owner.sessionInit(this);
@@ -127,38 +142,53 @@ class Connection extends Target {
         return i;
     }
 
-    public synchronized boolean cancelReply(ReplyHandler handler) {
+    public boolean cancelReply(ReplyHandler handler) {
         if (state == CLOSED) {
             return false;
         }
-        ReplyHandler stored = replyMap.remove(handler.key());
-        if (stored != handler) {
-            if (stored != null) {
-                replyMap.put(handler.key(), stored);
-            }
+        return replyMap.remove(handler.key(), handler);
+    }
+
+    /**
+     * Post a packet for writing, and register the handler of its
+     * reply, if any. This does not lock, as it is done by every
+     * invocation and reply. Closing the connection sets the state
+     * before it clears the reply handlers and the packet queue, and
+     * posting a packet adds to these before it checks the state, so
+     * at least one of them will see the other.
+     *
+     * @return whether the packet was accepted
+     * @param packet the packet to write
+     * @param handler the handler of the reply, or null
+     **/
+    public boolean postPacket(Packet packet, ReplyHandler handler) {
+        if (state > CONNECTED) {
             return false;
         }
-        return true;
-    }
-
-    public boolean postPacket(Packet packet, ReplyHandler handler) {
-        boolean accepted = false;
-        boolean enableWrite = false;
-        synchronized (this) {
-            if (state <= CONNECTED) {
-                enableWrite = (writeWork == 0 && state == CONNECTED);
-                queue.enqueue(packet);
-                writeWork++;
-                accepted = true;
-                if (handler != null) {
-                    replyMap.put(handler.key(), handler);
-                }
+        if (handler != null) {
+            replyMap.put(handler.key(), handler);
+            if (state == CLOSED) {
+                // the one removing the handler also reports its failure
+                return ! replyMap.remove(handler.key(), handler);
             }
         }
-        if (enableWrite) {
+        boolean enableWrite = (writeWork.getAndIncrement() == 0);
+        metrics.incrementQueuedPackets(1);
+        queue.add(packet);
+        if (state == CLOSED) {
+            dropQueuedPackets();
+        } else if (enableWrite && state == CONNECTED) {
             parent.enableWrite(this);
         }
-        return accepted;
+        return true;
+    }
+
+    private void dropQueuedPackets() {
+        int dropped = 0;
+        while (queue.poll() != null) {
+            dropped++;
+        }
+        metrics.incrementQueuedPackets(-dropped);
     }
 
     public boolean postPacket(Packet packet) {
@@ -264,12 +294,21 @@ class Connection extends Target {
         }
     }
 
-    private void handlePackets() throws IOException {
+    /**
+     * Handle all complete packets in the input buffer.
+     *
+     * @return the number of bytes missing from the incomplete packet
+     *         left in the input buffer, if its header is known, or 0
+     **/
+    private int handlePackets() throws IOException {
         ByteBuffer rb = input.getReadable();
         while (true) {
             PacketInfo info = PacketInfo.getPacketInfo(rb);
-            if (info == null || info.packetLength() > rb.remaining()) {
-                break;
+            if (info == null) {
+                return 0;
+            }
+            if (info.packetLength() > rb.remaining()) {
+                return info.packetLength() - rb.remaining();
             }
             owner.readPacket(info);
             Packet packet;
@@ -279,10 +318,7 @@ class Connection extends Target {
                 log.log(Level.WARNING, "got garbage; closing connection: " + toString());
                 throw new IOException("jrt: decode error", e);
             }
-            ReplyHandler handler;
-            synchronized (this) {
-                handler = replyMap.remove(packet.requestId());
-            }
+            ReplyHandler handler = replyMap.remove(packet.requestId());
             if (handler != null) {
                 handler.handleReply(packet);
             } else {
@@ -293,16 +329,19 @@ class Connection extends Target {
 
     private void read() throws IOException {
         boolean doneRead = false;
+        // Room is made for the rest of a large packet at once, so it
+        // is read without repeatedly growing, and copying, the buffer
+        int missing = 0;
         for (int i = 0; !doneRead && i < READ_REDO; i++) {
-            ByteBuffer wb = input.getChannelWritable(readSize);
+            ByteBuffer wb = input.getChannelWritable(Math.max(readSize, missing));
             if (socket.read(wb) == -1) {
                 throw new IOException("jrt: Connection closed by peer");
             }
             doneRead = (wb.remaining() > 0);
-            handlePackets();
+            missing = handlePackets();
         }
-        while (socket.drain(input.getChannelWritable(readSize)) > 0) {
-            handlePackets();
+        while (socket.drain(input.getChannelWritable(Math.max(readSize, missing))) > 0) {
+            missing = handlePackets();
         }
         if (maxInputSize > 0) {
             input.shrink(maxInputSize);
@@ -320,9 +359,12 @@ class Connection extends Target {
     }
 
     private void write() throws IOException {
-        synchronized (this) {
-            queue.flush(myQueue);
+        int taken = 0;
+        for (Packet packet = queue.poll(); packet != null; packet = queue.poll()) {
+            myQueue.enqueue(packet);
+            taken++;
         }
+        metrics.incrementQueuedPackets(-taken);
         for (int i = 0; i < WRITE_REDO; i++) {
             while (output.bytes() < WRITE_SIZE) {
                 Packet packet = (Packet) myQueue.dequeue();
@@ -350,13 +392,9 @@ class Connection extends Target {
         if (socket.flush() == CryptoSocket.FlushResult.NEED_WRITE) {
             myWriteWork++;
         }
-        boolean disableWrite;
-        synchronized (this) {
-            writeWork = queue.size()
-                        + myQueue.size()
-                        + myWriteWork;
-            disableWrite = (writeWork == 0);
-        }
+        myWriteWork += myQueue.size();
+        boolean disableWrite = (writeWork.addAndGet(myWriteWork - ownWriteWork - taken) == 0);
+        ownWriteWork = myWriteWork;
         if (disableWrite) {
             disableWrite();
         }
@@ -380,6 +418,9 @@ class Connection extends Target {
         if (selectionKey != null) {
             selectionKey.cancel();
         }
+        dropQueuedPackets();
+        input.release();
+        output.release();
     }
 
     public boolean isClosed() {
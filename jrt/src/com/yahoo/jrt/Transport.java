@@ -28,8 +28,10 @@ public class Transport {
     private final AtomicInteger     runCnt;
 
     private final TransportMetrics metrics = TransportMetrics.getInstance();
+    private final BufferPool bufferPool = new BufferPool();
     private final ArrayList<TransportThread> threads = new ArrayList<TransportThread>();
     private final Random rnd = new Random();
+    private final AtomicInteger nextThread = new AtomicInteger(0);
 
     /**
      * Create a new Transport object with the given fatal error
@@ -67,6 +69,35 @@ public class Transport {
         return threads.get(rnd.nextInt(threads.size()));
     }
 
+    /**
+     * Select the transport thread for a new connection, and count
+     * the connection there. The thread with the fewest connections
+     * is chosen, starting the search at a new thread each time to
+     * spread connections evenly when they are tied. A connection
+     * stays with its thread for as long as it lives.
+     *
+     * @return the transport thread to handle a new connection
+     **/
+    TransportThread assignThread() {
+        int start = Math.floorMod(nextThread.getAndIncrement(), threads.size());
+        TransportThread best = threads.get(start);
+        for (int i = 1; i < threads.size(); ++i) {
+            TransportThread candidate = threads.get((start + i) % threads.size());
+            if (candidate.connectionCount() < best.connectionCount()) {
+                best = candidate;
+            }
+        }
+        best.assignConnection();
+        return best;
+    }
+
+    /**
+     * @return the pool of direct buffers used by the connections of this transport
+     **/
+    BufferPool bufferPool() {
+        return bufferPool;
+    }
+
     /**
      * Use the underlying CryptoEngine to create a CryptoSocket.
      *
@@ -119,7 +150,7 @@ public class Transport {
      * @param context application context for the new connection
      */
     Connection connect(Supervisor owner, Spec spec, Object context) {
-        Connection conn = new Connection(selectThread(), owner, spec, context);
+        Connection conn = new Connection(assignThread(), owner, spec, context);
         connector.connectLater(conn);
         return conn;
     }
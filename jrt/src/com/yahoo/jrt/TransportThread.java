@@ -7,6 +7,7 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -77,6 +78,8 @@ public class TransportThread {
     private final Scheduler scheduler;
     private int             state;
     private final Selector  selector;
+    private final AtomicInteger connections = new AtomicInteger(0);
+    private final TransportMetrics metrics = TransportMetrics.getInstance();
 
     private void handleAddConnection(Connection conn) {
         if (conn.isClosed()) {
@@ -95,6 +98,7 @@ public class TransportThread {
             return;
         }
         conn.fini();
+        connections.decrementAndGet();
         if (conn.hasSocket()) {
             parent.closeLater(conn);
         }
@@ -129,6 +133,7 @@ public class TransportThread {
             queue.enqueue(cmd);
         }
         if (wakeup) {
+            metrics.incrementSelectorWakeups();
             selector.wakeup();
         }
         return true;
@@ -187,6 +192,21 @@ public class TransportThread {
         return parent;
     }
 
+    /**
+     * @return the number of connections assigned to this thread which are not yet closed
+     **/
+    public int connectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * Count a connection which is created for this thread. It is
+     * counted until it is closed by this thread.
+     **/
+    void assignConnection() {
+        connections.incrementAndGet();
+    }
+
     /**
      * Proxy method used to dispatch fatal errors to the enclosing
      * Transport.
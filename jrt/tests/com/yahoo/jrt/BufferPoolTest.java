@@ -0,0 +1,54 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BufferPoolTest {
+
+    @org.junit.Test
+    public void testBuffersAreDirectAndRoundedUpToPowerOf2() {
+        BufferPool pool = new BufferPool();
+        assertEquals(BufferPool.MIN_SIZE, pool.allocate(1).capacity());
+        assertEquals(BufferPool.MIN_SIZE, pool.allocate(BufferPool.MIN_SIZE).capacity());
+        assertEquals(2 * BufferPool.MIN_SIZE, pool.allocate(BufferPool.MIN_SIZE + 1).capacity());
+        assertEquals(1 << 20, pool.allocate(1000 * 1000).capacity());
+        assertTrue(pool.allocate(100).isDirect());
+    }
+
+    @org.junit.Test
+    public void testReleasedBuffersAreReusedAndCleared() {
+        BufferPool pool = new BufferPool();
+        ByteBuffer buffer = pool.allocate(10000);
+        buffer.putInt(42).flip();
+        pool.release(buffer);
+        assertEquals(16384, pool.pooledBytes());
+
+        assertSame(buffer, pool.allocate(9000));
+        assertEquals(0, buffer.position());
+        assertEquals(buffer.capacity(), buffer.limit());
+        assertEquals(0, pool.pooledBytes());
+        assertFalse(buffer == pool.allocate(9000));
+    }
+
+    @org.junit.Test
+    public void testPoolIsBounded() {
+        BufferPool pool = new BufferPool(3 * BufferPool.MIN_SIZE);
+        for (int i = 0; i < 4; i++) {
+            pool.release(pool.allocate(BufferPool.MIN_SIZE));
+            pool.release(ByteBuffer.allocateDirect(BufferPool.MIN_SIZE));
+        }
+        assertEquals(3 * BufferPool.MIN_SIZE, pool.pooledBytes());
+
+        pool = new BufferPool();
+        pool.release(ByteBuffer.allocate(BufferPool.MIN_SIZE));
+        pool.release(ByteBuffer.allocateDirect(BufferPool.MIN_SIZE + 1));
+        pool.release(pool.allocate(BufferPool.MAX_POOLED_SIZE + 1));
+        assertEquals(0, pool.pooledBytes());
+    }
+
+}
@@ -263,4 +263,32 @@ public class BufferTest {
         }
     }
 
+    @org.junit.Test
+    public void testPooledBuffer() {
+        int        size = Buffer.MAX_IO * 4;
+        BufferPool pool = new BufferPool();
+        Buffer     buf  = new Buffer(1024, pool);
+        byte[]     x    = new byte[size];
+        byte[]     y    = new byte[size];
+        Arrays.fill(x, (byte) 10);
+
+        ByteBuffer b = buf.getChannelWritable(size);
+        assertTrue(b.isDirect());
+        assertTrue(b.remaining() >= size);
+        b.put(x);
+        assertEquals(BufferPool.MIN_SIZE, pool.pooledBytes());
+
+        b = buf.getChannelReadable();
+        assertEquals(size, b.remaining());
+        b.get(y);
+        assertTrue(Arrays.equals(x, y));
+
+        // the small buffer released when growing is reused when shrinking
+        assertTrue(buf.shrink(1024));
+        assertEquals(1 << 19, pool.pooledBytes());
+        buf.release();
+        assertEquals((1 << 19) + BufferPool.MIN_SIZE, pool.pooledBytes());
+        assertEquals(0, buf.bytes());
+    }
+
 }
@@ -1,6 +1,12 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.jrt;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class ConnectTest {
@@ -43,4 +49,39 @@ public class ConnectTest {
         server.transport().shutdown().join();
     }
 
+    @org.junit.Test
+    public void testConnectionsAreSpreadOverTransportThreads() throws ListenFailedException {
+        Supervisor server   = new Supervisor(new Transport(4));
+        Supervisor client   = new Supervisor(new Transport(4));
+        Acceptor   acceptor = server.listen(new Spec(0));
+
+        List<Target> targets = new ArrayList<>();
+        Map<TransportThread, Integer> perThread = new IdentityHashMap<>();
+        for (int i = 0; i < 8; i++) {
+            Target target = client.connect(new Spec("localhost", acceptor.port()));
+            Request req = new Request("frt.rpc.ping");
+            target.invokeSync(req, 5.0);
+            assertTrue(!req.isError());
+            targets.add(target);
+            perThread.merge(((Connection) target).transportThread(), 1, Integer::sum);
+        }
+        assertEquals(4, perThread.size());
+        for (Map.Entry<TransportThread, Integer> entry : perThread.entrySet()) {
+            assertEquals(2, entry.getValue().intValue());
+            assertEquals(2, entry.getKey().connectionCount());
+        }
+
+        for (Target target : targets) {
+            target.close();
+        }
+        client.transport().sync();
+        for (TransportThread thread : perThread.keySet()) {
+            assertEquals(0, thread.connectionCount());
+        }
+
+        acceptor.shutdown().join();
+        client.transport().shutdown().join();
+        server.transport().shutdown().join();
+    }
+
 }
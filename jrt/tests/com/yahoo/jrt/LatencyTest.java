@@ -21,6 +21,7 @@ public class LatencyTest {
             server = new Supervisor(new Transport(crypto, threads));
             client = new Supervisor(new Transport(crypto, threads));
             server.addMethod(new Method("inc", "i", "i", this::rpc_inc));
+            server.addMethod(new Method("echo", "x", "x", this::rpc_echo));
             acceptor = server.listen(new Spec(0));
         }
         public Target connect() {
@@ -29,6 +30,9 @@ public class LatencyTest {
         private void rpc_inc(Request req) {
             req.returnValues().add(new Int32Value(req.parameters().get(0).asInt32() + 1));
         }
+        private void rpc_echo(Request req) {
+            req.returnValues().add(req.parameters().get(0));
+        }
         public void close() {
             acceptor.shutdown().join();
             client.transport().shutdown().join();
@@ -61,6 +65,7 @@ public class LatencyTest {
 
         private final boolean reconnect;
         private final Network network;
+        private final byte[] payload;
         private final CyclicBarrier barrier;
         private final CountDownLatch latch;
         private final Throwable[] issues;
@@ -111,12 +116,20 @@ public class LatencyTest {
                         target.close();
                         target = network.connect();
                     }
-                    Request req = new Request("inc");
-                    req.parameters().add(new Int32Value(value));
-                    target.invokeSync(req, 60.0);
+                    if (payload != null) {
+                        Request req = new Request("echo");
+                        req.parameters().add(new DataValue(payload));
+                        target.invokeSync(req, 60.0);
+                        assertTrue(req.checkReturnTypes("x"));
+                        assertEquals(payload.length, req.returnValues().get(0).asData().length);
+                    } else {
+                        Request req = new Request("inc");
+                        req.parameters().add(new Int32Value(value));
+                        target.invokeSync(req, 60.0);
+                        assertTrue(req.checkReturnTypes("i"));
+                        assertEquals(value + 1, req.returnValues().get(0).asInt32());
+                    }
                     long duration = System.nanoTime() - t;
-                    assertTrue(req.checkReturnTypes("i"));
-                    assertEquals(value + 1, req.returnValues().get(0).asInt32());
                     ++value;
                     double latency = (duration / 1000_000.0);
                     if (latency < minLatency) {
@@ -133,18 +146,22 @@ public class LatencyTest {
             }
         }
 
-        public Client(boolean reconnect, Network network, int numThreads,
+        public Client(boolean reconnect, Network network, int numThreads, int payloadSize,
                       double warmup, double benchmark, double cooldown)
         {
             this.reconnect = reconnect;
             this.network = network;
+            this.payload = (payloadSize > 0) ? new byte[payloadSize] : null;
             this.barrier = new CyclicBarrier(numThreads, ()->setupBenchmark(warmup, benchmark, cooldown));
             this.latch = new CountDownLatch(numThreads);
             this.issues = new Throwable[numThreads];
             this.results = new Result[numThreads];
         }
         public Client(boolean reconnect, Network network, int numThreads) {
-            this(reconnect, network, numThreads, 0.1, 0.5, 0.1);
+            this(reconnect, network, numThreads, 0, 0.1, 0.5, 0.1);
+        }
+        public Client(Network network, int numThreads, int payloadSize) {
+            this(false, network, numThreads, payloadSize, 0.1, 0.5, 0.1);
         }
 
         public void measureLatency(String prefix) throws Throwable {
@@ -159,7 +176,10 @@ public class LatencyTest {
                 }
             }
             Result result = new Result(results);
-            log.info(prefix + "latency: " + result.latency + " ms, throughput: " + result.throughput + " req/s");
+            String bandwidth = (payload != null)
+                    ? ", bandwidth: " + (result.throughput * payload.length * 2 / (1024 * 1024)) + " MB/s"
+                    : "";
+            log.info(prefix + "latency: " + result.latency + " ms, throughput: " + result.throughput + " req/s" + bandwidth);
         }
     }
 
@@ -196,4 +216,12 @@ public class LatencyTest {
             new Client(false, network, 64).measureLatency("[64 clients, 4/4 transport] ");
         }
     }
+
+    @org.junit.Test
+    public void testLargePayloadThroughput() throws Throwable {
+        try (Network network = new Network(new NullCryptoEngine(), 1)) {
+            new Client(network, 1, 1024 * 1024).measureLatency("[null crypto, 1 MB payload] ");
+            new Client(network, 4, 1024 * 1024).measureLatency("[null crypto, 1 MB payload, 4 clients] ");
+        }
+    }
 }
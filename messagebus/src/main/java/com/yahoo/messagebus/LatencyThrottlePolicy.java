@@ -0,0 +1,312 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import com.yahoo.concurrent.SystemTimer;
+import com.yahoo.concurrent.Timer;
+import com.yahoo.log.LogLevel;
+
+import java.util.logging.Logger;
+
+/**
+ * An implementation of the {@link ThrottlePolicy} that sizes the window of pending messages of a {@link SourceSession}
+ * by the latency of the replies, rather than by throughput as {@link DynamicThrottlePolicy} does.
+ *
+ * Once for every window of replies, the mean latency of those replies is compared to the base latency, which is the
+ * lowest mean latency seen recently. While the mean is within the latency tolerance of the base, the recipients are
+ * not queueing messages, and the window grows additively. When the mean is above this, the window is scaled down to
+ * what should bring latency back within the tolerance, since the excess latency is time spent in queues. Replies
+ * with transient errors, like a busy recipient, and timeouts make the window back off multiplicatively at once.
+ *
+ * To let the base latency follow the recipients when they become slower, while keeping it from following queueing
+ * delay upwards, the window is periodically halved for one sample, and the base latency is measured anew. As long as
+ * the latency tolerance is below 1, this drains more than the queue the tolerance allows, so the base latency may
+ * only grow this way when the latency does not depend on the window size.
+ *
+ * <b>NOTE:</b> By context, "pending" is refering to the number of sent messages that have not been replied to yet.
+ */
+public class LatencyThrottlePolicy extends StaticThrottlePolicy {
+
+    private static final Logger log = Logger.getLogger(LatencyThrottlePolicy.class.getName());
+    private static final long IDLE_TIME_MILLIS = 60000;
+    private static final double PROBE_FACTOR = 2;
+
+    private final Timer timer;
+    private double windowSizeIncrement = 20;
+    private double windowSize = windowSizeIncrement;
+    private double minWindowSize = windowSizeIncrement;
+    private double maxWindowSize = Integer.MAX_VALUE;
+    private double windowSizeBackOff = 0.7;
+    private double latencyTolerance = 0.5;
+    private double weight = 1.0;
+    private int probeInterval = 30;
+
+    private long timeOfLastMessage;
+    private long sampleStartMillis;
+    private int numReplies = 0;
+    private long sumLatencyMillis = 0;
+    private boolean congested = false;
+    private int samplesSinceProbe = 0;
+    private boolean probing = false;
+    private double baseLatencyMillis = Double.MAX_VALUE;
+    private double latencyMillis = 0;
+    private long numBackOffs = 0;
+
+    /**
+     * Constructs a new instance of this policy and sets the appropriate default values of member data.
+     */
+    public LatencyThrottlePolicy() {
+        this(SystemTimer.INSTANCE);
+    }
+
+    /**
+     * Constructs a new instance of this class using the given clock to measure latency.
+     *
+     * @param timer the timer to use
+     */
+    public LatencyThrottlePolicy(Timer timer) {
+        this.timer = timer;
+        this.timeOfLastMessage = timer.milliTime();
+        this.sampleStartMillis = timeOfLastMessage;
+    }
+
+    @Override
+    public boolean canSend(Message message, int pendingCount) {
+        if ( ! super.canSend(message, pendingCount)) {
+            return false;
+        }
+        long time = timer.milliTime();
+        if (time - timeOfLastMessage > IDLE_TIME_MILLIS) {
+            windowSize = Math.max(minWindowSize, Math.min(windowSize, pendingCount + windowSizeIncrement));
+        }
+        timeOfLastMessage = time;
+        return pendingCount < windowSize;
+    }
+
+    @Override
+    public void processMessage(Message message) {
+        super.processMessage(message);
+        message.setContext(new SendContext((Integer)message.getContext(), timer.milliTime()));
+    }
+
+    @Override
+    public void processReply(Reply reply) {
+        SendContext context = (SendContext)reply.getContext();
+        reply.setContext(context.size);
+        super.processReply(reply);
+
+        if (context.sendTimeMillis < sampleStartMillis) {
+            return; // Sent with an earlier window size, so this says nothing about the current one.
+        }
+        long time = timer.milliTime();
+        sumLatencyMillis += time - context.sendTimeMillis;
+        congested |= isCongestionSignal(reply);
+        if (++numReplies >= windowSize) {
+            resize(time);
+        }
+    }
+
+    private void resize(long time) {
+        sampleStartMillis = time;
+        latencyMillis = Math.max(1.0, (double)sumLatencyMillis / numReplies);
+        numReplies = 0;
+        sumLatencyMillis = 0;
+
+        if (probing) {
+            // The queue we allow is drained now, so this is as close to the base latency as we get
+            probing = false;
+            baseLatencyMillis = latencyMillis;
+            windowSize *= PROBE_FACTOR;
+        } else {
+            baseLatencyMillis = Math.min(baseLatencyMillis, latencyMillis);
+        }
+
+        if (congested) {
+            windowSize *= windowSizeBackOff;
+            ++numBackOffs;
+        } else if (latencyMillis <= baseLatencyMillis * (1 + latencyTolerance)) {
+            windowSize += weight * windowSizeIncrement;
+        } else {
+            windowSize *= Math.max(windowSizeBackOff, baseLatencyMillis * (1 + latencyTolerance) / latencyMillis);
+            ++numBackOffs;
+        }
+        congested = false;
+
+        if (++samplesSinceProbe >= probeInterval) {
+            samplesSinceProbe = 0;
+            probing = true;
+            windowSize /= PROBE_FACTOR;
+        }
+        windowSize = Math.max(minWindowSize, windowSize);
+        windowSize = Math.min(maxWindowSize, windowSize);
+
+        if (log.isLoggable(LogLevel.DEBUG)) {
+            log.log(LogLevel.DEBUG, "windowSize " + windowSize + " latency " + latencyMillis +
+                                    " base latency " + baseLatencyMillis);
+        }
+    }
+
+    /** Returns whether the given reply tells the recipient could not keep up */
+    private static boolean isCongestionSignal(Reply reply) {
+        for (int i = 0; i < reply.getNumErrors(); i++) {
+            int code = reply.getError(i).getCode();
+            if ((code >= ErrorCode.TRANSIENT_ERROR && code < ErrorCode.FATAL_ERROR) || code == ErrorCode.TIMEOUT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the step size used when increasing window size.
+     *
+     * @param windowSizeIncrement the step size to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setWindowSizeIncrement(double windowSizeIncrement) {
+        this.windowSizeIncrement = windowSizeIncrement;
+        return this;
+    }
+
+    public double getWindowSizeIncrement() {
+        return windowSizeIncrement;
+    }
+
+    /**
+     * Sets the factor of window size to back off to on replies with transient errors or timeouts, which is also the
+     * largest back off due to latency. This value is capped to the [0, 1] range.
+     *
+     * @param windowSizeBackOff the back off to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setWindowSizeBackOff(double windowSizeBackOff) {
+        this.windowSizeBackOff = Math.max(0, Math.min(1, windowSizeBackOff));
+        return this;
+    }
+
+    public double getWindowSizeBackOff() {
+        return windowSizeBackOff;
+    }
+
+    /**
+     * Sets how much the mean latency of replies may exceed the base latency, as a fraction of the base latency,
+     * before the window size is reduced. Larger values allow more queueing at the recipients.
+     *
+     * @param latencyTolerance the tolerance to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+        return this;
+    }
+
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    /**
+     * Sets the number of window size updates between each time the window is shrunk to measure base latency.
+     *
+     * @param probeInterval the number of updates
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setProbeInterval(int probeInterval) {
+        this.probeInterval = probeInterval;
+        return this;
+    }
+
+    /**
+     * Sets the weight for this client. The larger the value, the more resources
+     * will be allocated to this clients. Resources are shared between clients
+     * proportiannally to their weights.
+     *
+     * @param weight the weight to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setWeight(double weight) {
+        this.weight = weight;
+        return this;
+    }
+
+    /**
+     * Sets the maximium number of pending operations allowed at any time, in
+     * order to avoid using too much resources.
+     *
+     * @param max the max to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setMaxWindowSize(double max) {
+        this.maxWindowSize = max;
+        return this;
+    }
+
+    public double getMaxWindowSize() {
+        return maxWindowSize;
+    }
+
+    /**
+     * Sets the minimium number of pending operations allowed at any time, in
+     * order to keep a level of performance.
+     *
+     * @param min the min to set
+     * @return this, to allow chaining
+     */
+    public LatencyThrottlePolicy setMinWindowSize(double min) {
+        this.minWindowSize = min;
+        this.windowSize = Math.max(windowSize, min);
+        return this;
+    }
+
+    public double getMinWindowSize() {
+        return minWindowSize;
+    }
+
+    @Override
+    public LatencyThrottlePolicy setMaxPendingCount(int maxCount) {
+        super.setMaxPendingCount(maxCount);
+        maxWindowSize = maxCount;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of pending messages allowed, which is the current window size.
+     *
+     * @return the max limit
+     */
+    @Override
+    public int getMaxPendingCount() {
+        return (int)windowSize;
+    }
+
+    /** Returns the current window size, for metrics */
+    public double getWindowSize() {
+        return windowSize;
+    }
+
+    /** Returns the mean latency of replies in the last full window, in milliseconds, for metrics */
+    public double getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /** Returns the base latency the current latency is compared to, in milliseconds, for metrics */
+    public double getBaseLatencyMillis() {
+        return baseLatencyMillis == Double.MAX_VALUE ? 0 : baseLatencyMillis;
+    }
+
+    /** Returns the number of times the window has been reduced due to latency or congestion, for metrics */
+    public long getBackOffCount() {
+        return numBackOffs;
+    }
+
+    private static class SendContext {
+
+        final int size;
+        final long sendTimeMillis;
+
+        SendContext(int size, long sendTimeMillis) {
+            this.size = size;
+            this.sendTimeMillis = sendTimeMillis;
+        }
+
+    }
+
+}
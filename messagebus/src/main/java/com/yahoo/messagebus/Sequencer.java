@@ -1,9 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.messagebus;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -13,13 +12,19 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * id, and messages are only sent when they are at the front of their list. When a reply arrives, the current front of
  * the list is removed and the next message, if any, is sent.
  *
+ * The sequencing state is split into stripes by a hash of the sequencing id, each with its own lock and a map keyed
+ * by the primitive id, so that messages with different ids rarely contend. All state for any one id is in a single
+ * stripe, so ordering is the same as if there was only one.
+ *
  * @author Simon Thoresen Hult
  */
 public class Sequencer implements MessageHandler, ReplyHandler {
 
+    private static final int STRIPE_BITS = 6;
+
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final MessageHandler sender;
-    private final Map<Long, Queue<Message>> seqMap = new HashMap<>();
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
 
     /**
      * Constructs a new sequencer on top of the given async sender.
@@ -28,6 +33,23 @@ public class Sequencer implements MessageHandler, ReplyHandler {
      */
     public Sequencer(MessageHandler sender) {
         this.sender = sender;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /** Returns a well mixed hash of the given sequencing id, of which the top bits select the stripe */
+    private static long hash(long seqId) {
+        seqId ^= seqId >>> 33;
+        seqId *= 0xff51afd7ed558ccdL;
+        seqId ^= seqId >>> 33;
+        seqId *= 0xc4ceb9fe1a85ec53L;
+        seqId ^= seqId >>> 33;
+        return seqId;
+    }
+
+    private Stripe stripeOf(long hash) {
+        return stripes[(int)(hash >>> (Long.SIZE - STRIPE_BITS))];
     }
 
     /**
@@ -38,15 +60,10 @@ public class Sequencer implements MessageHandler, ReplyHandler {
      */
     public boolean destroy() {
         if (!destroyed.getAndSet(true)) {
-            synchronized (this) {
-                for (Queue<Message> queue : seqMap.values()) {
-                    if (queue != null) {
-                        for (Message msg : queue) {
-                            msg.discard();
-                        }
-                    }
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    stripe.discardAll();
                 }
-                seqMap.clear();
             }
             return true;
         }
@@ -65,23 +82,18 @@ public class Sequencer implements MessageHandler, ReplyHandler {
     private boolean filter(Message msg) {
         long seqId = msg.getSequenceId();
         msg.setContext(seqId);
-        synchronized (this) {
-            if (seqMap.containsKey(seqId)) {
-                Queue<Message> queue = seqMap.get(seqId);
-                if (queue == null) {
-                    queue = new LinkedList<>();
-                    seqMap.put(seqId, queue);
-                }
-                if (msg.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
-                    msg.getTrace().trace(TraceLevel.COMPONENT,
-                                         "Sequencer queued message with sequence id '" + seqId + "'.");
-                }
-                queue.add(msg);
-                return false;
+        long hash = hash(seqId);
+        Stripe stripe = stripeOf(hash);
+        synchronized (stripe) {
+            if (stripe.sendOrQueue(seqId, (int)hash, msg)) {
+                return true;
+            }
+            if (msg.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
+                msg.getTrace().trace(TraceLevel.COMPONENT,
+                                     "Sequencer queued message with sequence id '" + seqId + "'.");
             }
-            seqMap.put(seqId, null);
         }
-        return true;
+        return false;
     }
 
     /**
@@ -137,14 +149,11 @@ public class Sequencer implements MessageHandler, ReplyHandler {
             reply.getTrace().trace(TraceLevel.COMPONENT,
                                    "Sequencer received reply with sequence id '" + seqId + "'.");
         }
-        Message msg = null;
-        synchronized (this) {
-            Queue<Message> queue = seqMap.get(seqId);
-            if (queue == null || queue.isEmpty()) {
-                seqMap.remove(seqId);
-            } else {
-                msg = queue.remove();
-            }
+        long hash = hash(seqId);
+        Stripe stripe = stripeOf(hash);
+        Message msg;
+        synchronized (stripe) {
+            msg = stripe.next(seqId, (int)hash);
         }
         if (msg != null) {
             sequencedSend(msg);
@@ -152,4 +161,113 @@ public class Sequencer implements MessageHandler, ReplyHandler {
         ReplyHandler handler = reply.popHandler();
         handler.handleReply(reply);
     }
+
+    /**
+     * The sequencing state of the ids of one stripe, as an open addressing hash map from sequencing id to the queue of
+     * messages waiting for the pending message with that id. An id with a pending message but nothing queued maps to
+     * {@link #PENDING}. All access must be synchronized on the stripe.
+     */
+    private static class Stripe {
+
+        private static final Object PENDING = new Object();
+
+        private long[] keys = new long[8];
+        private Object[] values = new Object[8];
+        private int size = 0;
+
+        /** Returns true if the message may be sent now, or queues it and returns false if one with its id is pending */
+        boolean sendOrQueue(long seqId, int hash, Message msg) {
+            int slot = find(seqId, hash);
+            if (values[slot] == null) {
+                keys[slot] = seqId;
+                values[slot] = PENDING;
+                if (++size > keys.length / 2) {
+                    resize(keys.length * 2);
+                }
+                return true;
+            }
+            if (values[slot] == PENDING) {
+                values[slot] = new ArrayDeque<Message>();
+            }
+            queueAt(slot).add(msg);
+            return false;
+        }
+
+        /** Returns the next message to send after the pending one with the given id got its reply, if any */
+        Message next(long seqId, int hash) {
+            int slot = find(seqId, hash);
+            if (values[slot] == null) {
+                return null;
+            }
+            if (values[slot] != PENDING) {
+                Queue<Message> queue = queueAt(slot);
+                Message msg = queue.remove();
+                if (queue.isEmpty()) {
+                    values[slot] = PENDING;
+                }
+                return msg;
+            }
+            remove(slot);
+            return null;
+        }
+
+        void discardAll() {
+            for (int slot = 0; slot < values.length; slot++) {
+                if (values[slot] != null && values[slot] != PENDING) {
+                    for (Message msg : queueAt(slot)) {
+                        msg.discard();
+                    }
+                }
+            }
+            Arrays.fill(values, null);
+            size = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Queue<Message> queueAt(int slot) {
+            return (Queue<Message>)values[slot];
+        }
+
+        /** Returns the slot of the given id, or the empty slot where it belongs if it is not present */
+        private int find(long seqId, int hash) {
+            int mask = keys.length - 1;
+            int slot = hash & mask;
+            while (values[slot] != null && keys[slot] != seqId) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /** Empties the given slot, and moves any following entries back to keep them reachable from their hash */
+        private void remove(int slot) {
+            int mask = keys.length - 1;
+            values[slot] = null;
+            --size;
+            for (int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+                int home = (int)hash(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - slot) & mask)) {
+                    keys[slot] = keys[next];
+                    values[slot] = values[next];
+                    values[next] = null;
+                    slot = next;
+                }
+            }
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[capacity];
+            values = new Object[capacity];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = find(oldKeys[i], (int)hash(oldKeys[i]));
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+    }
+
 }
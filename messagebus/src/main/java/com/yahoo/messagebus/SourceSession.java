@@ -4,29 +4,45 @@ package com.yahoo.messagebus;
 import com.yahoo.messagebus.routing.Route;
 import com.yahoo.messagebus.routing.RoutingTable;
 
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A session supporting sending new messages.
  *
+ * Sending and replying do not share a session wide lock. The pending count is atomic, and is reserved before the
+ * session is checked for being closed, so that {@link #close()} never misses a message. Calls to the throttle
+ * policy, if any, are serialized by a lock of their own, which also guards the count of messages the policy has let
+ * through, so the policy never sees reservations of sends it has not yet decided on. Messages blocked by
+ * {@link #sendBlocking(Message)} are retried by one thread at a time, in order, from a concurrent queue.
+ *
  * @author Simon Thoresen Hult
  */
 public final class SourceSession implements ReplyHandler, MessageBus.SendBlockedMessages {
 
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final CountDownLatch done = new CountDownLatch(1);
-    private final Object lock = new Object();
+    private final ReentrantLock throttleLock = new ReentrantLock();
     private final MessageBus mbus;
     private final Sequencer sequencer;
     private final ReplyHandler replyHandler;
     private final ThrottlePolicy throttlePolicy;
     private volatile double timeout;
-    private volatile int pendingCount = 0;
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+    private int throttledPendingCount = 0; // Messages let through by the throttle policy, and not replied to; guarded by throttleLock
     private volatile boolean closed = false;
-    private final Queue<BlockedMessage> blockedQ = new LinkedList<>();
+    private final Queue<BlockedMessage> blockedQ = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger blockedCount = new AtomicInteger(0);
+    private final AtomicInteger blockedDrainRequests = new AtomicInteger(0);
+    private final AtomicBoolean blockedExpiryRequested = new AtomicBoolean(false);
+    private final AtomicLong throttledCount = new AtomicLong(0);
+    private final AtomicLong throttleContendedCount = new AtomicLong(0);
 
     /**
      * The default constructor requires values for all final member variables
@@ -62,9 +78,7 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
         if (destroyed.getAndSet(true)) {
             return false;
         }
-        synchronized (lock) {
-            closed = true;
-        }
+        closed = true;
         sequencer.destroy();
         mbus.sync();
         return true;
@@ -75,10 +89,8 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
      * returning, this method calls {@link #destroy()}.
      */
     public void close() {
-        synchronized (lock) {
-            closed = true;
-        }
-        if (pendingCount == 0) {
+        closed = true;
+        if (pendingCount.get() == 0) {
             done.countDown();
         }
         try {
@@ -127,36 +139,59 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
     }
 
     private Result sendInternal(Message message) {
-        synchronized (lock) {
-            if (closed) {
-                return new Result(ErrorCode.SEND_QUEUE_CLOSED,
-                                  "Source session is closed.");
-            }
-            if (throttlePolicy != null && ! throttlePolicy.canSend(message, pendingCount)) {
-                return new Result(ErrorCode.SEND_QUEUE_FULL,
-                                  "Too much pending data (" + pendingCount + " messages).");
-            }
-            message.pushHandler(replyHandler);
-            if (throttlePolicy != null) {
+        int pending = pendingCount.incrementAndGet(); // Reserve first, so close() waits for this, or this sees close().
+        if (closed) {
+            releasePending();
+            return new Result(ErrorCode.SEND_QUEUE_CLOSED,
+                              "Source session is closed.");
+        }
+        if (throttlePolicy != null) {
+            lockThrottlePolicy();
+            try {
+                if ( ! throttlePolicy.canSend(message, throttledPendingCount)) {
+                    throttledCount.incrementAndGet();
+                    releasePending();
+                    return new Result(ErrorCode.SEND_QUEUE_FULL,
+                                      "Too much pending data (" + throttledPendingCount + " messages).");
+                }
+                throttledPendingCount++;
+                message.pushHandler(replyHandler);
                 throttlePolicy.processMessage(message);
+            } finally {
+                throttleLock.unlock();
             }
-            ++pendingCount;
+        } else {
+            message.pushHandler(replyHandler);
         }
         if (message.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
             message.getTrace().trace(TraceLevel.COMPONENT,
                                  "Source session accepted a " + message.getApproxSize() + " byte message. " +
-                                 pendingCount + " message(s) now pending.");
+                                 pending + " message(s) now pending.");
         }
         message.pushHandler(this);
         sequencer.handleMessage(message);
         return Result.ACCEPTED;
     }
 
+    private void lockThrottlePolicy() {
+        if ( ! throttleLock.tryLock()) {
+            throttleContendedCount.incrementAndGet();
+            throttleLock.lock();
+        }
+    }
+
+    /** Releases a pending message reservation which did not result in a message being sent */
+    private void releasePending() {
+        if (pendingCount.decrementAndGet() == 0 && closed) {
+            done.countDown();
+        }
+    }
+
     @Override
     public boolean trySend() {
         if (destroyed.get()) return false;
-        sendBlockedMessages();
-        expireStalledBlockedMessages();
+        blockedExpiryRequested.set(true);
+        drainBlockedMessages();
         return true;
     }
 
@@ -235,28 +270,43 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
         Result res = send(msg);
         if (isSendQFull(res)) {
             BlockedMessage blockedMessage = new BlockedMessage(msg);
-            synchronized (lock) {
-                blockedQ.add(blockedMessage);
-            }
+            blockedQ.add(blockedMessage);
+            blockedCount.incrementAndGet();
+            drainBlockedMessages(); // In case all pending messages were replied to before this was queued.
             res = blockedMessage.waitComplete();
         }
         return res;
     }
 
+    /**
+     * Sends blocked messages until the queue is empty or the session is full, and expires stalled messages when this
+     * is requested. Only one thread does this at a time; a thread which finds another draining leaves the work to it.
+     */
+    private void drainBlockedMessages() {
+        if (blockedDrainRequests.getAndIncrement() != 0) {
+            return;
+        }
+        for (int requests = 1; requests != 0; requests = blockedDrainRequests.addAndGet(-requests)) {
+            sendBlockedMessages();
+            if (blockedExpiryRequested.getAndSet(false)) {
+                expireStalledBlockedMessages();
+            }
+        }
+    }
+
     private void expireStalledBlockedMessages() {
-        synchronized (lock) {
-            blockedQ.removeIf(BlockedMessage::notifyIfExpired);
+        for (Iterator<BlockedMessage> it = blockedQ.iterator(); it.hasNext(); ) {
+            if (it.next().notifyIfExpired()) {
+                it.remove();
+                blockedCount.decrementAndGet();
+            }
         }
     }
 
     private void sendBlockedMessages() {
-        synchronized (lock) {
-            for (boolean success = true; success && !blockedQ.isEmpty(); ) {
-                success = blockedQ.element().sendOrExpire();
-                if (success) {
-                    blockedQ.remove();
-                }
-            }
+        for (BlockedMessage blocked; (blocked = blockedQ.peek()) != null && blocked.sendOrExpire(); ) {
+            blockedQ.remove();
+            blockedCount.decrementAndGet();
         }
     }
 
@@ -266,18 +316,21 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
             reply.discard();
             return;
         }
-        boolean done;
-        synchronized (lock) {
-            --pendingCount;
-            if (throttlePolicy != null) {
+        if (throttlePolicy != null) {
+            lockThrottlePolicy();
+            try {
                 throttlePolicy.processReply(reply);
+                throttledPendingCount--;
+            } finally {
+                throttleLock.unlock();
             }
-            done = (closed && pendingCount == 0);
-            sendBlockedMessages();
         }
+        int pending = pendingCount.decrementAndGet();
+        boolean done = (closed && pending == 0);
+        drainBlockedMessages();
         if (reply.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
             reply.getTrace().trace(TraceLevel.COMPONENT,
-                                   "Source session received reply. " + pendingCount + " message(s) now pending.");
+                                   "Source session received reply. " + pending + " message(s) now pending.");
         }
         ReplyHandler handler = reply.popHandler();
         handler.handleReply(reply);
@@ -354,7 +407,22 @@ public final class SourceSession implements ReplyHandler, MessageBus.SendBlocked
 
     /** Returns the number of messages sent that have not been replied to yet */
     public int getPendingCount() {
-        return pendingCount;
+        return pendingCount.get();
+    }
+
+    /** Returns the number of messages waiting in {@link #sendBlocking(Message)} for the session to accept them */
+    public int getBlockedCount() {
+        return blockedCount.get();
+    }
+
+    /** Returns the number of times a message was not accepted because the throttle policy did not allow it */
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    /** Returns the number of times a sending or replying thread had to wait for another to access the throttle policy */
+    public long getThrottleContendedCount() {
+        return throttleContendedCount.get();
     }
 
     /**
@@ -0,0 +1,109 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compresses the slime encoded bodies of message bus requests and replies, and counts the bytes this saves.
+ *
+ * Payloads smaller than the minimum size are not compressed, and neither are payloads which do not shrink below the
+ * threshold factor of their size. To avoid spending CPU on payloads which are already compressed, each payload which
+ * does not compress well causes the following payloads to be sent without trying, for a number of payloads which
+ * doubles with each consecutive failure, up to {@link #MAX_SKIP_COUNT}. These are marked as incompressible, just like
+ * payloads which were tried, since that tells the recipient that compressed replies are welcome.
+ *
+ * This class is thread safe.
+ */
+public class PayloadCompressor {
+
+    static final int MAX_SKIP_COUNT = 1024;
+
+    private final Compressor compressor;
+    private final CompressionType type;
+    private final AtomicInteger skipCount = new AtomicInteger(0);
+    private final AtomicInteger nextSkipCount = new AtomicInteger(1);
+    private final AtomicLong uncompressedBytes = new AtomicLong(0);
+    private final AtomicLong compressedBytes = new AtomicLong(0);
+    private final AtomicLong numCompressed = new AtomicLong(0);
+    private final AtomicLong numIncompressible = new AtomicLong(0);
+    private final AtomicLong numSkipped = new AtomicLong(0);
+
+    /**
+     * Creates a compressor for payloads.
+     *
+     * @param type the type of compression to use, where {@link CompressionType#NONE} disables compression
+     * @param minSizeBytes the smallest payload to compress
+     * @param thresholdFactor the factor of its size a payload must compress to, to be sent compressed
+     */
+    public PayloadCompressor(CompressionType type, int minSizeBytes, double thresholdFactor) {
+        this.type = type;
+        this.compressor = new Compressor(type, 3, thresholdFactor, minSizeBytes);
+    }
+
+    /** Returns the type of compression this uses, where {@link CompressionType#NONE} means none */
+    public CompressionType type() { return type; }
+
+    /** Compresses the given payload, for a recipient which does not object to compression */
+    Compressor.Compression compress(byte[] payload) {
+        return compress(payload, true);
+    }
+
+    /**
+     * Compresses the given payload if allowed. Payloads are always marked {@link CompressionType#NONE} when they are
+     * not allowed to be compressed, or compression is disabled, which is what tells a recipient to not compress back.
+     */
+    Compressor.Compression compress(byte[] payload, boolean allowed) {
+        if ( ! allowed || type == CompressionType.NONE) {
+            return new Compressor.Compression(CompressionType.NONE, payload.length, payload);
+        }
+        if (payload.length < compressor.compressMinSizeBytes()) {
+            return new Compressor.Compression(CompressionType.INCOMPRESSIBLE, payload.length, payload);
+        }
+        uncompressedBytes.addAndGet(payload.length);
+        if (skipCount.get() > 0 && skipCount.getAndDecrement() > 0) {
+            numSkipped.incrementAndGet();
+            compressedBytes.addAndGet(payload.length);
+            return new Compressor.Compression(CompressionType.INCOMPRESSIBLE, payload.length, payload);
+        }
+        Compressor.Compression compression = compressor.compress(payload);
+        compressedBytes.addAndGet(compression.data().length);
+        if (compression.type().isCompressed()) {
+            numCompressed.incrementAndGet();
+            nextSkipCount.set(1);
+        } else {
+            numIncompressible.incrementAndGet();
+            int skip = nextSkipCount.get();
+            nextSkipCount.set(Math.min(MAX_SKIP_COUNT, skip * 2));
+            skipCount.set(skip);
+        }
+        return compression;
+    }
+
+    /** Returns the given payload, decompressed, or the payload itself if it is not compressed. Neither may be modified */
+    byte[] decompress(byte[] data, CompressionType compression, int uncompressedSize) {
+        return compressor.decompressReadOnly(data, compression, uncompressedSize);
+    }
+
+    /** Returns the total size of the payloads which were large enough to be compressed */
+    public long getUncompressedBytes() { return uncompressedBytes.get(); }
+
+    /** Returns the total size the payloads which were large enough to be compressed were sent as */
+    public long getCompressedBytes() { return compressedBytes.get(); }
+
+    /** Returns the number of bytes compression has saved */
+    public long getBytesSaved() { return getUncompressedBytes() - getCompressedBytes(); }
+
+    /** Returns the number of payloads which were sent compressed */
+    public long getCompressedCount() { return numCompressed.get(); }
+
+    /** Returns the number of payloads which did not compress well enough to be sent compressed */
+    public long getIncompressibleCount() { return numIncompressible.get(); }
+
+    /** Returns the number of payloads which were not tried compressed, because earlier ones did not compress well */
+    public long getSkippedCount() { return numSkipped.get(); }
+
+}
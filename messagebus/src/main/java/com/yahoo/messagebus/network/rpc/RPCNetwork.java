@@ -38,6 +38,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -67,6 +69,10 @@ public class RPCNetwork implements Network, MethodHandler {
             new ThreadPoolExecutor(getNumThreads(), getNumThreads(), 0L, TimeUnit.SECONDS,
                                    new SynchronousQueue<>(false),
                                    ThreadFactoryFactory.getDaemonThreadFactory("mbus.net"), new ThreadPoolExecutor.CallerRunsPolicy());
+    private final RPCNetworkParams params;
+    private final PayloadCompressor payloadCompressor;
+    private ScheduledExecutorService batchScheduler = null;
+
     private static int getNumThreads() {
         return Math.max(2, Runtime.getRuntime().availableProcessors()/2);
     }
@@ -81,7 +87,10 @@ public class RPCNetwork implements Network, MethodHandler {
      */
     public RPCNetwork(RPCNetworkParams params, SlobrokConfigSubscriber slobrokConfig) {
         this.slobroksConfig = slobrokConfig;
+        this.params = new RPCNetworkParams(params);
         identity = params.getIdentity();
+        payloadCompressor = new PayloadCompressor(params.getCompressionType(), params.getCompressionMinSizeBytes(),
+                                                  params.getCompressionThresholdFactor());
         orb = new Supervisor(new Transport(2));
         orb.setMaxInputBufferSize(params.getMaxInputBufferSize());
         orb.setMaxOutputBufferSize(params.getMaxOutputBufferSize());
@@ -179,7 +188,14 @@ public class RPCNetwork implements Network, MethodHandler {
         this.owner = owner;
 
         RPCSendAdapter adapter1 = new RPCSendV1();
-        RPCSendAdapter adapter2 = new RPCSendV2();
+        RPCSendV2 adapter2 = new RPCSendV2(payloadCompressor);
+        if (params.getMaxBatchMessages() > 1) {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, ThreadFactoryFactory.getDaemonThreadFactory("mbus.net.batch"));
+            scheduler.setRemoveOnCancelPolicy(true); // batched requests time out by this, and most are cancelled
+            batchScheduler = scheduler;
+            adapter2.enableBatching(batchScheduler, params.getMaxBatchMessages(), params.getMaxBatchBytes(),
+                                    params.getBatchWindowSecs());
+        }
         addSendAdapter(new Version(5), adapter1);
         addSendAdapter(new Version(6,149), adapter2);
     }
@@ -275,6 +291,9 @@ public class RPCNetwork implements Network, MethodHandler {
             orb.transport().shutdown().join();
             targetPool.flushTargets(true);
             executor.shutdown();
+            if (batchScheduler != null) {
+                batchScheduler.shutdown();
+            }
             return true;
         }
         return false;
@@ -387,6 +406,15 @@ public class RPCNetwork implements Network, MethodHandler {
         return listener.port();
     }
 
+    /**
+     * Returns the compressor of message and reply bodies, which also keeps the compression metrics of this network.
+     *
+     * @return The payload compressor.
+     */
+    public PayloadCompressor getPayloadCompressor() {
+        return payloadCompressor;
+    }
+
     /**
      * Returns the JRT supervisor.
      *
@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.messagebus.network.rpc;
 
+import com.yahoo.compress.CompressionType;
 import com.yahoo.messagebus.network.Identity;
 import com.yahoo.cloud.config.SlobroksConfig;
 
@@ -20,6 +21,12 @@ public class RPCNetworkParams {
     private int maxOutputBufferSize = 256 * 1024;
     private double connectionExpireSecs = 30;
     private int numTargetsPerSpec = 1;
+    private int maxBatchMessages = 1;
+    private int maxBatchBytes = 256 * 1024;
+    private double batchWindowSecs = 0.0005;
+    private CompressionType compressionType = CompressionType.LZ4;
+    private int compressionMinSizeBytes = 1024;
+    private double compressionThresholdFactor = 0.90;
 
     /**
      * Constructs a new instance of this class with reasonable default values.
@@ -42,6 +49,12 @@ public class RPCNetworkParams {
         maxInputBufferSize = params.maxInputBufferSize;
         maxOutputBufferSize = params.maxOutputBufferSize;
         numTargetsPerSpec = params.numTargetsPerSpec;
+        maxBatchMessages = params.maxBatchMessages;
+        maxBatchBytes = params.maxBatchBytes;
+        batchWindowSecs = params.batchWindowSecs;
+        compressionType = params.compressionType;
+        compressionMinSizeBytes = params.compressionMinSizeBytes;
+        compressionThresholdFactor = params.compressionThresholdFactor;
     }
 
     /**
@@ -152,6 +165,130 @@ public class RPCNetworkParams {
         return numTargetsPerSpec;
     }
 
+    /**
+     * Returns the maximum number of messages to the same target which are sent as a single RPC request.
+     *
+     * @return The maximum number of messages in a batch, where 1 means messages are not batched.
+     */
+    public int getMaxBatchMessages() {
+        return maxBatchMessages;
+    }
+
+    /**
+     * Sets the maximum number of messages to the same target which are sent as a single RPC request. Messages are
+     * held back for at most {@link #getBatchWindowSecs()} waiting for others to join their batch, and recipients
+     * which do not understand batches are sent each message separately. The default value of 1 disables batching.
+     *
+     * @param maxBatchMessages The maximum number of messages in a batch.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setMaxBatchMessages(int maxBatchMessages) {
+        this.maxBatchMessages = maxBatchMessages;
+        return this;
+    }
+
+    /**
+     * Returns the number of payload bytes which causes a batch to be sent without waiting for more messages.
+     *
+     * @return The maximum number of bytes.
+     */
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    /**
+     * Sets the number of payload bytes which causes a batch to be sent without waiting for more messages.
+     *
+     * @param maxBatchBytes The maximum number of bytes.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+        return this;
+    }
+
+    /**
+     * Returns the number of seconds the first message of a batch waits for more messages to the same target.
+     *
+     * @return The number of seconds.
+     */
+    public double getBatchWindowSecs() {
+        return batchWindowSecs;
+    }
+
+    /**
+     * Sets the number of seconds the first message of a batch waits for more messages to the same target.
+     *
+     * @param secs The number of seconds.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setBatchWindowSecs(double secs) {
+        this.batchWindowSecs = secs;
+        return this;
+    }
+
+    /**
+     * Returns the type of compression used for message and reply bodies.
+     *
+     * @return The compression type.
+     */
+    public CompressionType getCompressionType() {
+        return compressionType;
+    }
+
+    /**
+     * Sets the type of compression used for message and reply bodies. Setting this to {@link CompressionType#NONE}
+     * disables compression of messages, and also asks recipients to not compress their replies.
+     *
+     * @param compressionType The compression type.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setCompressionType(CompressionType compressionType) {
+        this.compressionType = compressionType;
+        return this;
+    }
+
+    /**
+     * Returns the size of the smallest message or reply body which is compressed.
+     *
+     * @return The minimum number of bytes.
+     */
+    public int getCompressionMinSizeBytes() {
+        return compressionMinSizeBytes;
+    }
+
+    /**
+     * Sets the size of the smallest message or reply body which is compressed.
+     *
+     * @param compressionMinSizeBytes The minimum number of bytes.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setCompressionMinSizeBytes(int compressionMinSizeBytes) {
+        this.compressionMinSizeBytes = compressionMinSizeBytes;
+        return this;
+    }
+
+    /**
+     * Returns the factor of its size a body must compress to for it to be sent compressed.
+     *
+     * @return The compression threshold factor.
+     */
+    public double getCompressionThresholdFactor() {
+        return compressionThresholdFactor;
+    }
+
+    /**
+     * Sets the factor of its size a body must compress to for it to be sent compressed. Bodies which do not compress
+     * this well also make the following bodies be sent without trying to compress them, for a while.
+     *
+     * @param compressionThresholdFactor The compression threshold factor.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setCompressionThresholdFactor(double compressionThresholdFactor) {
+        this.compressionThresholdFactor = compressionThresholdFactor;
+        return this;
+    }
+
     /**
      * Returns the maximum input buffer size allowed for the underlying FNET connection.
      *
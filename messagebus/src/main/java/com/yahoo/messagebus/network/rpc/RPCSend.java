@@ -7,6 +7,7 @@ import com.yahoo.jrt.Method;
 import com.yahoo.jrt.MethodHandler;
 import com.yahoo.jrt.Request;
 import com.yahoo.jrt.RequestWaiter;
+import com.yahoo.jrt.Target;
 import com.yahoo.jrt.Values;
 import com.yahoo.messagebus.EmptyReply;
 import com.yahoo.messagebus.Error;
@@ -23,6 +24,9 @@ import com.yahoo.messagebus.routing.Route;
 import com.yahoo.messagebus.routing.RoutingNode;
 import com.yahoo.text.Utf8Array;
 
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
 /**
  * Implements the request adapter for method "mbus.send1/mbus.slime".
  *
@@ -33,6 +37,7 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
     private RPCNetwork net = null;
     private String clientIdent = "client";
     private String serverIdent = "server";
+    private RPCSendBatcher batcher = null;
 
     protected abstract Method buildMethod();
     protected abstract String getReturnSpec();
@@ -40,7 +45,11 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
                                              long timeRemaining, byte[] payload, int traceLevel);
     protected abstract Reply createReply(Values ret, String serviceName, Trace trace);
     protected abstract Params toParams(Values req);
-    protected abstract void createResponse(Values ret, Reply reply, Version version, byte [] payload);
+    protected abstract void createResponse(Values ret, Reply reply, Version version, byte [] payload, boolean compress);
+
+    /** Returns the codec of the batch method of this adapter, or null if it can not send several messages as one request */
+    protected BatchCodec getBatchCodec() { return null; }
+
     @Override
     public final void attach(RPCNetwork net) {
         this.net = net;
@@ -50,6 +59,24 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
             serverIdent = clientIdent;
         }
         net.getSupervisor().addMethod(buildMethod());
+        if (getBatchCodec() != null) {
+            net.getSupervisor().addMethod(getBatchCodec().buildMethod(this::invokeBatch));
+            net.getSupervisor().addMethod(getBatchCodec().buildReplyMethod(this::invokeBatchReply));
+        }
+    }
+
+    /**
+     * Makes this coalesce messages to the same target into batch requests, if it has a batch method.
+     *
+     * @param scheduler   The scheduler used to send batches which are not filled within the window.
+     * @param maxMessages The maximum number of messages in a batch.
+     * @param maxBytes    The number of payload bytes which causes a batch to be sent immediately.
+     * @param windowSecs  The maximum time a message waits for others to join its batch.
+     */
+    final void enableBatching(ScheduledExecutorService scheduler, int maxMessages, int maxBytes, double windowSecs) {
+        if (getBatchCodec() != null) {
+            batcher = new RPCSendBatcher(getBatchCodec(), this, scheduler, maxMessages, maxBytes, windowSecs);
+        }
     }
 
     @Override
@@ -79,6 +106,10 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
             net.getOwner().deliverReply(reply, recipient);
         } else {
             req.setContext(ctx);
+            if (batcher != null) {
+                batcher.send(address.getTarget(), req, ctx.timeout, payload.length);
+                return; // the batcher discards the request parameters once they are sent
+            }
             address.getTarget().getJRTTarget().invokeAsync(req, ctx.timeout, this);
         }
         req.discardParameters(); // allow garbage collection of request parameters
@@ -156,6 +187,7 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         Utf8Array protocolName;
         byte [] payload;
         int traceLevel;
+        boolean compressReply = false;
     }
 
     @Override
@@ -169,23 +201,57 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
 
         request.discardParameters(); // allow garbage collection of request parameters
 
+        deliverMessage(p, new ReplyContext(request, p.version, p.compressReply));
+    }
+
+    private void invokeBatch(Request request) {
+        request.detach();
+        net.getExecutor().execute(() -> doInvokeBatch(request));
+    }
+
+    private void doInvokeBatch(Request request) {
+        List<Values> parameters;
+        try {
+            parameters = getBatchCodec().split(request.parameters());
+        } catch (IllegalArgumentException e) {
+            request.setError(com.yahoo.jrt.ErrorCode.WRONG_PARAMS, e.getMessage());
+            request.returnRequest();
+            return;
+        }
+        BatchReplyTarget replyTarget = new BatchReplyTarget(request.target(), getBatchCodec().getBatchId(request.parameters()));
+        request.discardParameters(); // allow garbage collection of request parameters
+        request.returnRequest(); // acknowledges the batch, as each reply is sent separately
+
+        for (int i = 0; i < parameters.size(); i++) {
+            Params p = toParams(parameters.get(i));
+            deliverMessage(p, new ReplyContext(request, p.version, p.compressReply, replyTarget, i));
+        }
+    }
+
+    private void invokeBatchReply(Request request) {
+        if (batcher != null) {
+            batcher.handleReply(request);
+        }
+    }
+
+    private void deliverMessage(Params p, ReplyContext context) {
         // Make sure that the owner understands the protocol.
         Protocol protocol = net.getOwner().getProtocol(p.protocolName);
         if (protocol == null) {
-            replyError(request, p.version, p.traceLevel,
+            replyError(context, p.traceLevel,
                     new Error(ErrorCode.UNKNOWN_PROTOCOL,
                             "Protocol '" + p.protocolName + "' is not known by " + serverIdent + "."));
             return;
         }
         Routable routable = protocol.decode(p.version, p.payload);
         if (routable == null) {
-            replyError(request, p.version, p.traceLevel,
+            replyError(context, p.traceLevel,
                     new Error(ErrorCode.DECODE_ERROR,
                             "Protocol '" + protocol.getName() + "' failed to decode routable."));
             return;
         }
         if (routable instanceof Reply) {
-            replyError(request, p.version, p.traceLevel,
+            replyError(context, p.traceLevel,
                     new Error(ErrorCode.DECODE_ERROR,
                             "Payload decoded to a reply when expecting a message."));
             return;
@@ -194,7 +260,7 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         if (p.route != null && p.route.length() > 0) {
             msg.setRoute(net.getRoute(p.route));
         }
-        msg.setContext(new ReplyContext(request, p.version));
+        msg.setContext(context);
         msg.pushHandler(this);
         msg.setRetryEnabled(p.retryEnabled);
         msg.setRetry(p.retry);
@@ -231,21 +297,28 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
                         "An error occured while encoding the reply."));
             }
         }
-        createResponse(ctx.request.returnValues(), reply, ctx.version, payload);
+        if (ctx.batch != null) {
+            Values ret = new Values();
+            createResponse(ret, reply, ctx.version, payload, ctx.compressReply);
+            Request batchReply = new Request(getBatchCodec().getReplyMethodName());
+            getBatchCodec().joinReply(ctx.batch.batchId, ctx.index, ret, batchReply.parameters());
+            ctx.batch.target.invokeVoid(batchReply);
+            return;
+        }
+        createResponse(ctx.request.returnValues(), reply, ctx.version, payload, ctx.compressReply);
         ctx.request.returnRequest();
     }
 
     /**
      * Send an error reply for a given request.
      *
-     * @param request    The JRT request to reply to.
-     * @param version    The version to serialize for.
+     * @param context    The context of the request to reply to.
      * @param traceLevel The trace level to set in the reply.
      * @param err        The error to reply with.
      */
-    private void replyError(Request request, Version version, int traceLevel, Error err) {
+    private void replyError(ReplyContext context, int traceLevel, Error err) {
         Reply reply = new EmptyReply();
-        reply.setContext(new ReplyContext(request, version));
+        reply.setContext(context);
         reply.getTrace().setLevel(traceLevel);
         reply.addError(err);
         handleReply(reply);
@@ -268,10 +341,74 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
 
         final Request request;
         final Version version;
+        final boolean compressReply;
+        final BatchReplyTarget batch;
+        final int index;
 
-        ReplyContext(Request request, Version version) {
+        ReplyContext(Request request, Version version, boolean compressReply) {
+            this(request, version, compressReply, null, 0);
+        }
+
+        ReplyContext(Request request, Version version, boolean compressReply, BatchReplyTarget batch, int index) {
             this.request = request;
             this.version = version;
+            this.compressReply = compressReply;
+            this.batch = batch;
+            this.index = index;
         }
     }
+
+    /** Where the replies to the messages of a batch request are sent, each as soon as it is ready */
+    private static class BatchReplyTarget {
+
+        final Target target;
+        final long batchId;
+
+        BatchReplyTarget(Target target, long batchId) {
+            this.target = target;
+            this.batchId = batchId;
+        }
+    }
+
+    /**
+     * Converts between the values of single requests or replies and those of a batch method, which carries
+     * several of them as one request.
+     */
+    protected interface BatchCodec {
+
+        /** Returns the batch method, served by the given handler */
+        Method buildMethod(MethodHandler handler);
+
+        /** Returns the method which carries the reply to one request of a batch back to its sender */
+        Method buildReplyMethod(MethodHandler handler);
+
+        /** Returns the name of the batch method */
+        String getMethodName();
+
+        /** Returns the name of the reply method */
+        String getReplyMethodName();
+
+        /** Adds the given batch id, and the values of the given requests, to the given parameters of the batch method */
+        void join(long batchId, List<Values> requests, Values batch);
+
+        /**
+         * Returns the values of the requests in the given parameters of the batch method.
+         *
+         * @throws IllegalArgumentException if the batch values are inconsistent
+         */
+        List<Values> split(Values batch);
+
+        /** Returns the batch id in the given parameters of the batch method or the reply method */
+        long getBatchId(Values values);
+
+        /** Adds the given batch id, request index and reply values to the given parameters of the reply method */
+        void joinReply(long batchId, int index, Values reply, Values batchReply);
+
+        /** Returns the index of the request replied to in the given parameters of the reply method */
+        int getIndex(Values batchReply);
+
+        /** Returns the reply values in the given parameters of the reply method */
+        Values getReply(Values batchReply);
+    }
+
 }
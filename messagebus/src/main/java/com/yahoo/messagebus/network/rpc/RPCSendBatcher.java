@@ -0,0 +1,239 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.jrt.ErrorCode;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.RequestWaiter;
+import com.yahoo.jrt.Values;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces the requests of an {@link RPCSend} which go to the same target into batch requests. A batch is sent
+ * when it is full, or when its first request has waited for the batch window. Targets which do not know the batch
+ * method are sent each request separately.
+ *
+ * The recipient acknowledges a batch request as soon as it has decoded it, and sends back the reply to each of its
+ * requests as soon as that reply is ready, through the reply method of the batch codec. Each request is completed
+ * through the waiter of the send adapter, with its own reply, exactly as if it had been sent alone. Each request
+ * also times out on its own, so requests with different timeouts can share a batch.
+ */
+final class RPCSendBatcher implements RequestWaiter {
+
+    private final RPCSend.BatchCodec codec;
+    private final RequestWaiter waiter;
+    private final ScheduledExecutorService scheduler;
+    private final int maxMessages;
+    private final int maxBytes;
+    private final long windowNanos;
+    private final ConcurrentMap<RPCTarget, Batch> batches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Batch> sentBatches = new ConcurrentHashMap<>();
+    private final AtomicLong nextBatchId = new AtomicLong(0);
+
+    RPCSendBatcher(RPCSend.BatchCodec codec, RequestWaiter waiter, ScheduledExecutorService scheduler,
+                   int maxMessages, int maxBytes, double windowSecs) {
+        this.codec = codec;
+        this.waiter = waiter;
+        this.scheduler = scheduler;
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.windowNanos = (long) (windowSecs * 1_000_000_000);
+    }
+
+    /**
+     * Sends the given request to the given target, as part of a batch if the target supports it.
+     *
+     * @param target  The target to send to.
+     * @param request The request to send, which is completed through the waiter of this.
+     * @param timeout The timeout of the request, in seconds.
+     * @param size    The size of the message payload of the request.
+     */
+    void send(RPCTarget target, Request request, double timeout, int size) {
+        if ( ! target.supportsBatching()) {
+            invoke(target, new Pending(request, timeout));
+            return;
+        }
+        Batch[] created = new Batch[1];
+        Batch[] full = new Batch[1];
+        batches.compute(target, (t, batch) -> {
+            if (batch == null) {
+                batch = created[0] = new Batch(t);
+            }
+            batch.add(new Pending(request, timeout), size);
+            if (batch.pending.size() >= maxMessages || batch.bytes >= maxBytes) {
+                full[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+        if (full[0] != null) {
+            flush(full[0]);
+        } else if (created[0] != null) {
+            scheduleFlush(created[0]);
+        }
+    }
+
+    private void scheduleFlush(Batch batch) {
+        try {
+            scheduler.schedule(() -> {
+                if (batches.remove(batch.target, batch)) {
+                    flush(batch);
+                }
+            }, windowNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) { // shutting down
+            if (batches.remove(batch.target, batch)) {
+                flush(batch);
+            }
+        }
+    }
+
+    private void flush(Batch batch) {
+        if (batch.pending.size() == 1) {
+            invoke(batch.target, batch.pending.get(0));
+            return;
+        }
+        batch.id = nextBatchId.incrementAndGet();
+        batch.remaining.set(batch.pending.size());
+        List<Values> parameters = new ArrayList<>(batch.pending.size());
+        for (Pending pending : batch.pending) {
+            parameters.add(pending.request.parameters());
+        }
+        Request request = new Request(codec.getMethodName());
+        codec.join(batch.id, parameters, request.parameters());
+        request.setContext(batch);
+        sentBatches.put(batch.id, batch);
+        for (Pending pending : batch.pending) {
+            scheduleTimeout(batch, pending);
+        }
+        // The acknowledgement of the batch is not waited for longer than the reply to any of its requests
+        batch.target.getJRTTarget().invokeAsync(request, batch.timeout, this);
+        request.discardParameters(); // allow garbage collection of request parameters
+    }
+
+    private void scheduleTimeout(Batch batch, Pending pending) {
+        try {
+            pending.timer = scheduler.schedule(() -> complete(batch, pending, null, ErrorCode.TIMEOUT,
+                                                              "Request timed out after " + pending.timeout + " seconds."),
+                                               (long) (pending.timeout * 1_000_000_000), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) { // shutting down
+            complete(batch, pending, null, ErrorCode.ABORT, "Request aborted, as the network is shutting down.");
+        }
+    }
+
+    private void invoke(RPCTarget target, Pending pending) {
+        target.getJRTTarget().invokeAsync(pending.request, pending.timeout, waiter);
+        pending.request.discardParameters(); // allow garbage collection of request parameters
+    }
+
+    /** Handles the acknowledgement of a batch request, which failed if the recipient could not take the batch */
+    @Override
+    public void handleRequestDone(Request request) {
+        Batch batch = (Batch) request.getContext();
+        if (request.errorCode() == ErrorCode.NO_SUCH_METHOD) {
+            batch.target.setSupportsBatching(false);
+            sentBatches.remove(batch.id);
+            for (Pending pending : batch.pending) {
+                if (pending.done.compareAndSet(false, true)) {
+                    pending.cancelTimer();
+                    invoke(batch.target, pending);
+                }
+            }
+            return;
+        }
+        if (request.isError()) {
+            for (Pending pending : batch.pending) {
+                complete(batch, pending, null, request.errorCode(), request.errorMessage());
+            }
+        }
+    }
+
+    /**
+     * Handles a request of the reply method of the batch codec, which carries the reply to one of the requests of
+     * a batch. Replies to batches which are completed already, or which were sent to other targets, are ignored.
+     */
+    void handleReply(Request request) {
+        Values values = request.parameters();
+        Batch batch = sentBatches.get(codec.getBatchId(values));
+        if (batch == null || batch.target.getJRTTarget() != request.target()) {
+            return;
+        }
+        int index = codec.getIndex(values);
+        if (index < 0 || index >= batch.pending.size()) {
+            return;
+        }
+        complete(batch, batch.pending.get(index), codec.getReply(values), 0, null);
+    }
+
+    /** Completes the given request with the given reply, or with the given error if there is no reply, unless it is completed already */
+    private void complete(Batch batch, Pending pending, Values reply, int errorCode, String errorMessage) {
+        if ( ! pending.done.compareAndSet(false, true)) {
+            return;
+        }
+        pending.cancelTimer();
+        Request request = pending.request;
+        request.discardParameters(); // allow garbage collection of request parameters
+        if (reply != null) {
+            for (int i = 0; i < reply.size(); i++) {
+                request.returnValues().add(reply.get(i));
+            }
+        } else {
+            request.setError(errorCode, errorMessage);
+        }
+        if (batch.remaining.decrementAndGet() == 0) {
+            sentBatches.remove(batch.id);
+        }
+        waiter.handleRequestDone(request);
+    }
+
+    private static class Pending {
+
+        final Request request;
+        final double timeout;
+        final AtomicBoolean done = new AtomicBoolean(false);
+        volatile Future<?> timer = null;
+
+        Pending(Request request, double timeout) {
+            this.request = request;
+            this.timeout = timeout;
+        }
+
+        void cancelTimer() {
+            Future<?> timer = this.timer;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+    }
+
+    /** The requests to a target which are sent together. Only modified while in the batch map, and when sent. */
+    private static class Batch {
+
+        final RPCTarget target;
+        final List<Pending> pending = new ArrayList<>();
+        final AtomicInteger remaining = new AtomicInteger();
+        volatile long id;
+        double timeout = 0;
+        int bytes = 0;
+
+        Batch(RPCTarget target) {
+            this.target = target;
+        }
+
+        void add(Pending request, int size) {
+            pending.add(request);
+            timeout = Math.max(timeout, request.timeout);
+            bytes += size;
+        }
+    }
+
+}
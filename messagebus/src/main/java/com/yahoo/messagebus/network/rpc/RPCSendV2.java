@@ -4,10 +4,15 @@ package com.yahoo.messagebus.network.rpc;
 import com.yahoo.component.Version;
 import com.yahoo.compress.CompressionType;
 import com.yahoo.compress.Compressor;
+import com.yahoo.jrt.DataArray;
 import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.Int32Array;
 import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.Int8Array;
 import com.yahoo.jrt.Int8Value;
 import com.yahoo.jrt.Method;
+import com.yahoo.jrt.MethodHandler;
 import com.yahoo.jrt.Request;
 import com.yahoo.jrt.Values;
 import com.yahoo.messagebus.EmptyReply;
@@ -24,8 +29,16 @@ import com.yahoo.slime.Slime;
 import com.yahoo.text.Utf8;
 import com.yahoo.text.Utf8Array;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
- * Implements the request adapter for method "mbus.slime".
+ * Implements the request adapter for method "mbus.slime", and "mbus.slime.batch" which sends several of its
+ * requests as one, with replies returned one by one through "mbus.slime.batch.reply".
+ *
+ * Bodies are compressed by a {@link PayloadCompressor}. Recipients must decode any compression type, but the body
+ * encoding of a request also tells whether its sender compresses: requests encoded as
+ * {@link CompressionType#NONE} get uncompressed replies, so compression is in effect agreed per request.
  *
  * @author baldersheim
  */
@@ -34,7 +47,24 @@ public class RPCSendV2 extends RPCSend {
     private final static String METHOD_NAME = "mbus.slime";
     private final static String METHOD_PARAMS = "bixbix";
     private final static String METHOD_RETURN = "bixbix";
-    private final Compressor compressor = new Compressor(CompressionType.LZ4, 3, 0.90, 1024);
+    private final static String BATCH_METHOD_NAME = "mbus.slime.batch";
+    private final static String BATCH_METHOD_PARAMS = "lBIX";
+    private final static String BATCH_REPLY_METHOD_NAME = "mbus.slime.batch.reply";
+    private final static String BATCH_REPLY_METHOD_PARAMS = "li" + METHOD_RETURN;
+    private final PayloadCompressor compressor;
+
+    /** Creates an adapter which compresses bodies of at least 1kB with LZ4, when this saves at least 10% */
+    public RPCSendV2() {
+        this(new PayloadCompressor(CompressionType.LZ4, 1024, 0.90));
+    }
+
+    /** Creates an adapter which compresses bodies with the given compressor */
+    public RPCSendV2(PayloadCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    /** Returns the compressor of request and reply bodies of this, which holds the compression metrics */
+    public PayloadCompressor getCompressor() { return compressor; }
 
     @Override
     protected String getReturnSpec() { return METHOD_RETURN; }
@@ -57,6 +87,9 @@ public class RPCSendV2 extends RPCSend {
                 .returnDesc(5, "body_payload", "Slime encoded body payload.");
         return method;
     }
+    @Override
+    protected BatchCodec getBatchCodec() { return BATCH_CODEC; }
+
     private static final String VERSION_F = new String("version");
     private static final String ROUTE_F = new String("route");
     private static final String SESSION_F = new String("session");
@@ -156,6 +189,7 @@ public class RPCSendV2 extends RPCSend {
         Slime slime = BinaryFormat.decode(slimeBytes);
         Inspector root = slime.get();
         Params p = new Params();
+        p.compressReply = compression != CompressionType.NONE; // Senders which do not compress get nothing compressed back.
         p.version = new Version(root.field(VERSION_F).asString());
         p.route = root.field(ROUTE_F).asString();
         p.session = root.field(SESSION_F).asString();
@@ -169,7 +203,7 @@ public class RPCSendV2 extends RPCSend {
     }
 
     @Override
-    protected void createResponse(Values ret, Reply reply, Version version, byte [] payload) {
+    protected void createResponse(Values ret, Reply reply, Version version, byte [] payload, boolean compress) {
         ret.add(new Int8Value(CompressionType.NONE.getCode()));
         ret.add(new Int32Value(0));
         ret.add(new DataValue(new byte[0]));
@@ -199,11 +233,116 @@ public class RPCSendV2 extends RPCSend {
         }
 
         byte[] serializedSlime = BinaryFormat.encode(slime);
-        Compressor.Compression compressionResult = compressor.compress(serializedSlime);
+        Compressor.Compression compressionResult = compressor.compress(serializedSlime, compress);
 
         ret.add(new Int8Value(compressionResult.type().getCode()));
         ret.add(new Int32Value(compressionResult.uncompressedSize()));
         ret.add(new DataValue(compressionResult.data()));
     }
 
+    /**
+     * Carries the bodies of several "mbus.slime" requests as arrays, and each of their replies separately. The headers
+     * of the requests are not sent, as they are always empty.
+     */
+    private static final BatchCodec BATCH_CODEC = new BatchCodec() {
+
+        @Override
+        public Method buildMethod(MethodHandler handler) {
+            Method method = new Method(BATCH_METHOD_NAME, BATCH_METHOD_PARAMS, "", handler);
+            method.methodDesc("Send several message bus requests, whose replies are returned through " +
+                              BATCH_REPLY_METHOD_NAME + " as they are ready.");
+            method.paramDesc(0, "batch_id", "Id of the batch, which the sender uses to match the replies.")
+                    .paramDesc(1, "body_encodings", "Encoding type of each body.")
+                    .paramDesc(2, "body_decoded_sizes", "Number of bytes after decoding of each body.")
+                    .paramDesc(3, "body_payloads", "Slime encoded payload of each body.");
+            return method;
+        }
+
+        @Override
+        public Method buildReplyMethod(MethodHandler handler) {
+            Method method = new Method(BATCH_REPLY_METHOD_NAME, BATCH_REPLY_METHOD_PARAMS, "", handler);
+            method.methodDesc("Return the reply to one of the message bus requests of a batch.");
+            method.paramDesc(0, "batch_id", "Id of the batch.")
+                    .paramDesc(1, "index", "Index of the request in the batch.")
+                    .paramDesc(2, "header_encoding", "Encoding type of header.")
+                    .paramDesc(3, "header_decoded_size", "Number of bytes after header decoding.")
+                    .paramDesc(4, "header_payload", "Slime encoded header payload.")
+                    .paramDesc(5, "body_encoding", "Encoding type of body.")
+                    .paramDesc(6, "body_decoded_size", "Number of bytes after body decoding.")
+                    .paramDesc(7, "body_payload", "Slime encoded body payload.");
+            return method;
+        }
+
+        @Override
+        public String getMethodName() { return BATCH_METHOD_NAME; }
+
+        @Override
+        public String getReplyMethodName() { return BATCH_REPLY_METHOD_NAME; }
+
+        @Override
+        public void join(long batchId, List<Values> requests, Values batch) {
+            byte[] encodings = new byte[requests.size()];
+            int[] decodedSizes = new int[requests.size()];
+            byte[][] payloads = new byte[requests.size()][];
+            for (int i = 0; i < requests.size(); i++) {
+                Values request = requests.get(i);
+                encodings[i] = request.get(3).asInt8();
+                decodedSizes[i] = request.get(4).asInt32();
+                payloads[i] = request.get(5).asData();
+            }
+            batch.add(new Int64Value(batchId));
+            batch.add(new Int8Array(encodings));
+            batch.add(new Int32Array(decodedSizes));
+            batch.add(new DataArray(payloads));
+        }
+
+        @Override
+        public List<Values> split(Values batch) {
+            byte[] encodings = batch.get(1).asInt8Array();
+            int[] decodedSizes = batch.get(2).asInt32Array();
+            byte[][] payloads = batch.get(3).asDataArray();
+            if (decodedSizes.length != encodings.length || payloads.length != encodings.length)
+                throw new IllegalArgumentException("Got " + encodings.length + " encodings, " + decodedSizes.length +
+                                                   " sizes and " + payloads.length + " payloads in batch");
+
+            List<Values> requests = new ArrayList<>(encodings.length);
+            for (int i = 0; i < encodings.length; i++) {
+                Values request = new Values();
+                request.add(new Int8Value(CompressionType.NONE.getCode()));
+                request.add(new Int32Value(0));
+                request.add(new DataValue(new byte[0]));
+                request.add(new Int8Value(encodings[i]));
+                request.add(new Int32Value(decodedSizes[i]));
+                request.add(new DataValue(payloads[i]));
+                requests.add(request);
+            }
+            return requests;
+        }
+
+        @Override
+        public long getBatchId(Values values) { return values.get(0).asInt64(); }
+
+        @Override
+        public void joinReply(long batchId, int index, Values reply, Values batchReply) {
+            batchReply.add(new Int64Value(batchId));
+            batchReply.add(new Int32Value(index));
+            for (int i = 0; i < reply.size(); i++) {
+                batchReply.add(reply.get(i));
+            }
+        }
+
+        @Override
+        public int getIndex(Values batchReply) { return batchReply.get(1).asInt32(); }
+
+        @Override
+        public Values getReply(Values batchReply) {
+            Values reply = new Values();
+            for (int i = 2; i < batchReply.size(); i++) {
+                reply.add(batchReply.get(i));
+            }
+            return reply;
+        }
+
+    };
+
 }
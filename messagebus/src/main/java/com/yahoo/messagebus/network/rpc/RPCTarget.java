@@ -30,6 +30,7 @@ public class RPCTarget implements RequestWaiter {
     private boolean targetInvoked = false;
     private Version version = null;
     private List<VersionHandler> versionHandlers = new LinkedList<>();
+    private volatile boolean supportsBatching = true;
 
     /**
      * <p>Constructs a new instance of this class.</p>
@@ -85,6 +86,16 @@ public class RPCTarget implements RequestWaiter {
         return ref.get();
     }
 
+    /** Returns whether this target may know the batch method of the send adapters */
+    boolean supportsBatching() {
+        return supportsBatching;
+    }
+
+    /** Sets whether this target knows the batch method of the send adapters */
+    void setSupportsBatching(boolean supportsBatching) {
+        this.supportsBatching = supportsBatching;
+    }
+
     /**
      * <p>Requests the version of this target be passed to the given {@link
      * VersionHandler}. If the version is available, the handler is called
@@ -0,0 +1,182 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleReply;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyThrottlePolicyTestCase {
+
+    @Test
+    public void requireThatWindowGrowsWhileLatencyIsStable() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer).setWindowSizeIncrement(5)
+                                                                       .setMinWindowSize(5)
+                                                                       .setProbeInterval(Integer.MAX_VALUE);
+        Message message = new SimpleMessage("foo");
+        for (int i = 0; i < 10; i++) {
+            int pending = 0;
+            while (policy.canSend(message, pending)) {
+                policy.processMessage(message);
+                ++pending;
+            }
+            timer.millis += 10;
+            for ( ; pending > 0; --pending) {
+                Reply reply = new SimpleReply("bar");
+                reply.setContext(message.getContext());
+                policy.processReply(reply);
+            }
+        }
+        assertEquals(70, policy.getMaxPendingCount());
+        assertEquals(10, policy.getBaseLatencyMillis(), 1e-9);
+        assertEquals(0, policy.getBackOffCount());
+    }
+
+    @Test
+    public void requireThatWindowBacksOffOnBusyReplies() {
+        CustomTimer timer = new CustomTimer();
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(timer).setWindowSizeIncrement(10)
+                                                                       .setMinWindowSize(10)
+                                                                       .setMaxWindowSize(1000)
+                                                                       .setWindowSizeBackOff(0.5);
+        Message message = new SimpleMessage("foo");
+        List<Object> contexts = new ArrayList<>();
+        while (policy.canSend(message, contexts.size())) {
+            policy.processMessage(message);
+            contexts.add(message.getContext());
+        }
+        assertEquals(20, contexts.size());
+        timer.millis += 10;
+        for (Object context : contexts) {
+            Reply reply = new SimpleReply("bar");
+            reply.addError(new Error(ErrorCode.SESSION_BUSY, "busy"));
+            reply.setContext(context);
+            policy.processReply(reply);
+        }
+        assertEquals(10, policy.getMaxPendingCount());
+        assertEquals(1, policy.getBackOffCount());
+    }
+
+    @Test
+    public void requireThatLatencyIsLowerThanWithDynamicPolicyAtSimilarThroughput() {
+        // Capacity of the recipient is reduced to a third for the middle third of the simulation.
+        IntUnaryOperator capacity = millis -> millis >= 20_000 && millis < 40_000 ? 3 : 10;
+
+        CustomTimer timer = new CustomTimer();
+        Simulation dynamic = new Simulation(timer, new DynamicThrottlePolicy(timer), capacity);
+        dynamic.run(60_000);
+        timer = new CustomTimer();
+        Simulation latency = new Simulation(timer, new LatencyThrottlePolicy(timer), capacity);
+        latency.run(60_000);
+
+        String results = "dynamic: " + dynamic + ", latency: " + latency;
+        assertTrue(results, latency.meanLatencyMillis() < 0.8 * dynamic.meanLatencyMillis());
+        assertTrue(results, latency.successes >= 0.9 * dynamic.successes);
+    }
+
+    /**
+     * Discrete time simulation, in steps of one millisecond, of a client sending as much as its policy allows to a
+     * recipient which handles a given number of messages per millisecond, and which replies busy when its queue is
+     * full. Messages and replies are delayed by the network both ways.
+     */
+    private static class Simulation {
+
+        static final int NETWORK_DELAY_MILLIS = 2;
+        static final int MAX_QUEUE_SIZE = 1000;
+
+        final CustomTimer timer;
+        final ThrottlePolicy policy;
+        final IntUnaryOperator capacity;
+        final Deque<InFlight> toRecipient = new ArrayDeque<>();
+        final Deque<InFlight> queue = new ArrayDeque<>();
+        final Deque<InFlight> toClient = new ArrayDeque<>();
+        int pending = 0;
+        long successes = 0;
+        long failures = 0;
+        long sumLatencyMillis = 0;
+
+        Simulation(CustomTimer timer, ThrottlePolicy policy, IntUnaryOperator capacity) {
+            this.timer = timer;
+            this.policy = policy;
+            this.capacity = capacity;
+        }
+
+        void run(int millis) {
+            for ( ; timer.millis < millis; timer.millis++) {
+                long now = timer.millis;
+                while ( ! toClient.isEmpty() && toClient.peek().arrivalMillis <= now) {
+                    InFlight reply = toClient.poll();
+                    Reply simpleReply = new SimpleReply("reply");
+                    simpleReply.setContext(reply.context);
+                    if (reply.busy) {
+                        simpleReply.addError(new Error(ErrorCode.SESSION_BUSY, "busy"));
+                        ++failures;
+                    }
+                    else {
+                        ++successes;
+                        sumLatencyMillis += now - reply.sendMillis;
+                    }
+                    policy.processReply(simpleReply);
+                    --pending;
+                }
+                while ( ! toRecipient.isEmpty() && toRecipient.peek().arrivalMillis <= now) {
+                    InFlight message = toRecipient.poll();
+                    if (queue.size() >= MAX_QUEUE_SIZE) {
+                        message.busy = true;
+                        message.arrivalMillis = now + NETWORK_DELAY_MILLIS;
+                        toClient.add(message);
+                    }
+                    else {
+                        queue.add(message);
+                    }
+                }
+                for (int handled = 0; handled < capacity.applyAsInt((int) now) && ! queue.isEmpty(); handled++) {
+                    InFlight message = queue.poll();
+                    message.arrivalMillis = now + NETWORK_DELAY_MILLIS;
+                    toClient.add(message);
+                }
+                Message message = new SimpleMessage("message");
+                while (policy.canSend(message, pending)) {
+                    policy.processMessage(message);
+                    toRecipient.add(new InFlight(message.getContext(), now, now + NETWORK_DELAY_MILLIS));
+                    ++pending;
+                }
+            }
+        }
+
+        double meanLatencyMillis() {
+            return (double) sumLatencyMillis / successes;
+        }
+
+        @Override
+        public String toString() {
+            return successes + " successes, " + failures + " failures, mean latency " + meanLatencyMillis() + " ms";
+        }
+
+    }
+
+    private static class InFlight {
+
+        final Object context;
+        final long sendMillis;
+        long arrivalMillis;
+        boolean busy = false;
+
+        InFlight(Object context, long sendMillis, long arrivalMillis) {
+            this.context = context;
+            this.sendMillis = sendMillis;
+            this.arrivalMillis = arrivalMillis;
+        }
+
+    }
+
+}
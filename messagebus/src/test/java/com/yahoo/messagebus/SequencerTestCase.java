@@ -4,11 +4,18 @@ package com.yahoo.messagebus;
 import com.yahoo.messagebus.test.SimpleMessage;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -104,6 +111,64 @@ public class SequencerTestCase {
         assertEquals(0, dst.size());
     }
 
+    @Test
+    public void testSyncIdFromManyThreads() throws InterruptedException {
+        int numThreads = 32, numIds = 100, numMessages = 2000;
+        Map<Long, Integer> pendingThreads = new ConcurrentHashMap<>();
+        Map<Long, int[]> lastSentIndices = new ConcurrentHashMap<>();
+        Queue<Message> sent = new ConcurrentLinkedQueue<>();
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicInteger numReplies = new AtomicInteger();
+        ReplyHandler replies = reply -> numReplies.incrementAndGet();
+        Sequencer seq = new Sequencer(msg -> {
+            OrderedMessage ordered = (OrderedMessage)msg;
+            assertNull("One pending message per id", pendingThreads.putIfAbsent(ordered.seqId, ordered.thread));
+            int[] lastSent = lastSentIndices.computeIfAbsent(ordered.seqId, __ -> new int[numThreads]);
+            assertTrue("Messages are sent in order", lastSent[ordered.thread] < ordered.index);
+            lastSent[ordered.thread] = ordered.index;
+            sent.add(msg);
+        });
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 1; i <= numMessages; i++) {
+                        Message msg = new OrderedMessage((thread * 7L + i) % numIds, thread, i);
+                        msg.pushHandler(replies);
+                        seq.handleMessage(msg);
+                        replyTo(sent.poll(), pendingThreads);
+                    }
+                }
+                catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(), new ArrayList<>(failures));
+        for (Message msg; (msg = sent.poll()) != null; ) {
+            replyTo(msg, pendingThreads);
+        }
+        assertEquals(numThreads * numMessages, numReplies.get());
+        assertTrue(pendingThreads.isEmpty());
+    }
+
+    private static void replyTo(Message msg, Map<Long, Integer> pendingThreads) {
+        if (msg == null) {
+            return;
+        }
+        pendingThreads.remove(msg.getSequenceId());
+        Reply reply = new EmptyReply();
+        reply.swapState(msg);
+        reply.setMessage(msg);
+        reply.popHandler().handleReply(reply);
+    }
+
     @SuppressWarnings("serial")
     private static class TestQueue extends LinkedList<Routable> implements ReplyHandler {
 
@@ -183,5 +248,16 @@ public class SequencerTestCase {
         }
     }
 
-}
+    private static class OrderedMessage extends MyMessage {
 
+        final int thread;
+        final int index;
+
+        OrderedMessage(long seqId, int thread, int index) {
+            super(true, seqId);
+            this.thread = thread;
+            this.index = index;
+        }
+    }
+
+}
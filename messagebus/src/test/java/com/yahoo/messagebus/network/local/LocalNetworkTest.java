@@ -10,9 +10,14 @@ import com.yahoo.messagebus.test.SimpleProtocol;
 import com.yahoo.messagebus.test.SimpleReply;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
@@ -146,6 +151,153 @@ public class LocalNetworkTest {
 
     }
 
+    @Test
+    public void requireThatConcurrentBlockingSendsAreAllAcceptedAndReplied() throws InterruptedException {
+        final LocalWire wire = new LocalWire();
+
+        final Server serverA = new Server(wire);
+        final SourceSession source = serverA.newSourceSession(new StaticThrottlePolicy().setMaxPendingCount(4));
+
+        final Server serverB = new Server(wire);
+        final DestinationSession destination = serverB.newDestinationSession();
+
+        final int numThreads = 16, numMessages = 100;
+        final Thread replier = new Thread(() -> {
+            try {
+                for (int i = 0; i < numThreads * numMessages; i++) {
+                    Message msg = serverB.messages.poll(60, TimeUnit.SECONDS);
+                    Reply reply = new SimpleReply("bar");
+                    reply.swapState(msg);
+                    destination.reply(reply);
+                }
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        replier.start();
+        final List<Thread> senders = new ArrayList<>();
+        final AtomicInteger accepted = new AtomicInteger();
+        for (int i = 0; i < numThreads; i++) {
+            senders.add(new Thread(() -> {
+                for (int j = 0; j < numMessages; j++) {
+                    Message msg = new SimpleMessage("foo").setRoute(Route.parse(destination.getConnectionSpec()));
+                    try {
+                        if (source.sendBlocking(msg).isAccepted()) {
+                            accepted.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }));
+        }
+        senders.forEach(Thread::start);
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        replier.join();
+        assertEquals(numThreads * numMessages, accepted.get());
+        for (int i = 0; i < numThreads * numMessages; i++) {
+            assertThat(serverA.replies.poll(60, TimeUnit.SECONDS), instanceOf(SimpleReply.class));
+        }
+        source.close();
+        assertEquals(0, source.getPendingCount());
+        assertEquals(0, source.getBlockedCount());
+        assertTrue(source.getThrottledCount() > 0);
+
+        serverA.mbus.destroy();
+        serverB.mbus.destroy();
+    }
+
+    @Test
+    public void requireThatConcurrentSendsWithinTheThrottleWindowAreAllAccepted() throws Exception {
+        final LocalWire wire = new LocalWire();
+
+        final int numThreads = 8, numRounds = 20;
+        final Server serverA = new Server(wire);
+        final CountingThrottlePolicy policy = new CountingThrottlePolicy();
+        policy.setMaxPendingCount(numThreads);
+        final SourceSession source = serverA.newSourceSession(policy);
+
+        final Server serverB = new Server(wire);
+        final DestinationSession destination = serverB.newDestinationSession();
+
+        final CyclicBarrier start = new CyclicBarrier(numThreads);
+        final Route route = Route.parse(destination.getConnectionSpec());
+        for (int round = 0; round < numRounds; round++) {
+            final AtomicInteger accepted = new AtomicInteger();
+            final List<Thread> senders = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                senders.add(new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException | BrokenBarrierException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    if (source.send(new SimpleMessage("foo").setRoute(route)).isAccepted()) {
+                        accepted.incrementAndGet();
+                    }
+                }));
+            }
+            senders.forEach(Thread::start);
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            assertEquals("Round " + round, numThreads, accepted.get());
+
+            // Reply to the whole round, so the next one starts with an empty window
+            for (int i = 0; i < numThreads; i++) {
+                Message msg = serverB.messages.poll(60, TimeUnit.SECONDS);
+                Reply reply = new SimpleReply("bar");
+                reply.swapState(msg);
+                destination.reply(reply);
+                assertThat(serverA.replies.poll(60, TimeUnit.SECONDS), instanceOf(SimpleReply.class));
+            }
+        }
+        assertEquals(List.of(), policy.miscounts);
+        assertEquals(0, source.getThrottledCount());
+        source.close();
+
+        serverA.mbus.destroy();
+        serverB.mbus.destroy();
+    }
+
+    /**
+     * A slow policy, which lets other senders pile up behind the one it is deciding for, and which records
+     * any pending count it is given which differs from the number of messages it let through and saw no reply to.
+     */
+    private static class CountingThrottlePolicy extends StaticThrottlePolicy {
+
+        final List<String> miscounts = new ArrayList<>();
+        int pending = 0;
+
+        @Override
+        public boolean canSend(Message message, int pendingCount) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            if (pendingCount != pending) {
+                miscounts.add("Got pending count " + pendingCount + ", but " + pending + " messages are pending");
+            }
+            return super.canSend(message, pendingCount);
+        }
+
+        @Override
+        public void processMessage(Message message) {
+            super.processMessage(message);
+            pending++;
+        }
+
+        @Override
+        public void processReply(Reply reply) {
+            super.processReply(reply);
+            pending--;
+        }
+
+    }
+
     private static class Server implements MessageHandler, ReplyHandler {
 
         final MessageBus mbus;
@@ -0,0 +1,92 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PayloadCompressorTestCase {
+
+    @Test
+    public void requireThatCompressiblePayloadsAreCompressed() {
+        PayloadCompressor compressor = new PayloadCompressor(CompressionType.LZ4, 1024, 0.90);
+        byte[] payload = new byte[4096];
+        Arrays.fill(payload, (byte) 'a');
+
+        Compressor.Compression compression = compressor.compress(payload);
+        assertEquals(CompressionType.LZ4, compression.type());
+        assertEquals(payload.length, compression.uncompressedSize());
+        assertTrue(compression.data().length < payload.length);
+        assertArrayEquals(payload, compressor.decompress(compression.data(), compression.type(), payload.length));
+
+        assertEquals(1, compressor.getCompressedCount());
+        assertEquals(payload.length, compressor.getUncompressedBytes());
+        assertEquals(compression.data().length, compressor.getCompressedBytes());
+        assertEquals(payload.length - compression.data().length, compressor.getBytesSaved());
+    }
+
+    @Test
+    public void requireThatSmallPayloadsAreNotCompressed() {
+        PayloadCompressor compressor = new PayloadCompressor(CompressionType.LZ4, 1024, 0.90);
+        byte[] payload = new byte[1000];
+
+        Compressor.Compression compression = compressor.compress(payload);
+        assertEquals(CompressionType.INCOMPRESSIBLE, compression.type());
+        assertEquals(0, compressor.getUncompressedBytes());
+    }
+
+    @Test
+    public void requireThatPayloadsAreMarkedUncompressedWhenCompressionIsNotAllowed() {
+        byte[] payload = new byte[4096];
+        assertEquals(CompressionType.NONE,
+                     new PayloadCompressor(CompressionType.LZ4, 1024, 0.90).compress(payload, false).type());
+        assertEquals(CompressionType.NONE,
+                     new PayloadCompressor(CompressionType.NONE, 1024, 0.90).compress(payload, true).type());
+    }
+
+    @Test
+    public void requireThatIncompressiblePayloadsBackOffExponentially() {
+        PayloadCompressor compressor = new PayloadCompressor(CompressionType.LZ4, 1024, 0.90);
+        byte[] random = new byte[4096];
+        new Random(1).nextBytes(random);
+
+        // Tried, then skip 1; tried, then skip 2; tried, then skip 4, of which one is left.
+        for (int i = 0; i < 9; i++) {
+            assertEquals(CompressionType.INCOMPRESSIBLE, compressor.compress(random).type());
+        }
+        assertEquals(3, compressor.getIncompressibleCount());
+        assertEquals(6, compressor.getSkippedCount());
+        assertEquals(0, compressor.getBytesSaved());
+
+        // A compressible payload is tried once the skip count is spent, and resets the back off.
+        byte[] zeros = new byte[4096];
+        assertEquals(CompressionType.INCOMPRESSIBLE, compressor.compress(zeros).type());
+        assertEquals(CompressionType.LZ4, compressor.compress(zeros).type());
+        assertEquals(CompressionType.INCOMPRESSIBLE, compressor.compress(random).type());
+        assertEquals(CompressionType.INCOMPRESSIBLE, compressor.compress(zeros).type());
+        assertEquals(CompressionType.LZ4, compressor.compress(zeros).type());
+        assertEquals(2, compressor.getCompressedCount());
+        assertEquals(8, compressor.getSkippedCount());
+    }
+
+    @Test
+    public void requireThatBackOffIsBounded() {
+        PayloadCompressor compressor = new PayloadCompressor(CompressionType.LZ4, 1024, 0.90);
+        byte[] random = new byte[2048];
+        new Random(2).nextBytes(random);
+        for (int i = 0; i < 10 * PayloadCompressor.MAX_SKIP_COUNT; i++) {
+            compressor.compress(random);
+        }
+        // 11 attempts with 1 + 2 + ... + 512 skipped in between, then one attempt for every 1024 skipped.
+        int attempts = 11 + (10 * PayloadCompressor.MAX_SKIP_COUNT - 11 - 1023) / (PayloadCompressor.MAX_SKIP_COUNT + 1);
+        assertEquals(attempts, compressor.getIncompressibleCount());
+    }
+
+}
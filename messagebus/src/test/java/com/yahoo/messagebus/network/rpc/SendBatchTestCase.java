@@ -0,0 +1,175 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.slobrok.server.Slobrok;
+import com.yahoo.messagebus.DestinationSession;
+import com.yahoo.messagebus.DestinationSessionParams;
+import com.yahoo.messagebus.ErrorCode;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.MessageBusParams;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.SourceSession;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.network.Identity;
+import com.yahoo.messagebus.network.rpc.test.TestServer;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.test.Receptor;
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleProtocol;
+import com.yahoo.messagebus.test.SimpleReply;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SendBatchTestCase {
+
+    private Slobrok slobrok;
+    private TestServer srcServer, dstServer;
+    private SourceSession srcSession;
+    private DestinationSession dstSession;
+
+    @Before
+    public void setUp() throws ListenFailedException, UnknownHostException {
+        slobrok = new Slobrok();
+        dstServer = new TestServer(new MessageBusParams().addProtocol(new SimpleProtocol()),
+                                   new RPCNetworkParams().setIdentity(new Identity("dst"))
+                                                         .setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok)));
+        dstSession = dstServer.mb.createDestinationSession(new DestinationSessionParams().setName("session")
+                                                                                         .setMessageHandler(new Receptor()));
+        srcServer = new TestServer(new MessageBusParams().addProtocol(new SimpleProtocol()),
+                                   new RPCNetworkParams().setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok))
+                                                         .setMaxBatchMessages(4)
+                                                         .setBatchWindowSecs(0.05));
+        srcSession = srcServer.mb.createSourceSession(new SourceSessionParams().setTimeout(600.0)
+                                                                               .setReplyHandler(new Receptor()));
+        assertTrue(srcServer.waitSlobrok("dst/session", 1));
+    }
+
+    @After
+    public void tearDown() {
+        slobrok.stop();
+        dstSession.destroy();
+        dstServer.destroy();
+        srcSession.destroy();
+        srcServer.destroy();
+    }
+
+    @Test
+    public void requireThatBatchedMessagesGetTheirOwnReplies() {
+        int count = 10; // two full batches, and one sent when the window expires
+        for (int i = 0; i < count; i++) {
+            Message msg = new SimpleMessage("msg" + i);
+            msg.getTrace().setLevel(9);
+            assertTrue(srcSession.send(msg, Route.parse("dst/session")).isAccepted());
+        }
+
+        Receptor dstHandler = (Receptor) dstSession.getMessageHandler();
+        for (int i = 0; i < count; i++) {
+            Message msg = dstHandler.getMessage(60);
+            assertNotNull(msg);
+            Reply reply = new SimpleReply("reply:" + ((SimpleMessage) msg).getValue());
+            reply.swapState(msg);
+            dstSession.reply(reply);
+        }
+
+        Receptor srcHandler = (Receptor) srcSession.getReplyHandler();
+        Set<String> values = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            Reply reply = srcHandler.getReply(60);
+            assertNotNull(reply);
+            assertFalse(reply.getTrace().toString(), reply.hasErrors());
+            assertEquals("reply:" + ((SimpleMessage) reply.getMessage()).getValue(), ((SimpleReply) reply).getValue());
+            assertTrue(reply.getTrace().toString().contains("Sending reply"));
+            values.add(((SimpleReply) reply).getValue());
+        }
+        assertEquals(count, values.size());
+    }
+
+    @Test
+    public void requireThatRepliesAreNotHeldBackBySlowerMessagesInTheirBatch() {
+        List<Message> messages = sendBatch(new SimpleMessage("slow"), new SimpleMessage("a"), new SimpleMessage("b"), new SimpleMessage("c"));
+        Message slow = messages.remove(0);
+        for (Message msg : messages) {
+            reply(msg);
+        }
+
+        Receptor srcHandler = (Receptor) srcSession.getReplyHandler();
+        Set<String> values = new HashSet<>();
+        for (int i = 0; i < messages.size(); i++) {
+            Reply reply = srcHandler.getReply(60);
+            assertNotNull(reply);
+            assertFalse(reply.getTrace().toString(), reply.hasErrors());
+            values.add(((SimpleReply) reply).getValue());
+        }
+        assertEquals(Set.of("reply:a", "reply:b", "reply:c"), values);
+
+        reply(slow);
+        Reply reply = srcHandler.getReply(60);
+        assertNotNull(reply);
+        assertEquals("reply:slow", ((SimpleReply) reply).getValue());
+    }
+
+    @Test
+    public void requireThatBatchedMessagesTimeOutOnTheirOwn() {
+        SimpleMessage shortLived = new SimpleMessage("short");
+        shortLived.setTimeRemaining(1000);
+        List<Message> messages = sendBatch(shortLived, new SimpleMessage("a"), new SimpleMessage("b"), new SimpleMessage("c"));
+        messages.remove(0);
+
+        // Not replied to, so it times out, without taking the other messages with it
+        Receptor srcHandler = (Receptor) srcSession.getReplyHandler();
+        Reply reply = srcHandler.getReply(60);
+        assertNotNull(reply);
+        assertEquals("short", ((SimpleMessage) reply.getMessage()).getValue());
+        assertEquals(ErrorCode.TIMEOUT, reply.getError(0).getCode());
+
+        for (Message msg : messages) {
+            reply(msg);
+        }
+        for (int i = 0; i < messages.size(); i++) {
+            reply = srcHandler.getReply(60);
+            assertNotNull(reply);
+            assertFalse(reply.getTrace().toString(), reply.hasErrors());
+        }
+    }
+
+    /** Sends the given messages as one batch, and returns them as received by the destination, in the order given */
+    private List<Message> sendBatch(SimpleMessage... messages) {
+        for (Message msg : messages) {
+            assertTrue(srcSession.send(msg, Route.parse("dst/session")).isAccepted());
+        }
+        Receptor dstHandler = (Receptor) dstSession.getMessageHandler();
+        Map<String, Message> received = new HashMap<>();
+        for (int i = 0; i < messages.length; i++) {
+            Message msg = dstHandler.getMessage(60);
+            assertNotNull(msg);
+            received.put(((SimpleMessage) msg).getValue(), msg);
+        }
+        List<Message> ordered = new ArrayList<>();
+        for (SimpleMessage msg : messages) {
+            ordered.add(received.get(msg.getValue()));
+        }
+        return ordered;
+    }
+
+    private void reply(Message msg) {
+        Reply reply = new SimpleReply("reply:" + ((SimpleMessage) msg).getValue());
+        reply.swapState(msg);
+        dstSession.reply(reply);
+    }
+
+}
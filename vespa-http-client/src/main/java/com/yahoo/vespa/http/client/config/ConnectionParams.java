@@ -46,6 +46,7 @@ public final class ConnectionParams {
         private boolean printTraceToStdErr = true;
         private boolean useTlsConfigFromEnvironment = false;
         private Duration connectionTimeToLive = Duration.ofSeconds(15);
+        private boolean useHttp2 = false;
 
         /**
          * Use TLS configuration through the standard Vespa environment variables.
@@ -237,6 +238,19 @@ public final class ConnectionParams {
             return this;
         }
 
+        /**
+         * Use HTTP/2, where the persistent connections to an endpoint are multiplexed as streams over a single
+         * TCP connection. This requires Java 11 or later. The hostname verifier and connection time to live
+         * are not used with HTTP/2.
+         *
+         * @param useHttp2 true if enabled.
+         * @return pointer to builder.
+         */
+        public Builder setUseHttp2(boolean useHttp2) {
+            this.useHttp2 = useHttp2;
+            return this;
+        }
+
         public ConnectionParams build() {
             return new ConnectionParams(
                     sslContext,
@@ -254,7 +268,8 @@ public final class ConnectionParams {
                     traceEveryXOperation,
                     printTraceToStdErr,
                     useTlsConfigFromEnvironment,
-                    connectionTimeToLive);
+                    connectionTimeToLive,
+                    useHttp2);
         }
 
         public int getNumPersistentConnectionsPerEndpoint() {
@@ -302,6 +317,10 @@ public final class ConnectionParams {
         public Duration getConnectionTimeToLive() {
             return connectionTimeToLive;
         }
+
+        public boolean useHttp2() {
+            return useHttp2;
+        }
     }
     private final SSLContext sslContext;
     private final HostnameVerifier hostnameVerifier;
@@ -319,6 +338,7 @@ public final class ConnectionParams {
     private final boolean printTraceToStdErr;
     private final boolean useTlsConfigFromEnvironment;
     private final Duration connectionTimeToLive;
+    private final boolean useHttp2;
 
     private ConnectionParams(
             SSLContext sslContext,
@@ -336,11 +356,13 @@ public final class ConnectionParams {
             int traceEveryXOperation,
             boolean printTraceToStdErr,
             boolean useTlsConfigFromEnvironment,
-            Duration connectionTimeToLive) {
+            Duration connectionTimeToLive,
+            boolean useHttp2) {
         this.sslContext = sslContext;
         this.hostnameVerifier = hostnameVerifier;
         this.useTlsConfigFromEnvironment = useTlsConfigFromEnvironment;
         this.connectionTimeToLive = connectionTimeToLive;
+        this.useHttp2 = useHttp2;
         this.headers.putAll(headers);
         this.headerProviders.putAll(headerProviders);
         this.numPersistentConnectionsPerEndpoint = numPersistentConnectionsPerEndpoint;
@@ -421,6 +443,10 @@ public final class ConnectionParams {
         return connectionTimeToLive;
     }
 
+    public boolean useHttp2() {
+        return useHttp2;
+    }
+
     /**
      * A header provider that provides a header value. {@link #getHeaderValue()} is called each time a new HTTP request
      * is constructed by {@link com.yahoo.vespa.http.client.FeedClient}.
@@ -18,6 +18,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * @author Einar M R Rosenvinge
@@ -53,15 +54,20 @@ public class ClusterConnection implements AutoCloseable {
                                                                               clusterId,
                                                                               timeoutExecutor,
                                                                               feedParams.getServerTimeout(TimeUnit.MILLISECONDS) + feedParams.getClientTimeout(TimeUnit.MILLISECONDS));
+            Supplier<GatewayConnection> http2Connections = null;
+            if (connectionParams.useHttp2() && ! connectionParams.isDryRun()) {
+                http2Connections = createHttp2Connections(endpoint, feedParams, connectionParams, operationProcessor.getClientId());
+            }
             for (int i = 0; i < connectionParams.getNumPersistentConnectionsPerEndpoint(); i++) {
                 GatewayConnection gatewayConnection;
                 if (connectionParams.isDryRun()) {
                     gatewayConnection = new DryRunGatewayConnection(endpoint);
+                } else if (http2Connections != null) {
+                    gatewayConnection = http2Connections.get();
                 } else {
                     gatewayConnection = new ApacheGatewayConnection(
                             endpoint,
                             feedParams,
-                            cluster.getRoute(),
                             connectionParams,
                             new ApacheGatewayConnection.HttpClientFactory(connectionParams, endpoint.isUseSsl()),
                             operationProcessor.getClientId()
@@ -84,6 +90,22 @@ public class ClusterConnection implements AutoCloseable {
         }
     }
 
+    // TODO Create directly once vespa-http-client only targets JDK11
+    @SuppressWarnings("unchecked")
+    private static Supplier<GatewayConnection> createHttp2Connections(Endpoint endpoint,
+                                                                      FeedParams feedParams,
+                                                                      ConnectionParams connectionParams,
+                                                                      String clientId) {
+        try {
+            Class<?> connectionClass = Class.forName(ClusterConnection.class.getPackage().getName() + ".Http2GatewayConnection");
+            return (Supplier<GatewayConnection>) connectionClass
+                    .getDeclaredMethod("connectionsTo", Endpoint.class, FeedParams.class, ConnectionParams.class, String.class)
+                    .invoke(null, endpoint, feedParams, connectionParams, clientId);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IllegalArgumentException("HTTP/2 requires a build of vespa-http-client for Java 11 or later", e);
+        }
+    }
+
     public int getClusterId() {
         return clusterId;
     }
@@ -3,120 +3,161 @@ package com.yahoo.vespa.http.client.core.communication;
 
 import com.yahoo.vespa.http.client.core.Document;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Document queue that only gives you document operations on documents for which there are no
  * already in flight operations for.
  *
+ * Puts and polls are lock-free as long as the queue is neither full nor empty. The monitor is only taken
+ * by threads which must wait for space or documents, and by threads which must wake such waiters.
+ *
  * @author dybis
  */
 class DocumentQueue {
 
-    private final Deque<Document> queue;
+    private final Queue<Document> queue = new ConcurrentLinkedQueue<>();
+    /** The number of documents in the queue, including those which are reserved but not yet added */
+    private final AtomicInteger size = new AtomicInteger(0);
     private final int maxSize;
-    private boolean closed = false;
+    private final Object monitor = new Object();
+    private final AtomicInteger waitingProducers = new AtomicInteger(0);
+    private final AtomicInteger waitingConsumers = new AtomicInteger(0);
+    private volatile boolean closed = false;
 
     DocumentQueue(int maxSize) {
         this.maxSize = maxSize;
-        this.queue = new ArrayDeque<>(maxSize);
     }
 
     List<Document> removeAllDocuments() {
-        synchronized (queue) {
-            List<Document> allDocs = new ArrayList<>();
-            while (!queue.isEmpty()) {
-                allDocs.add(queue.poll());
-            }
-            queue.notifyAll();
-            return allDocs;
+        List<Document> allDocs = new ArrayList<>();
+        Document document;
+        while ((document = poll()) != null) {
+            allDocs.add(document);
         }
+        return allDocs;
     }
 
     void put(Document document, boolean calledFromIoThreadGroup) throws InterruptedException {
         document.resetQueueTime();
-        synchronized (queue) {
-            while (!closed && (queue.size() >= maxSize) && !calledFromIoThreadGroup) {
-                queue.wait();
+        while ( ! tryReserve(calledFromIoThreadGroup)) {
+            synchronized (monitor) {
+                waitingProducers.incrementAndGet();
+                try {
+                    while ( ! closed && size.get() >= maxSize) {
+                        monitor.wait();
+                    }
+                } finally {
+                    waitingProducers.decrementAndGet();
+                }
             }
+        }
+        queue.add(document);
+        if (closed && queue.remove(document)) {
+            removed();
+            throw new IllegalStateException("Cannot add elements to closed queue.");
+        }
+        if (waitingConsumers.get() > 0) {
+            wakeWaiters();
+        }
+    }
+
+    /** Reserves room for one more document, or returns false if the queue is full */
+    private boolean tryReserve(boolean ignoreMaxSize) {
+        while (true) {
             if (closed) {
                 throw new IllegalStateException("Cannot add elements to closed queue.");
             }
-            queue.add(document);
-            queue.notifyAll();
+            int current = size.get();
+            if (current >= maxSize && ! ignoreMaxSize) return false;
+            if (size.compareAndSet(current, current + 1)) return true;
         }
     }
 
     Document poll(long timeout, TimeUnit unit) throws InterruptedException {
-        synchronized (queue) {
-            long remainingToWait = unit.toMillis(timeout);
-            while (queue.isEmpty()) {
-                long startTime = System.currentTimeMillis();
-                queue.wait(remainingToWait);
-                remainingToWait -= (System.currentTimeMillis() - startTime);
-                if (remainingToWait <= 0) {
-                    break;
+        Document document = poll();
+        if (document != null) return document;
+
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        synchronized (monitor) {
+            waitingConsumers.incrementAndGet();
+            try {
+                while ((document = poll()) == null) {
+                    long remainingToWait = deadline - System.currentTimeMillis();
+                    if (remainingToWait <= 0) break;
+                    monitor.wait(remainingToWait);
                 }
+            } finally {
+                waitingConsumers.decrementAndGet();
             }
-            Document document = queue.poll();
-            queue.notifyAll();
-            return document;
         }
+        return document;
     }
 
     Document poll() {
-        synchronized (queue) {
-            Document document = queue.poll();
-            queue.notifyAll();
-            return document;
+        Document document = queue.poll();
+        if (document != null) {
+            removed();
         }
+        return document;
     }
 
-    boolean isEmpty() {
-        synchronized (queue) {
-            return queue.isEmpty();
+    /** Releases the room of a document which was taken out of the queue, and wakes any producer waiting for it */
+    private void removed() {
+        size.decrementAndGet();
+        if (waitingProducers.get() > 0) {
+            wakeWaiters();
         }
     }
 
-    int size() {
-        synchronized (queue) {
-            return queue.size();
+    private void wakeWaiters() {
+        synchronized (monitor) {
+            monitor.notifyAll();
         }
     }
 
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    int size() {
+        return size.get();
+    }
+
     void clear() {
-        synchronized (queue) {
-            queue.clear();
-            queue.notifyAll();
-        }
+        while (poll() != null) { }
     }
 
     boolean close() {
         boolean previousState;
-        synchronized (queue) {
+        synchronized (monitor) {
             previousState = closed;
             closed = true;
-            queue.notifyAll();
+            monitor.notifyAll();
         }
         return previousState;
     }
 
+    /**
+     * Removes and returns the document at the head of the queue if it has been queued for longer than the
+     * given time. Only the inspected document is ever removed, even if other threads poll concurrently.
+     */
     Optional<Document> pollDocumentIfTimedoutInQueue(long localQueueTimeOut) {
-        synchronized (queue) {
-            if (queue.isEmpty()) {
-                return Optional.empty();
-            }
-            Document document = queue.peek();
-            if (document.timeInQueueMillis() > localQueueTimeOut) {
-                return Optional.of(queue.poll());
-            }
+        Document document = queue.peek();
+        if (document == null || document.timeInQueueMillis() <= localQueueTimeOut) {
+            return Optional.empty();
+        }
+        if ( ! queue.remove(document)) {
             return Optional.empty();
         }
+        removed();
+        return Optional.of(document);
     }
 
 }
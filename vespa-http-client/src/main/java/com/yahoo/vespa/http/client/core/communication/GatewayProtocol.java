@@ -0,0 +1,197 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yahoo.vespa.http.client.config.ConnectionParams;
+import com.yahoo.vespa.http.client.config.FeedParams;
+import com.yahoo.vespa.http.client.core.Document;
+import com.yahoo.vespa.http.client.core.Encoder;
+import com.yahoo.vespa.http.client.core.Headers;
+import com.yahoo.vespa.http.client.core.ServerResponseException;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The parts of the V3 feed protocol which are the same for all gateway connections, whichever HTTP client they use:
+ * the request path, body and headers, and the checks of the responses from the server.
+ */
+final class GatewayProtocol {
+
+    private static final Logger log = Logger.getLogger(GatewayProtocol.class.getName());
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    static final String PATH = "/reserved-for-internal-use/feedapi?";
+    static final int SUPPORTED_VERSION = 3;
+
+    private static final byte[] START_OF_FEED_XML = "<vespafeed>\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] END_OF_FEED_XML = "\n</vespafeed>\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] START_OF_FEED_JSON = "[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] END_OF_FEED_JSON = "]".getBytes(StandardCharsets.UTF_8);
+
+    private GatewayProtocol() { }
+
+    /** Returns the body of a request with the given documents, as buffers to be sent in order */
+    static List<ByteBuffer> encode(List<Document> docs, FeedParams.DataFormat dataFormat) {
+        boolean isJson = dataFormat == FeedParams.DataFormat.JSON_UTF8;
+        byte[] startOfFeed = isJson ? START_OF_FEED_JSON : START_OF_FEED_XML;
+        byte[] endOfFeed = isJson ? END_OF_FEED_JSON : END_OF_FEED_XML;
+        List<ByteBuffer> data = new ArrayList<>();
+        for (Document doc : docs) {
+            int operationSize = doc.size() + startOfFeed.length + endOfFeed.length;
+            StringBuilder envelope = new StringBuilder();
+            Encoder.encode(doc.getOperationId(), envelope);
+            envelope.append(' ');
+            envelope.append(Integer.toHexString(operationSize));
+            envelope.append('\n');
+            data.add(StandardCharsets.US_ASCII.encode(envelope.toString()));
+            data.add(ByteBuffer.wrap(startOfFeed));
+            data.add(doc.getData());
+            data.add(ByteBuffer.wrap(endOfFeed));
+        }
+        return data;
+    }
+
+    /**
+     * Sets the headers of a request. The protocol version and the extra headers of the connection parameters may
+     * occur more than once, and are passed to the given adder, while all other headers are passed to the setter.
+     *
+     * @param negotiated whether the protocol version has been negotiated with the server
+     */
+    static void setHeaders(BiConsumer<String, String> set, BiConsumer<String, String> add,
+                           FeedParams feedParams, ConnectionParams connectionParams, String clientId, String shardingKey,
+                           boolean drain, boolean useCompression, boolean isHandshake, boolean negotiated) {
+        add.accept(Headers.VERSION, Integer.toString(SUPPORTED_VERSION));
+        set.accept(Headers.CLIENT_ID, clientId);
+        set.accept(Headers.SHARDING_KEY, shardingKey);
+        set.accept(Headers.DRAIN, drain ? "true" : "false");
+        if (feedParams.getRoute() != null) {
+            set.accept(Headers.ROUTE, feedParams.getRoute());
+        }
+        if ( ! isHandshake) {
+            if (feedParams.getDataFormat() == FeedParams.DataFormat.JSON_UTF8) {
+                set.accept(Headers.DATA_FORMAT, FeedParams.DataFormat.JSON_UTF8.name());
+            } else {
+                set.accept(Headers.DATA_FORMAT, FeedParams.DataFormat.XML_UTF8.name());
+            }
+            if (feedParams.getPriority() != null) {
+                set.accept(Headers.PRIORITY, feedParams.getPriority());
+            }
+            if (connectionParams.getTraceLevel() != 0) {
+                set.accept(Headers.TRACE_LEVEL, String.valueOf(connectionParams.getTraceLevel()));
+            }
+            if (negotiated && feedParams.getDenyIfBusyV3()) {
+                set.accept(Headers.DENY_IF_BUSY, "true");
+            }
+        }
+        if (feedParams.getSilentUpgrade()) {
+            set.accept(Headers.SILENTUPGRADE, "true");
+        }
+        set.accept(Headers.TIMEOUT, "" + feedParams.getServerTimeout(TimeUnit.SECONDS));
+
+        for (Map.Entry<String, String> extraHeader : connectionParams.getHeaders()) {
+            add.accept(extraHeader.getKey(), extraHeader.getValue());
+        }
+        connectionParams.getDynamicHeaders().forEach((headerName, provider) -> {
+            String headerValue = Objects.requireNonNull(
+                    provider.getHeaderValue(),
+                    provider.getClass().getName() + ".getHeader() returned null as header value!");
+            add.accept(headerName, headerValue);
+        });
+
+        if (useCompression) {
+            set.accept("Content-Encoding", "gzip");
+        }
+    }
+
+    /**
+     * Verifies the status code of a response. Errors are described by the message in the body of the response,
+     * if it is JSON, prefixed by the given description.
+     *
+     * @param description the description of the status code, used alone if the body has no message
+     * @param contentType the content type of the response, or null if none
+     * @param body opens the body of the response, only if the content type is JSON
+     */
+    static void verifyResponseCode(int statusCode, String description, String contentType, Callable<InputStream> body)
+            throws ServerResponseException {
+        // We use code 261-299 to report errors related to internal transitive errors that the tenants should not care
+        // about to avoid masking more serious errors.
+        if (statusCode > 199 && statusCode < 260) {
+            return;
+        }
+        if (statusCode == 299) {
+            throw new ServerResponseException(429, "Too  many requests.");
+        }
+        String message = tryGetDetailedErrorMessage(contentType, body).map(detail -> description + " - " + detail)
+                                                                       .orElse(description);
+        throw new ServerResponseException(statusCode, message);
+    }
+
+    private static Optional<String> tryGetDetailedErrorMessage(String contentType, Callable<InputStream> body) {
+        if (contentType == null || ! contentType.equalsIgnoreCase("application/json")) return Optional.empty();
+        try (InputStream in = body.call()) {
+            JsonNode jsonNode = mapper.readTree(in);
+            JsonNode message = jsonNode.get("message");
+            if (message == null || message.textValue() == null) return Optional.empty();
+            return Optional.of(message.textValue());
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Verifies the protocol version header of a response, which must be the supported version
+     *
+     * @param versionHeader the value of the version header, or null if none
+     * @param negotiated whether the version was negotiated by an earlier response, so it is not logged again
+     */
+    static void verifyServerVersion(String versionHeader, boolean negotiated) throws ServerResponseException {
+        if (versionHeader == null) {
+            throw new ServerResponseException("Got bad protocol version from server.");
+        }
+        int serverVersion;
+        try {
+            serverVersion = Integer.parseInt(versionHeader);
+        } catch (NumberFormatException nfe) {
+            throw new ServerResponseException("Got bad protocol version from server: " + nfe.getMessage());
+        }
+        if (serverVersion != SUPPORTED_VERSION) {
+            throw new ServerResponseException("Unsupported version: " + serverVersion
+                                              + ". Supported versions: [" + SUPPORTED_VERSION + "]");
+        }
+        if ( ! negotiated && log.isLoggable(Level.FINE)) {
+            log.log(Level.FINE, "Server decided upon protocol version " + serverVersion + ".");
+        }
+    }
+
+    /**
+     * Verifies that the session header of a response is the id of the client, as V3 servers echo it
+     *
+     * @param sessionHeader the value of the session header, or null if none
+     */
+    static void verifySessionHeader(String sessionHeader, String clientId) throws ServerResponseException {
+        if (sessionHeader == null) {
+            throw new ServerResponseException("Got no session ID from server.");
+        }
+        String serverHeaderVal = sessionHeader.trim();
+        if ( ! clientId.equals(serverHeaderVal)) {
+            String message = "Running using v3. However, server responds with different session " +
+                             "than client has set; " + serverHeaderVal + " vs client code " + clientId;
+            log.severe(message);
+            throw new ServerResponseException(message);
+        }
+    }
+
+}
@@ -0,0 +1,229 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.yahoo.security.tls.MixedMode;
+import com.yahoo.security.tls.TransportSecurityUtils;
+import com.yahoo.vespa.http.client.config.ConnectionParams;
+import com.yahoo.vespa.http.client.config.Endpoint;
+import com.yahoo.vespa.http.client.config.FeedParams;
+import com.yahoo.vespa.http.client.core.Document;
+import com.yahoo.vespa.http.client.core.Headers;
+import com.yahoo.vespa.http.client.core.ServerResponseException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A gateway connection which speaks the V3 feed protocol over HTTP/2, using the HTTP client of the JDK.
+ * All connections to an endpoint share one client, so their requests are multiplexed as streams over
+ * a single TCP connection, instead of each connection having one of its own. The client falls back to
+ * HTTP/1.1 against servers which do not support HTTP/2.
+ *
+ * This class requires JDK 11, and is created through reflection by {@link ClusterConnection}, as the rest of
+ * this library must run on JDK 8.
+ *
+ * @see ConnectionParams.Builder#setUseHttp2(boolean)
+ */
+class Http2GatewayConnection implements GatewayConnection {
+
+    private static final Logger log = Logger.getLogger(Http2GatewayConnection.class.getName());
+
+    private final Endpoint endpoint;
+    private final FeedParams feedParams;
+    private final ConnectionParams connectionParams;
+    private final ClientFactory clientFactory;
+    private final String clientId;
+    private final String shardingKey = UUID.randomUUID().toString().substring(0, 5);
+    private HttpClient httpClient = null;
+    private boolean negotiated = false;
+
+    Http2GatewayConnection(Endpoint endpoint,
+                           FeedParams feedParams,
+                           ConnectionParams connectionParams,
+                           ClientFactory clientFactory,
+                           String clientId) {
+        this.endpoint = endpoint;
+        this.feedParams = feedParams;
+        this.connectionParams = connectionParams;
+        this.clientFactory = clientFactory;
+        this.clientId = clientId;
+        if (this.clientId == null) {
+            throw new RuntimeException("Got no client Id.");
+        }
+    }
+
+    /** Returns a supplier of connections to the given endpoint, which all share the same client. */
+    static Supplier<GatewayConnection> connectionsTo(Endpoint endpoint,
+                                                     FeedParams feedParams,
+                                                     ConnectionParams connectionParams,
+                                                     String clientId) {
+        ClientFactory clientFactory = new ClientFactory(connectionParams, endpoint.isUseSsl());
+        return () -> new Http2GatewayConnection(endpoint, feedParams, connectionParams, clientFactory, clientId);
+    }
+
+    @Override
+    public InputStream writeOperations(List<Document> docs) throws ServerResponseException, IOException {
+        return write(docs, false, connectionParams.getUseCompression());
+    }
+
+    @Override
+    public InputStream drain() throws ServerResponseException, IOException {
+        return write(Collections.emptyList(), true /* drain */, false /* use compression */);
+    }
+
+    @Override
+    public boolean connect() {
+        log.fine("Attempting to connect to " + endpoint);
+        httpClient = clientFactory.getClient();
+        return httpClient != null;
+    }
+
+    @Override
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    @Override
+    public void handshake() throws ServerResponseException, IOException {
+        execute(createRequest(false, false, true).POST(HttpRequest.BodyPublishers.noBody())).close();
+        log.fine("Handshake with " + endpoint + " done.");
+    }
+
+    @Override
+    public void close() {
+        // The shared client is left to the other connections to this endpoint.
+        httpClient = null;
+    }
+
+    private InputStream write(List<Document> docs, boolean drain, boolean useCompression)
+            throws ServerResponseException, IOException {
+        byte[] data = getDataWithStartAndEndOfFeed(docs);
+        if (useCompression) {
+            data = gzip(data);
+        }
+        return execute(createRequest(drain, useCompression, false).POST(HttpRequest.BodyPublishers.ofByteArray(data)));
+    }
+
+    private byte[] getDataWithStartAndEndOfFeed(List<Document> docs) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (ByteBuffer buffer : GatewayProtocol.encode(docs, feedParams.getDataFormat())) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            data.writeBytes(bytes);
+        }
+        return data.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(zipped)) {
+            out.write(data);
+        }
+        return zipped.toByteArray();
+    }
+
+    private HttpRequest.Builder createRequest(boolean drain, boolean useCompression, boolean isHandshake) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(createUri());
+        request.header(Headers.CLIENT_VERSION, Vtag.currentVersion);
+        request.header("User-Agent", String.format("vespa-http-client (%s)", Vtag.currentVersion));
+        GatewayProtocol.setHeaders(request::setHeader, request::header, feedParams, connectionParams, clientId, shardingKey,
+                                   drain, useCompression, isHandshake, negotiated);
+        return request;
+    }
+
+    private InputStream execute(HttpRequest.Builder request) throws ServerResponseException, IOException {
+        if (httpClient == null) {
+            throw new IOException("Trying to execute a request while not having a connection/http client");
+        }
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for response from " + endpoint, e);
+        }
+        try {
+            GatewayProtocol.verifyResponseCode(response.statusCode(), "HTTP status " + response.statusCode(),
+                                               response.headers().firstValue("Content-Type").orElse(null), response::body);
+            GatewayProtocol.verifyServerVersion(response.headers().firstValue(Headers.VERSION).orElse(null), negotiated);
+            negotiated = true;
+            GatewayProtocol.verifySessionHeader(response.headers().firstValue(Headers.SESSION_ID).orElse(null), clientId);
+        } catch (ServerResponseException e) {
+            response.body().close();
+            throw e;
+        }
+        return response.body();
+    }
+
+    private URI createUri() {
+        boolean useSsl = endpoint.isUseSsl() || clientFactory.rewritesToHttps();
+        return URI.create((useSsl ? "https://" : "http://") + endpoint.getHostname() + ":" + endpoint.getPort()
+                          + GatewayProtocol.PATH + feedParams.toUriParameters());
+    }
+
+    /** Creates the client shared by all connections to an endpoint, on first use. */
+    static class ClientFactory {
+
+        private final ConnectionParams connectionParams;
+        private final boolean useSsl;
+        private HttpClient client = null;
+
+        ClientFactory(ConnectionParams connectionParams, boolean useSsl) {
+            this.connectionParams = connectionParams;
+            this.useSsl = useSsl;
+        }
+
+        synchronized HttpClient getClient() {
+            if (client == null) {
+                client = createClient();
+            }
+            return client;
+        }
+
+        boolean rewritesToHttps() {
+            return connectionParams.useTlsConfigFromEnvironment()
+                   && TransportSecurityUtils.isTransportSecurityEnabled()
+                   && TransportSecurityUtils.getInsecureMixedMode() != MixedMode.PLAINTEXT_CLIENT_MIXED_SERVER;
+        }
+
+        private HttpClient createClient() {
+            HttpClient.Builder clientBuilder = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .followRedirects(HttpClient.Redirect.NEVER);
+            if (connectionParams.useTlsConfigFromEnvironment()) {
+                TransportSecurityUtils.createTlsContext().ifPresent(tlsContext -> {
+                    clientBuilder.sslContext(tlsContext.context());
+                    clientBuilder.sslParameters(tlsContext.parameters());
+                });
+            } else if (useSsl && connectionParams.getSslContext() != null) {
+                clientBuilder.sslContext(connectionParams.getSslContext());
+            }
+            if (connectionParams.getProxyHost() != null) {
+                clientBuilder.proxy(ProxySelector.of(new InetSocketAddress(connectionParams.getProxyHost(),
+                                                                           connectionParams.getProxyPort())));
+            }
+            log.fine("Creating HTTP/2 client: "
+                     + " proxyhost (can be null) " + connectionParams.getProxyHost()
+                     + ":" + connectionParams.getProxyPort()
+                     + (useSsl ? " using ssl " : " not using ssl"));
+            return clientBuilder.build();
+        }
+
+    }
+
+}
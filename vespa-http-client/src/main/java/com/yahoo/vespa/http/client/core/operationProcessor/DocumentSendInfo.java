@@ -9,7 +9,7 @@ import java.util.Map;
 
 /**
  * Keeps an overview of what is sent and what is received for an operation.
- * This class is NOT thread-safe.
+ * This class is NOT thread-safe: users synchronize on the instance.
  */
 class DocumentSendInfo {
 
@@ -18,9 +18,11 @@ class DocumentSendInfo {
     // This is lazily populated as normal cases does not require retries.
     private Map<Integer, Integer> attemptedRetriesByClusterId = null;
     private final StringBuilder localTrace;
+    private final long sequence;
 
-    DocumentSendInfo(Document document, boolean traceThisDoc) {
+    DocumentSendInfo(Document document, boolean traceThisDoc, long sequence) {
         this.document = document;
+        this.sequence = sequence;
         localTrace = traceThisDoc
                 ? new StringBuilder("\n" + document.createTimeMillis() + " Trace starting " + "\n")
                 : null;
@@ -70,4 +72,9 @@ class DocumentSendInfo {
         return document;
     }
 
+    /** Returns the order in which this operation was sent, relative to the other operations of its processor */
+    long getSequence() {
+        return sequence;
+    }
+
 }
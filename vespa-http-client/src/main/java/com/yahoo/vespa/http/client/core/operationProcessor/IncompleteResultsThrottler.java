@@ -4,6 +4,7 @@ package com.yahoo.vespa.http.client.core.operationProcessor;
 import com.yahoo.vespa.http.client.core.ThrottlePolicy;
 
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Adjusts in-flight operations based on throughput. It will walk the graph and try to find
@@ -25,7 +26,8 @@ import java.util.concurrent.ThreadLocalRandom;
  * In case the where the queue is moved to minimum size, it will now and then increase queue size to get
  * more sample data and possibly grow size.
  *
- * Class is fully thread safe, i.e. all public methods are thread safe.
+ * Class is fully thread safe, i.e. all public methods are thread safe. Results are counted without locking, and
+ * the monitor is only taken by the operation which starts a new sampling phase.
  *
  * @author dybis
  */
@@ -41,15 +43,15 @@ public class IncompleteResultsThrottler {
     private final Clock clock;
 
     private final Object monitor = new Object();
-    private long sampleStartTimeMs = 0;
+    private volatile long sampleStartTimeMs = 0;
     private int previousNumOk = 0;
     private int previousMaxInFlight = 0;
     private int stabilizingPhasesLeft = 0;
     private int adjustCycleCount = 0;
-    private int maxInFlightNow;
-    private int numOk = 0;
+    private volatile int maxInFlightNow;
+    private final AtomicInteger numOk = new AtomicInteger(0);
     private int minWindowSizeCounter = 0;
-    private int minPermitsAvailable = 0;
+    private final AtomicInteger minPermitsAvailable = new AtomicInteger(0);
 
     protected static int INITIAL_MAX_IN_FLIGHT_VALUE = 200;
     protected static int SECOND_MAX_IN_FLIGHT_VALUE = 270;
@@ -83,7 +85,7 @@ public class IncompleteResultsThrottler {
         } catch (InterruptedException e) {
             // Ignore
         }
-        if (maxInFlightValue != minInFlightValue) {
+        if (maxInFlightValue != minInFlightValue && clock.getTimeMillis() >= sampleStartTimeMs + phaseSizeMs) {
             synchronized (monitor) {
                 adjustThrottling();
             }
@@ -105,10 +107,8 @@ public class IncompleteResultsThrottler {
         if (!success) {
             return;
         }
-        synchronized (monitor) {
-            numOk++;
-            minPermitsAvailable = Math.min(minPermitsAvailable, blocker.availablePermits());
-        }
+        numOk.incrementAndGet();
+        minPermitsAvailable.accumulateAndGet(blocker.availablePermits(), Math::min);
     }
 
     // Only for testing
@@ -126,7 +126,7 @@ public class IncompleteResultsThrottler {
         return 1.2;
     }
 
-    private void adjustCycle() {
+    private void adjustCycle(int numOk, int minPermitsAvailable) {
         adjustCycleCount++;
         stabilizingPhasesLeft = adjustCycleCount < 5 ? 1 : 2 + ThreadLocalRandom.current().nextInt() % 2;
 
@@ -152,11 +152,11 @@ public class IncompleteResultsThrottler {
         }
         sampleStartTimeMs += phaseSizeMs;
 
+        int numOkInPhase = numOk.getAndSet(0);
         if (stabilizingPhasesLeft-- == 0) {
-            adjustCycle();
+            adjustCycle(numOkInPhase, minPermitsAvailable.get());
         }
-        numOk = 0;
-        this.minPermitsAvailable = maxInFlightNow;
+        minPermitsAvailable.set(maxInFlightNow);
     }
 
     private int tryBoostingSizeIfMinValueOverSeveralCycles(final int size) {
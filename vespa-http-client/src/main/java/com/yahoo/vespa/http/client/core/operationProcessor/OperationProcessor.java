@@ -1,7 +1,6 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.http.client.core.operationProcessor;
 
-import com.google.common.collect.ArrayListMultimap;
 import com.yahoo.vespa.http.client.FeedClient;
 import com.yahoo.vespa.http.client.FeedEndpointException;
 import com.yahoo.vespa.http.client.Result;
@@ -15,33 +14,40 @@ import com.yahoo.vespa.http.client.core.communication.ClusterConnection;
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Merges several endpointResult into one Result and does the callback.
  *
+ * No lock is shared between operations: the state of each operation is guarded by its {@link DocumentSendInfo},
+ * and the operations waiting for an earlier operation on the same document by the concurrent map bin of
+ * that document id.
+ *
  * @author dybis
  */
 public class OperationProcessor {
 
     private static final Logger log = Logger.getLogger(OperationProcessor.class.getName());
-    private final Map<String, DocumentSendInfo> docSendInfoByOperationId = new LinkedHashMap<>();
-    private final ArrayListMultimap<String, Document> blockedDocumentsByDocumentId = ArrayListMultimap.create();
-    private final Set<String> inflightDocumentIds = new HashSet<>();
+    private final ConcurrentMap<String, DocumentSendInfo> docSendInfoByOperationId = new ConcurrentHashMap<>();
+    /** The documents waiting for the operation in flight to complete, by document id, for all document ids in flight */
+    private final ConcurrentMap<String, Deque<Document>> blockedDocumentsByDocumentId = new ConcurrentHashMap<>();
+    private final AtomicLong sendSequence = new AtomicLong(0);
     private final int numDestinations;
     private final FeedClient.ResultCallback resultCallback;
-    private final Object monitor = new Object();
     private final IncompleteResultsThrottler incompleteResultsThrottler;
     // Position in the array is cluster ID.
     private final List<ClusterConnection> clusters = new ArrayList<>();
@@ -51,7 +57,7 @@ public class OperationProcessor {
     private final long minTimeBetweenRetriesMs;
     private final Random random = new SecureRandom();
     private final int traceEveryXOperation;
-    private int traceCounter = 0;
+    private final AtomicInteger traceCounter = new AtomicInteger(0);
     private final boolean traceToStderr;
     private final ThreadGroup ioThreadGroup;
     private final String clientId = new BigInteger(130, random).toString(32);
@@ -96,18 +102,14 @@ public class OperationProcessor {
     }
 
     public int getIncompleteResultQueueSize() {
-        synchronized (monitor) {
-            return docSendInfoByOperationId.size();
-        }
+        return docSendInfoByOperationId.size();
     }
 
-    /** Returns the id of the oldest operation to be sent. */
+    /** Returns the id of the oldest operation to be sent. This is linear in the number of incomplete operations. */
     public Optional<String> oldestIncompleteResultId() {
-        synchronized (monitor) {
-            return docSendInfoByOperationId.isEmpty()
-                    ? Optional.empty()
-                    : Optional.of(docSendInfoByOperationId.keySet().iterator().next());
-        }
+        return docSendInfoByOperationId.values().stream()
+                .min(Comparator.comparingLong(DocumentSendInfo::getSequence))
+                .map(info -> info.getDocument().getOperationId());
     }
 
     public String getClientId() {
@@ -151,13 +153,14 @@ public class OperationProcessor {
 
     private Result process(EndpointResult endpointResult, int clusterId) {
         Result result;
-        Document blockedDocumentToSend = null;
-        synchronized (monitor) {
-            if (!docSendInfoByOperationId.containsKey(endpointResult.getOperationId())) {
-                log.finer("Received out-of-order or too late result, discarding: " + endpointResult);
-                return null;
-            }
-            DocumentSendInfo documentSendInfo = docSendInfoByOperationId.get(endpointResult.getOperationId());
+        DocumentSendInfo documentSendInfo = docSendInfoByOperationId.get(endpointResult.getOperationId());
+        if (documentSendInfo == null) {
+            log.finer("Received out-of-order or too late result, discarding: " + endpointResult);
+            return null;
+        }
+        synchronized (documentSendInfo) {
+            // Completed by another result while we were waiting
+            if (docSendInfoByOperationId.get(endpointResult.getOperationId()) != documentSendInfo) return null;
 
             if (retriedThis(endpointResult, documentSendInfo, clusterId)) return null;
 
@@ -169,19 +172,18 @@ public class OperationProcessor {
 
             result = documentSendInfo.createResult();
             docSendInfoByOperationId.remove(endpointResult.getOperationId());
-
-            String documentId = documentSendInfo.getDocument().getDocumentId();
-            // If we got a pending operation against this document
-            // dont't remove it from inflightDocuments and send blocked document operation
-            List<Document> blockedDocuments = blockedDocumentsByDocumentId.get(documentId);
-            if (blockedDocuments.isEmpty()) {
-                inflightDocumentIds.remove(documentId);
-            } else {
-                blockedDocumentToSend = blockedDocuments.remove(0);
-            }
         }
-        if (blockedDocumentToSend != null) {
-            sendToClusters(blockedDocumentToSend);
+
+        // If we got a pending operation against this document
+        // dont't remove it from the documents in flight and send blocked document operation
+        Document[] blockedDocumentToSend = new Document[1];
+        blockedDocumentsByDocumentId.computeIfPresent(documentSendInfo.getDocument().getDocumentId(),
+                                                      (documentId, blockedDocuments) -> {
+            blockedDocumentToSend[0] = blockedDocuments.poll();
+            return blockedDocumentToSend[0] == null ? null : blockedDocuments;
+        });
+        if (blockedDocumentToSend[0] != null) {
+            sendToClusters(blockedDocumentToSend[0]);
         }
         return result;
     }
@@ -217,22 +219,22 @@ public class OperationProcessor {
     public void sendDocument(Document document) {
         incompleteResultsThrottler.operationStart();
 
-        synchronized (monitor) {
-            if (inflightDocumentIds.contains(document.getDocumentId())) {
-                blockedDocumentsByDocumentId.put(document.getDocumentId(), document);
-                return;
-            }
-            inflightDocumentIds.add(document.getDocumentId());
-        }
+        boolean[] blocked = new boolean[1];
+        blockedDocumentsByDocumentId.compute(document.getDocumentId(), (documentId, blockedDocuments) -> {
+            if (blockedDocuments == null) return new ArrayDeque<>(1);
+            blockedDocuments.add(document);
+            blocked[0] = true;
+            return blockedDocuments;
+        });
+        if (blocked[0]) return;
 
         sendToClusters(document);
     }
 
     private void sendToClusters(Document document) {
-        synchronized (monitor) {
-            boolean traceThisDoc = traceEveryXOperation > 0 && traceCounter++ % traceEveryXOperation == 0;
-            docSendInfoByOperationId.put(document.getOperationId(), new DocumentSendInfo(document, traceThisDoc));
-        }
+        boolean traceThisDoc = traceEveryXOperation > 0 && traceCounter.getAndIncrement() % traceEveryXOperation == 0;
+        docSendInfoByOperationId.put(document.getOperationId(),
+                                     new DocumentSendInfo(document, traceThisDoc, sendSequence.getAndIncrement()));
 
         for (ClusterConnection clusterConnection : clusters) {
             postToCluster(clusterConnection, document);
@@ -151,6 +151,10 @@ public class CommandLineArguments {
             description = "Use compression over network.")
     private boolean useCompressionArg = false;
 
+    @Option(name = {"--useHttp2"},
+            description = "Multiplex the connections to each endpoint over HTTP/2. Requires Java 11.")
+    private boolean useHttp2Arg = false;
+
     @Option(name = {"--useDynamicThrottling"},
             description = "Try to maximize throughput by using dynamic throttling.")
     private boolean useDynamicThrottlingArg = false;
@@ -265,6 +269,7 @@ public class CommandLineArguments {
                                 .setNumPersistentConnectionsPerEndpoint(numPersistentConnectionsPerEndpoint)
                                 .setUseTlsConfigFromEnvironment(useTlsConfigFromEnvironment)
                                 .setConnectionTimeToLive(Duration.ofSeconds(connectionTimeToLive))
+                                .setUseHttp2(useHttp2Arg)
                                 .build()
                 )
                         // Enable dynamic throttling.
@@ -53,7 +53,6 @@ public class ApacheGatewayConnectionTest {
     public void testProtocolV3() throws Exception {
         final Endpoint endpoint = Endpoint.create("hostname", 666, false);
         final FeedParams feedParams = new FeedParams.Builder().setDataFormat(FeedParams.DataFormat.JSON_UTF8).build();
-        final String clusterSpecificRoute = "";
         final ConnectionParams connectionParams = new ConnectionParams.Builder()
                 .build();
         final List<Document> documents = new ArrayList<>();
@@ -72,7 +71,6 @@ public class ApacheGatewayConnectionTest {
                 new ApacheGatewayConnection(
                         endpoint,
                         feedParams,
-                        clusterSpecificRoute,
                         connectionParams,
                         mockFactory,
                         "clientId");
@@ -87,7 +85,6 @@ public class ApacheGatewayConnectionTest {
     public void testServerReturnsBadSessionInV3() throws Exception {
         final Endpoint endpoint = Endpoint.create("hostname", 666, false);
         final FeedParams feedParams = new FeedParams.Builder().setDataFormat(FeedParams.DataFormat.JSON_UTF8).build();
-        final String clusterSpecificRoute = "";
         final ConnectionParams connectionParams = new ConnectionParams.Builder()
                 .build();
 
@@ -98,7 +95,6 @@ public class ApacheGatewayConnectionTest {
                 new ApacheGatewayConnection(
                         endpoint,
                         feedParams,
-                        clusterSpecificRoute,
                         connectionParams,
                         mockFactory,
                         "clientId");
@@ -111,7 +107,6 @@ public class ApacheGatewayConnectionTest {
     public void testBadConfigParameters() throws Exception {
             final Endpoint endpoint = Endpoint.create("hostname", 666, false);
         final FeedParams feedParams = new FeedParams.Builder().setDataFormat(FeedParams.DataFormat.JSON_UTF8).build();
-        final String clusterSpecificRoute = "";
         final ConnectionParams connectionParams = new ConnectionParams.Builder()
                 .build();
 
@@ -121,7 +116,6 @@ public class ApacheGatewayConnectionTest {
         new ApacheGatewayConnection(
                 endpoint,
                 feedParams,
-                clusterSpecificRoute,
                 connectionParams,
                 mockFactory,
                 null);
@@ -131,7 +125,6 @@ public class ApacheGatewayConnectionTest {
     public void testJsonDocumentHeader() throws Exception {
         final Endpoint endpoint = Endpoint.create("hostname", 666, false);
         final FeedParams feedParams = new FeedParams.Builder().setDataFormat(FeedParams.DataFormat.JSON_UTF8).build();
-        final String clusterSpecificRoute = "";
         final ConnectionParams connectionParams = new ConnectionParams.Builder()
                 .setUseCompression(true)
                 .build();
@@ -160,7 +153,6 @@ public class ApacheGatewayConnectionTest {
                 new ApacheGatewayConnection(
                         endpoint,
                         feedParams,
-                        clusterSpecificRoute,
                         connectionParams,
                         mockFactory,
                         "clientId");
@@ -190,7 +182,6 @@ public class ApacheGatewayConnectionTest {
     public void testCompressedWriteOperations() throws Exception {
         final Endpoint endpoint = Endpoint.create("hostname", 666, false);
         final FeedParams feedParams = new FeedParams.Builder().setDataFormat(FeedParams.DataFormat.XML_UTF8).build();
-        final String clusterSpecificRoute = "";
         final ConnectionParams connectionParams = new ConnectionParams.Builder()
                 .setUseCompression(true)
                 .build();
@@ -225,7 +216,6 @@ public class ApacheGatewayConnectionTest {
                 new ApacheGatewayConnection(
                         endpoint,
                         feedParams,
-                        clusterSpecificRoute,
                         connectionParams,
                         mockFactory,
                         "clientId");
@@ -263,7 +253,6 @@ public class ApacheGatewayConnectionTest {
             new ApacheGatewayConnection(
                     Endpoint.create("hostname", 666, false),
                     new FeedParams.Builder().build(),
-                    "",
                     connectionParams,
                     mockFactory,
                     "clientId");
@@ -291,7 +280,6 @@ public class ApacheGatewayConnectionTest {
             new ApacheGatewayConnection(
                     Endpoint.create("hostname", 666, false),
                     new FeedParams.Builder().build(),
-                    "",
                     new ConnectionParams.Builder().build(),
                     mockFactory,
                     "clientId");
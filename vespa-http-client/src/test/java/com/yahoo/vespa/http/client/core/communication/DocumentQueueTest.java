@@ -0,0 +1,158 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.yahoo.vespa.http.client.core.Document;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentQueueTest {
+
+    private static Document document(String id) {
+        return new Document(id, id, "data", null);
+    }
+
+    @Test
+    public void requireThatOnlyTheTimedOutHeadIsPolled() throws InterruptedException {
+        DocumentQueue queue = new DocumentQueue(4);
+        Document first = document("1");
+        Document second = document("2");
+        queue.put(first, false);
+        queue.put(second, false);
+
+        assertFalse(queue.pollDocumentIfTimedoutInQueue(Long.MAX_VALUE).isPresent());
+        assertEquals(Optional.of(first), queue.pollDocumentIfTimedoutInQueue(-1));
+        assertEquals(1, queue.size());
+        assertSame(second, queue.poll(0, TimeUnit.MILLISECONDS));
+        assertFalse(queue.pollDocumentIfTimedoutInQueue(-1).isPresent());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void requireThatPollWaitsForPut() throws InterruptedException {
+        DocumentQueue queue = new DocumentQueue(1);
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+
+        Document document = document("1");
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+                queue.put(document, false);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producer.start();
+        assertSame(document, queue.poll(1, TimeUnit.MINUTES));
+        producer.join();
+    }
+
+    /** Feeds from many producers through a small queue, which keeps producers contending for room */
+    @Test
+    public void requireThatManyProducersAndConsumersSeeEachDocumentOnceWithinBounds() throws InterruptedException {
+        int producers = 64;
+        int documentsPerProducer = 2000;
+        int maxSize = 100;
+        FeedRun run = feed(producers, 4, documentsPerProducer, maxSize);
+
+        assertEquals(Collections.emptyList(), run.failures);
+        assertEquals("All documents delivered within " + TimeUnit.NANOSECONDS.toMillis(run.elapsedNanos) + " ms",
+                     producers * documentsPerProducer, run.delivered.get());
+        assertEquals(producers * documentsPerProducer, run.seen.size());
+        assertTrue(run.maxSeenSize.get() <= maxSize);
+        assertEquals(0, run.queue.size());
+    }
+
+    /** Benchmark of contention between producers, which is not run as part of the unit tests */
+    @Test
+    @Ignore
+    public void benchmarkManyProducers() throws InterruptedException {
+        int documents = 256_000;
+        for (int producers : new int[] { 1, 4, 16, 64 }) {
+            FeedRun run = feed(producers, 4, documents / producers, 1000);
+            assertEquals(Collections.emptyList(), run.failures);
+            assertEquals(producers + " producers delivered all documents in " + TimeUnit.NANOSECONDS.toMillis(run.elapsedNanos) + " ms",
+                         documents, run.delivered.get());
+        }
+    }
+
+    /** Puts documents from the given number of producer threads, which the given number of consumer threads poll */
+    private static FeedRun feed(int producers, int consumers, int documentsPerProducer, int maxSize) throws InterruptedException {
+        FeedRun run = new FeedRun(new DocumentQueue(maxSize));
+        CountDownLatch produced = new CountDownLatch(producers);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < documentsPerProducer; i++)
+                        run.queue.put(document(producer + ":" + i), false);
+                } catch (Throwable t) {
+                    run.failures.add(t);
+                } finally {
+                    produced.countDown();
+                }
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            threads.add(new Thread(() -> {
+                try {
+                    while (produced.getCount() > 0 || ! run.queue.isEmpty()) {
+                        run.maxSeenSize.accumulateAndGet(run.queue.size(), Math::max);
+                        Document document = run.queue.poll(10, TimeUnit.MILLISECONDS);
+                        if (document == null) continue;
+                        run.delivered.incrementAndGet();
+                        if ( ! run.seen.add(document.getDocumentId()))
+                            run.failures.add(new AssertionError("Document " + document.getDocumentId() + " was delivered twice"));
+                    }
+                } catch (Throwable t) {
+                    run.failures.add(t);
+                }
+            }));
+        }
+
+        long startNanos = System.nanoTime();
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+            if (thread.isAlive())
+                run.failures.add(new AssertionError("Thread " + thread.getName() + " did not finish within a minute"));
+        }
+        run.elapsedNanos = System.nanoTime() - startNanos;
+        return run;
+    }
+
+    /** What the consumers saw during a feed, including any failures in the producer and consumer threads */
+    private static class FeedRun {
+
+        final DocumentQueue queue;
+        final Set<String> seen = ConcurrentHashMap.newKeySet();
+        final AtomicInteger delivered = new AtomicInteger(0);
+        final AtomicInteger maxSeenSize = new AtomicInteger(0);
+        final List<Throwable> failures = new CopyOnWriteArrayList<>();
+        long elapsedNanos;
+
+        FeedRun(DocumentQueue queue) {
+            this.queue = queue;
+        }
+
+    }
+
+}
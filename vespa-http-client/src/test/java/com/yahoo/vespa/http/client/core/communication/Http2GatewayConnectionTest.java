@@ -0,0 +1,129 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import com.yahoo.vespa.http.client.Server;
+import com.yahoo.vespa.http.client.config.ConnectionParams;
+import com.yahoo.vespa.http.client.config.Endpoint;
+import com.yahoo.vespa.http.client.config.FeedParams;
+import com.yahoo.vespa.http.client.core.Document;
+import com.yahoo.vespa.http.client.core.ErrorCode;
+import com.yahoo.vespa.http.client.core.OperationStatus;
+import com.yahoo.vespa.http.client.core.ServerResponseException;
+import com.yahoo.vespa.http.client.handlers.V3MockParsingRequestHandler;
+import org.eclipse.jetty.server.Request;
+import org.junit.Test;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class Http2GatewayConnectionTest {
+
+    private static Supplier<GatewayConnection> connectionsTo(Server server) {
+        return Http2GatewayConnection.connectionsTo(Endpoint.create("localhost", server.getPort(), false),
+                                                    new FeedParams.Builder().setDataFormat(FeedParams.DataFormat.JSON_UTF8).build(),
+                                                    new ConnectionParams.Builder().setUseHttp2(true).build(),
+                                                    "clientId");
+    }
+
+    private static List<OperationStatus> readStatuses(InputStream results) throws Exception {
+        List<OperationStatus> statuses = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(results, StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null)
+                statuses.add(OperationStatus.parse(line));
+        }
+        return statuses;
+    }
+
+    @Test
+    public void requireThatOperationsAreWrittenAndResultsRead() throws Exception {
+        try (Server server = new Server(new V3MockParsingRequestHandler(), 0)) {
+            Supplier<GatewayConnection> connections = connectionsTo(server);
+            for (int i = 0; i < 2; i++) {
+                GatewayConnection connection = connections.get();
+                connection.connect();
+                connection.handshake();
+
+                List<Document> documents = new ArrayList<>();
+                documents.add(new Document("id:music:music::" + i, "op" + i, "{\"put\": \"id:music:music::" + i + "\"}", null));
+                List<OperationStatus> statuses = readStatuses(connection.writeOperations(documents));
+                assertEquals(1, statuses.size());
+                assertEquals("op" + i, statuses.get(0).operationId);
+                assertEquals(ErrorCode.OK, statuses.get(0).errorCode);
+                connection.close();
+            }
+        }
+    }
+
+    @Test
+    public void requireThatServersWithoutHttp2AreFedOverHttp1() throws Exception {
+        List<String> protocols = new CopyOnWriteArrayList<>();
+        List<String> upgrades = new CopyOnWriteArrayList<>();
+        V3MockParsingRequestHandler handler = new V3MockParsingRequestHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+                    throws IOException, ServletException {
+                protocols.add(request.getProtocol());
+                upgrades.add(String.valueOf(request.getHeader("Upgrade")));
+                super.handle(target, baseRequest, request, response);
+            }
+        };
+        // The test server, like the feed handler, has no HTTP/2 connector, and ignores the offer to upgrade to h2c
+        try (Server server = new Server(handler, 0)) {
+            GatewayConnection connection = connectionsTo(server).get();
+            connection.connect();
+            connection.handshake();
+            List<Document> documents = new ArrayList<>();
+            documents.add(new Document("id:music:music::0", "op0", "{\"put\": \"id:music:music::0\"}", null));
+            List<OperationStatus> statuses = readStatuses(connection.writeOperations(documents));
+            assertEquals(1, statuses.size());
+            assertEquals(ErrorCode.OK, statuses.get(0).errorCode);
+            connection.close();
+        }
+        assertEquals(Arrays.asList("HTTP/1.1", "HTTP/1.1"), protocols);
+        assertEquals("h2c", upgrades.get(0));
+    }
+
+    @Test
+    public void requireThatUnexpectedProtocolVersionIsRejected() throws Exception {
+        try (Server server = new Server(new V3MockParsingRequestHandler(200, V3MockParsingRequestHandler.Scenario.RETURN_UNEXPECTED_VERSION), 0)) {
+            GatewayConnection connection = connectionsTo(server).get();
+            connection.connect();
+            try {
+                connection.handshake();
+                fail("Expected exception");
+            } catch (ServerResponseException e) {
+                assertEquals("Unsupported version: 12345678. Supported versions: [3]", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void requireThatWrongSessionIdIsRejected() throws Exception {
+        try (Server server = new Server(new V3MockParsingRequestHandler(200, V3MockParsingRequestHandler.Scenario.RETURN_WRONG_SESSION_ID), 0)) {
+            GatewayConnection connection = connectionsTo(server).get();
+            connection.connect();
+            try {
+                connection.handshake();
+                fail("Expected exception");
+            } catch (ServerResponseException e) {
+                // expected
+            }
+        }
+    }
+
+}
@@ -4,7 +4,10 @@ package com.yahoo.document.restapi;
 import com.yahoo.document.Document;
 import com.yahoo.document.DocumentId;
 import com.yahoo.document.json.JsonWriter;
+import com.yahoo.documentapi.AckToken;
 import com.yahoo.documentapi.DumpVisitorDataHandler;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.messagebus.Message;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import java.nio.charset.StandardCharsets;
@@ -30,6 +33,14 @@ class LocalDataVisitorHandler extends DumpVisitorDataHandler {
         return commaSeparatedJsonDocuments.toString();
     }
 
+    @Override
+    public void onMessage(Message m, AckToken token) {
+        if (m instanceof PutDocumentMessage) {
+            ((PutDocumentMessage) m).decodeWithPrimitiveCollections(); // Documents are only written as JSON
+        }
+        super.onMessage(m, token);
+    }
+
     @Override
     public void onDocument(Document document, long l) {
         try {
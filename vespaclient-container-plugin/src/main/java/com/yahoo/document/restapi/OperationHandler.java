@@ -3,6 +3,9 @@ package com.yahoo.document.restapi;
 
 import com.yahoo.vespaxmlparser.FeedOperation;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 /**
@@ -30,6 +33,8 @@ public interface OperationHandler {
         public final Optional<String> fieldSet;
         public final Optional<Integer> concurrency;
         public final Optional<String> bucketSpace;
+        public final Optional<Integer> slices;
+        public final Optional<Integer> sliceId;
 
         private VisitOptions(Builder builder) {
             this.cluster = Optional.ofNullable(builder.cluster);
@@ -38,6 +43,8 @@ public interface OperationHandler {
             this.fieldSet = Optional.ofNullable(builder.fieldSet);
             this.concurrency = Optional.ofNullable(builder.concurrency);
             this.bucketSpace = Optional.ofNullable(builder.bucketSpace);
+            this.slices = Optional.ofNullable(builder.slices);
+            this.sliceId = Optional.ofNullable(builder.sliceId);
         }
 
         public static class Builder {
@@ -47,6 +54,8 @@ public interface OperationHandler {
             String fieldSet;
             Integer concurrency;
             String bucketSpace;
+            Integer slices;
+            Integer sliceId;
 
             public Builder cluster(String cluster) {
                 this.cluster = cluster;
@@ -78,6 +87,13 @@ public interface OperationHandler {
                 return this;
             }
 
+            /** Visits only the given slice of the bucket space, when this is divided into the given number of slices */
+            public Builder slice(int slices, int sliceId) {
+                this.slices = slices;
+                this.sliceId = sliceId;
+                return this;
+            }
+
             public VisitOptions build() {
                 return new VisitOptions(this);
             }
@@ -88,8 +104,34 @@ public interface OperationHandler {
         }
     }
 
+    /** A visit whose documents are written as they arrive, rather than collected and returned at once */
+    interface VisitStream {
+
+        /**
+         * Writes the JSON of the visited documents to the given stream, separated by commas, until visiting is done
+         * or times out, and then ends the visit.
+         *
+         * @return the continuation token to visit the remaining documents with, if visiting did not complete
+         */
+        Optional<String> writeDocuments(OutputStream out) throws IOException;
+
+    }
+
     VisitResult visit(RestUri restUri, String documentSelection, VisitOptions options) throws RestApiException;
 
+    /**
+     * Starts visiting all documents matching the given selection in bulk. Unlike {@link #visit}, the wanted document
+     * count is ignored, and documents are passed on in large frames as they arrive, until visiting times out.
+     * By default, this is a single {@link #visit}, whose documents are written when it is done.
+     */
+    default VisitStream visitStream(RestUri restUri, String documentSelection, VisitOptions options) throws RestApiException {
+        VisitResult result = visit(restUri, documentSelection, options);
+        return out -> {
+            out.write(result.documentsAsJsonList.getBytes(StandardCharsets.UTF_8));
+            return result.token;
+        };
+    }
+
     void put(RestUri restUri, FeedOperation data, Optional<String> route) throws RestApiException;
 
     void update(RestUri restUri, FeedOperation data, Optional<String> route) throws RestApiException;
@@ -3,6 +3,7 @@ package com.yahoo.document.restapi;
 
 import com.yahoo.document.Document;
 import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentOperation;
 import com.yahoo.document.DocumentRemove;
 import com.yahoo.document.FixedBucketSpaces;
 import com.yahoo.document.TestAndSetCondition;
@@ -14,6 +15,7 @@ import com.yahoo.documentapi.ProgressToken;
 import com.yahoo.documentapi.SyncParameters;
 import com.yahoo.documentapi.SyncSession;
 import com.yahoo.documentapi.VisitorControlHandler;
+import com.yahoo.documentapi.VisitorDataStream;
 import com.yahoo.documentapi.VisitorParameters;
 import com.yahoo.documentapi.VisitorSession;
 import com.yahoo.documentapi.messagebus.MessageBusSyncSession;
@@ -31,6 +33,8 @@ import com.yahoo.yolean.concurrent.ResourceFactory;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.List;
@@ -158,6 +162,61 @@ public class OperationHandlerImpl implements OperationHandler {
         }
     }
 
+    @Override
+    public VisitStream visitStream(RestUri restUri, String documentSelection, VisitOptions options) throws RestApiException {
+        VisitorParameters visitorParameters = createVisitorParameters(restUri, documentSelection, options);
+        visitorParameters.setMaxFirstPassHits(-1);
+        visitorParameters.setMaxTotalHits(-1);
+
+        VisitorControlHandler visitorControlHandler = new VisitorControlHandler();
+        visitorParameters.setControlHandler(visitorControlHandler);
+        VisitorDataStream stream = new VisitorDataStream();
+        visitorParameters.setLocalDataHandler(stream);
+
+        final VisitorSession visitorSession;
+        try {
+            visitorSession = documentAccess.createVisitorSession(visitorParameters);
+            visitorControlHandler.setSession(visitorSession);
+        } catch (Exception e) {
+            throw new RestApiException(Response.createErrorResponse(
+                    500,
+                    "Failed during parsing of arguments for visiting: " + ExceptionUtils.getStackTrace(e),
+                    restUri,
+                    RestUri.apiErrorCodes.VISITOR_ERROR));
+        }
+        return out -> {
+            try {
+                writeFrames(stream, out);
+                visitorControlHandler.waitUntilDone();
+            } catch (InterruptedException e) {
+                throw new IOException("Interrupted while visiting", e);
+            } finally {
+                visitorSession.destroy();
+            }
+            // Documents are already written, so failures are reported by leaving the remaining buckets to a continuation.
+            return visitorControlHandler.getProgress().isFinished()
+                   ? Optional.empty()
+                   : Optional.of(visitorControlHandler.getProgress().serializeToString());
+        };
+    }
+
+    private static void writeFrames(VisitorDataStream stream, OutputStream out) throws IOException, InterruptedException {
+        boolean first = true;
+        while ( ! stream.isDone()) {
+            VisitorDataStream.Frame frame = stream.getNextFrame(100);
+            if (frame == null) continue;
+            for (DocumentOperation operation : frame.getOperations()) {
+                if ( ! first) {
+                    out.write(',');
+                }
+                first = false;
+                out.write(operation instanceof DocumentPut ? JsonWriter.toByteArray(((DocumentPut)operation).getDocument())
+                                                           : JsonWriter.documentRemove(operation.getId()));
+            }
+            out.flush();
+        }
+    }
+
     private static void throwIfFatalVisitingError(VisitorControlHandler handler, RestUri restUri) throws RestApiException {
         final VisitorControlHandler.Result result = handler.getResult();
         if (result.getCode() == VisitorControlHandler.CompletionCode.TIMEOUT) {
@@ -438,6 +497,9 @@ public class OperationHandlerImpl implements OperationHandler {
         params.setTraceLevel(0);
         params.setPriority(DocumentProtocol.Priority.NORMAL_4);
         params.setVisitRemoves(false);
+        if (options.slices.isPresent() && options.sliceId.isPresent()) {
+            params.slice(options.slices.get(), options.sliceId.get());
+        }
 
         if (options.continuation.isPresent()) {
             try {
@@ -69,6 +69,9 @@ public class RestApi extends LoggingRequestHandler {
     private static final String FIELD_SET = "fieldSet";
     private static final String CONCURRENCY = "concurrency";
     private static final String BUCKET_SPACE = "bucketSpace";
+    private static final String BULK = "bulk";
+    private static final String SLICES = "slices";
+    private static final String SLICE_ID = "sliceId";
     private static final String APPLICATION_JSON = "application/json";
     private final OperationHandler operationHandler;
     private SingleDocumentParser singleDocumentParser;
@@ -317,6 +320,34 @@ public class RestApi extends LoggingRequestHandler {
         }
     }
 
+    private static Optional<Integer> parseNonNegativeIntegerRequestParameter(String parameter, HttpRequest request) {
+        try {
+            return requestProperty(parameter, request).map(Integer::parseInt).map(value -> {
+                if (value < 0) throw new IllegalArgumentException("Parsed number was negative");
+                return value;
+            });
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestParameterException(parameter, "Expected non-negative integer");
+        }
+    }
+
+    private static void parseSliceRequestParameters(HttpRequest request, OperationHandler.VisitOptions.Builder optionsBuilder) {
+        Optional<Integer> slices = parsePositiveIntegerRequestParameter(SLICES, request);
+        Optional<Integer> sliceId = parseNonNegativeIntegerRequestParameter(SLICE_ID, request);
+        if (slices.isPresent() != sliceId.isPresent()) {
+            throw new BadRequestParameterException(slices.isPresent() ? SLICE_ID : SLICES,
+                                                   "Must specify both '" + SLICES + "' and '" + SLICE_ID + "' to visit a slice");
+        }
+        if ( ! slices.isPresent()) return;
+        if (Integer.bitCount(slices.get()) != 1) {
+            throw new BadRequestParameterException(SLICES, "Expected a power of 2");
+        }
+        if (sliceId.get() >= slices.get()) {
+            throw new BadRequestParameterException(SLICE_ID, "Expected integer less than '" + SLICES + "'");
+        }
+        optionsBuilder.slice(slices.get(), sliceId.get());
+    }
+
     private static OperationHandler.VisitOptions visitOptionsFromRequest(HttpRequest request) {
         final OperationHandler.VisitOptions.Builder optionsBuilder = OperationHandler.VisitOptions.builder();
 
@@ -326,6 +357,7 @@ public class RestApi extends LoggingRequestHandler {
         Optional.ofNullable(request.getProperty(BUCKET_SPACE)).ifPresent(s -> optionsBuilder.bucketSpace(s));
         parsePositiveIntegerRequestParameter(WANTED_DOCUMENT_COUNT, request).ifPresent(c -> optionsBuilder.wantedDocumentCount(c));
         parsePositiveIntegerRequestParameter(CONCURRENCY, request).ifPresent(c -> optionsBuilder.concurrency(c));
+        parseSliceRequestParameters(request, optionsBuilder);
 
         return optionsBuilder.build();
     }
@@ -415,6 +447,9 @@ public class RestApi extends LoggingRequestHandler {
         } catch (BadRequestParameterException e) {
             return createInvalidParameterResponse(e.getParameter(), e.getMessage());
         }
+        if (parseBoolean(BULK, request).orElse(false)) {
+            return handleBulkVisit(restUri, documentSelection, options);
+        }
         OperationHandler.VisitResult visit = operationHandler.visit(restUri, documentSelection, options);
         ObjectNode resultNode = mapper.createObjectNode();
         visit.token.ifPresent(t -> resultNode.put(CONTINUATION, t));
@@ -435,4 +470,27 @@ public class RestApi extends LoggingRequestHandler {
         };
         return httpResponse;
     }
+
+    private HttpResponse handleBulkVisit(RestUri restUri, String documentSelection,
+                                         OperationHandler.VisitOptions options) throws RestApiException {
+        OperationHandler.VisitStream visit = operationHandler.visitStream(restUri, documentSelection, options);
+        return new HttpResponse(200) {
+            @Override
+            public String getContentType() { return APPLICATION_JSON; }
+            @Override
+            public void render(OutputStream outputStream) throws IOException {
+                // The continuation is known only when all documents are written, so it goes last.
+                outputStream.write(("{\"" + PATH_NAME + "\":" + mapper.writeValueAsString(restUri.getRawPath()) +
+                                    ",\"" + DOCUMENTS + "\":[").getBytes(StandardCharsets.UTF_8));
+                Optional<String> continuation = visit.writeDocuments(outputStream);
+                outputStream.write(']');
+                if (continuation.isPresent()) {
+                    outputStream.write((",\"" + CONTINUATION + "\":" + mapper.writeValueAsString(continuation.get()))
+                                               .getBytes(StandardCharsets.UTF_8));
+                }
+                outputStream.write('}');
+            }
+        };
+    }
+
 }
@@ -10,6 +10,7 @@ import com.yahoo.jdisc.Metric;
 import com.yahoo.jdisc.ReferencedResource;
 import com.yahoo.log.LogLevel;
 import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.Reply;
 import com.yahoo.messagebus.ReplyHandler;
 import com.yahoo.messagebus.Result;
 import com.yahoo.messagebus.shared.SharedSourceSession;
@@ -24,10 +25,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 
 import static com.yahoo.messagebus.ErrorCode.SEND_QUEUE_FULL;
@@ -39,6 +44,12 @@ import static com.yahoo.messagebus.ErrorCode.SEND_QUEUE_FULL;
  * avoid using a threadpool that has no effect with all the extra that comes with it. V2 has one instance per thread
  * on the client, while this is one instance for all threads.
  *
+ * Request threads do not wait for message bus: Operations which can not be sent because the send queue is full
+ * are parked, and sent by the handler's {@link ThrottledFeeders} when replies free up capacity. Operations which
+ * arrive when a client already has {@link #MAX_THROTTLED_OPERATIONS} parked are failed with a transient error,
+ * which makes the client back off and retry them, instead of the request thread waiting for room. Replies are
+ * collected in a lock-free queue and returned with the next request from the client.
+ *
  * @author dybis
  */
 class ClientFeederV3 {
@@ -46,17 +57,26 @@ class ClientFeederV3 {
     protected static final Logger log = Logger.getLogger(ClientFeederV3.class.getName());
     // This is for all clients on this gateway, for load balancing from client.
     private final static AtomicInteger outstandingOperations = new AtomicInteger(0);
-    private final BlockingQueue<OperationStatus> feedReplies = new LinkedBlockingQueue<>();
+    // The max number of operations parked per client before further operations are failed with a transient error.
+    static final int MAX_THROTTLED_OPERATIONS = 100;
+
+    private final Queue<OperationStatus> feedReplies = new ConcurrentLinkedQueue<>();
+    private final Queue<DocumentOperationMessageV3> throttledOperations = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger throttledCount = new AtomicInteger(0);
+    private final AtomicBoolean throttled = new AtomicBoolean(false);
+    private final ThrottledFeeders throttledFeeders;
     private final ReferencedResource<SharedSourceSession> sourceSession;
     private final String clientId;
     private final ReplyHandler feedReplyHandler;
+    private final ReplyHandler replyHandler = this::handleReply;
     private final Metric metric;
-    private Instant prevOpsPerSecTime = Instant.now();
-    private double operationsForOpsPerSec = 0d;
+    private final AtomicReference<Instant> prevOpsPerSecTime = new AtomicReference<>(Instant.now());
+    private final AtomicLong operationsForOpsPerSec = new AtomicLong(0);
 
-    private final Object monitor = new Object();
     private final StreamReaderV3 streamReaderV3;
     private final AtomicInteger ongoingRequests = new AtomicInteger(0);
+    private final AtomicBoolean killed = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
     private String hostName;
     private AtomicInteger threadsAvailableForFeeding;
 
@@ -67,39 +87,43 @@ class ClientFeederV3 {
             String clientId,
             Metric metric,
             ReplyHandler feedReplyHandler,
-            AtomicInteger threadsAvailableForFeeding) {
+            AtomicInteger threadsAvailableForFeeding,
+            ThrottledFeeders throttledFeeders) {
         this.sourceSession = sourceSession;
         this.clientId = clientId;
         this.feedReplyHandler = feedReplyHandler;
         this.metric = metric;
         this.threadsAvailableForFeeding = threadsAvailableForFeeding;
+        this.throttledFeeders = throttledFeeders;
         this.streamReaderV3 = new StreamReaderV3(feedReaderFactory, docTypeManager);
         this.hostName = HostName.getLocalhost();
     }
 
     public boolean timedOut() {
-        synchronized (monitor) {
-            return Instant.now().isAfter(prevOpsPerSecTime.plusSeconds(6000)) && ongoingRequests.get() == 0;
-        }
+        return Instant.now().isAfter(prevOpsPerSecTime.get().plusSeconds(6000)) && ongoingRequests.get() == 0;
     }
 
     public void kill() {
         // No new requests should be sent to this object, but there can be old one, even though this is very unlikely.
-        while (ongoingRequests.get() > 0) {
-            try {
-                ongoingRequests.wait(100);
-            } catch (InterruptedException e) {
-                break;
-            }
+        // In that case, the last of them closes the session.
+        killed.set(true);
+        throttledFeeders.resume(); // Drops the parked operations of this
+        if (ongoingRequests.get() == 0) {
+            closeSession();
+        }
+    }
+
+    private void closeSession() {
+        if (closed.compareAndSet(false, true)) {
+            sourceSession.getReference().close();
         }
-        sourceSession.getReference().close();
     }
 
-    private void transferPreviousRepliesToResponse(BlockingQueue<OperationStatus> operations) throws InterruptedException {
+    private void transferPreviousRepliesToResponse(Queue<OperationStatus> operations) {
         OperationStatus status = feedReplies.poll();
         while (status != null) {
             outstandingOperations.decrementAndGet();
-            operations.put(status);
+            operations.add(status);
             status = feedReplies.poll();
         }
     }
@@ -132,18 +156,14 @@ class ClientFeederV3 {
             }
 
             InputStream inputStream = StreamReaderV3.unzipStreamIfNeeded(request);
-            BlockingQueue<OperationStatus> replies = new LinkedBlockingQueue<>();
+            Queue<OperationStatus> replies = new ArrayDeque<>();
             try {
                 feed(feederSettings, inputStream, replies, threadsAvailableForFeeding);
-                synchronized (monitor) {
-                    // Handshake requests do not have DATA_FORMAT, we do not want to give responses to
-                    // handshakes as it won't be processed by the client.
-                    if (request.getJDiscRequest().headers().get(Headers.DATA_FORMAT) != null) {
-                        transferPreviousRepliesToResponse(replies);
-                    }
+                // Handshake requests do not have DATA_FORMAT, we do not want to give responses to
+                // handshakes as it won't be processed by the client.
+                if (request.getJDiscRequest().headers().get(Headers.DATA_FORMAT) != null) {
+                    transferPreviousRepliesToResponse(replies);
                 }
-            } catch (InterruptedException e) {
-                // NOP, just terminate
             } catch (Throwable e) {
                 log.log(LogLevel.WARNING, "Unhandled exception while feeding: "
                         + Exceptions.toMessageString(e), e);
@@ -152,7 +172,9 @@ class ClientFeederV3 {
             }
             return new FeedResponse(200, replies, 3 /* protocol version */, clientId, outstandingOperations.get(), hostName);
         } finally {
-            ongoingRequests.decrementAndGet();
+            if (ongoingRequests.decrementAndGet() == 0 && killed.get()) {
+                closeSession();
+            }
             threadsAvailableForFeeding.incrementAndGet();
         }
     }
@@ -165,7 +187,7 @@ class ClientFeederV3 {
     }
 
     private Optional<DocumentOperationMessageV3> pullMessageFromRequest(
-            FeederSettings settings, InputStream requestInputStream, BlockingQueue<OperationStatus> repliesFromOldMessages) {
+            FeederSettings settings, InputStream requestInputStream, Queue<OperationStatus> repliesFromOldMessages) {
         while (true) {
             Optional<String> operationId;
             try {
@@ -200,32 +222,11 @@ class ClientFeederV3 {
         }
     }
 
-    private Result sendMessage(
-            FeederSettings settings,
-            DocumentOperationMessageV3 msg,
-            AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
-        Result result = null;
-        while (result == null || result.getError().getCode() == SEND_QUEUE_FULL) {
-            msg.getMessage().pushHandler(feedReplyHandler);
-
-            if (settings.denyIfBusy && threadsAvailableForFeeding.get() < 1) {
-                return sourceSession.getResource().sendMessage(msg.getMessage());
-            } else {
-                result = sourceSession.getResource().sendMessageBlocking(msg.getMessage());
-            }
-            if (result.isAccepted()) {
-                return result;
-            }
-            Thread.sleep(100);
-        }
-        return result;
-    }
-
     private void feed(
             FeederSettings settings,
             InputStream requestInputStream,
-            BlockingQueue<OperationStatus> repliesFromOldMessages,
-            AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
+            Queue<OperationStatus> repliesFromOldMessages,
+            AtomicInteger threadsAvailableForFeeding) {
         while (true) {
 
             Optional<DocumentOperationMessageV3> msg = pullMessageFromRequest(settings, requestInputStream, repliesFromOldMessages);
@@ -235,32 +236,119 @@ class ClientFeederV3 {
             }
             setMessageParameters(msg.get(), settings);
 
-            Result result;
-            try {
-                result = sendMessage(settings, msg.get(), threadsAvailableForFeeding);
-
-            } catch  (RuntimeException e) {
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), Exceptions.toMessageString(e),
-                        ErrorCode.ERROR, false, msg.get().getMessage()));
+            // Operations may not overtake those already parked.
+            Result result = throttledCount.get() > 0 ? null : sendMessage(msg.get());
+            if (result == null || isSendQueueFull(result)) {
+                if (settings.denyIfBusy && threadsAvailableForFeeding.get() < 1) {
+                    // The gateway is busy: let the client back off rather than holding on to the operation.
+                    repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), "Send queue full",
+                            ErrorCode.TRANSIENT_ERROR, false, msg.get().getMessage()));
+                } else if ( ! park(msg.get())) {
+                    repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(),
+                            "Send queue full, and too many operations waiting for it",
+                            ErrorCode.TRANSIENT_ERROR, false, msg.get().getMessage()));
+                }
                 continue;
             }
-
-            if (result.isAccepted()) {
+            OperationStatus status = handleResult(msg.get(), result);
+            if (status == null) {
                 outstandingOperations.incrementAndGet();
-                updateOpsPerSec();
-                log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.get().getOperationId());
-            } else if (!result.getError().isFatal()) {
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), result.getError().getMessage(),
-                        ErrorCode.TRANSIENT_ERROR, false, msg.get().getMessage()));
-                continue;
             } else {
-                // should probably not happen, but everybody knows stuff that
-                // shouldn't happen, happens all the time
-                boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), result.getError().getMessage(),
-                        ErrorCode.ERROR, isConditionNotMet, msg.get().getMessage()));
-                continue;
+                repliesFromOldMessages.add(status);
+            }
+        }
+    }
+
+    /** Sends the given message without blocking, returning the error as a result if sending fails */
+    private Result sendMessage(DocumentOperationMessageV3 msg) {
+        try {
+            return sourceSession.getResource().sendMessage(msg.getMessage());
+        } catch (RuntimeException e) {
+            return new Result(com.yahoo.messagebus.ErrorCode.FATAL_ERROR, Exceptions.toMessageString(e));
+        }
+    }
+
+    private static boolean isSendQueueFull(Result result) {
+        return ! result.isAccepted() && result.getError().getCode() == SEND_QUEUE_FULL;
+    }
+
+    /** Returns the status to report for the given result of sending a message, or null if it was accepted */
+    private OperationStatus handleResult(DocumentOperationMessageV3 msg, Result result) {
+        if (result.isAccepted()) {
+            updateOpsPerSec();
+            log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.getOperationId());
+            return null;
+        } else if (!result.getError().isFatal()) {
+            return createOperationStatus(msg.getOperationId(), result.getError().getMessage(),
+                    ErrorCode.TRANSIENT_ERROR, false, msg.getMessage());
+        } else {
+            // should probably not happen, but everybody knows stuff that
+            // shouldn't happen, happens all the time
+            boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
+            return createOperationStatus(msg.getOperationId(), result.getError().getMessage(),
+                    ErrorCode.ERROR, isConditionNotMet, msg.getMessage());
+        }
+    }
+
+    /**
+     * Parks an operation until capacity becomes available in the send queue, unless too many operations are
+     * parked already. Parked operations count as outstanding, and any error sending them is reported with the replies.
+     *
+     * @return whether the operation was parked
+     */
+    private boolean park(DocumentOperationMessageV3 msg) {
+        for (int count = throttledCount.get(); ; count = throttledCount.get()) {
+            if (count >= MAX_THROTTLED_OPERATIONS) {
+                return false;
             }
+            if (throttledCount.compareAndSet(count, count + 1)) {
+                break;
+            }
+        }
+        outstandingOperations.incrementAndGet();
+        throttledOperations.add(msg);
+        if (throttled.compareAndSet(false, true)) {
+            // A reply may have freed capacity since sending failed, so this is resumed right away.
+            throttledFeeders.add(this);
+        }
+        return true;
+    }
+
+    /**
+     * Sends parked operations of this client in order, until all are sent or the send queue is full.
+     * This is only called by the one thread resuming throttled clients.
+     *
+     * @return whether this client still has parked operations, because the send queue is full
+     */
+    boolean sendThrottledOperations() {
+        do {
+            for (DocumentOperationMessageV3 msg; (msg = throttledOperations.peek()) != null; ) {
+                Result result = killed.get() ? null : sendMessage(msg);
+                if (result != null && isSendQueueFull(result)) {
+                    return true;
+                }
+                throttledOperations.poll();
+                throttledCount.decrementAndGet();
+                if (result == null) { // dropped
+                    outstandingOperations.decrementAndGet();
+                    continue;
+                }
+                OperationStatus status = handleResult(msg, result);
+                if (status != null) {
+                    feedReplies.add(status);
+                }
+            }
+            throttled.set(false);
+            // An operation parked after the queue was found empty is sent here, unless parking it registered this again.
+        } while ( ! throttledOperations.isEmpty() && throttled.compareAndSet(false, true));
+        return false;
+    }
+
+    private void handleReply(Reply reply) {
+        try {
+            feedReplyHandler.handleReply(reply);
+        } finally {
+            throttledFeeders.resume();
         }
     }
 
@@ -298,6 +386,7 @@ class ClientFeederV3 {
 
     private void setMessageParameters(DocumentOperationMessageV3 msg, FeederSettings settings) {
         msg.getMessage().setContext(new ReplyContext(msg.getOperationId(), feedReplies));
+        msg.getMessage().pushHandler(replyHandler);
         if (settings.traceLevel != null) {
             msg.getMessage().getTrace().setLevel(settings.traceLevel);
         }
@@ -336,17 +425,13 @@ class ClientFeederV3 {
     }
 
     private void updateOpsPerSec() {
+        operationsForOpsPerSec.incrementAndGet();
         Instant now = Instant.now();
-        synchronized (monitor) {
-            if (now.plusSeconds(1).isAfter(prevOpsPerSecTime)) {
-                Duration duration = Duration.between(now, prevOpsPerSecTime);
-                double opsPerSec = operationsForOpsPerSec / (duration.toMillis() / 1000.);
-                metric.set(MetricNames.OPERATIONS_PER_SEC, opsPerSec, null /*metricContext*/);
-                operationsForOpsPerSec = 1.0d;
-                prevOpsPerSecTime = now;
-            } else {
-                operationsForOpsPerSec += 1.0d;
-            }
+        Instant prev = prevOpsPerSecTime.get();
+        if (now.isAfter(prev.plusSeconds(1)) && prevOpsPerSecTime.compareAndSet(prev, now)) {
+            Duration duration = Duration.between(prev, now);
+            double opsPerSec = operationsForOpsPerSec.getAndSet(0) / (duration.toMillis() / 1000.);
+            metric.set(MetricNames.OPERATIONS_PER_SEC, opsPerSec, null /*metricContext*/);
         }
     }
 
@@ -22,6 +22,8 @@ import com.yahoo.yolean.Exceptions;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -39,6 +41,8 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
     private DocumentTypeManager docTypeManager;
     private final Map<String, ClientFeederV3> clientFeederByClientId = new HashMap<>();
     private final ScheduledThreadPoolExecutor cron;
+    private final ExecutorService resumer;
+    private final ThrottledFeeders throttledFeeders;
     private final SessionCache sessionCache;
     protected final ReplyHandler feedReplyHandler;
     private final Metric metric;
@@ -58,6 +62,8 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
         feedReplyHandler = new FeedReplyReader(parentCtx.getMetric(), metricsHelper);
         cron = new ScheduledThreadPoolExecutor(1, ThreadFactoryFactory.getThreadFactory("feedhandlerv3.cron"));
         cron.scheduleWithFixedDelay(this::removeOldClients, 16, 11, TimeUnit.MINUTES);
+        resumer = Executors.newSingleThreadExecutor(ThreadFactoryFactory.getDaemonThreadFactory("feedhandlerv3.resumer"));
+        throttledFeeders = new ThrottledFeeders(resumer);
         this.metric = parentCtx.getMetric();
         // 40% of the threads can be blocking on feeding before we deny requests.
         if (threadpoolConfig != null) {
@@ -90,7 +96,8 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
                                 clientId,
                                 metric,
                                 feedReplyHandler,
-                                threadsAvailableForFeeding));
+                                threadsAvailableForFeeding,
+                                throttledFeeders));
             }
             clientFeederV3 = clientFeederByClientId.get(clientId);
         }
@@ -126,6 +133,7 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
                 }
                 clientFeederByClientId.clear();
             }
+            resumer.shutdown(); // After the clients have dropped their parked operations
         });
         destroyer.setDaemon(true);
         destroyer.start();
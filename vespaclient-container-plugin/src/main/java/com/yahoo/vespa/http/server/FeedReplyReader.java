@@ -2,14 +2,12 @@
 package com.yahoo.vespa.http.server;
 
 import java.util.Set;
-import java.util.logging.Logger;
 
 import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
 import com.yahoo.documentapi.metrics.DocumentApiMetrics;
 import com.yahoo.documentapi.metrics.DocumentOperationStatus;
 import com.yahoo.documentapi.metrics.DocumentOperationType;
 import com.yahoo.jdisc.Metric;
-import com.yahoo.log.LogLevel;
 import com.yahoo.messagebus.Reply;
 import com.yahoo.messagebus.ReplyHandler;
 import com.yahoo.messagebus.Trace;
@@ -23,7 +21,6 @@ import com.yahoo.vespa.http.client.core.OperationStatus;
  */
 public class FeedReplyReader implements ReplyHandler {
 
-    private static final Logger log = Logger.getLogger(FeedReplyReader.class.getName());
     private final Metric metric;
     private final DocumentApiMetrics metricsHelper;
 
@@ -57,14 +54,8 @@ public class FeedReplyReader implements ReplyHandler {
     }
 
     private void enqueue(ReplyContext context, String message, ErrorCode status, boolean isConditionNotMet, Trace trace) {
-        try {
-            String traceMessage = (trace != null && trace.getLevel() > 0) ? trace.toString() : "";
+        String traceMessage = (trace != null && trace.getLevel() > 0) ? trace.toString() : "";
 
-            context.feedReplies.put(new OperationStatus(message, context.docId, status, isConditionNotMet, traceMessage));
-        } catch (InterruptedException e) {
-            log.log(LogLevel.WARNING, 
-                    "Interrupted while enqueueing result from putting document with id: " + context.docId);
-            Thread.currentThread().interrupt();
-        }
+        context.feedReplies.add(new OperationStatus(message, context.docId, status, isConditionNotMet, traceMessage));
     }
 }
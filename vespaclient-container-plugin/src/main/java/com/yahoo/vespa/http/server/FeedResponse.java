@@ -9,22 +9,21 @@ import com.yahoo.vespa.http.client.core.OperationStatus;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
 
 /**
- * Reads feed responses from a queue and renders them continuously to the
- * feeder.
+ * Renders the feed responses in a queue to the feeder, up to the end of feed marker.
  *
  * @author <a href="mailto:steinar@yahoo-inc.com">Steinar Knutsen</a>
  * @since 5.1
  */
 public class FeedResponse extends HttpResponse {
 
-    BlockingQueue<OperationStatus> operations;
+    Queue<OperationStatus> operations;
 
     public FeedResponse(
             int status,
-            BlockingQueue<OperationStatus> operations,
+            Queue<OperationStatus> operations,
             int protocolVersion,
             String sessionId) {
         super(status);
@@ -36,7 +35,7 @@ public class FeedResponse extends HttpResponse {
     // This is used by the V3 protocol.
     public FeedResponse(
             int status,
-            BlockingQueue<OperationStatus> operations,
+            Queue<OperationStatus> operations,
             int protocolVersion,
             String sessionId,
             int outstandingClientOperations,
@@ -52,18 +51,13 @@ public class FeedResponse extends HttpResponse {
     @Override
     public void render(OutputStream output) throws IOException {
         int i = 0;
-        OperationStatus status;
-        try {
-            status = operations.take();
-            while (status.errorCode != ErrorCode.END_OF_FEED) {
-                output.write(toBytes(status.render()));
-                if (++i % 5 == 0) {
-                    output.flush();
-                }
-                status = operations.take();
+        OperationStatus status = operations.poll();
+        while (status != null && status.errorCode != ErrorCode.END_OF_FEED) {
+            output.write(toBytes(status.render()));
+            if (++i % 5 == 0) {
+                output.flush();
             }
-        } catch (InterruptedException e) {
-            output.flush();
+            status = operations.poll();
         }
     }
 
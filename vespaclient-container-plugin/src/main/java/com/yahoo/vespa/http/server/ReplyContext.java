@@ -3,7 +3,7 @@ package com.yahoo.vespa.http.server;
 
 import com.yahoo.vespa.http.client.core.OperationStatus;
 
-import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
 
 /**
  * Mapping between document ID and client session.
@@ -13,10 +13,10 @@ import java.util.concurrent.BlockingQueue;
 public class ReplyContext {
 
     public final String docId;
-    public final BlockingQueue<OperationStatus> feedReplies;
+    public final Queue<OperationStatus> feedReplies;
     public final long creationTime;
 
-    public ReplyContext(String docId, BlockingQueue<OperationStatus> feedReplies) {
+    public ReplyContext(String docId, Queue<OperationStatus> feedReplies) {
         this.docId = docId;
         this.feedReplies = feedReplies;
         this.creationTime = System.currentTimeMillis();
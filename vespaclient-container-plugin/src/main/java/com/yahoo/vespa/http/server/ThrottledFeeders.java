@@ -0,0 +1,69 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.server;
+
+import com.yahoo.log.LogLevel;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * The clients of a feed handler which have operations parked because the send queue was full.
+ * These are resumed in turn by the given executor, which is asked for another round whenever a reply frees up capacity,
+ * so message bus reply threads only schedule the resuming, and never send.
+ */
+class ThrottledFeeders {
+
+    private static final Logger log = Logger.getLogger(ThrottledFeeders.class.getName());
+
+    private final Queue<ClientFeederV3> feeders = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger resumeRequests = new AtomicInteger(0);
+    private final Executor executor;
+
+    ThrottledFeeders(Executor executor) {
+        this.executor = executor;
+    }
+
+    /** Adds a client which has just parked operations, and resumes it if capacity was freed meanwhile */
+    void add(ClientFeederV3 feeder) {
+        feeders.add(feeder);
+        resume();
+    }
+
+    /**
+     * Asks for a round of resuming the throttled clients. Only one round runs at a time, and requests arriving
+     * during a round cause another one.
+     */
+    void resume() {
+        if (resumeRequests.getAndIncrement() != 0) {
+            return;
+        }
+        try {
+            executor.execute(this::resumeAll);
+        } catch (RejectedExecutionException e) {
+            log.log(LogLevel.DEBUG, "Not resuming throttled clients, as the feed handler is shut down");
+        }
+    }
+
+    /**
+     * Gives each client with parked operations a turn at sending them. Clients which still find the send queue full
+     * are skipped, and get another turn in the next round, as clients with other timeouts use other sessions.
+     */
+    private void resumeAll() {
+        for (int missed = resumeRequests.get(); missed != 0; missed = resumeRequests.addAndGet(-missed)) {
+            for (int turns = feeders.size(); turns > 0; turns--) {
+                ClientFeederV3 feeder = feeders.poll();
+                if (feeder == null) {
+                    break;
+                }
+                if (feeder.sendThrottledOperations()) {
+                    feeders.add(feeder);
+                }
+            }
+        }
+    }
+
+}
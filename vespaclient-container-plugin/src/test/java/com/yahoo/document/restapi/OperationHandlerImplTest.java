@@ -4,6 +4,7 @@ package com.yahoo.document.restapi;
 import com.yahoo.documentapi.DocumentAccess;
 import com.yahoo.documentapi.ProgressToken;
 import com.yahoo.documentapi.VisitorControlHandler;
+import com.yahoo.documentapi.VisitorDataStream;
 import com.yahoo.documentapi.VisitorParameters;
 import com.yahoo.documentapi.VisitorSession;
 import com.yahoo.documentapi.SyncParameters;
@@ -128,6 +129,9 @@ public class OperationHandlerImplTest {
                 ProgressToken progress = new ProgressToken();
                 params.getControlHandler().onProgress(progress);
 
+                if (params.getLocalDataHandler() instanceof VisitorDataStream) {
+                    params.getLocalDataHandler().onDone();
+                }
                 params.getControlHandler().onDone(completionCode, "bork bork");
                 return visitorSession;
             });
@@ -419,4 +423,34 @@ public class OperationHandlerImplTest {
         assertEquals("document-type and (id.namespace=='namespace')", parameters.getDocumentSelection());
     }
 
+    @Test
+    public void bulk_visiting_visits_all_documents_into_a_data_stream() throws Exception {
+        OperationHandlerImplFixture fixture = new OperationHandlerImplFixture();
+        OperationHandlerImpl handler = fixture.createHandler();
+        OperationHandler.VisitStream visit = handler.visitStream(dummyVisitUri(), "",
+                                                                 visitOptionsWithWantedDocumentCount(10));
+        VisitorParameters parameters = fixture.assignedParameters.get();
+        assertEquals(-1, parameters.getMaxTotalHits());
+        assertEquals(-1, parameters.getMaxFirstPassHits());
+        assertThat(parameters.getLocalDataHandler(), instanceOf(VisitorDataStream.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(Optional.empty(), visit.writeDocuments(out));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void visiting_is_not_sliced_by_default() throws Exception {
+        VisitorParameters parameters = generatedVisitParametersFrom(dummyVisitUri(), "", emptyVisitOptions());
+        assertEquals(1, parameters.getSlices());
+        assertEquals(0, parameters.getSliceId());
+    }
+
+    @Test
+    public void visit_slice_is_propagated() throws Exception {
+        VisitorParameters parameters = generatedVisitParametersFrom(dummyVisitUri(), "", optionsBuilder().slice(4, 3).build());
+        assertEquals(4, parameters.getSlices());
+        assertEquals(3, parameters.getSliceId());
+    }
+
 }
@@ -503,6 +503,34 @@ public class RestApiTest {
         assertHttp400ResponseContains(doRest(get), "Invalid 'concurrency' value. Expected positive integer");
     }
 
+    @Test
+    public void visit_slice_parameters_are_propagated() {
+        Request request = new Request(String.format("http://localhost:%s/document/v1/namespace/document-type/docid/?slices=4&sliceId=0", getFirstListenPort()));
+        HttpGet get = new HttpGet(request.getUri());
+        assertHttp200ResponseContains(doRest(get), "slice: 0 of 4");
+    }
+
+    @Test
+    public void visit_slice_parameters_must_be_given_together() {
+        Request request = new Request(String.format("http://localhost:%s/document/v1/namespace/document-type/docid/?slices=4", getFirstListenPort()));
+        HttpGet get = new HttpGet(request.getUri());
+        assertHttp400ResponseContains(doRest(get), "Invalid 'sliceId' value. Must specify both 'slices' and 'sliceId' to visit a slice");
+    }
+
+    @Test
+    public void invalid_visit_slice_id_returns_error_response() {
+        Request request = new Request(String.format("http://localhost:%s/document/v1/namespace/document-type/docid/?slices=4&sliceId=4", getFirstListenPort()));
+        HttpGet get = new HttpGet(request.getUri());
+        assertHttp400ResponseContains(doRest(get), "Invalid 'sliceId' value. Expected integer less than 'slices'");
+    }
+
+    @Test
+    public void visit_slices_must_be_a_power_of_2() {
+        Request request = new Request(String.format("http://localhost:%s/document/v1/namespace/document-type/docid/?slices=3&sliceId=0", getFirstListenPort()));
+        HttpGet get = new HttpGet(request.getUri());
+        assertHttp400ResponseContains(doRest(get), "Invalid 'slices' value. Expected a power of 2");
+    }
+
     private void assertHttpResponseContains(Response response, int expectedStatusCode, String expectedSubstring) {
         assertThat(response.code, is(expectedStatusCode));
         assertThat(response.body, containsString(expectedSubstring));
@@ -2,6 +2,7 @@
 package com.yahoo.vespa.http.server;
 
 import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.container.jdisc.HttpResponse;
 import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.documentapi.metrics.DocumentApiMetrics;
 import com.yahoo.jdisc.Metric;
@@ -21,15 +22,21 @@ import com.yahoo.vespa.http.client.core.Headers;
 import com.yahoo.vespaxmlparser.FeedOperation;
 import com.yahoo.vespaxmlparser.MockFeedReaderFactory;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 
@@ -40,13 +47,8 @@ public class V3CongestionTestCase {
 
     static class ClientFeederWithMocks extends ClientFeederV3 {
 
-        private final DocumentOperationMessageV3 docOp;
-
-        ClientFeederWithMocks(ReferencedResource<SharedSourceSession> sourceSession, FeedReaderFactory feedReaderFactory, DocumentTypeManager docTypeManager, String clientId, Metric metric, ReplyHandler feedReplyHandler, AtomicInteger threadsAvailableForFeeding) {
-            super(sourceSession, feedReaderFactory, docTypeManager, clientId, metric, feedReplyHandler, threadsAvailableForFeeding);
-            // The operation to return from the client feeder.
-            docOp = DocumentOperationMessageV3.newRemoveMessage(FeedOperation.INVALID, "operation id");
-
+        ClientFeederWithMocks(ReferencedResource<SharedSourceSession> sourceSession, FeedReaderFactory feedReaderFactory, DocumentTypeManager docTypeManager, String clientId, Metric metric, ReplyHandler feedReplyHandler, AtomicInteger threadsAvailableForFeeding, ThrottledFeeders throttledFeeders) {
+            super(sourceSession, feedReaderFactory, docTypeManager, clientId, metric, feedReplyHandler, threadsAvailableForFeeding, throttledFeeders);
         }
 
         @Override
@@ -58,43 +60,63 @@ public class V3CongestionTestCase {
                     break;
                 }
             }
-            return docOp;
+            // The operation to return from the client feeder.
+            return DocumentOperationMessageV3.newRemoveMessage(FeedOperation.INVALID, operationId);
         }
     }
 
     final static int NUMBER_OF_QUEUE_FULL_RESPONSES = 5;
 
+    // Resumes throttled clients in the thread replying, to keep the tests deterministic.
+    ThrottledFeeders throttledFeeders = new ThrottledFeeders(Runnable::run);
     ClientFeederV3 clientFeederV3;
+    MockSharedSession session;
     HttpRequest request;
 
     @Before
     public void setup() {
-        // Set up a request to be used from the tests.
-        InputStream in = new MetaStream(new byte[] { 1 });
-        request = HttpRequest
-                .createTestRequest(
-                        "http://foo.bar:19020/reserved-for-internal-use/feedapi",
-                        com.yahoo.jdisc.http.HttpRequest.Method.POST, in);
-        request.getJDiscRequest().headers().add(Headers.VERSION, "3");
-        request.getJDiscRequest().headers().add(Headers.CLIENT_ID, "clientId");
-
+        request = createRequest(2);
 
         // Create a mock that does not parse the message, only reads the rest of the line. Makes it easier
         // to write tests. It uses a mock for message bus.
-        clientFeederV3 = new ClientFeederWithMocks(
-                retainMockSession(new SourceSessionParams(), requests),
+        session = new MockSharedSession(new SourceSessionParams(), requests);
+        clientFeederV3 = createFeeder(session);
+    }
+
+    private ClientFeederV3 createFeeder(MockSharedSession session) {
+        return new ClientFeederWithMocks(
+                new ReferencedResource<>(session, References.fromResource(session)),
                 new MockFeedReaderFactory(),
                 null /*DocTypeManager*/,
                 "clientID",
-                null/*metric*/,
-                new FeedReplyReader(null/*metric*/, new DocumentApiMetrics(MetricReceiver.nullImplementation, "tester")),
-                threadsAvail);
+                new DummyMetric(),
+                new FeedReplyReader(new DummyMetric(), new DocumentApiMetrics(MetricReceiver.nullImplementation, "tester")),
+                threadsAvail,
+                throttledFeeders);
+    }
+
+    @After
+    public void teardown() {
+        clientFeederV3.kill();
+    }
+
+    private static HttpRequest createRequest(int operations) {
+        InputStream in = new MetaStream(new byte[operations]);
+        HttpRequest request = HttpRequest
+                .createTestRequest(
+                        "http://foo.bar:19020/reserved-for-internal-use/feedapi",
+                        com.yahoo.jdisc.http.HttpRequest.Method.POST, in);
+        request.getJDiscRequest().headers().add(Headers.VERSION, "3");
+        request.getJDiscRequest().headers().add(Headers.CLIENT_ID, "clientId");
+        request.getJDiscRequest().headers().add(Headers.DATA_FORMAT, "JSON_UTF8");
+        return request;
     }
 
-    // A mock for message bus that can simulate blocking requests.
+    // A mock for message bus which accepts one message at a time, and then reports a full queue until
+    // the pending message is replied to.
     private static class MockSharedSession extends SharedSourceSession {
-        boolean queuFull = true;
-        AtomicInteger requests;
+        final List<Message> pending = new ArrayList<>();
+        final AtomicInteger requests;
 
         public MockSharedSession(SourceSessionParams params, AtomicInteger requests) {
             super(new SharedMessageBus(new MessageBus(new MockNetwork(),
@@ -103,33 +125,32 @@ public class V3CongestionTestCase {
         }
 
         @Override
-        public Result sendMessageBlocking(Message msg) throws InterruptedException {
-            return sendMessage(msg);
+        public Result sendMessageBlocking(Message msg) {
+            throw new AssertionError("Feeding should never block");
         }
 
         @Override
         public Result sendMessage(Message msg) {
-            ReplyHandler handler = msg.popHandler();
-            if (queuFull) {
-                requests.incrementAndGet();
-                // Disable queue full after some attempts
-                if (requests.get() == NUMBER_OF_QUEUE_FULL_RESPONSES) {
-                    queuFull = false;
-                }
-                Result r = new Result(ErrorCode.SEND_QUEUE_FULL, "queue full");
-                return r;
+            requests.incrementAndGet();
+            if ( ! pending.isEmpty()) {
+                return new Result(ErrorCode.SEND_QUEUE_FULL, "queue full");
             }
-
-            handler.handleReply(new MockReply(msg.getContext()));
+            pending.add(msg);
             return Result.ACCEPTED;
         }
+
+        void replyToPending() {
+            while ( ! pending.isEmpty()) {
+                Message msg = pending.remove(0);
+                msg.popHandler().handleReply(new MockReply(msg.getContext()));
+            }
+        }
     }
 
-    ReferencedResource<SharedSourceSession> retainMockSession(
-            SourceSessionParams sessionParams,
-            AtomicInteger requests) {
-        final SharedSourceSession session = new MockSharedSession(sessionParams, requests);
-        return new ReferencedResource<>(session, References.fromResource(session));
+    private String render(HttpResponse response) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        response.render(output);
+        return output.toString("US-ASCII");
     }
 
     @Test
@@ -138,7 +159,19 @@ public class V3CongestionTestCase {
         threadsAvail.set(10);
 
         clientFeederV3.handleRequest(request);
-        assertTrue(requests.get() == NUMBER_OF_QUEUE_FULL_RESPONSES);
+        assertEquals(3, requests.get());
+        assertEquals(1, session.pending.size());
+
+        // Each reply makes room for the next parked operation
+        session.replyToPending();
+        assertEquals(4, requests.get());
+        assertEquals(1, session.pending.size());
+        session.replyToPending();
+        assertEquals(0, session.pending.size());
+
+        String rendered = render(clientFeederV3.handleRequest(createRequest(0)));
+        assertEquals(2, rendered.split("\\n").length);
+        assertTrue(rendered, rendered.contains("OK"));
     }
 
     @Test
@@ -146,8 +179,12 @@ public class V3CongestionTestCase {
         request.getJDiscRequest().headers().add(Headers.DENY_IF_BUSY, "true");
         threadsAvail.set(0);
 
-        clientFeederV3.handleRequest(request);
-        assertTrue(requests.get() == 1);
+        String rendered = render(clientFeederV3.handleRequest(request));
+        assertEquals(2, requests.get());
+        assertTrue(rendered, rendered.contains("TRANSIENT_ERROR"));
+
+        session.replyToPending();
+        assertEquals(2, requests.get());
     }
 
     @Test
@@ -156,6 +193,52 @@ public class V3CongestionTestCase {
         threadsAvail.set(0);
 
         clientFeederV3.handleRequest(request);
-        assertTrue(requests.get() == NUMBER_OF_QUEUE_FULL_RESPONSES);
+        assertEquals(3, requests.get());
+
+        session.replyToPending();
+        assertEquals(4, requests.get());
+        assertEquals(1, session.pending.size());
+    }
+
+    @Test
+    public void testTransientErrorWhenTooManyOperationsAreParked() throws IOException {
+        int operations = ClientFeederV3.MAX_THROTTLED_OPERATIONS + 2;
+
+        // The first operation is sent, the next ones are parked, and the last one does not fit
+        String rendered = render(clientFeederV3.handleRequest(createRequest(operations)));
+        assertEquals(3, requests.get());
+        assertEquals(1, rendered.split("\\n").length);
+        assertTrue(rendered, rendered.contains("TRANSIENT_ERROR"));
+
+        for (int i = 0; i <= ClientFeederV3.MAX_THROTTLED_OPERATIONS; i++) {
+            session.replyToPending();
+        }
+        assertEquals(0, session.pending.size());
+        rendered = render(clientFeederV3.handleRequest(createRequest(0)));
+        assertEquals(operations - 1, rendered.split("\\n").length);
+        assertFalse(rendered, rendered.contains("TRANSIENT_ERROR"));
+    }
+
+    @Test
+    public void testClientsWithFullSendQueuesDoNotStopOthersFromResuming() throws IOException {
+        AtomicInteger otherRequests = new AtomicInteger(0);
+        MockSharedSession otherSession = new MockSharedSession(new SourceSessionParams(), otherRequests);
+        ClientFeederV3 otherFeederV3 = createFeeder(otherSession);
+        try {
+            clientFeederV3.handleRequest(createRequest(2));
+            otherFeederV3.handleRequest(createRequest(2));
+            assertEquals(3, requests.get());
+            assertEquals(3, otherRequests.get());
+
+            // The first client still finds its send queue full, but the other one gets to send its parked operation
+            otherSession.replyToPending();
+            assertEquals(4, requests.get());
+            assertEquals(4, otherRequests.get());
+            assertEquals(1, otherSession.pending.size());
+        }
+        finally {
+            otherFeederV3.kill();
+        }
     }
+
 }
@@ -4,18 +4,25 @@ package com.yahoo.vespavisit;
 import com.yahoo.document.BucketId;
 import com.yahoo.document.Document;
 import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
 import com.yahoo.document.json.JsonWriter;
 import com.yahoo.document.serialization.XmlStream;
 import com.yahoo.documentapi.AckToken;
 import com.yahoo.documentapi.DumpVisitorDataHandler;
 import com.yahoo.documentapi.VisitorDataHandler;
+import com.yahoo.documentapi.VisitorDataStream;
 import com.yahoo.documentapi.messagebus.protocol.DocumentListEntry;
 import com.yahoo.documentapi.messagebus.protocol.DocumentListMessage;
 import com.yahoo.documentapi.messagebus.protocol.EmptyBucketsMessage;
 import com.yahoo.documentapi.messagebus.protocol.MapVisitorMessage;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
 import com.yahoo.log.LogLevel;
 import com.yahoo.messagebus.Message;
 
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
@@ -41,13 +48,25 @@ public class StdOutVisitorHandler extends VdsVisitHandler {
     private PrintStream out;
     private final boolean jsonOutput;
 
-    private VisitorDataHandler dataHandler;
+    private DataHandler dataHandler;
 
     public StdOutVisitorHandler(boolean printIds, boolean indentXml,
                                 boolean showProgress, boolean showStatistics, boolean doStatistics,
                                 boolean abortOnClusterDown, int processtime, boolean jsonOutput)
     {
-        this(printIds, indentXml, showProgress, showStatistics, doStatistics, abortOnClusterDown, processtime, jsonOutput, createStdOutPrintStream());
+        this(printIds, indentXml, showProgress, showStatistics, doStatistics, abortOnClusterDown, processtime, jsonOutput, false);
+    }
+
+    /**
+     * Creates a handler which, if bulk is set, writes to a buffered STDOUT which is flushed once per frame
+     * passed to {@link #printFrames}, rather than once per document.
+     */
+    public StdOutVisitorHandler(boolean printIds, boolean indentXml,
+                                boolean showProgress, boolean showStatistics, boolean doStatistics,
+                                boolean abortOnClusterDown, int processtime, boolean jsonOutput, boolean bulk)
+    {
+        this(printIds, indentXml, showProgress, showStatistics, doStatistics, abortOnClusterDown, processtime, jsonOutput,
+             bulk ? createBufferedStdOutPrintStream() : createStdOutPrintStream());
     }
 
     StdOutVisitorHandler(boolean printIds, boolean indentXml,
@@ -71,12 +90,58 @@ public class StdOutVisitorHandler extends VdsVisitHandler {
         }
     }
 
+    private static PrintStream createBufferedStdOutPrintStream() {
+        try {
+            return new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e); // Will not happen - UTF-8 is always supported
+        }
+    }
+
     @Override
     public void onDone() {
     }
 
     public VisitorDataHandler getDataHandler() { return dataHandler; }
 
+    /**
+     * Writes the documents and removes of all frames of the given stream, until visiting is done or this thread
+     * is interrupted. Output is flushed once per frame.
+     */
+    public void printFrames(VisitorDataStream stream) {
+        try {
+            while ( ! stream.isDone()) {
+                VisitorDataStream.Frame frame = stream.getNextFrame(100);
+                if (frame != null) {
+                    printFrame(frame);
+                }
+            }
+        } catch (InterruptedException e) {
+            return;
+        }
+        dataHandler.onDone();
+        out.flush();
+    }
+
+    private void printFrame(VisitorDataStream.Frame frame) {
+        if (processTimeMilliSecs > 0) {
+            try {
+                Thread.sleep(processTimeMilliSecs);
+            } catch (InterruptedException e) {}
+        }
+        synchronized (printLock) {
+            for (DocumentOperation operation : frame.getOperations()) {
+                if (operation instanceof DocumentPut) {
+                    Document document = ((DocumentPut)operation).getDocument();
+                    dataHandler.onDocument(document, document.getLastModified());
+                } else {
+                    dataHandler.onRemove(operation.getId());
+                }
+            }
+            out.flush();
+        }
+    }
+
     class StatisticsMap extends LinkedHashMap<String, Integer> {
         int maxSize;
 
@@ -136,6 +201,9 @@ public class StdOutVisitorHandler extends VdsVisitHandler {
                     onEmptyBuckets(((EmptyBucketsMessage)m).getBucketIds());
                     ack(token);
                 } else {
+                    if (m instanceof PutDocumentMessage) {
+                        ((PutDocumentMessage) m).decodeWithPrimitiveCollections(); // Documents are only printed
+                    }
                     super.onMessage(m, token);
                 }
             }
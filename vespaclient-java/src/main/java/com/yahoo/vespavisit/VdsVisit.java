@@ -5,6 +5,7 @@ import com.yahoo.document.FixedBucketSpaces;
 import com.yahoo.document.select.parser.ParseException;
 import com.yahoo.documentapi.ProgressToken;
 import com.yahoo.documentapi.VisitorControlHandler;
+import com.yahoo.documentapi.VisitorDataStream;
 import com.yahoo.documentapi.VisitorParameters;
 import com.yahoo.documentapi.VisitorSession;
 import com.yahoo.documentapi.messagebus.MessageBusDocumentAccess;
@@ -338,6 +339,32 @@ public class VdsVisit {
               .hasArg(false)
               .build());
 
+        options.addOption(Option.builder()
+                .longOpt("bulk")
+                .desc("Collect received documents in frames of about 1 MiB and write them a frame at a time, acking " +
+                      "documents as they are added to a frame while at most 8 frames wait to be written. " +
+                      "Speeds up dumping large corpora.")
+                .hasArg(false)
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("slices")
+                .hasArg(true)
+                .argName("num")
+                .desc("Split the bucket space into this number of disjoint slices, which must be a power of 2, and " +
+                      "visit only the one given by --sliceid. Invocations for all the slices may run in parallel, e.g., one per client core, " +
+                      "and together visit all documents. Each must track progress in its own file.")
+                .type(Number.class)
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("sliceid")
+                .hasArg(true)
+                .argName("id")
+                .desc("The slice to visit, from 0 to the number given by --slices.")
+                .type(Number.class)
+                .build());
+
         options.addOption(Option.builder()
                 .longOpt("bucketspace")
                 .hasArg(true)
@@ -361,6 +388,7 @@ public class VdsVisit {
         private int processTime = 0;
         private int fullTimeout = 7 * 24 * 60 * 60 * 1000;
         private boolean jsonOutput = false;
+        private boolean bulk = false;
 
         public VisitorParameters getVisitorParameters() {
             return visitorParameters;
@@ -429,6 +457,14 @@ public class VdsVisit {
         public void setJsonOutput(boolean jsonOutput) {
             this.jsonOutput = jsonOutput;
         }
+
+        public boolean isBulk() {
+            return bulk;
+        }
+
+        public void setBulk(boolean bulk) {
+            this.bulk = bulk;
+        }
     }
 
     protected static class ArgumentParser {
@@ -557,6 +593,19 @@ public class VdsVisit {
             if (line.hasOption("skipbucketsonfatalerrors")) {
                 params.skipBucketsOnFatalErrors(true);
             }
+            if (line.hasOption("bulk")) {
+                allParams.setBulk(true);
+            }
+            if (line.hasOption("slices") != line.hasOption("sliceid")) {
+                throw new IllegalArgumentException("Must specify both --slices and --sliceid to visit a slice");
+            }
+            if (line.hasOption("slices")) {
+                if (Integer.bitCount(((Number) line.getParsedOptionValue("slices")).intValue()) != 1) {
+                    throw new IllegalArgumentException("The number of slices given by --slices must be a power of 2");
+                }
+                params.slice(((Number) line.getParsedOptionValue("slices")).intValue(),
+                             ((Number) line.getParsedOptionValue("sliceid")).intValue());
+            }
             if (line.hasOption("maxpendingsuperbuckets")) {
                 StaticThrottlePolicy throttlePolicy = new StaticThrottlePolicy();
                 throttlePolicy.setMaxPendingCount(((Number)line.getParsedOptionValue("maxpendingsuperbuckets")).intValue());
@@ -647,6 +696,12 @@ public class VdsVisit {
         if (vdsParams.isPrintIdsOnly()) {
             out.println("Only showing document identifiers.");
         }
+        if (vdsParams.isBulk()) {
+            out.println("Receiving documents in bulk frames.");
+        }
+        if (params.getSlices() > 1) {
+            out.println("Visiting slice " + params.getSliceId() + " of " + params.getSlices() + ".");
+        }
         out.println("Let visitor have maximum " + params.getMaxPending() + " replies pending on data handlers per storage node visitor.");
         out.println("Visit maximum " + params.getMaxBucketsPerVisitor() + " buckets per visitor.");
         if (params.getRemoteDataHandler() != null) {
@@ -725,7 +780,7 @@ public class VdsVisit {
         initShutdownHook();
         sessionAccessor = sessionAccessorFactory.createVisitorSessionAccessor();
 
-        VdsVisitHandler handler;
+        StdOutVisitorHandler handler;
 
         handler = new StdOutVisitorHandler(
                 params.isPrintIdsOnly(),
@@ -735,15 +790,25 @@ public class VdsVisit {
                 params.getStatisticsParts() != null,
                 params.getAbortOnClusterDown(),
                 params.getProcessTime(),
-                params.jsonOutput);
+                params.jsonOutput,
+                params.isBulk());
 
         if (visitorParameters.getResumeFileName() != null) {
             handler.setProgressFileName(visitorParameters.getResumeFileName());
         }
 
         visitorParameters.setControlHandler(handler.getControlHandler());
+        Thread frameWriter = null;
         if (visitorParameters.getRemoteDataHandler() == null) {
-            visitorParameters.setLocalDataHandler(handler.getDataHandler());
+            if (params.isBulk()) {
+                VisitorDataStream stream = new VisitorDataStream();
+                visitorParameters.setLocalDataHandler(stream);
+                frameWriter = new Thread(() -> handler.printFrames(stream), "vespa-visit-frame-writer");
+                frameWriter.setDaemon(true);
+                frameWriter.start();
+            } else {
+                visitorParameters.setLocalDataHandler(handler.getDataHandler());
+            }
         }
 
         if (params.getStatisticsParts() != null) {
@@ -761,6 +826,9 @@ public class VdsVisit {
                 } catch (InterruptedException e) {}
             }
 
+            if (frameWriter != null) {
+                frameWriter.join();
+            }
             if (visitorParameters.getTraceLevel() > 0) {
                 System.out.println(session.getTrace().toString());
             }
@@ -1,7 +1,16 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespavisit;
 
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.documentapi.AckToken;
 import com.yahoo.documentapi.VisitorDataHandler;
+import com.yahoo.documentapi.VisitorDataStream;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.RemoveDocumentMessage;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -49,4 +58,42 @@ public class StdOutVisitorHandlerTest {
         String output = out.toString().trim();
         assertEquals(expectedOutput, output);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void printing_frames_produces_same_output_as_printing_documents() {
+        DocumentTypeManager types = new DocumentTypeManager();
+        DocumentType type = new DocumentType("music");
+        types.registerDocumentType(type);
+        Document first = new Document(type, "id:ns:music::1");
+        first.setLastModified(1L);
+        Document second = new Document(type, "id:ns:music::2");
+        second.setLastModified(2L);
+        DocumentId removed = new DocumentId("id:ns:music::3");
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        StdOutVisitorHandler.DataHandler dataHandler = (StdOutVisitorHandler.DataHandler)
+                new StdOutVisitorHandler(false, false, false, false, false, false, 0, jsonOutput, new PrintStream(expected, true))
+                        .getDataHandler();
+        dataHandler.onDocument(first, 1);
+        dataHandler.onDocument(second, 2);
+        dataHandler.onRemove(removed);
+        dataHandler.onDone();
+
+        VisitorDataStream stream = new VisitorDataStream() {
+            @Override public void ack(AckToken token) { }
+        };
+        for (Document document : new Document[] { first, second }) {
+            PutDocumentMessage message = new PutDocumentMessage(new DocumentPut(document));
+            message.setTimestamp(document.getLastModified());
+            stream.onMessage(message, new AckToken(document));
+        }
+        stream.onMessage(new RemoveDocumentMessage(removed), new AckToken(removed));
+        stream.onDone();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new StdOutVisitorHandler(false, false, false, false, false, false, 0, jsonOutput, new PrintStream(out, false))
+                .printFrames(stream);
+
+        assertEquals(expected.toString(), out.toString());
+    }
+
+}
@@ -129,7 +129,9 @@ public class VdsVisitTestCase {
                 "--skipbucketsonfatalerrors",
                 "--abortonclusterdown",
                 "--visitremoves",
-                "--bucketspace", "outerspace"
+                "--bucketspace", "outerspace",
+                "--slices", "8",
+                "--sliceid", "2"
         };
         VdsVisit.ArgumentParser parser = createMockArgumentParser();
         VdsVisit.VdsVisitParameters allParams = parser.parse(args);
@@ -164,6 +166,8 @@ public class VdsVisitTestCase {
         assertEquals(DocumentProtocol.Priority.NORMAL_1, params.getPriority());
         assertTrue(allParams.getAbortOnClusterDown());
         assertTrue(params.visitRemoves());
+        assertEquals(8, params.getSlices());
+        assertEquals(2, params.getSliceId());
 
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         PrintStream printStream = new PrintStream(outputStream);
@@ -179,6 +183,7 @@ public class VdsVisitTestCase {
                         "Visiting inconsistent buckets." + nl +
                         "Including remove entries." + nl +
                         "Tracking progress in file: foo-progress.txt" + nl +
+                        "Visiting slice 2 of 8." + nl +
                         "Let visitor have maximum 6000 replies pending on data handlers per storage node visitor." + nl +
                         "Visit maximum 5 buckets per visitor." + nl +
                         "Sending data to data handler at: foo.remote" + nl +
@@ -200,6 +205,28 @@ public class VdsVisitTestCase {
         assertEquals(DocumentProtocol.Priority.LOW_1, params.getPriority());
     }
 
+    @Test
+    public void slices_and_slice_id_must_be_given_together() throws Exception {
+        VdsVisit.ArgumentParser parser = createMockArgumentParser();
+        try {
+            parser.parse(new String[] { "--slices", "8" });
+            fail("no exception thrown");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Must specify both --slices and --sliceid to visit a slice", e.getMessage());
+        }
+    }
+
+    @Test
+    public void slices_must_be_a_power_of_2() throws Exception {
+        VdsVisit.ArgumentParser parser = createMockArgumentParser();
+        try {
+            parser.parse(new String[] { "--slices", "5", "--sliceid", "2" });
+            fail("no exception thrown");
+        } catch (IllegalArgumentException e) {
+            assertEquals("The number of slices given by --slices must be a power of 2", e.getMessage());
+        }
+    }
+
     @Test
     public void testBadPriorityValue() throws Exception {
         String[] args = new String[] {
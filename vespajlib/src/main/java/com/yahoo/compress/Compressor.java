@@ -128,6 +128,17 @@ public class Compressor {
     public byte[] decompress(byte[] compressedData, CompressionType compressionType, int uncompressedSize) {
         return decompress(compressionType, compressedData, 0, uncompressedSize, Optional.empty());
     }
+    /**
+     * Decompresses some data, without copying it if it is not compressed. Unlike the other decompress methods, this
+     * returns the given array itself for uncompressed data which fills it, so the caller must not modify either array.
+     * This saves a copy of every uncompressed payload for callers which only read the result.
+     */
+    public byte[] decompressReadOnly(byte[] compressedData, CompressionType compressionType, int uncompressedSize) {
+        if ((compressionType == CompressionType.NONE || compressionType == CompressionType.INCOMPRESSIBLE)
+            && compressedData.length == uncompressedSize)
+            return compressedData;
+        return decompress(compressedData, compressionType, uncompressedSize);
+    }
     /** Decompresses some data */
     public byte[] decompress(Compression compression) {
         return decompress(compression.type(), compression.data(), 0, compression.uncompressedSize(), Optional.empty());
@@ -0,0 +1,122 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.io;
+
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A per-thread pool of heap backed {@link GrowableByteBuffer} instances, used to avoid allocating
+ * a fresh (typically 64 KB) buffer for every document or message serialized.
+ * <p>
+ * Buffers are kept in size classes of 4 KB, 16 KB, 64 KB, 256 KB and 1 MB. A buffer which has grown
+ * while in use is returned to the largest class it fits, and buffers larger than
+ * {@link #MAX_RETAINED_CAPACITY} are dropped on release so a single huge document does not pin
+ * memory in a thread forever.
+ * <p>
+ * The release contract: a buffer obtained from {@link #acquire(int)} may be handed back with
+ * {@link #release(GrowableByteBuffer)} once the caller, and anything the caller passed the buffer
+ * (or its backing array) to, is done with it. Releasing is optional - a buffer which is never
+ * released is simply garbage collected. Buffers not obtained from this pool are ignored on release.
+ */
+public final class GrowableByteBufferPool {
+
+    /** The capacity of the smallest size class */
+    public static final int MIN_CLASS_CAPACITY = 4 * 1024;
+
+    /** Buffers with a larger capacity than this are not retained on release */
+    public static final int MAX_RETAINED_CAPACITY = 4 * 1024 * 1024;
+
+    private static final int NUM_CLASSES = 5;
+    private static final int MAX_BUFFERS_PER_CLASS = 4;
+
+    private static final ThreadLocal<GrowableByteBufferPool> pools = ThreadLocal.withInitial(GrowableByteBufferPool::new);
+
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<Pooled>[] classes = new ArrayDeque[NUM_CLASSES];
+
+    private GrowableByteBufferPool() {
+        for (int i = 0; i < NUM_CLASSES; i++)
+            classes[i] = new ArrayDeque<>(MAX_BUFFERS_PER_CLASS);
+    }
+
+    /**
+     * Returns an empty, big endian buffer with at least the given capacity, reusing a buffer
+     * previously released by the calling thread if one is available.
+     */
+    public static GrowableByteBuffer acquire(int minCapacity) {
+        return pools.get().get(minCapacity);
+    }
+
+    /** Returns an empty buffer of the default base size of {@link GrowableByteBuffer} */
+    public static GrowableByteBuffer acquire() {
+        return acquire(GrowableByteBuffer.DEFAULT_BASE_SIZE);
+    }
+
+    /**
+     * Hands a buffer back to the pool of the calling thread. The caller must not use the buffer,
+     * or any array obtained from it, after this returns.
+     */
+    public static void release(GrowableByteBuffer buffer) {
+        if ( ! (buffer instanceof Pooled)) return;
+        pools.get().put((Pooled) buffer);
+    }
+
+    private GrowableByteBuffer get(int minCapacity) {
+        int sizeClass = classOf(minCapacity);
+        if (sizeClass == NUM_CLASSES) return new Pooled(minCapacity);
+
+        for (int i = sizeClass; i < NUM_CLASSES; i++) {
+            Pooled buffer = classes[i].pollLast();
+            if (buffer != null) {
+                buffer.released.set(false);
+                return buffer;
+            }
+        }
+        return new Pooled(capacityOf(sizeClass));
+    }
+
+    private void put(Pooled buffer) {
+        if ( ! buffer.released.compareAndSet(false, true)) throw new IllegalStateException("Buffer is already released");
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY || buffer.isDirect()) return;
+
+        int sizeClass = Math.min(NUM_CLASSES - 1, floorClassOf(buffer.capacity()));
+        if (sizeClass < 0 || classes[sizeClass].size() >= MAX_BUFFERS_PER_CLASS) return;
+
+        buffer.clear();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        buffer.setGrowFactor(GrowableByteBuffer.DEFAULT_GROW_FACTOR);
+        classes[sizeClass].addLast(buffer);
+    }
+
+    /** Returns the smallest class whose capacity is at least the given one, or NUM_CLASSES if none */
+    static int classOf(int capacity) {
+        int sizeClass = 0;
+        while (sizeClass < NUM_CLASSES && capacityOf(sizeClass) < capacity) sizeClass++;
+        return sizeClass;
+    }
+
+    /** Returns the largest class whose capacity is at most the given one, or -1 if none */
+    private static int floorClassOf(int capacity) {
+        int sizeClass = -1;
+        while (sizeClass + 1 < NUM_CLASSES && capacityOf(sizeClass + 1) <= capacity) sizeClass++;
+        return sizeClass;
+    }
+
+    static int capacityOf(int sizeClass) {
+        return MIN_CLASS_CAPACITY << (2 * sizeClass);
+    }
+
+    /** Marks buffers owned by this pool, so that wrapped, caller owned arrays are never recycled */
+    private static final class Pooled extends GrowableByteBuffer {
+
+        /** Set by the releasing thread, which may not be the one which acquired this, so double release is rejected atomically */
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        Pooled(int capacity) {
+            super(capacity, DEFAULT_GROW_FACTOR);
+        }
+
+    }
+
+}
@@ -6,7 +6,10 @@ import org.junit.Test;
 import java.util.Arrays;
 import java.util.Optional;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class LZ4CompressorTest {
@@ -22,4 +25,18 @@ public class LZ4CompressorTest {
         assertTrue(Arrays.equals(decompressed, Arrays.copyOf(toCompress, compressBytes)));
     }
 
+    @Test
+    public void read_only_decompression_returns_uncompressed_data_without_copying() {
+        Compressor compressor = new Compressor();
+        byte[] data = new byte[2000];
+        Arrays.fill(data, (byte) 'a');
+        Compressor.Compression compressed = compressor.compress(CompressionType.LZ4, data);
+        assertEquals(CompressionType.LZ4, compressed.type());
+        assertArrayEquals(data, compressor.decompressReadOnly(compressed.data(), compressed.type(), data.length));
+
+        assertSame(data, compressor.decompressReadOnly(data, CompressionType.INCOMPRESSIBLE, data.length));
+        assertSame(data, compressor.decompressReadOnly(data, CompressionType.NONE, data.length));
+        assertNotSame(data, compressor.decompress(data, CompressionType.NONE, data.length));
+    }
+
 }
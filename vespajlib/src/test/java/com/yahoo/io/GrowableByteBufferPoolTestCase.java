@@ -0,0 +1,77 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.io;
+
+import org.junit.Test;
+
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests GrowableByteBufferPool.
+ */
+public class GrowableByteBufferPoolTestCase {
+
+    @Test
+    public void released_buffer_is_reused_empty_and_big_endian() {
+        GrowableByteBuffer buffer = GrowableByteBufferPool.acquire(1000);
+        assertEquals(GrowableByteBufferPool.MIN_CLASS_CAPACITY, buffer.capacity());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(17);
+        GrowableByteBufferPool.release(buffer);
+
+        GrowableByteBuffer reused = GrowableByteBufferPool.acquire(1000);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(reused.capacity(), reused.limit());
+        assertEquals(ByteOrder.BIG_ENDIAN, reused.order());
+        GrowableByteBufferPool.release(reused);
+    }
+
+    @Test
+    public void nested_acquires_get_distinct_buffers() {
+        GrowableByteBuffer outer = GrowableByteBufferPool.acquire();
+        GrowableByteBuffer inner = GrowableByteBufferPool.acquire();
+        assertNotSame(outer, inner);
+        GrowableByteBufferPool.release(inner);
+        GrowableByteBufferPool.release(outer);
+    }
+
+    @Test
+    public void grown_buffer_is_returned_to_larger_class() {
+        GrowableByteBuffer buffer = GrowableByteBufferPool.acquire(4096);
+        buffer.put(new byte[100 * 1024]);
+        assertTrue(buffer.capacity() > 64 * 1024);
+        GrowableByteBufferPool.release(buffer);
+
+        assertSame(buffer, GrowableByteBufferPool.acquire(64 * 1024));
+    }
+
+    @Test
+    public void huge_and_foreign_buffers_are_not_retained() {
+        GrowableByteBuffer huge = GrowableByteBufferPool.acquire(GrowableByteBufferPool.MAX_RETAINED_CAPACITY + 1);
+        GrowableByteBufferPool.release(huge);
+        assertNotSame(huge, GrowableByteBufferPool.acquire(GrowableByteBufferPool.MAX_RETAINED_CAPACITY + 1));
+
+        GrowableByteBuffer foreign = new GrowableByteBuffer(1024 * 1024);
+        GrowableByteBufferPool.release(foreign);
+        assertNotSame(foreign, GrowableByteBufferPool.acquire(1024 * 1024));
+    }
+
+    @Test
+    public void double_release_is_rejected() {
+        GrowableByteBuffer buffer = GrowableByteBufferPool.acquire(16 * 1024);
+        GrowableByteBufferPool.release(buffer);
+        try {
+            GrowableByteBufferPool.release(buffer);
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            assertEquals("Buffer is already released", e.getMessage());
+        }
+    }
+
+}